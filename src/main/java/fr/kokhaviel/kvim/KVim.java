@@ -1,5 +1,7 @@
 package fr.kokhaviel.kvim;
 
+import fr.kokhaviel.kvim.api.KVimMetrics;
+import fr.kokhaviel.kvim.api.actions.file.KVimSession;
 import fr.kokhaviel.kvim.api.git.KVimGitInit;
 import fr.kokhaviel.kvim.api.props.KVimProperties;
 import fr.kokhaviel.kvim.gui.KVimMain;
@@ -19,6 +21,7 @@ public class KVim {
 	public static KVimProperties kVimProperties = new KVimProperties(true);
 
 	public static void main(String[] args) throws UnsupportedLookAndFeelException, InterruptedException, IOException {
+		KVimMetrics.install();
 		UIManager.setLookAndFeel(new NimbusLookAndFeel());
 		new KVimWelcome().splash(1);
 		KVimMain main;
@@ -31,7 +34,8 @@ public class KVim {
 
 			main = new KVimMain(paths);
 		} else {
-			main = new KVimMain();
+			main = KVimSession.restore();
+			if(main == null) main = new KVimMain();
 		}
 
 		main.setVisible(true);
@@ -0,0 +1,475 @@
+package fr.kokhaviel.kvim.api;
+
+import fr.kokhaviel.kvim.api.actions.KVimFileEvent;
+import fr.kokhaviel.kvim.api.actions.KVimWatchService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.lib.Constants;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+public class KVimFileIndex {
+
+	static final ExecutorService INDEXER = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "KVim-FileIndex");
+		thread.setDaemon(true);
+		return thread;
+	});
+	static final Map<Path, KVimFileIndex> INDEXES = new HashMap<>();
+	static final int BATCH = 4096;
+	static final int PARALLEL_THRESHOLD = 50_000;
+	static final int NO_MATCH = Integer.MIN_VALUE;
+	static final int BOUNDARY_BONUS = 8;
+	static final int CONSECUTIVE_BONUS = 4;
+	static final int NAME_BONUS = 32;
+	static final char[] LOWER = new char[128];
+
+	static {
+		for(char c = 0; c < LOWER.length; c++) LOWER[c] = c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+	}
+
+	private final Path root;
+	private final Map<Path, IgnoreNode> ignores = new HashMap<>();
+	private final EventListenerList listeners = new EventListenerList();
+	private char[] pool = new char[BATCH * 32];
+	private int poolSize;
+	private int garbage;
+	private int[] offsets = new int[BATCH];
+	private int[] lengths = new int[BATCH];
+	private int[] nameStarts = new int[BATCH];
+	private int[] hashes = new int[BATCH];
+	private long[] masks = new long[BATCH];
+	private long[] nameMasks = new long[BATCH];
+	private int size;
+	private int[] table = new int[BATCH * 2];
+	private int tableUsed;
+	private boolean ready;
+
+	KVimFileIndex(Path root) {
+		this.root = root;
+	}
+
+	public static KVimFileIndex get(Path root) {
+		final Path normalized = root.toAbsolutePath().normalize();
+		KVimFileIndex index = INDEXES.get(normalized);
+		if(index == null) {
+			index = new KVimFileIndex(normalized);
+			INDEXES.put(normalized, index);
+			index.start();
+		}
+		return index;
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	public void addChangeListener(ChangeListener listener) {
+		listeners.add(ChangeListener.class, listener);
+	}
+
+	public void removeChangeListener(ChangeListener listener) {
+		listeners.remove(ChangeListener.class, listener);
+	}
+
+	private void start() {
+		KVimWatchService.subscribe(root, true, this::filesChanged);
+		INDEXER.execute(() -> {
+			seed();
+			scan(root);
+			SwingUtilities.invokeLater(() -> {
+				ready = true;
+				fireChanged();
+			});
+		});
+	}
+
+	private void seed() {
+		final Path gitRoot = KVimProjectResolver.getGitRoot(root);
+		if(gitRoot == null) return;
+
+		final String prefix = gitRoot.equals(root) ? "" : gitRoot.relativize(root).toString().replace('\\', '/') + "/";
+		Git git = null;
+		try {
+			git = KVimProjectResolver.openGit(gitRoot);
+			final DirCache dirCache = git.getRepository().readDirCache();
+			final List<String> batch = new ArrayList<>();
+
+			for(int i = 0; i < dirCache.getEntryCount(); i++) {
+				final String path = dirCache.getEntry(i).getPathString();
+				if(!path.startsWith(prefix)) continue;
+				batch.add(path.substring(prefix.length()));
+				if(batch.size() == BATCH) {
+					post(new ArrayList<>(batch), false);
+					batch.clear();
+				}
+			}
+			post(batch, false);
+		} catch(IOException ignored) {
+		} finally {
+			KVimProjectResolver.release(git);
+		}
+	}
+
+	private void scan(Path dir) {
+		final List<String> batch = new ArrayList<>();
+		final List<IgnoreNode> stack = new ArrayList<>();
+		final List<Path> bases = new ArrayList<>();
+		for(Path parent = dir.getParent(); parent != null && parent.startsWith(root); parent = parent.getParent()) {
+			stack.add(ignoreOf(parent));
+			bases.add(parent);
+		}
+
+		try {
+			Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) {
+					if(!path.equals(dir) && (path.getFileName().toString().equals(Constants.DOT_GIT) || KVimIgnore.isIgnored(path, true, stack, bases))) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					stack.add(0, ignoreOf(path));
+					bases.add(0, path);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+					if(attributes.isRegularFile() && !KVimIgnore.isIgnored(path, false, stack, bases)) {
+						batch.add(relative(path));
+						if(batch.size() == BATCH) {
+							post(new ArrayList<>(batch), false);
+							batch.clear();
+						}
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path path, IOException e) {
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path path, IOException e) {
+					stack.remove(0);
+					bases.remove(0);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch(IOException ignored) {
+		}
+		post(batch, false);
+	}
+
+	private IgnoreNode ignoreOf(Path dir) {
+		return ignores.computeIfAbsent(dir, key -> KVimIgnore.read(key, key.equals(root)));
+	}
+
+	private boolean isIgnored(Path path, boolean directory) {
+		final List<IgnoreNode> stack = new ArrayList<>();
+		final List<Path> bases = new ArrayList<>();
+		for(Path parent = path.getParent(); parent != null && parent.startsWith(root); parent = parent.getParent()) {
+			if(parent.getFileName() != null && parent.getFileName().toString().equals(Constants.DOT_GIT)) return true;
+			stack.add(ignoreOf(parent));
+			bases.add(parent);
+		}
+		return path.getFileName().toString().equals(Constants.DOT_GIT) || KVimIgnore.isIgnored(path, directory, stack, bases);
+	}
+
+	private String relative(Path path) {
+		return root.relativize(path).toString().replace('\\', '/');
+	}
+
+	private void post(List<String> batch, boolean remove) {
+		if(batch.isEmpty()) return;
+		SwingUtilities.invokeLater(() -> {
+			if(remove) batch.forEach(this::remove);
+			else batch.forEach(this::add);
+			fireChanged();
+		});
+	}
+
+	private void filesChanged(List<KVimFileEvent> events) {
+		final List<KVimFileEvent> copy = new ArrayList<>(events);
+		INDEXER.execute(() -> {
+			final List<String> added = new ArrayList<>();
+			final List<String> removed = new ArrayList<>();
+
+			for(KVimFileEvent event : copy) {
+				final Path path = event.getPath();
+				if(event.getKind() == KVimFileEvent.Kind.OVERFLOW) {
+					scan(root);
+					continue;
+				}
+				if(path.getFileName() != null && path.getFileName().toString().equals(Constants.DOT_GIT_IGNORE)) ignores.remove(path.getParent());
+				if(event.getKind() == KVimFileEvent.Kind.DELETED) {
+					removed.add(relative(path));
+					ignores.remove(path);
+					continue;
+				}
+				if(event.getKind() != KVimFileEvent.Kind.CREATED) continue;
+
+				if(Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+					if(!isIgnored(path, true)) scan(path);
+				} else if(Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) && !isIgnored(path, false)) {
+					added.add(relative(path));
+				}
+			}
+			post(removed, true);
+			post(added, false);
+		});
+	}
+
+	private void add(String path) {
+		if(slotOf(path) >= 0) return;
+		if(size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+			nameStarts = Arrays.copyOf(nameStarts, size * 2);
+			hashes = Arrays.copyOf(hashes, size * 2);
+			masks = Arrays.copyOf(masks, size * 2);
+			nameMasks = Arrays.copyOf(nameMasks, size * 2);
+		}
+		if(poolSize + path.length() > pool.length) pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + path.length()));
+
+		path.getChars(0, path.length(), pool, poolSize);
+		offsets[size] = poolSize;
+		lengths[size] = path.length();
+		nameStarts[size] = poolSize + path.lastIndexOf('/') + 1;
+		hashes[size] = path.hashCode();
+		masks[size] = mask(path);
+		nameMasks[size] = mask(path.substring(path.lastIndexOf('/') + 1));
+		poolSize += path.length();
+
+		if((tableUsed + 1) * 2 > table.length) rehash(Math.max(table.length, Integer.highestOneBit(size * 4)));
+		insert(hashes[size], size);
+		size++;
+	}
+
+	private void remove(String path) {
+		final int slot = slotOf(path);
+		if(slot >= 0) {
+			removeAt(table[slot] - 1);
+			return;
+		}
+
+		final String prefix = path + "/";
+		for(int i = size - 1; i >= 0; i--) {
+			if(startsWith(i, prefix)) removeAt(i);
+		}
+	}
+
+	private void removeAt(int position) {
+		table[findSlot(position)] = -1;
+		garbage += lengths[position];
+		size--;
+
+		if(position != size) {
+			table[findSlot(size)] = position + 1;
+			offsets[position] = offsets[size];
+			lengths[position] = lengths[size];
+			nameStarts[position] = nameStarts[size];
+			hashes[position] = hashes[size];
+			masks[position] = masks[size];
+			nameMasks[position] = nameMasks[size];
+		}
+		if(garbage > poolSize / 2 && garbage > BATCH * 32) compact();
+	}
+
+	private void compact() {
+		final char[] compacted = new char[Math.max(BATCH * 32, (poolSize - garbage) * 2)];
+		int used = 0;
+		for(int i = 0; i < size; i++) {
+			System.arraycopy(pool, offsets[i], compacted, used, lengths[i]);
+			nameStarts[i] += used - offsets[i];
+			offsets[i] = used;
+			used += lengths[i];
+		}
+		pool = compacted;
+		poolSize = used;
+		garbage = 0;
+	}
+
+	private int slotOf(String path) {
+		final int mask = table.length - 1;
+		for(int slot = path.hashCode() & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			if(table[slot] > 0 && equals(table[slot] - 1, path)) return slot;
+		}
+		return -1;
+	}
+
+	private int findSlot(int position) {
+		final int mask = table.length - 1;
+		int slot = hashes[position] & mask;
+		while(table[slot] != position + 1) slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void insert(int hash, int position) {
+		final int mask = table.length - 1;
+		int slot = hash & mask;
+		while(table[slot] > 0) slot = (slot + 1) & mask;
+		if(table[slot] == 0) tableUsed++;
+		table[slot] = position + 1;
+	}
+
+	private void rehash(int capacity) {
+		table = new int[capacity];
+		tableUsed = 0;
+		for(int i = 0; i < size; i++) insert(hashes[i], i);
+	}
+
+	private boolean equals(int position, String path) {
+		return lengths[position] == path.length() && startsWith(position, path);
+	}
+
+	private boolean startsWith(int position, String prefix) {
+		if(lengths[position] < prefix.length()) return false;
+		final int offset = offsets[position];
+		for(int i = 0; i < prefix.length(); i++) {
+			if(pool[offset + i] != prefix.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	private String pathAt(int position) {
+		return new String(pool, offsets[position], lengths[position]);
+	}
+
+	private void fireChanged() {
+		final ChangeEvent event = new ChangeEvent(this);
+		for(ChangeListener listener : listeners.getListeners(ChangeListener.class)) listener.stateChanged(event);
+	}
+
+	public List<String> search(String query, int limit) {
+		final StringBuilder builder = new StringBuilder();
+		for(int i = 0; i < query.length(); i++) {
+			if(!Character.isWhitespace(query.charAt(i))) builder.append(lower(query.charAt(i)));
+		}
+		final char[] chars = builder.toString().toCharArray();
+		final long queryMask = mask(builder);
+
+		final PriorityQueue<int[]> best;
+		if(size < PARALLEL_THRESHOLD) {
+			best = search(chars, queryMask, 0, size, limit);
+		} else {
+			final int chunks = ForkJoinPool.commonPool().getParallelism() + 1;
+			best = IntStream.range(0, chunks).parallel()
+					.mapToObj(chunk -> search(chars, queryMask, (int) ((long) size * chunk / chunks), (int) ((long) size * (chunk + 1) / chunks), limit))
+					.reduce((a, b) -> {
+						b.forEach(entry -> offer(a, entry, limit));
+						return a;
+					}).orElseGet(() -> queue(limit));
+		}
+
+		final String[] result = new String[best.size()];
+		for(int i = result.length - 1; i >= 0; i--) result[i] = pathAt(best.poll()[0]);
+		return Arrays.asList(result);
+	}
+
+	private PriorityQueue<int[]> search(char[] query, long queryMask, int from, int to, int limit) {
+		final PriorityQueue<int[]> best = queue(limit);
+		final int maximum = query.length * (1 + CONSECUTIVE_BONUS + BOUNDARY_BONUS);
+
+		for(int i = from; i < to; i++) {
+			if((masks[i] & queryMask) != queryMask) continue;
+
+			final int start = offsets[i];
+			final int end = start + lengths[i];
+			final int worst = best.size() == limit ? best.peek()[1] : NO_MATCH;
+			int score = NO_MATCH;
+
+			if((nameMasks[i] & queryMask) == queryMask && maximum + NAME_BONUS - (end - nameStarts[i]) / 8 >= worst) {
+				score = match(pool, start, end, nameStarts[i], query);
+				if(score != NO_MATCH) score += NAME_BONUS;
+			}
+			if(score == NO_MATCH && maximum - lengths[i] / 8 >= worst) score = match(pool, start, end, start, query);
+			if(score == NO_MATCH) continue;
+			if(best.size() == limit && !better(score, i, best.peek())) continue;
+			offer(best, new int[] {i, score}, limit);
+		}
+		return best;
+	}
+
+	private PriorityQueue<int[]> queue(int limit) {
+		return new PriorityQueue<>(limit + 1, (a, b) -> a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(lengths[b[0]], lengths[a[0]]));
+	}
+
+	private boolean better(int score, int position, int[] worst) {
+		return score > worst[1] || score == worst[1] && lengths[position] < lengths[worst[0]];
+	}
+
+	private void offer(PriorityQueue<int[]> best, int[] entry, int limit) {
+		if(best.size() == limit) {
+			if(!better(entry[1], entry[0], best.peek())) return;
+			best.poll();
+		}
+		best.add(entry);
+	}
+
+	static int match(char[] text, int start, int end, int from, char[] query) {
+		int score = 0;
+		int q = 0;
+		int last = -2;
+
+		for(int i = from; i < end && q < query.length; i++) {
+			if(lower(text[i]) != query[q]) continue;
+
+			score++;
+			if(i == last + 1) score += CONSECUTIVE_BONUS;
+			if(i == from || i > start && isBoundary(text[i - 1], text[i])) score += BOUNDARY_BONUS;
+			last = i;
+			q++;
+		}
+		return q < query.length ? NO_MATCH : score - (end - from) / 8;
+	}
+
+	static boolean isBoundary(char previous, char current) {
+		return previous == '/' || previous == '.' || previous == '_' || previous == '-' || previous == ' '
+				|| Character.isLowerCase(previous) && Character.isUpperCase(current);
+	}
+
+	static char lower(char c) {
+		return c < 128 ? LOWER[c] : Character.toLowerCase(c);
+	}
+
+	static long mask(CharSequence text) {
+		long mask = 0;
+		for(int i = 0; i < text.length(); i++) {
+			final char c = lower(text.charAt(i));
+			if(c >= 'a' && c <= 'z') mask |= 1L << (c - 'a');
+			else if(c >= '0' && c <= '9') mask |= 1L << (26 + c - '0');
+			else mask |= 1L << (36 + c % 28);
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,38 @@
+package fr.kokhaviel.kvim.api;
+
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.lib.Constants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class KVimIgnore {
+
+	public static IgnoreNode read(Path dir, boolean root) {
+		final IgnoreNode ignore = new IgnoreNode();
+		final List<Path> files = new ArrayList<>();
+		files.add(dir.resolve(Constants.DOT_GIT_IGNORE));
+		if(root) files.add(dir.resolve(Constants.DOT_GIT).resolve(Constants.INFO_EXCLUDE));
+
+		for(Path file : files) {
+			if(!Files.isRegularFile(file)) continue;
+			try(InputStream in = Files.newInputStream(file)) {
+				ignore.parse(file.toString(), in);
+			} catch(IOException ignored) {
+			}
+		}
+		return ignore;
+	}
+
+	public static boolean isIgnored(Path path, boolean directory, List<IgnoreNode> ignores, List<Path> bases) {
+		for(int i = 0; i < ignores.size(); i++) {
+			final Boolean ignored = ignores.get(i).checkIgnored(bases.get(i).relativize(path).toString().replace('\\', '/'), directory);
+			if(ignored != null) return ignored;
+		}
+		return false;
+	}
+}
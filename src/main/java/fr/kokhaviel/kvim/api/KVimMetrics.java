@@ -0,0 +1,353 @@
+package fr.kokhaviel.kvim.api;
+
+import fr.kokhaviel.kvim.api.gui.KVimTab;
+
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+public class KVimMetrics extends EventQueue {
+
+	static final int MAX_STALLS = 50;
+	static final int MAX_SAMPLES = 20;
+	static final int MIN_SAMPLE_INTERVAL = 10;
+
+	static final KVimMetrics QUEUE = new KVimMetrics();
+	static final Histogram DISPATCH = new Histogram();
+	static final Histogram KEYSTROKE = new Histogram();
+	static final Map<FileType, Histogram> FILE_TYPES = new EnumMap<>(FileType.class);
+	static final Map<KVimTab, Histogram> TABS = new WeakHashMap<>();
+	static final Map<KVimTab, Long> PENDING = new WeakHashMap<>();
+	static final List<Stall> STALLS = new ArrayList<>();
+
+	static volatile int threshold = Integer.getInteger("kvim.stallThreshold", 100);
+	static volatile Thread edt;
+	static volatile AWTEvent current;
+	static volatile long dispatchStart;
+	static volatile long sequence;
+	static volatile Stall stall;
+	static int depth;
+	static boolean nested;
+
+	public static class Stall {
+
+		final long time = System.currentTimeMillis();
+		final long sequence;
+		final String event;
+		final List<StackTraceElement[]> samples = new ArrayList<>();
+		volatile long duration;
+
+		Stall(long sequence, String event) {
+			this.sequence = sequence;
+			this.event = event;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public String getEvent() {
+			return event;
+		}
+
+		public long getDuration() {
+			return duration;
+		}
+
+		public synchronized List<StackTraceElement[]> getSamples() {
+			return new ArrayList<>(samples);
+		}
+
+		synchronized void sample(StackTraceElement[] stack) {
+			if(samples.size() < MAX_SAMPLES) samples.add(stack);
+		}
+	}
+
+	public static class Histogram {
+
+		static final int SUB_BITS = 4;
+		static final int SUB_COUNT = 1 << SUB_BITS;
+		static final int BUCKETS = 40 * SUB_COUNT;
+
+		final long[] counts = new long[BUCKETS];
+		long count;
+		long total;
+		long max;
+
+		public void record(long nanos) {
+			final long micros = Math.max(0, nanos / 1000);
+			counts[Math.min(BUCKETS - 1, index(micros))]++;
+			count++;
+			total += micros;
+			max = Math.max(max, micros);
+		}
+
+		public void reset() {
+			Arrays.fill(counts, 0);
+			count = 0;
+			total = 0;
+			max = 0;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getMean() {
+			return count == 0 ? 0 : total / 1000.0 / count;
+		}
+
+		public double getMax() {
+			return max / 1000.0;
+		}
+
+		public double percentile(double percentile) {
+			if(count == 0) return 0;
+
+			final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+			long seen = 0;
+			for(int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if(seen >= rank) return Math.min(max, upper(i)) / 1000.0;
+			}
+			return getMax();
+		}
+
+		static int index(long micros) {
+			if(micros < SUB_COUNT) return (int) micros;
+			final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+			return (exponent - SUB_BITS + 1) * SUB_COUNT + (int) ((micros >> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+		}
+
+		static long upper(int index) {
+			if(index < SUB_COUNT) return index;
+			final int exponent = index / SUB_COUNT + SUB_BITS - 1;
+			return ((long) (SUB_COUNT + index % SUB_COUNT + 1) << (exponent - SUB_BITS)) - 1;
+		}
+	}
+
+	public static void install() {
+		Toolkit.getDefaultToolkit().getSystemEventQueue().push(QUEUE);
+
+		final Thread watchdog = new Thread(KVimMetrics::watch, "KVim-Watchdog");
+		watchdog.setDaemon(true);
+		watchdog.start();
+	}
+
+	@Override
+	protected void dispatchEvent(AWTEvent event) {
+		final long start = System.nanoTime();
+		final AWTEvent outer = current;
+		nested = false;
+		depth++;
+
+		edt = Thread.currentThread();
+		current = event;
+		sequence++;
+		dispatchStart = start;
+		if(event instanceof KeyEvent && ((KeyEvent) event).getComponent() instanceof KVimTab && timed((KeyEvent) event)) {
+			PENDING.putIfAbsent((KVimTab) ((KeyEvent) event).getComponent(), start);
+		}
+
+		try {
+			super.dispatchEvent(event);
+		} finally {
+			final long end = System.nanoTime();
+			final Stall stalled = stall;
+			if(stalled != null && stalled.sequence == sequence) {
+				stalled.duration = (end - start) / 1_000_000;
+				stall = null;
+			}
+
+			if(!nested) DISPATCH.record(end - start);
+			depth--;
+			nested = depth > 0;
+			dispatchStart = depth > 0 ? end : 0;
+			current = outer;
+			sequence++;
+		}
+	}
+
+	@Override
+	public AWTEvent getNextEvent() throws InterruptedException {
+		dispatchStart = 0;
+		try {
+			return super.getNextEvent();
+		} finally {
+			if(depth > 0) dispatchStart = System.nanoTime();
+		}
+	}
+
+	static boolean timed(KeyEvent event) {
+		return event.getID() == KeyEvent.KEY_TYPED || event.getID() == KeyEvent.KEY_PRESSED && event.isActionKey();
+	}
+
+	public static void painted(KVimTab tab) {
+		final Long start = PENDING.remove(tab);
+		if(start == null) return;
+
+		final long latency = System.nanoTime() - start;
+		KEYSTROKE.record(latency);
+		FILE_TYPES.computeIfAbsent(tab.getFileType(), type -> new Histogram()).record(latency);
+		TABS.computeIfAbsent(tab, key -> new Histogram()).record(latency);
+	}
+
+	static void watch() {
+		while(true) {
+			try {
+				Thread.sleep(Math.max(MIN_SAMPLE_INTERVAL, threshold / 4));
+			} catch(InterruptedException e) {
+				return;
+			}
+
+			final long start = dispatchStart;
+			final long observed = sequence;
+			final Thread thread = edt;
+			final AWTEvent event = current;
+			if(start == 0 || thread == null || event == null) continue;
+			if(System.nanoTime() - start < threshold * 1_000_000L) continue;
+
+			final StackTraceElement[] stack = thread.getStackTrace();
+			if(sequence != observed) continue;
+
+			Stall stalled = stall;
+			if(stalled == null || stalled.sequence != observed) {
+				stalled = new Stall(observed, event.getClass().getSimpleName() + " from " + event.getSource().getClass().getSimpleName());
+				synchronized(STALLS) {
+					STALLS.add(stalled);
+					if(STALLS.size() > MAX_STALLS) STALLS.remove(0);
+				}
+				stall = stalled;
+			}
+			stalled.duration = (System.nanoTime() - start) / 1_000_000;
+			stalled.sample(stack);
+		}
+	}
+
+	public static int getThreshold() {
+		return threshold;
+	}
+
+	public static void setThreshold(int threshold) {
+		KVimMetrics.threshold = Math.max(1, threshold);
+	}
+
+	public static Histogram getDispatch() {
+		return DISPATCH;
+	}
+
+	public static Histogram getKeystroke() {
+		return KEYSTROKE;
+	}
+
+	public static Map<FileType, Histogram> getFileTypes() {
+		return Collections.unmodifiableMap(FILE_TYPES);
+	}
+
+	public static Map<String, Histogram> getTabs() {
+		final Map<String, Histogram> tabs = new LinkedHashMap<>();
+		TABS.forEach((tab, histogram) -> tabs.put(tab.isUntitled() ? "Untitled " + tab.getIndex() : tab.getFilePath().toString(), histogram));
+		return tabs;
+	}
+
+	public static List<Stall> getStalls() {
+		synchronized(STALLS) {
+			return new ArrayList<>(STALLS);
+		}
+	}
+
+	public static void reset() {
+		DISPATCH.reset();
+		KEYSTROKE.reset();
+		FILE_TYPES.clear();
+		TABS.clear();
+		synchronized(STALLS) {
+			STALLS.clear();
+		}
+	}
+
+	public static String toJson() {
+		final StringBuilder json = new StringBuilder("{\n");
+		json.append("  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n");
+		json.append("  \"stallThreshold\": ").append(threshold).append(",\n");
+		json.append("  \"dispatch\": ");
+		json(json, DISPATCH);
+		json.append(",\n  \"keystrokeToPaint\": ");
+		json(json, KEYSTROKE);
+
+		json.append(",\n  \"fileTypes\": {");
+		String separator = "\n    ";
+		for(Map.Entry<FileType, Histogram> entry : FILE_TYPES.entrySet()) {
+			json.append(separator).append(quote(entry.getKey().getName())).append(": ");
+			json(json, entry.getValue());
+			separator = ",\n    ";
+		}
+		json.append("\n  },\n  \"tabs\": {");
+		separator = "\n    ";
+		for(Map.Entry<String, Histogram> entry : getTabs().entrySet()) {
+			json.append(separator).append(quote(entry.getKey())).append(": ");
+			json(json, entry.getValue());
+			separator = ",\n    ";
+		}
+
+		json.append("\n  },\n  \"stalls\": [");
+		separator = "\n    ";
+		for(Stall stalled : getStalls()) {
+			json.append(separator).append("{\"time\": ").append(stalled.time)
+					.append(", \"durationMs\": ").append(stalled.duration)
+					.append(", \"event\": ").append(quote(stalled.event))
+					.append(", \"samples\": [");
+			String sampleSeparator = "";
+			for(StackTraceElement[] stack : stalled.getSamples()) {
+				json.append(sampleSeparator).append("[");
+				String frameSeparator = "";
+				for(StackTraceElement frame : stack) {
+					json.append(frameSeparator).append(quote(frame.toString()));
+					frameSeparator = ", ";
+				}
+				json.append("]");
+				sampleSeparator = ", ";
+			}
+			json.append("]}");
+			separator = ",\n    ";
+		}
+		return json.append("\n  ]\n}\n").toString();
+	}
+
+	static void json(StringBuilder json, Histogram histogram) {
+		json.append(String.format(Locale.ROOT, "{\"count\": %d, \"meanMs\": %.3f, \"p50Ms\": %.3f, \"p90Ms\": %.3f, \"p99Ms\": %.3f, \"maxMs\": %.3f}",
+				histogram.getCount(), histogram.getMean(), histogram.percentile(50), histogram.percentile(90), histogram.percentile(99), histogram.getMax()));
+	}
+
+	static String quote(String value) {
+		final StringBuilder quoted = new StringBuilder("\"");
+		for(char c : value.toCharArray()) {
+			switch(c) {
+				case '"':
+					quoted.append("\\\"");
+					break;
+				case '\\':
+					quoted.append("\\\\");
+					break;
+				case '\n':
+					quoted.append("\\n");
+					break;
+				case '\t':
+					quoted.append("\\t");
+					break;
+				default:
+					if(c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+					else quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -0,0 +1,64 @@
+package fr.kokhaviel.kvim.api;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.util.FS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class KVimProjectResolver {
+
+	static final String PROJECT_MARKER = ".kvim";
+
+	private static final Map<Path, Optional<Path>> PROJECT_ROOTS = new ConcurrentHashMap<>();
+	private static final Map<Path, Optional<Path>> GIT_ROOTS = new ConcurrentHashMap<>();
+
+	public static Path getProjectRoot(Path dir) {
+		return resolve(dir, PROJECT_MARKER, PROJECT_ROOTS);
+	}
+
+	public static Path getGitRoot(Path dir) {
+		return resolve(dir, Constants.DOT_GIT, GIT_ROOTS);
+	}
+
+	public static Git openGit(Path root) throws IOException {
+		return Git.wrap(RepositoryCache.open(RepositoryCache.FileKey.lenient(root.toFile(), FS.DETECTED)));
+	}
+
+	public static void release(Git git) {
+		if(git != null) git.getRepository().close();
+	}
+
+	public static void invalidate() {
+		PROJECT_ROOTS.clear();
+		GIT_ROOTS.clear();
+	}
+
+	private static Path resolve(Path dir, String marker, Map<Path, Optional<Path>> cache) {
+		final List<Path> visited = new ArrayList<>();
+		Optional<Path> root = null;
+
+		for(Path current = dir.toAbsolutePath().normalize(); current != null; current = current.getParent()) {
+			root = cache.get(current);
+			if(root != null) break;
+
+			visited.add(current);
+			if(Files.exists(current.resolve(marker))) {
+				root = Optional.of(current);
+				break;
+			}
+		}
+
+		if(root == null) root = Optional.empty();
+		for(Path path : visited) cache.put(path, root);
+		return root.orElse(null);
+	}
+}
@@ -0,0 +1,546 @@
+package fr.kokhaviel.kvim.api;
+
+import fr.kokhaviel.kvim.api.actions.KVimFileEvent;
+import fr.kokhaviel.kvim.api.actions.KVimWatchService;
+import fr.kokhaviel.kvim.api.syntax.KVimSymbol;
+import fr.kokhaviel.kvim.api.syntax.KVimSymbolParser;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class KVimSymbolIndex {
+
+	static final ExecutorService INDEXER = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "KVim-Symbols");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+	static final AtomicInteger WORKER_COUNT = new AtomicInteger();
+	static final ExecutorService WORKERS = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+		final Thread thread = new Thread(runnable, "KVim-Symbols-" + WORKER_COUNT.getAndIncrement());
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+	static final Map<Path, KVimSymbolIndex> INDEXES = new ConcurrentHashMap<>();
+	static final Map<FileType, KVimSymbolParser> PARSERS = new EnumMap<>(FileType.class);
+	static final Comparator<KVimSymbol> ORDER = Comparator.comparing((KVimSymbol symbol) -> symbol.getName().toLowerCase(Locale.ROOT))
+			.thenComparing(KVimSymbol::getName)
+			.thenComparing(KVimSymbol::getFile)
+			.thenComparingInt(KVimSymbol::getLine);
+	static final String INDEX_FILE = "symbols.kvim";
+	static final int MAGIC = 0x4b56534d;
+	static final int VERSION = 2;
+	static final int FILE_BATCH = 64;
+	static final long MAX_FILE_SIZE = 4L << 20;
+	static final int BINARY_CHECK = 8000;
+
+	static {
+		for(FileType type : FileType.values()) {
+			final KVimSymbolParser parser = KVimSymbolParser.forFileType(type);
+			if(parser != null) PARSERS.put(type, parser);
+		}
+	}
+
+	static class Entry {
+
+		long modified;
+		long size;
+		ObjectId blob;
+		KVimSymbol[] symbols;
+
+		Entry(long modified, long size, ObjectId blob, KVimSymbol[] symbols) {
+			this.modified = modified;
+			this.size = size;
+			this.blob = blob;
+			this.symbols = symbols;
+		}
+	}
+
+	static class Lookup {
+
+		static final Lookup EMPTY = new Lookup(new KVimSymbol[0]);
+
+		final String[] keys;
+		final KVimSymbol[] symbols;
+		final Map<String, List<KVimSymbol>> definitions = new HashMap<>();
+
+		Lookup(KVimSymbol[] symbols) {
+			this.symbols = symbols;
+			this.keys = new String[symbols.length];
+			for(int i = 0; i < symbols.length; i++) {
+				keys[i] = symbols[i].getName().toLowerCase(Locale.ROOT);
+				definitions.computeIfAbsent(symbols[i].getName(), key -> new ArrayList<>(1)).add(symbols[i]);
+			}
+		}
+
+		int lowerBound(String key) {
+			int low = 0;
+			int high = keys.length;
+			while(low < high) {
+				final int middle = (low + high) >>> 1;
+				if(keys[middle].compareTo(key) < 0) low = middle + 1;
+				else high = middle;
+			}
+			return low;
+		}
+	}
+
+	private final Path root;
+	private final Path indexFile;
+	private final Map<String, Entry> files = new HashMap<>();
+	private final Map<Path, IgnoreNode> ignores = new HashMap<>();
+	private final EventListenerList listeners = new EventListenerList();
+	private volatile Lookup lookup = Lookup.EMPTY;
+	private volatile List<KVimSymbol> todos = Collections.emptyList();
+	private volatile boolean ready;
+
+	KVimSymbolIndex(Path root) {
+		this.root = root;
+		this.indexFile = root.resolve(KVimProjectResolver.PROJECT_MARKER).resolve(INDEX_FILE);
+	}
+
+	public static KVimSymbolIndex get(Path root) {
+		final Path normalized = root.toAbsolutePath().normalize();
+		final KVimSymbolIndex[] created = new KVimSymbolIndex[1];
+		final KVimSymbolIndex index = INDEXES.computeIfAbsent(normalized, key -> created[0] = new KVimSymbolIndex(key));
+		if(created[0] != null) created[0].start();
+		return index;
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	public int size() {
+		return lookup.symbols.length;
+	}
+
+	public List<KVimSymbol> find(String prefix, int limit) {
+		final Lookup current = lookup;
+		final String key = prefix.trim().toLowerCase(Locale.ROOT);
+		final List<KVimSymbol> found = new ArrayList<>();
+
+		for(int i = current.lowerBound(key); i < current.keys.length && found.size() < limit; i++) {
+			if(!current.keys[i].startsWith(key)) break;
+			found.add(current.symbols[i]);
+		}
+		return found;
+	}
+
+	public List<KVimSymbol> definitions(String name) {
+		return lookup.definitions.getOrDefault(name, Collections.emptyList());
+	}
+
+	public List<KVimSymbol> todos() {
+		return todos;
+	}
+
+	public void addChangeListener(ChangeListener listener) {
+		listeners.add(ChangeListener.class, listener);
+	}
+
+	public void removeChangeListener(ChangeListener listener) {
+		listeners.remove(ChangeListener.class, listener);
+	}
+
+	private void start() {
+		INDEXER.execute(() -> {
+			KVimWatchService.subscribe(root, true, this::filesChanged);
+			load();
+			publish(false);
+			sync();
+			publish(true);
+		});
+	}
+
+	private void load() {
+		if(!Files.isRegularFile(indexFile)) return;
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) return;
+
+			final KVimSymbol.Kind[] kinds = KVimSymbol.Kind.values();
+			final byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			final int count = in.readInt();
+			final Map<String, Entry> loaded = new HashMap<>();
+
+			for(int i = 0; i < count; i++) {
+				final String path = in.readUTF();
+				final long modified = in.readLong();
+				final long size = in.readLong();
+				ObjectId blob = null;
+				if(in.readBoolean()) {
+					in.readFully(raw);
+					blob = ObjectId.fromRaw(raw);
+				}
+
+				final KVimSymbol[] symbols = new KVimSymbol[in.readInt()];
+				for(int j = 0; j < symbols.length; j++) {
+					symbols[j] = new KVimSymbol(in.readUTF(), kinds[in.readByte()], path, in.readInt(), in.readInt());
+				}
+				loaded.put(path, new Entry(modified, size, blob, symbols));
+			}
+			files.putAll(loaded);
+		} catch(IOException | RuntimeException ignored) {
+		}
+	}
+
+	private void save() {
+		final Path temp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(files.size());
+
+				final byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+				for(Map.Entry<String, Entry> file : files.entrySet()) {
+					final Entry entry = file.getValue();
+					out.writeUTF(file.getKey());
+					out.writeLong(entry.modified);
+					out.writeLong(entry.size);
+					out.writeBoolean(entry.blob != null);
+					if(entry.blob != null) {
+						entry.blob.copyRawTo(raw, 0);
+						out.write(raw);
+					}
+
+					out.writeInt(entry.symbols.length);
+					for(KVimSymbol symbol : entry.symbols) {
+						out.writeUTF(symbol.getName());
+						out.writeByte(symbol.getKind().ordinal());
+						out.writeInt(symbol.getLine());
+						out.writeInt(symbol.getColumn());
+					}
+				}
+			}
+
+			try {
+				Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch(IOException ignored) {
+		}
+	}
+
+	private void sync() {
+		final Map<String, BasicFileAttributes> present = walk();
+		boolean dirty = files.keySet().retainAll(present.keySet());
+
+		final DirCache dirCache = readDirCache();
+		final Map<String, ObjectId> stale = new LinkedHashMap<>();
+		for(Map.Entry<String, BasicFileAttributes> file : present.entrySet()) {
+			final Entry entry = files.get(file.getKey());
+			final BasicFileAttributes attributes = file.getValue();
+			if(entry != null && entry.modified == attributes.lastModifiedTime().toMillis() && entry.size == attributes.size()) continue;
+
+			final ObjectId blob = blobOf(dirCache, file.getKey(), attributes);
+			if(entry != null && blob != null && blob.equals(entry.blob)) {
+				entry.modified = attributes.lastModifiedTime().toMillis();
+				entry.size = attributes.size();
+				dirty = true;
+				continue;
+			}
+			stale.put(file.getKey(), blob);
+		}
+
+		if(parse(stale) || dirty) save();
+	}
+
+	private void update(List<KVimFileEvent> events) {
+		final List<Path> changed = new ArrayList<>();
+		boolean dirty = false;
+
+		for(KVimFileEvent event : events) {
+			final Path path = event.getPath();
+			if(event.getKind() == KVimFileEvent.Kind.OVERFLOW) {
+				ignores.clear();
+				sync();
+				publish(true);
+				return;
+			}
+			if(path.getFileName() != null && path.getFileName().toString().equals(Constants.DOT_GIT_IGNORE)) {
+				ignores.remove(path.getParent());
+				sync();
+				publish(true);
+				return;
+			}
+			if(!path.startsWith(root) || path.equals(root) || isInternal(path)) continue;
+
+			final String relative = relative(path);
+			if(event.getKind() == KVimFileEvent.Kind.DELETED) {
+				ignores.remove(path);
+				dirty |= files.remove(relative) != null;
+				dirty |= files.keySet().removeIf(file -> file.startsWith(relative + "/"));
+				continue;
+			}
+			if(Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+				if(event.getKind() == KVimFileEvent.Kind.CREATED) {
+					sync();
+					publish(true);
+					return;
+				}
+				continue;
+			}
+			changed.add(path);
+		}
+
+		final DirCache dirCache = changed.isEmpty() ? null : readDirCache();
+		final Map<String, ObjectId> stale = new LinkedHashMap<>();
+		for(Path path : changed) {
+			final String relative = relative(path);
+			final BasicFileAttributes attributes;
+			try {
+				attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			} catch(IOException e) {
+				dirty |= files.remove(relative) != null;
+				continue;
+			}
+
+			if(!isIndexable(path, attributes) || isIgnored(path)) {
+				dirty |= files.remove(relative) != null;
+				continue;
+			}
+
+			final Entry entry = files.get(relative);
+			if(entry != null && entry.modified == attributes.lastModifiedTime().toMillis() && entry.size == attributes.size()) continue;
+			stale.put(relative, blobOf(dirCache, relative, attributes));
+		}
+
+		if(parse(stale) || dirty) {
+			save();
+			publish(true);
+		}
+	}
+
+	private boolean parse(Map<String, ObjectId> stale) {
+		if(stale.isEmpty()) return false;
+
+		final List<Future<Map<String, Entry>>> futures = new ArrayList<>();
+		List<String> batch = new ArrayList<>();
+		for(String path : stale.keySet()) {
+			batch.add(path);
+			if(batch.size() == FILE_BATCH) {
+				futures.add(submit(batch, stale));
+				batch = new ArrayList<>();
+			}
+		}
+		if(!batch.isEmpty()) futures.add(submit(batch, stale));
+
+		for(Future<Map<String, Entry>> future : futures) {
+			try {
+				future.get().forEach((path, entry) -> {
+					if(entry == null) files.remove(path);
+					else files.put(path, entry);
+				});
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return true;
+			} catch(ExecutionException ignored) {
+			}
+		}
+		return true;
+	}
+
+	private Future<Map<String, Entry>> submit(List<String> batch, Map<String, ObjectId> blobs) {
+		return WORKERS.submit(() -> {
+			final Map<String, Entry> parsed = new HashMap<>();
+			for(String path : batch) parsed.put(path, parse(path, blobs.get(path)));
+			return parsed;
+		});
+	}
+
+	private Entry parse(String relative, ObjectId blob) {
+		final Path path = root.resolve(relative);
+		final KVimSymbolParser parser = PARSERS.get(KVimSymbolParser.typeOf(path.getFileName().toString()));
+		if(parser == null) return null;
+
+		try {
+			final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			if(attributes.size() > MAX_FILE_SIZE) return null;
+
+			final byte[] bytes = Files.readAllBytes(path);
+			final int head = Math.min(bytes.length, BINARY_CHECK);
+			if(RawText.isBinary(bytes, head, head == bytes.length)) return null;
+
+			final CharBuffer text = StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE)
+					.decode(ByteBuffer.wrap(bytes));
+			final List<KVimSymbol> symbols = parser.parse(relative, text.array(), text.limit());
+			return new Entry(attributes.lastModifiedTime().toMillis(), attributes.size(), blob, symbols.toArray(new KVimSymbol[0]));
+		} catch(IOException e) {
+			return null;
+		}
+	}
+
+	private Map<String, BasicFileAttributes> walk() {
+		final Map<String, BasicFileAttributes> present = new HashMap<>();
+		final List<IgnoreNode> stack = new ArrayList<>();
+		final List<Path> bases = new ArrayList<>();
+
+		try {
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) {
+					if(!path.equals(root) && (isInternal(path) || KVimIgnore.isIgnored(path, true, stack, bases))) return FileVisitResult.SKIP_SUBTREE;
+					stack.add(0, ignoreOf(path));
+					bases.add(0, path);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+					if(isIndexable(path, attributes) && !KVimIgnore.isIgnored(path, false, stack, bases)) present.put(relative(path), attributes);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path path, IOException e) {
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path path, IOException e) {
+					stack.remove(0);
+					bases.remove(0);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch(IOException ignored) {
+		}
+		return present;
+	}
+
+	private DirCache readDirCache() {
+		final Path gitRoot = KVimProjectResolver.getGitRoot(root);
+		if(gitRoot == null) return null;
+
+		Git git = null;
+		try {
+			git = KVimProjectResolver.openGit(gitRoot);
+			return git.getRepository().readDirCache();
+		} catch(IOException e) {
+			return null;
+		} finally {
+			KVimProjectResolver.release(git);
+		}
+	}
+
+	private ObjectId blobOf(DirCache dirCache, String relative, BasicFileAttributes attributes) {
+		if(dirCache == null) return null;
+
+		final Path gitRoot = KVimProjectResolver.getGitRoot(root);
+		final String prefix = gitRoot == null || gitRoot.equals(root) ? "" : gitRoot.relativize(root).toString().replace('\\', '/') + "/";
+		final DirCacheEntry entry = dirCache.getEntry(prefix + relative);
+		if(entry == null || entry.getLength() != attributes.size()) return null;
+		if(entry.getLastModifiedInstant().toEpochMilli() != attributes.lastModifiedTime().toMillis()) return null;
+		return entry.getObjectId();
+	}
+
+	private boolean isIndexable(Path path, BasicFileAttributes attributes) {
+		return attributes.isRegularFile() && attributes.size() <= MAX_FILE_SIZE
+				&& PARSERS.containsKey(KVimSymbolParser.typeOf(path.getFileName().toString()));
+	}
+
+	private boolean isInternal(Path path) {
+		for(Path part : root.relativize(path)) {
+			final String name = part.toString();
+			if(name.equals(Constants.DOT_GIT) || name.equals(KVimProjectResolver.PROJECT_MARKER)) return true;
+		}
+		return false;
+	}
+
+	private boolean isIgnored(Path path) {
+		final List<IgnoreNode> stack = new ArrayList<>();
+		final List<Path> bases = new ArrayList<>();
+		for(Path parent = path.getParent(); parent != null && parent.startsWith(root); parent = parent.getParent()) {
+			stack.add(ignoreOf(parent));
+			bases.add(parent);
+		}
+		for(int i = 0; i < stack.size() - 1; i++) {
+			if(KVimIgnore.isIgnored(bases.get(i), true, stack.subList(i + 1, stack.size()), bases.subList(i + 1, bases.size()))) return true;
+		}
+		return KVimIgnore.isIgnored(path, false, stack, bases);
+	}
+
+	private IgnoreNode ignoreOf(Path dir) {
+		return ignores.computeIfAbsent(dir, key -> KVimIgnore.read(key, key.equals(root)));
+	}
+
+	private String relative(Path path) {
+		return root.relativize(path).toString().replace('\\', '/');
+	}
+
+	private void publish(boolean done) {
+		final List<KVimSymbol> symbols = new ArrayList<>();
+		final List<KVimSymbol> comments = new ArrayList<>();
+		for(Entry entry : files.values()) {
+			for(KVimSymbol symbol : entry.symbols) (symbol.isTodo() ? comments : symbols).add(symbol);
+		}
+		symbols.sort(ORDER);
+		comments.sort(Comparator.comparing(KVimSymbol::getFile).thenComparingInt(KVimSymbol::getLine));
+		lookup = new Lookup(symbols.toArray(new KVimSymbol[0]));
+		todos = Collections.unmodifiableList(comments);
+		if(done) ready = true;
+		SwingUtilities.invokeLater(this::fireChanged);
+	}
+
+	private void filesChanged(List<KVimFileEvent> events) {
+		final List<KVimFileEvent> copy = new ArrayList<>(events);
+		INDEXER.execute(() -> update(copy));
+	}
+
+	private void fireChanged() {
+		final ChangeEvent event = new ChangeEvent(this);
+		for(ChangeListener listener : listeners.getListeners(ChangeListener.class)) listener.stateChanged(event);
+	}
+}
@@ -0,0 +1,277 @@
+package fr.kokhaviel.kvim.api;
+
+import fr.kokhaviel.kvim.gui.KVimMain;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class KVimTasks {
+
+	public enum Priority {
+		INTERACTIVE,
+		BACKGROUND
+	}
+
+	public interface Job<T> {
+
+		T run(Task<T> task) throws Exception;
+	}
+
+	static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+	static final ExecutorService INTERACTIVE = Executors.newCachedThreadPool(factory("KVim-Task-", Thread.NORM_PRIORITY));
+	static final ExecutorService BACKGROUND = Executors.newFixedThreadPool(2, factory("KVim-Background-", Thread.MIN_PRIORITY));
+	static final Map<Path, Serial> SERIALS = new ConcurrentHashMap<>();
+	static final List<Task<?>> RUNNING = new ArrayList<>();
+	static final EventListenerList listeners = new EventListenerList();
+	static final AtomicBoolean CHANGING = new AtomicBoolean();
+
+	public static class Task<T> {
+
+		final String title;
+		final Job<T> job;
+		Priority priority = Priority.INTERACTIVE;
+		Path key;
+		Consumer<T> done;
+		Consumer<Exception> error = this::showError;
+		Runnable cancel;
+		volatile boolean cancelled;
+		Thread thread;
+		volatile int progress = -1;
+		volatile String message;
+
+		Task(String title, Job<T> job) {
+			this.title = title;
+			this.job = job;
+		}
+
+		public Task<T> background() {
+			this.priority = Priority.BACKGROUND;
+			return this;
+		}
+
+		public Task<T> serial(Path key) {
+			this.key = key.toAbsolutePath().normalize();
+			return this;
+		}
+
+		public Task<T> onDone(Consumer<T> done) {
+			this.done = done;
+			return this;
+		}
+
+		public Task<T> onError(Consumer<Exception> error) {
+			this.error = error;
+			return this;
+		}
+
+		public Task<T> onCancel(Runnable cancel) {
+			this.cancel = cancel;
+			return this;
+		}
+
+		public Task<T> start() {
+			RUNNING.add(this);
+			fireChanged();
+
+			final Executor executor = priority == Priority.BACKGROUND ? BACKGROUND : INTERACTIVE;
+			if(key == null) executor.execute(this::run);
+			else SERIALS.computeIfAbsent(key, path -> new Serial()).execute(executor, this::run);
+			return this;
+		}
+
+		public synchronized void cancel() {
+			cancelled = true;
+			if(thread != null) thread.interrupt();
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		public void checkCancelled() {
+			if(cancelled) throw new CancellationException(title);
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public int getProgress() {
+			return progress;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public void progress(int progress) {
+			this.progress = progress;
+			changed();
+		}
+
+		public void message(String message) {
+			this.message = message;
+			changed();
+		}
+
+		public ProgressMonitor monitor() {
+			return new ProgressMonitor() {
+				long total;
+				long completed;
+
+				@Override
+				public void start(int totalTasks) {
+				}
+
+				@Override
+				public void beginTask(String title, int totalWork) {
+					total = totalWork;
+					completed = 0;
+					message(title);
+					progress(totalWork > 0 ? 0 : -1);
+				}
+
+				@Override
+				public void update(int completed) {
+					this.completed += completed;
+					if(total > 0) progress((int) Math.min(100, this.completed * 100 / total));
+				}
+
+				@Override
+				public void endTask() {
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return cancelled;
+				}
+			};
+		}
+
+		void run() {
+			synchronized(this) {
+				thread = Thread.currentThread();
+			}
+			T result = null;
+			Exception failure = null;
+			try {
+				if(!cancelled) result = job.run(this);
+			} catch(Exception e) {
+				failure = e;
+			} finally {
+				synchronized(this) {
+					thread = null;
+				}
+				Thread.interrupted();
+			}
+
+			final T value = result;
+			final Exception exception = failure;
+			SwingUtilities.invokeLater(() -> {
+				RUNNING.remove(this);
+				fireChanged();
+				if(cancelled) {
+					if(cancel != null) cancel.run();
+					return;
+				}
+				if(exception != null) error.accept(exception);
+				else if(done != null) done.accept(value);
+			});
+		}
+
+		public void showError(Exception e) {
+			JOptionPane.showMessageDialog(KVimMain.kVimMain, title + " failed :\n" + e.getMessage(), title, JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	static class Serial {
+
+		final Deque<Runnable> queue = new ArrayDeque<>();
+		boolean running;
+
+		void execute(Executor executor, Runnable runnable) {
+			synchronized(this) {
+				queue.add(() -> executor.execute(() -> {
+					try {
+						runnable.run();
+					} finally {
+						next();
+					}
+				}));
+				if(running) return;
+				running = true;
+			}
+			next();
+		}
+
+		void next() {
+			final Runnable head;
+			synchronized(this) {
+				head = queue.poll();
+				if(head == null) {
+					running = false;
+					return;
+				}
+			}
+			head.run();
+		}
+	}
+
+	public static <T> Task<T> task(String title, Job<T> job) {
+		return new Task<>(title, job);
+	}
+
+	public static <T> Task<T> git(Git git, String title, Job<T> job) {
+		return new Task<T>(title, job).serial(git.getRepository().getDirectory().toPath());
+	}
+
+	public static List<Task<?>> getRunning() {
+		return new ArrayList<>(RUNNING);
+	}
+
+	public static void addChangeListener(ChangeListener listener) {
+		listeners.add(ChangeListener.class, listener);
+	}
+
+	public static void removeChangeListener(ChangeListener listener) {
+		listeners.remove(ChangeListener.class, listener);
+	}
+
+	static void changed() {
+		if(CHANGING.compareAndSet(false, true)) SwingUtilities.invokeLater(KVimTasks::fireChanged);
+	}
+
+	static void fireChanged() {
+		CHANGING.set(false);
+		final ChangeEvent event = new ChangeEvent(KVimTasks.class);
+		for(ChangeListener listener : listeners.getListeners(ChangeListener.class)) listener.stateChanged(event);
+	}
+
+	static ThreadFactory factory(String name, int priority) {
+		return runnable -> {
+			final Thread thread = new Thread(runnable, name + THREAD_COUNT.getAndIncrement());
+			thread.setDaemon(true);
+			thread.setPriority(priority);
+			return thread;
+		};
+	}
+}
@@ -1,16 +1,18 @@
 package fr.kokhaviel.kvim.api;
 
+import fr.kokhaviel.kvim.api.text.KVimDocument;
+import fr.kokhaviel.kvim.api.text.KVimUndoManager;
+
 import javax.swing.*;
-import javax.swing.text.Document;
 import javax.swing.text.JTextComponent;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
-import javax.swing.undo.UndoManager;
 import java.awt.event.ActionEvent;
 
 public class UndoTool {
 	private static final String REDO_KEY = "redo";
 	private static final String UNDO_KEY = "undo";
+	private static final String MANAGER_KEY = "undoManager";
 
 	private final JTextComponent component;
 	private final KeyStroke undo = KeyStroke.getKeyStroke("control Z");
@@ -22,19 +24,22 @@ public class UndoTool {
 
 	public static void addUndoFunctionality(JTextComponent component) {
 		UndoTool tool = new UndoTool(component);
-		UndoManager undo = tool.createAndBindUndoManager();
+		KVimUndoManager undo = tool.createAndBindUndoManager();
 		tool.bindUndo(undo);
 		tool.bindRedo(undo);
 	}
 
-	public UndoManager createAndBindUndoManager() {
-		UndoManager manager = new UndoManager();
-		Document document = component.getDocument();
-		document.addUndoableEditListener(event -> manager.addEdit(event.getEdit()));
+	public KVimUndoManager createAndBindUndoManager() {
+		Object previous = component.getClientProperty(MANAGER_KEY);
+		if (previous instanceof KVimUndoManager) {
+			((KVimUndoManager) previous).discardAllEdits();
+		}
+		KVimUndoManager manager = new KVimUndoManager((KVimDocument) component.getDocument());
+		component.putClientProperty(MANAGER_KEY, manager);
 		return manager;
 	}
 
-	public void bindRedo(UndoManager manager) {
+	public void bindRedo(KVimUndoManager manager) {
 		component.getActionMap().put(REDO_KEY, new AbstractAction(REDO_KEY) {
 			@Override
 			public void actionPerformed(ActionEvent evt) {
@@ -49,7 +54,7 @@ public class UndoTool {
 		component.getInputMap().put(redo, REDO_KEY);
 	}
 
-	public void bindUndo(UndoManager manager) {
+	public void bindUndo(KVimUndoManager manager) {
 		component.getActionMap().put(UNDO_KEY, new AbstractAction(UNDO_KEY) {
 			@Override
 			public void actionPerformed(ActionEvent evt) {
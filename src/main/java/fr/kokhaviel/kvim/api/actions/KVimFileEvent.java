@@ -0,0 +1,29 @@
+package fr.kokhaviel.kvim.api.actions;
+
+import java.nio.file.Path;
+
+public class KVimFileEvent {
+
+	public enum Kind {
+		CREATED,
+		MODIFIED,
+		DELETED,
+		OVERFLOW
+	}
+
+	final Path path;
+	final Kind kind;
+
+	public KVimFileEvent(Path path, Kind kind) {
+		this.path = path;
+		this.kind = kind;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+}
@@ -0,0 +1,8 @@
+package fr.kokhaviel.kvim.api.actions;
+
+import java.util.List;
+
+public interface KVimFileListener {
+
+	void filesChanged(List<KVimFileEvent> events);
+}
@@ -0,0 +1,411 @@
+package fr.kokhaviel.kvim.api.actions;
+
+import fr.kokhaviel.kvim.api.KVimIgnore;
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.lib.Constants;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+public class KVimWatchService implements Runnable {
+
+	static final long DEBOUNCE = 150;
+	static final long MAX_LATENCY = 1000;
+	static final long POLL_INTERVAL = 2000;
+	static final int MAX_POLLED = Integer.getInteger("kvim.maxPolledDirectories", 500);
+	static final Set<String> POLLED_STORES = new HashSet<>(Arrays.asList("nfs", "nfs4", "cifs", "smbfs", "smb2", "fuse.sshfs", "9p", "vboxsf"));
+
+	private static KVimWatchService instance;
+
+	private final WatchService watchService;
+	private final Map<Path, Registration> directories = new HashMap<>();
+	private final Map<WatchKey, Path> keys = new HashMap<>();
+	private final List<Subscription> subscriptions = new ArrayList<>();
+	private final Map<Path, KVimFileEvent.Kind> pending = new LinkedHashMap<>();
+	private final Deque<Walk> walks = new ArrayDeque<>();
+	private Thread thread;
+	private boolean idle;
+	private int polled;
+	private int unwatched;
+	private long firstEvent;
+	private long lastEvent;
+	private long nextPoll;
+
+	public static class Subscription {
+
+		final Path path;
+		final boolean recursive;
+		final boolean directory;
+		final KVimFileListener listener;
+		final Set<Path> dirs = new HashSet<>();
+		boolean cancelled;
+
+		Subscription(Path path, boolean recursive, KVimFileListener listener) {
+			this.path = path;
+			this.recursive = recursive;
+			this.directory = Files.isDirectory(path);
+			this.listener = listener;
+		}
+
+		boolean matches(KVimFileEvent event) {
+			final Path changed = event.getPath();
+			if(event.getKind() == KVimFileEvent.Kind.OVERFLOW) return dirs.contains(changed);
+			if(recursive) return changed.startsWith(path);
+			if(directory) return changed.equals(path) || path.equals(changed.getParent());
+			return changed.equals(path);
+		}
+
+		public void cancel() {
+			getInstance().unsubscribe(this);
+		}
+	}
+
+	static class Registration {
+
+		final WatchKey key;
+		final Map<Path, long[]> entries;
+		int refs;
+
+		Registration(WatchKey key, Map<Path, long[]> entries) {
+			this.key = key;
+			this.entries = entries;
+		}
+	}
+
+	static class Walk {
+
+		final Subscription subscription;
+		final Path dir;
+
+		Walk(Subscription subscription, Path dir) {
+			this.subscription = subscription;
+			this.dir = dir;
+		}
+	}
+
+	KVimWatchService(WatchService watchService) {
+		this.watchService = watchService;
+	}
+
+	public static synchronized KVimWatchService getInstance() {
+		if(instance == null) {
+			WatchService watchService;
+			try {
+				watchService = FileSystems.getDefault().newWatchService();
+			} catch(IOException | UnsupportedOperationException e) {
+				watchService = null;
+			}
+			instance = new KVimWatchService(watchService);
+
+			instance.thread = new Thread(instance, "KVim-Watcher");
+			instance.thread.setDaemon(true);
+			instance.thread.start();
+		}
+		return instance;
+	}
+
+	public static int getWatchedCount() {
+		return getInstance().count(false);
+	}
+
+	public static int getPolledCount() {
+		return getInstance().count(true);
+	}
+
+	public static int getUnwatchedCount() {
+		final KVimWatchService service = getInstance();
+		synchronized(service) {
+			return service.unwatched;
+		}
+	}
+
+	synchronized int count(boolean polling) {
+		return polling ? polled : directories.size() - polled - unwatched;
+	}
+
+	public static Subscription subscribe(Path path, boolean recursive, KVimFileListener listener) {
+		return getInstance().add(new Subscription(path.toAbsolutePath().normalize(), recursive, listener));
+	}
+
+	synchronized Subscription add(Subscription subscription) {
+		if(!subscription.directory) {
+			register(subscription, subscription.path.getParent());
+		} else if(!subscription.recursive) {
+			register(subscription, subscription.path);
+		} else {
+			register(subscription, subscription.path);
+			walk(subscription, subscription.path);
+		}
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	private void walk(Subscription subscription, Path dir) {
+		walks.add(new Walk(subscription, dir));
+		if(idle) thread.interrupt();
+	}
+
+	private synchronized Walk nextWalk() {
+		return walks.poll();
+	}
+
+	synchronized void unsubscribe(Subscription subscription) {
+		if(subscription.cancelled) return;
+		subscription.cancelled = true;
+		subscriptions.remove(subscription);
+		subscription.dirs.forEach(this::release);
+		subscription.dirs.clear();
+	}
+
+	private void registerTree(Walk walk) {
+		final Subscription subscription = walk.subscription;
+		final Map<Path, IgnoreNode> ignores = new HashMap<>();
+		final List<IgnoreNode> stack = new ArrayList<>();
+		final List<Path> bases = new ArrayList<>();
+		for(Path parent = walk.dir.getParent(); parent != null && parent.startsWith(subscription.path); parent = parent.getParent()) {
+			stack.add(ignores.computeIfAbsent(parent, key -> KVimIgnore.read(key, key.equals(subscription.path))));
+			bases.add(parent);
+		}
+
+		try {
+			Files.walkFileTree(walk.dir, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+					if(!dir.equals(subscription.path) && (dir.getFileName().toString().equals(Constants.DOT_GIT) || KVimIgnore.isIgnored(dir, true, stack, bases))) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					synchronized(KVimWatchService.this) {
+						if(subscription.cancelled) return FileVisitResult.TERMINATE;
+						register(subscription, dir);
+					}
+					stack.add(0, ignores.computeIfAbsent(dir, key -> KVimIgnore.read(key, key.equals(subscription.path))));
+					bases.add(0, dir);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException exc) {
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+					stack.remove(0);
+					bases.remove(0);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch(IOException ignored) {
+		}
+	}
+
+	private void register(Subscription subscription, Path dir) {
+		if(dir == null || !subscription.dirs.add(dir)) return;
+
+		Registration registration = directories.get(dir);
+		if(registration == null) {
+			WatchKey key = null;
+			if(watchService != null && !isPolled(dir)) {
+				try {
+					key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+					keys.put(key, dir);
+				} catch(IOException ignored) {
+				}
+			}
+			if(key == null && polled >= MAX_POLLED) {
+				unwatched++;
+				registration = new Registration(null, null);
+			} else {
+				if(key == null) polled++;
+				registration = new Registration(key, key == null ? list(dir) : null);
+			}
+			directories.put(dir, registration);
+		}
+		registration.refs++;
+	}
+
+	private void release(Path dir) {
+		final Registration registration = directories.get(dir);
+		if(registration == null || --registration.refs > 0) return;
+
+		directories.remove(dir);
+		discard(registration);
+	}
+
+	private void discard(Registration registration) {
+		if(registration.key != null) {
+			registration.key.cancel();
+			keys.remove(registration.key);
+		} else if(registration.entries != null) {
+			polled--;
+		} else {
+			unwatched--;
+		}
+	}
+
+	private static boolean isPolled(Path dir) {
+		try {
+			return POLLED_STORES.contains(Files.getFileStore(dir).type().toLowerCase(Locale.ROOT));
+		} catch(IOException e) {
+			return false;
+		}
+	}
+
+	private static Map<Path, long[]> list(Path dir) {
+		final Map<Path, long[]> entries = new HashMap<>();
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for(Path child : stream) {
+				final BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				entries.put(child, new long[]{attrs.lastModifiedTime().toMillis(), attrs.size()});
+			}
+		} catch(IOException ignored) {
+		}
+		return entries;
+	}
+
+	@Override
+	public void run() {
+		while(true) {
+			for(Walk walk = nextWalk(); walk != null; walk = nextWalk()) registerTree(walk);
+
+			final long timeout;
+			synchronized(this) {
+				if(!walks.isEmpty()) continue;
+				timeout = pending.isEmpty() ? POLL_INTERVAL : DEBOUNCE;
+				idle = true;
+			}
+
+			WatchKey key = null;
+			try {
+				if(watchService == null) Thread.sleep(timeout);
+				else key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+			} catch(InterruptedException ignored) {
+			} catch(ClosedWatchServiceException e) {
+				return;
+			}
+
+			synchronized(this) {
+				idle = false;
+				Thread.interrupted();
+			}
+			if(key != null) process(key);
+
+			final long now = System.currentTimeMillis();
+			if(now >= nextPoll) {
+				poll();
+				nextPoll = now + POLL_INTERVAL;
+			}
+			flush(now);
+		}
+	}
+
+	private synchronized void process(WatchKey key) {
+		final Path dir = keys.get(key);
+		if(dir == null) {
+			key.cancel();
+			return;
+		}
+
+		for(WatchEvent<?> event : key.pollEvents()) {
+			if(event.kind() == OVERFLOW) {
+				record(dir, KVimFileEvent.Kind.OVERFLOW);
+				continue;
+			}
+
+			final Path child = dir.resolve((Path) event.context());
+			if(event.kind() == ENTRY_CREATE) {
+				record(child, KVimFileEvent.Kind.CREATED);
+				if(Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) watchTree(child);
+			} else if(event.kind() == ENTRY_DELETE) {
+				record(child, KVimFileEvent.Kind.DELETED);
+			} else {
+				record(child, KVimFileEvent.Kind.MODIFIED);
+			}
+			if(event.kind() != ENTRY_DELETE && child.getFileName().toString().equals(Constants.DOT_GIT_IGNORE)) watchTree(dir);
+		}
+
+		if(!key.reset()) forget(dir);
+	}
+
+	private synchronized void poll() {
+		for(Map.Entry<Path, Registration> entry : directories.entrySet()) {
+			final Registration registration = entry.getValue();
+			if(registration.entries == null) continue;
+
+			final Map<Path, long[]> current = list(entry.getKey());
+			for(Map.Entry<Path, long[]> child : current.entrySet()) {
+				final long[] previous = registration.entries.get(child.getKey());
+				if(previous == null) record(child.getKey(), KVimFileEvent.Kind.CREATED);
+				else if(!Arrays.equals(previous, child.getValue())) record(child.getKey(), KVimFileEvent.Kind.MODIFIED);
+			}
+			for(Path child : registration.entries.keySet()) {
+				if(!current.containsKey(child)) record(child, KVimFileEvent.Kind.DELETED);
+			}
+
+			registration.entries.clear();
+			registration.entries.putAll(current);
+		}
+	}
+
+	private void watchTree(Path dir) {
+		for(Subscription subscription : subscriptions) {
+			if(subscription.recursive && dir.startsWith(subscription.path)) walk(subscription, dir);
+		}
+	}
+
+	private void forget(Path dir) {
+		final Registration registration = directories.remove(dir);
+		if(registration != null) discard(registration);
+		for(Subscription subscription : subscriptions) {
+			subscription.dirs.remove(dir);
+		}
+	}
+
+	private void record(Path path, KVimFileEvent.Kind kind) {
+		final long now = System.currentTimeMillis();
+		if(pending.isEmpty()) firstEvent = now;
+		lastEvent = now;
+
+		final KVimFileEvent.Kind previous = pending.get(path);
+		if(previous == null || previous == KVimFileEvent.Kind.OVERFLOW) {
+			pending.put(path, previous == null ? kind : previous);
+		} else if(previous == KVimFileEvent.Kind.CREATED && kind == KVimFileEvent.Kind.DELETED) {
+			pending.remove(path);
+		} else if(previous == KVimFileEvent.Kind.DELETED && kind == KVimFileEvent.Kind.CREATED) {
+			pending.put(path, KVimFileEvent.Kind.MODIFIED);
+		} else if(previous != KVimFileEvent.Kind.CREATED) {
+			pending.put(path, kind);
+		}
+	}
+
+	private synchronized void flush(long now) {
+		if(pending.isEmpty()) return;
+		if(now - lastEvent < DEBOUNCE && now - firstEvent < MAX_LATENCY) return;
+
+		final List<KVimFileEvent> events = new ArrayList<>();
+		pending.forEach((path, kind) -> events.add(new KVimFileEvent(path, kind)));
+		pending.clear();
+
+		final List<Subscription> targets = new ArrayList<>(subscriptions);
+		SwingUtilities.invokeLater(() -> dispatch(targets, events));
+	}
+
+	private void dispatch(List<Subscription> targets, List<KVimFileEvent> events) {
+		for(Subscription subscription : targets) {
+			final List<KVimFileEvent> matching = new ArrayList<>();
+			synchronized(this) {
+				if(subscription.cancelled) continue;
+				for(KVimFileEvent event : events) {
+					if(subscription.matches(event)) matching.add(event);
+				}
+			}
+			if(!matching.isEmpty()) subscription.listener.filesChanged(matching);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package fr.kokhaviel.kvim.api.actions.edit;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+public class KVimCancellableText implements CharSequence {
+
+	private final CharSequence text;
+	private final BooleanSupplier cancelled;
+
+	public KVimCancellableText(CharSequence text, BooleanSupplier cancelled) {
+		this.text = text;
+		this.cancelled = cancelled;
+	}
+
+	@Override
+	public int length() {
+		return text.length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		if(cancelled.getAsBoolean()) throw new CancellationException();
+		return text.charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return text.subSequence(start, end);
+	}
+
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+}
@@ -9,12 +9,13 @@ import static fr.kokhaviel.kvim.gui.KVimMain.tabs;
 public class KVimCloseView {
 
 	public static void closeCurrentView(KVimTab tab) {
-		if(tab.hasAGitRepo()) tab.getGitRepository().close();
+		tab.dispose();
 		tabs.remove(tab.getIndex());
 		KVimMain.kVimMain.updateTab(Math.max(tab.getIndex() - 1, 0), false);
 	}
 
 	public static void closeOthersView(KVimTab tab) {
+		tabs.stream().filter(other -> other != tab).forEach(KVimTab::dispose);
 		tabs.clear();
 		tab.setIndex(0);
 		tabs.add(tab);
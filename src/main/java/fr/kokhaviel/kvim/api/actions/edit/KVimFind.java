@@ -3,64 +3,220 @@ package fr.kokhaviel.kvim.api.actions.edit;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultHighlighter;
-import javax.swing.text.Document;
 import javax.swing.text.Highlighter;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
 
-public class KVimFind {
+public class KVimFind implements DocumentListener, ChangeListener {
+
+	static final DefaultHighlighter.DefaultHighlightPainter PAINTER = new DefaultHighlighter.DefaultHighlightPainter(new Color(195, 205, 28));
+	static final int RESTART_DELAY = 200;
+
+	final KVimTab tab;
+	final JFrame jFrame = new JFrame("Find occurrences");
+	final JTextField jTextField = new JTextField();
+	final JCheckBox caseSensitive = new JCheckBox("Case Sensitive ?");
+	final JCheckBox regex = new JCheckBox("Regex ?");
+	final JLabel countLabel = new JLabel();
+	final Timer restartTimer = new Timer(RESTART_DELAY, actionEvent -> restart());
+	final List<Object> tags = new ArrayList<>();
+	JViewport viewport;
+	KVimSearch search;
+
+	int[] starts = new int[0];
+	int[] ends = new int[0];
+	int count;
+	boolean done;
+
+	KVimFind(KVimTab tab) {
+		this.tab = tab;
+	}
 
 	public static void findOccurrences(KVimTab tab) {
-		DefaultHighlighter.DefaultHighlightPainter highlighter = new DefaultHighlighter.DefaultHighlightPainter(new Color(195, 205, 28));
-		Highlighter hl = tab.getHighlighter();
-		Document doc = tab.getDocument();
-		JFrame jFrame = new JFrame("Find occurrences");
-		jFrame.setLayout(new FlowLayout(FlowLayout.CENTER));
-		final JTextField jTextField = new JTextField();
+		new KVimFind(tab).show();
+	}
+
+	void show() {
 		final JButton okBtn = new JButton("Ok");
 
+		jFrame.setLayout(new FlowLayout(FlowLayout.CENTER));
 		jTextField.setPreferredSize(new Dimension(120, 25));
+		countLabel.setPreferredSize(new Dimension(110, 25));
 		jFrame.add(new JLabel("Text to search : "));
 		jFrame.add(jTextField);
+		jFrame.add(caseSensitive);
+		jFrame.add(regex);
 		jFrame.add(okBtn);
+		jFrame.add(countLabel);
 		jFrame.setLocationRelativeTo(null);
 		jFrame.setResizable(false);
 
 		jFrame.pack();
 		jFrame.setVisible(true);
 
+		restartTimer.setRepeats(false);
+		jTextField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent documentEvent) {
+				restartTimer.restart();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent documentEvent) {
+				restartTimer.restart();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent documentEvent) {
+			}
+		});
+		caseSensitive.addItemListener(itemEvent -> restartTimer.restart());
+		regex.addItemListener(itemEvent -> restartTimer.restart());
+		jTextField.addActionListener(actionEvent -> next());
+
 		okBtn.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				if(jTextField.getText() == null || jTextField.getText().equals("")) return;
-				try {
-					hl.removeAllHighlights();
-					String text = doc.getText(0, doc.getLength());
-					int pos = 0;
-
-					while((pos = text.toUpperCase().indexOf(jTextField.getText().toUpperCase(), pos)) >= 0) {
-						hl.addHighlight(pos, pos + jTextField.getText().length(), highlighter);
-						pos += jTextField.getText().length();
-					}
-				} catch(BadLocationException e) {
-					throw new RuntimeException(e);
-				}
-
-				if(hl.getHighlights() == null || hl.getHighlights().length == 0)
-					JOptionPane.showMessageDialog(jFrame, "There are no matches !", "Find Warning", JOptionPane.WARNING_MESSAGE);
+				next();
 			}
 		});
 
+		tab.getDocument().addDocumentListener(this);
+		if(tab.getParent() instanceof JViewport) {
+			viewport = (JViewport) tab.getParent();
+			viewport.addChangeListener(this);
+		}
+
 		jFrame.addWindowListener(new WindowAdapter() {
 			@Override
 			public void windowClosing(WindowEvent windowEvent) {
-				hl.removeAllHighlights();
+				restartTimer.stop();
+				if(search != null) search.cancel();
+				tab.getDocument().removeDocumentListener(KVimFind.this);
+				if(viewport != null) viewport.removeChangeListener(KVimFind.this);
+				clearHighlights();
 			}
 		});
 	}
+
+	void restart() {
+		if(search != null) search.cancel();
+		search = null;
+		count = 0;
+		done = false;
+		clearHighlights();
+
+		final String query = jTextField.getText();
+		if(query == null || query.isEmpty()) {
+			countLabel.setText("");
+			return;
+		}
+
+		final KVimSearchPattern pattern;
+		try {
+			pattern = KVimSearchPattern.compile(query, regex.isSelected(), caseSensitive.isSelected());
+		} catch(PatternSyntaxException e) {
+			countLabel.setText("Invalid regex");
+			return;
+		}
+
+		countLabel.setText("Searching...");
+		search = new KVimSearch(tab.getKVimDocument().snapshot(), pattern, this::matchesFound).start();
+	}
+
+	void matchesFound(int[] batchStarts, int[] batchEnds, int batchCount, boolean last) {
+		if(count + batchCount > starts.length) {
+			starts = Arrays.copyOf(starts, Math.max(count + batchCount, starts.length * 2));
+			ends = Arrays.copyOf(ends, starts.length);
+		}
+		System.arraycopy(batchStarts, 0, starts, count, batchCount);
+		System.arraycopy(batchEnds, 0, ends, count, batchCount);
+		count += batchCount;
+		done = last;
+
+		countLabel.setText(count == 0 && done ? "No matches" : count + (count == 1 ? " match" : " matches") + (done ? "" : "..."));
+		highlightVisible();
+	}
+
+	void next() {
+		if(search == null) restart();
+		if(count == 0) {
+			if(done) JOptionPane.showMessageDialog(jFrame, "There are no matches !", "Find Warning", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+
+		int index = firstStartingAfter(tab.getSelectionEnd());
+		if(index == count) index = 0;
+		tab.setCaretPosition(starts[index]);
+		tab.moveCaretPosition(ends[index]);
+	}
+
+	void highlightVisible() {
+		clearHighlights();
+		if(count == 0) return;
+
+		final Rectangle visible = tab.getVisibleRect();
+		final int top = Math.max(tab.viewToModel(new Point(0, visible.y)), 0);
+		final int bottom = tab.viewToModel(new Point(visible.width, visible.y + visible.height));
+		final Highlighter hl = tab.getHighlighter();
+		final int length = tab.getDocument().getLength();
+
+		for(int i = Math.max(firstStartingAfter(top) - 1, 0); i < count && starts[i] <= bottom; i++) {
+			if(ends[i] < top || ends[i] > length) continue;
+			try {
+				tags.add(hl.addHighlight(starts[i], ends[i], PAINTER));
+			} catch(BadLocationException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	void clearHighlights() {
+		final Highlighter hl = tab.getHighlighter();
+		tags.forEach(hl::removeHighlight);
+		tags.clear();
+	}
+
+	private int firstStartingAfter(int offset) {
+		int lo = 0;
+		int hi = count;
+		while(lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(starts[mid] < offset) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent changeEvent) {
+		highlightVisible();
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent documentEvent) {
+		restartTimer.restart();
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent documentEvent) {
+		restartTimer.restart();
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent documentEvent) {
+	}
 }
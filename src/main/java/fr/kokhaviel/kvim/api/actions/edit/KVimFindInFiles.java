@@ -0,0 +1,167 @@
+package fr.kokhaviel.kvim.api.actions.edit;
+
+import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.gui.KVimMain;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+public class KVimFindInFiles {
+
+	static final int PROTOTYPE_WIDTH = 100;
+
+	final Path root;
+	final JFrame jFrame;
+	final JTextField jTextField = new JTextField();
+	final JCheckBox caseSensitive = new JCheckBox("Case Sensitive ?");
+	final JCheckBox regex = new JCheckBox("Regex ?");
+	final JLabel countLabel = new JLabel();
+	final ResultModel results = new ResultModel();
+	final JList<KVimProjectSearch.Match> list = new JList<>(results);
+	KVimProjectSearch search;
+
+	KVimFindInFiles(Path root) {
+		this.root = root;
+		this.jFrame = new JFrame("Find in " + root);
+	}
+
+	public static void findInFiles(KVimTab tab) {
+		final Path root = tab.getWorkRoot();
+
+		if(root == null) {
+			JOptionPane.showMessageDialog(KVimMain.kVimMain, "Save this file in a project first !", "Find Warning", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+		new KVimFindInFiles(root).show();
+	}
+
+	void show() {
+		final JPanel top = new JPanel(new FlowLayout(FlowLayout.CENTER));
+		final JButton okBtn = new JButton("Search");
+
+		jTextField.setPreferredSize(new Dimension(180, 25));
+		countLabel.setPreferredSize(new Dimension(180, 25));
+		top.add(new JLabel("Text to search : "));
+		top.add(jTextField);
+		top.add(caseSensitive);
+		top.add(regex);
+		top.add(okBtn);
+		top.add(countLabel);
+
+		list.setPrototypeCellValue(new KVimProjectSearch.Match(root, "", 0, 0, String.join("", Collections.nCopies(PROTOTYPE_WIDTH, "m"))));
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		final JScrollPane scrollPane = new JScrollPane(list);
+		scrollPane.setPreferredSize(new Dimension(720, 400));
+
+		jFrame.setLayout(new BorderLayout());
+		jFrame.add(top, BorderLayout.NORTH);
+		jFrame.add(scrollPane, BorderLayout.CENTER);
+		jFrame.pack();
+		jFrame.setLocationRelativeTo(null);
+		jFrame.setVisible(true);
+
+		jTextField.addActionListener(actionEvent -> restart());
+		okBtn.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent mouseEvent) {
+				restart();
+			}
+		});
+
+		list.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent mouseEvent) {
+				if(mouseEvent.getClickCount() == 2) open(list.getSelectedValue());
+			}
+		});
+		list.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "open");
+		list.getActionMap().put("open", new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				open(list.getSelectedValue());
+			}
+		});
+
+		jFrame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent windowEvent) {
+				if(search != null) search.cancel();
+			}
+		});
+	}
+
+	void restart() {
+		if(search != null) search.cancel();
+		search = null;
+		results.clear();
+
+		final String query = jTextField.getText();
+		if(query == null || query.isEmpty()) {
+			countLabel.setText("");
+			return;
+		}
+
+		final KVimSearchPattern pattern;
+		try {
+			pattern = KVimSearchPattern.compile(query, regex.isSelected(), caseSensitive.isSelected());
+		} catch(PatternSyntaxException e) {
+			countLabel.setText("Invalid regex");
+			return;
+		}
+
+		countLabel.setText("Searching...");
+		final KVimProjectSearch[] current = new KVimProjectSearch[1];
+		current[0] = search = new KVimProjectSearch(root, pattern, (matches, files, done) -> {
+			if(search != current[0]) return;
+			results.addAll(matches);
+			final int count = results.getSize();
+			countLabel.setText(count + (count == 1 ? " match" : " matches") + " in " + files + " files"
+					+ (done ? (search.isLimited() ? " (limit)" : "") : "..."));
+		}).start();
+	}
+
+	void open(KVimProjectSearch.Match match) {
+		if(match == null) return;
+		KVimLines.gotoLine(match.getFile(), match.getLine(), match.getColumn());
+	}
+
+	static class ResultModel extends AbstractListModel<KVimProjectSearch.Match> {
+
+		final List<KVimProjectSearch.Match> matches = new ArrayList<>();
+
+		void addAll(List<KVimProjectSearch.Match> batch) {
+			if(batch.isEmpty()) return;
+			final int first = matches.size();
+			matches.addAll(batch);
+			fireIntervalAdded(this, first, matches.size() - 1);
+		}
+
+		void clear() {
+			final int size = matches.size();
+			if(size == 0) return;
+			matches.clear();
+			fireIntervalRemoved(this, 0, size - 1);
+		}
+
+		@Override
+		public int getSize() {
+			return matches.size();
+		}
+
+		@Override
+		public KVimProjectSearch.Match getElementAt(int index) {
+			return matches.get(index);
+		}
+	}
+}
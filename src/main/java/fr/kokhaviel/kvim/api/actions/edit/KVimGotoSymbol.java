@@ -0,0 +1,179 @@
+package fr.kokhaviel.kvim.api.actions.edit;
+
+import fr.kokhaviel.kvim.api.KVimSymbolIndex;
+import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.api.syntax.KVimSymbol;
+import fr.kokhaviel.kvim.api.text.KVimDocument;
+import fr.kokhaviel.kvim.gui.KVimMain;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+
+public class KVimGotoSymbol implements DocumentListener, ChangeListener {
+
+	static final int LIMIT = 50;
+
+	final KVimSymbolIndex index;
+	final JFrame jFrame = new JFrame("Go to Symbol");
+	final JTextField jTextField = new JTextField();
+	final DefaultListModel<KVimSymbol> results = new DefaultListModel<>();
+	final JList<KVimSymbol> list = new JList<>(results);
+	final JLabel countLabel = new JLabel();
+
+	KVimGotoSymbol(KVimSymbolIndex index) {
+		this.index = index;
+	}
+
+	public static void gotoSymbol(KVimTab tab) {
+		if(!tab.isProject()) {
+			JOptionPane.showMessageDialog(KVimMain.kVimMain, "Open a file from a project first !", "Symbol Warning", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+		new KVimGotoSymbol(KVimSymbolIndex.get(tab.getRootProjPath())).show("");
+	}
+
+	public static void gotoDefinition(KVimTab tab) {
+		if(!tab.isProject()) {
+			JOptionPane.showMessageDialog(KVimMain.kVimMain, "Open a file from a project first !", "Symbol Warning", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+
+		final String word = wordAt(tab);
+		if(word.isEmpty()) return;
+
+		final KVimSymbolIndex index = KVimSymbolIndex.get(tab.getRootProjPath());
+		final List<KVimSymbol> definitions = index.definitions(word);
+		if(definitions.size() == 1) {
+			open(index, definitions.get(0));
+		} else if(definitions.isEmpty() && index.isReady()) {
+			JOptionPane.showMessageDialog(KVimMain.kVimMain, "No definition found for " + word, "Symbol Warning", JOptionPane.WARNING_MESSAGE);
+		} else {
+			new KVimGotoSymbol(index).show(word);
+		}
+	}
+
+	static String wordAt(KVimTab tab) {
+		final KVimDocument document = tab.getKVimDocument();
+		final int line = document.getLineOfOffset(tab.getCaretPosition());
+		final int start = document.getLineStartOffset(line);
+		final String text;
+		try {
+			text = document.getText(start, document.getLineEndOffset(line) - start);
+		} catch(BadLocationException e) {
+			throw new RuntimeException(e);
+		}
+
+		final int caret = tab.getCaretPosition() - start;
+		int from = caret;
+		int to = caret;
+		while(from > 0 && Character.isJavaIdentifierPart(text.charAt(from - 1))) from--;
+		while(to < text.length() && Character.isJavaIdentifierPart(text.charAt(to))) to++;
+		return text.substring(from, to);
+	}
+
+	static void open(KVimSymbolIndex index, KVimSymbol symbol) {
+		KVimLines.gotoLine(index.getRoot().resolve(symbol.getFile()), symbol.getLine(), symbol.getColumn());
+	}
+
+	void show(String query) {
+		final JPanel top = new JPanel(new BorderLayout());
+		top.add(jTextField, BorderLayout.CENTER);
+		top.add(countLabel, BorderLayout.EAST);
+
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		final JScrollPane scrollPane = new JScrollPane(list);
+		scrollPane.setPreferredSize(new Dimension(520, 320));
+
+		jFrame.setLayout(new BorderLayout());
+		jFrame.add(top, BorderLayout.NORTH);
+		jFrame.add(scrollPane, BorderLayout.CENTER);
+		jFrame.pack();
+		jFrame.setLocationRelativeTo(null);
+		jFrame.setVisible(true);
+
+		jTextField.setText(query);
+		jTextField.getDocument().addDocumentListener(this);
+		jTextField.addActionListener(actionEvent -> open());
+		bindMove(KeyEvent.VK_DOWN, 1);
+		bindMove(KeyEvent.VK_UP, -1);
+
+		list.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent mouseEvent) {
+				if(mouseEvent.getClickCount() == 2) open();
+			}
+		});
+
+		index.addChangeListener(this);
+		jFrame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent windowEvent) {
+				index.removeChangeListener(KVimGotoSymbol.this);
+			}
+		});
+		update();
+	}
+
+	void bindMove(int key, int direction) {
+		final String name = "move" + direction;
+		jTextField.getInputMap().put(KeyStroke.getKeyStroke(key, 0), name);
+		jTextField.getActionMap().put(name, new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				if(results.isEmpty()) return;
+				final int selected = Math.max(0, Math.min(list.getSelectedIndex() + direction, results.size() - 1));
+				list.setSelectedIndex(selected);
+				list.ensureIndexIsVisible(selected);
+			}
+		});
+	}
+
+	void update() {
+		final List<KVimSymbol> matches = index.find(jTextField.getText(), LIMIT);
+		results.clear();
+		matches.forEach(results::addElement);
+		if(!results.isEmpty()) list.setSelectedIndex(0);
+		countLabel.setText(" " + index.size() + " symbols" + (index.isReady() ? "" : "..."));
+	}
+
+	void open() {
+		final KVimSymbol selected = list.getSelectedValue();
+		if(selected == null) return;
+
+		index.removeChangeListener(this);
+		jFrame.dispose();
+		KVimMain.kVimMain.toFront();
+		open(index, selected);
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent changeEvent) {
+		update();
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent documentEvent) {
+		update();
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent documentEvent) {
+		update();
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent documentEvent) {
+	}
+}
@@ -1,74 +1,96 @@
 package fr.kokhaviel.kvim.api.actions.edit;
 
+import fr.kokhaviel.kvim.api.actions.file.KVimNewFile;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.api.text.KVimDocument;
 
 import javax.swing.*;
 import javax.swing.text.BadLocationException;
-import javax.swing.text.Utilities;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.nio.file.Path;
 
 public class KVimLines {
 
 	public static int getLineNumber(KVimTab tab) {
-		return (tab.getText().split("\n").length + 1);
+		return tab.getKVimDocument().getLineOfOffset(tab.getCaretPosition()) + 1;
+	}
+
+	public static int getLineCount(KVimTab tab) {
+		return tab.getKVimDocument().getLineCount();
 	}
 
 	public static void deleteLine(KVimTab tab) throws BadLocationException {
-		int offset = tab.getCaretPosition();
-		int start = Utilities.getRowStart(tab, offset);
-		int end = Utilities.getRowEnd(tab, offset);
-		tab.setSelectionStart(start);
-		tab.setSelectionEnd(end);
-		tab.replaceSelection("");
+		final KVimDocument document = tab.getKVimDocument();
+		final int line = document.getLineOfOffset(tab.getCaretPosition());
+		final int start = document.getLineStartOffset(line);
+		document.remove(start, document.getLineEndOffset(line) - start);
 	}
 
 	public static void duplicateLine(KVimTab tab) throws BadLocationException {
-		int offset = tab.getCaretPosition();
-		int start = Utilities.getRowStart(tab, offset);
-		int end = Utilities.getRowEnd(tab, offset);
+		final KVimDocument document = tab.getKVimDocument();
 
-		if(tab.getSelectedText() != null && !tab.getSelectedText().equals("")) {
-			tab.getStyledDocument().insertString(tab.getSelectionEnd(), tab.getSelectedText(), null);
+		if(tab.getSelectionStart() != tab.getSelectionEnd()) {
+			document.insertString(tab.getSelectionEnd(), tab.getSelectedText(), null);
 		} else {
-			tab.setSelectionStart(start);
-			tab.setSelectionEnd(end);
-			tab.getStyledDocument().insertString(end, "\n" + tab.getSelectedText(), null);
+			final int line = document.getLineOfOffset(tab.getCaretPosition());
+			final int start = document.getLineStartOffset(line);
+			final int end = document.getLineEndOffset(line);
+			document.insertString(end, "\n" + document.getText(start, end - start), null);
 		}
 	}
 
 	public static void swapUpLine(KVimTab tab) throws BadLocationException {
 		tab.requestFocus();
-		int offset = tab.getCaretPosition();
-		int start = Utilities.getRowStart(tab, offset);
-		int end = Utilities.getRowEnd(tab, offset);
-		offset = start - 1;
-		int insertPos = Utilities.getRowStart(tab, offset);
-		if(insertPos < 0) insertPos = 0;
-
-		final String toMove = tab.getText(start, end - start);
-		tab.setSelectionStart(start - 1);
-		tab.setSelectionEnd(end);
-		tab.replaceSelection("");
-		tab.getStyledDocument().insertString(insertPos, toMove + "\n", null);
+		final int line = tab.getKVimDocument().getLineOfOffset(tab.getCaretPosition());
+		if(line > 0) swapLines(tab, line - 1, -1);
 	}
 
 	public static void swapDownLine(KVimTab tab) throws BadLocationException {
 		tab.requestFocus();
-		int offset = tab.getCaretPosition();
-		int start = Utilities.getRowStart(tab, offset);
-		int end = Utilities.getRowEnd(tab, offset);
-		offset = end + 1;
-		int insertPos = Utilities.getRowEnd(tab, offset);
-		if(insertPos > tab.getText().length()) insertPos = tab.getText().length();
-
-		final String toMove = tab.getText(start, end - start);
-		tab.setSelectionStart(start - 1);
-		tab.setSelectionEnd(end);
-		tab.replaceSelection("");
-		tab.getStyledDocument().insertString(insertPos - toMove.length(), toMove + "\n", null);
+		final int line = tab.getKVimDocument().getLineOfOffset(tab.getCaretPosition());
+		if(line < tab.getKVimDocument().getLineCount() - 1) swapLines(tab, line, 1);
+	}
+
+	static void swapLines(KVimTab tab, int first, int direction) throws BadLocationException {
+		final KVimDocument document = tab.getKVimDocument();
+		final int caret = tab.getCaretPosition();
+		final int start = document.getLineStartOffset(first);
+		final int middle = document.getLineEndOffset(first);
+		final int end = document.getLineEndOffset(first + 1);
+		final String upper = document.getText(start, middle - start);
+		final String lower = document.getText(middle + 1, end - middle - 1);
+
+		document.replace(start, end - start, lower + "\n" + upper, null);
+		tab.setCaretPosition(direction < 0 ? caret - upper.length() - 1 : caret + lower.length() + 1);
+	}
+
+	public static void gotoLine(KVimTab tab, int line, int column) {
+		final KVimDocument document = tab.getKVimDocument();
+		final int clamped = Math.max(0, Math.min(line, document.getLineCount() - 1));
+		final int start = document.getLineStartOffset(clamped);
 
+		tab.setCaretPosition(Math.min(start + column, document.getLineEndOffset(clamped)));
+		tab.requestFocusInWindow();
+	}
+
+	public static void gotoLine(Path file, int line, int column) {
+		final KVimTab target = KVimNewFile.openTab(file);
+		if(!target.isLoading()) {
+			gotoLine(target, line, column);
+			return;
+		}
+		target.addPropertyChangeListener("loadProgress", new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent propertyChangeEvent) {
+				if(!Integer.valueOf(100).equals(propertyChangeEvent.getNewValue())) return;
+				target.removePropertyChangeListener("loadProgress", this);
+				gotoLine(target, line, column);
+			}
+		});
 	}
 
 	public static void gotoLine(KVimTab tab) throws BadLocationException {
@@ -85,10 +107,11 @@ public class KVimLines {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
 				try {
-					int lineIndex = Integer.parseInt(jtf.getText());
+					final int lineNumber = Integer.parseInt(jtf.getText());
+					final KVimDocument document = tab.getKVimDocument();
+					final int line = Math.max(0, Math.min(lineNumber - 1, document.getLineCount() - 1));
 
-					tab.setCaretPosition(
-							tab.getDocument().getDefaultRootElement().getElement(lineIndex).getStartOffset());
+					tab.setCaretPosition(document.getLineStartOffset(line));
 
 					jFrame.dispose();
 				} catch(NumberFormatException e) {
@@ -0,0 +1,307 @@
+package fr.kokhaviel.kvim.api.actions.edit;
+
+import fr.kokhaviel.kvim.api.KVimIgnore;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.lib.Constants;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class KVimProjectSearch {
+
+	static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+		final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+		thread.setName("KVim-ProjectSearch-" + thread.getPoolIndex());
+		return thread;
+	}, null, false);
+	static final int MAX_RESULTS = 100_000;
+	static final long MAX_FILE_SIZE = 64L << 20;
+	static final long MAP_THRESHOLD = 256L << 10;
+	static final int FILE_BATCH = 32;
+	static final int BINARY_CHECK = 8000;
+	static final int PREVIEW = 200;
+	static final int CHUNK = 1 << 20;
+	static final int OVERLAP = 64 << 10;
+
+	public static class Match {
+
+		final Path file;
+		final String name;
+		final int line;
+		final int column;
+		final String preview;
+
+		Match(Path file, String name, int line, int column, String preview) {
+			this.file = file;
+			this.name = name;
+			this.line = line;
+			this.column = column;
+			this.preview = preview;
+		}
+
+		public Path getFile() {
+			return file;
+		}
+
+		public int getLine() {
+			return line;
+		}
+
+		public int getColumn() {
+			return column;
+		}
+
+		@Override
+		public String toString() {
+			return name + ":" + (line + 1) + ": " + preview;
+		}
+	}
+
+	public interface Listener {
+
+		void matchesFound(List<Match> matches, int files, boolean done);
+	}
+
+	private final Path root;
+	private final KVimSearchPattern pattern;
+	private final Listener listener;
+	private final ConcurrentLinkedQueue<Match> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final AtomicInteger found = new AtomicInteger();
+	private final AtomicInteger files = new AtomicInteger();
+	private volatile boolean cancelled;
+	private volatile boolean limited;
+	private volatile boolean done;
+
+	public KVimProjectSearch(Path root, KVimSearchPattern pattern, Listener listener) {
+		this.root = root;
+		this.pattern = pattern;
+		this.listener = listener;
+	}
+
+	public KVimProjectSearch start() {
+		POOL.execute(() -> {
+			try {
+				new Walk(root, new ArrayList<>(), new ArrayList<>()).invoke();
+			} finally {
+				done = true;
+				schedule();
+			}
+		});
+		return this;
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public boolean isLimited() {
+		return limited;
+	}
+
+	private void schedule() {
+		if(scheduled.compareAndSet(false, true)) SwingUtilities.invokeLater(this::flush);
+	}
+
+	private void flush() {
+		scheduled.set(false);
+		final boolean finished = done;
+		final List<Match> batch = new ArrayList<>();
+		for(Match match = pending.poll(); match != null; match = pending.poll()) batch.add(match);
+
+		if(!cancelled || limited) listener.matchesFound(batch, files.get(), finished && pending.isEmpty());
+	}
+
+	class Walk extends RecursiveAction {
+
+		final Path dir;
+		final List<IgnoreNode> ignores;
+		final List<Path> bases;
+
+		Walk(Path dir, List<IgnoreNode> parentIgnores, List<Path> parentBases) {
+			this.dir = dir;
+			this.ignores = new ArrayList<>(parentIgnores);
+			this.bases = new ArrayList<>(parentBases);
+		}
+
+		@Override
+		protected void compute() {
+			if(cancelled) return;
+
+			ignores.add(0, KVimIgnore.read(dir, bases.isEmpty()));
+			bases.add(0, dir);
+
+			final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+			List<Path> batch = new ArrayList<>();
+
+			try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for(Path child : stream) {
+					if(child.getFileName().toString().equals(Constants.DOT_GIT)) continue;
+
+					final BasicFileAttributes attributes;
+					try {
+						attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch(IOException e) {
+						continue;
+					}
+					if(attributes.isSymbolicLink() || KVimIgnore.isIgnored(child, attributes.isDirectory(), ignores, bases)) continue;
+
+					if(attributes.isDirectory()) {
+						tasks.add(new Walk(child, ignores, bases).fork());
+					} else if(attributes.isRegularFile() && attributes.size() > 0 && attributes.size() <= MAX_FILE_SIZE) {
+						batch.add(child);
+						if(batch.size() == FILE_BATCH) {
+							tasks.add(new Scan(batch).fork());
+							batch = new ArrayList<>();
+						}
+					}
+				}
+			} catch(IOException ignored) {
+			}
+
+			if(!batch.isEmpty()) new Scan(batch).invoke();
+			tasks.forEach(ForkJoinTask::join);
+		}
+	}
+
+	class Scan extends RecursiveAction {
+
+		final List<Path> paths;
+
+		Scan(List<Path> paths) {
+			this.paths = paths;
+		}
+
+		@Override
+		protected void compute() {
+			for(Path path : paths) {
+				if(cancelled) return;
+				try {
+					scan(path);
+				} catch(IOException | CancellationException ignored) {
+				}
+			}
+		}
+	}
+
+	void scan(Path path) throws IOException {
+		final ByteBuffer bytes;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if(size == 0 || size > MAX_FILE_SIZE) return;
+
+			if(size >= MAP_THRESHOLD) {
+				bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} else {
+				bytes = ByteBuffer.allocate((int) size);
+				while(bytes.hasRemaining()) {
+					if(channel.read(bytes) < 0) break;
+				}
+				bytes.flip();
+			}
+		}
+
+		final byte[] head = new byte[Math.min(bytes.remaining(), BINARY_CHECK)];
+		bytes.duplicate().get(head);
+		if(RawText.isBinary(head, head.length, head.length == bytes.remaining())) return;
+
+		final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		final int total = bytes.limit();
+		final CharBuffer text = CharBuffer.allocate(Math.min(total, CHUNK + 3 * OVERLAP) + 1);
+		final CharSequence cancellable = new KVimCancellableText(text, this::isCancelled);
+		final String name = root.relativize(path).toString();
+		final List<Match> matches = new ArrayList<>();
+		final int[] cursor = {0, 0, 0};
+		int position = 0;
+		int base = 0;
+
+		while(position < total && !cancelled) {
+			final int end = boundary(bytes, position + CHUNK, total);
+			final int limit = boundary(bytes, end + OVERLAP, total);
+			final ByteBuffer in = bytes.duplicate();
+			in.limit(end).position(position);
+			text.clear();
+			decoder.reset();
+			decoder.decode(in, text, end == total);
+			final int length = text.position();
+			in.limit(limit);
+			decoder.decode(in, text, true);
+			decoder.flush(text);
+			text.flip();
+
+			final int chunk = base;
+			pattern.find(cancellable, 0, text.length(), (start, stop) -> {
+				if(start >= length) return false;
+				lines(text, start, chunk, cursor);
+
+				final int from = Math.max(Math.max(cursor[2] - chunk, 0), start - PREVIEW / 2);
+				int to = start;
+				while(to < text.length() && to - from < PREVIEW && text.charAt(to) != '\n') to++;
+				matches.add(new Match(path, name, cursor[1], chunk + start - cursor[2], text.subSequence(from, to).toString().trim()));
+
+				if(found.incrementAndGet() >= MAX_RESULTS) {
+					limited = true;
+					cancel();
+				}
+				return !cancelled;
+			});
+
+			lines(text, length, chunk, cursor);
+			cursor[0] = 0;
+			base += length;
+			position = end;
+		}
+
+		files.incrementAndGet();
+		if(matches.isEmpty()) return;
+		pending.addAll(matches);
+		schedule();
+	}
+
+	private static void lines(CharBuffer text, int end, int base, int[] cursor) {
+		while(cursor[0] < end) {
+			if(text.charAt(cursor[0]++) == '\n') {
+				cursor[1]++;
+				cursor[2] = base + cursor[0];
+			}
+		}
+	}
+
+	private static int boundary(ByteBuffer bytes, int position, int total) {
+		if(position >= total || position < 0) return total;
+		for(int i = position; i < total && i < position + OVERLAP; i++) {
+			if(bytes.get(i) == '\n') return i + 1;
+		}
+		while((bytes.get(position) & 0xc0) == 0x80) position--;
+		return position;
+	}
+}
@@ -1,57 +1,274 @@
 package fr.kokhaviel.kvim.api.actions.edit;
 
 import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.api.text.KVimDocument;
+import fr.kokhaviel.kvim.api.text.KVimTextSnapshot;
 
 import javax.swing.*;
-import javax.swing.text.Document;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
 
-public class KVimReplace {
+public class KVimReplace implements DocumentListener {
+
+	static final int RESTART_DELAY = 200;
+
+	final KVimTab tab;
+	final JFrame jFrame = new JFrame("Replace occurrences");
+	final JTextField from = new JTextField();
+	final JTextField to = new JTextField();
+	final JCheckBox caseSensitive = new JCheckBox("Case Sensitive ?");
+	final JCheckBox regex = new JCheckBox("Regex ?");
+	final JButton okBtn = new JButton("Replace");
+	final JButton allBtn = new JButton("Replace All");
+	final JButton cancelBtn = new JButton("Cancel");
+	final JLabel countLabel = new JLabel();
+	final Timer restartTimer = new Timer(RESTART_DELAY, actionEvent -> countMatches());
+	KVimSearch search;
+	int count;
+	volatile boolean cancelled;
+	boolean replacing;
+
+	static class Matches {
+
+		int[] starts = new int[16];
+		int[] ends = new int[16];
+		String[] texts = new String[16];
+		int count;
+
+		void add(int start, int end, String text) {
+			if(count == starts.length) {
+				starts = Arrays.copyOf(starts, count * 2);
+				ends = Arrays.copyOf(ends, count * 2);
+				texts = Arrays.copyOf(texts, count * 2);
+			}
+			starts[count] = start;
+			ends[count] = end;
+			texts[count] = text;
+			count++;
+		}
+	}
+
+	KVimReplace(KVimTab tab) {
+		this.tab = tab;
+	}
 
 	public static void replaceOccurrences(KVimTab tab) {
-		Document doc = tab.getDocument();
-		JFrame jFrame = new JFrame("Replace occurrences");
-		jFrame.setLayout(new FlowLayout(FlowLayout.CENTER));
-		final JTextField from = new JTextField();
-		final JTextField to = new JTextField();
-		final JCheckBox caseSensitive = new JCheckBox("Case Sensitive ?");
-		final JButton okBtn = new JButton("Replace");
+		new KVimReplace(tab).show();
+	}
 
+	void show() {
+		jFrame.setLayout(new FlowLayout(FlowLayout.CENTER));
 		from.setPreferredSize(new Dimension(120, 25));
 		to.setPreferredSize(new Dimension(120, 25));
+		countLabel.setPreferredSize(new Dimension(110, 25));
 		jFrame.add(new JLabel("Text to replace : "));
 		jFrame.add(from);
 		jFrame.add(to);
 		jFrame.add(caseSensitive);
+		jFrame.add(regex);
 		jFrame.add(okBtn);
+		jFrame.add(allBtn);
+		jFrame.add(cancelBtn);
+		jFrame.add(countLabel);
 		jFrame.setLocationRelativeTo(null);
 		jFrame.setResizable(false);
+		cancelBtn.setEnabled(false);
 
 		jFrame.pack();
 		jFrame.setVisible(true);
 
+		restartTimer.setRepeats(false);
+		from.getDocument().addDocumentListener(this);
+		caseSensitive.addItemListener(itemEvent -> restartTimer.restart());
+		regex.addItemListener(itemEvent -> restartTimer.restart());
+		tab.getDocument().addDocumentListener(this);
+
 		okBtn.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				if(from.getText() == null || to.getText() == null || from.getText().equals(""))
-					return;
-				String text = tab.getText();
-				int pos;
-				if(caseSensitive.isSelected()) {
-					pos = text.indexOf(from.getText());
-				} else {
-					pos = text.toUpperCase().indexOf(from.getText().toUpperCase());
-				}
-				try {
-					tab.setSelectionStart(pos);
-					tab.setSelectionEnd(pos + from.getText().length());
-					tab.replaceSelection(to.getText());
-				} catch(IllegalArgumentException e) {
-					JOptionPane.showMessageDialog(jFrame, "There are no more matches !", "Replace Warning", JOptionPane.WARNING_MESSAGE);
-				}
+				replaceNext();
 			}
 		});
+
+		allBtn.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent mouseEvent) {
+				replaceAll();
+			}
+		});
+
+		cancelBtn.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent mouseEvent) {
+				cancelled = true;
+			}
+		});
+
+		jFrame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent windowEvent) {
+				restartTimer.stop();
+				cancelled = true;
+				if(search != null) search.cancel();
+				tab.getDocument().removeDocumentListener(KVimReplace.this);
+			}
+		});
+	}
+
+	KVimSearchPattern compile() {
+		if(from.getText() == null || from.getText().isEmpty()) return null;
+		try {
+			return KVimSearchPattern.compile(from.getText(), regex.isSelected(), caseSensitive.isSelected());
+		} catch(IllegalArgumentException e) {
+			countLabel.setText("Invalid regex");
+			return null;
+		}
+	}
+
+	void countMatches() {
+		if(search != null) search.cancel();
+		search = null;
+		count = 0;
+		countLabel.setText("");
+		if(replacing) return;
+
+		final KVimSearchPattern pattern = compile();
+		if(pattern == null) return;
+
+		countLabel.setText("Counting...");
+		search = new KVimSearch(tab.getKVimDocument().snapshot(), pattern, (starts, ends, batchCount, done) -> {
+			count += batchCount;
+			countLabel.setText(count + (count == 1 ? " match" : " matches") + (done ? "" : "..."));
+		}).start();
+	}
+
+	void replaceNext() {
+		final KVimSearchPattern pattern = compile();
+		if(pattern == null || replacing) return;
+
+		final KVimTextSnapshot snapshot = tab.getKVimDocument().snapshot();
+		final int[] match = {-1, -1};
+		final String[] replacement = new String[1];
+		final KVimSearchPattern.ReplaceConsumer first = (start, end, text) -> {
+			match[0] = start;
+			match[1] = end;
+			replacement[0] = text;
+			return false;
+		};
+
+		try {
+			pattern.replace(snapshot, Math.min(tab.getSelectionStart(), snapshot.length()), snapshot.length(), to.getText(), first);
+			if(match[0] < 0) pattern.replace(snapshot, 0, snapshot.length(), to.getText(), first);
+		} catch(IllegalArgumentException e) {
+			JOptionPane.showMessageDialog(jFrame, e.getMessage(), "Replace Warning", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+
+		if(match[0] < 0) {
+			JOptionPane.showMessageDialog(jFrame, "There are no more matches !", "Replace Warning", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+
+		try {
+			tab.getKVimDocument().replace(match[0], match[1] - match[0], replacement[0], null);
+		} catch(BadLocationException e) {
+			throw new RuntimeException(e);
+		}
+		tab.setCaretPosition(match[0] + replacement[0].length());
+	}
+
+	void replaceAll() {
+		final KVimSearchPattern pattern = compile();
+		if(pattern == null || replacing) return;
+
+		final KVimDocument document = tab.getKVimDocument();
+		final int version = document.getVersion();
+		final KVimTextSnapshot snapshot = document.snapshot();
+		final String replacement = to.getText();
+
+		replacing = true;
+		cancelled = false;
+		if(search != null) search.cancel();
+		setRunning(true);
+		countLabel.setText("Replacing...");
+
+		final Thread thread = new Thread(() -> {
+			final CharSequence text = new KVimCancellableText(snapshot, () -> cancelled);
+			final Matches matches = new Matches();
+			String error = "Replace failed";
+
+			try {
+				pattern.replace(text, 0, text.length(), replacement, (start, end, value) -> {
+					matches.add(start, end, value);
+					return true;
+				});
+				error = null;
+			} catch(CancellationException e) {
+				error = "Cancelled";
+			} catch(IllegalArgumentException e) {
+				error = e.getMessage();
+			} finally {
+				final String message = error;
+				SwingUtilities.invokeLater(() -> apply(document, version, matches, message));
+			}
+		}, "KVim-Replace");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void apply(KVimDocument document, int version, Matches matches, String error) {
+		replacing = false;
+		setRunning(false);
+
+		if(error != null) {
+			countLabel.setText(error);
+			return;
+		}
+		if(matches.count == 0) {
+			countLabel.setText("No matches");
+			return;
+		}
+		if(tab.getDocument() != document || document.getVersion() != version) {
+			JOptionPane.showMessageDialog(jFrame, "The document changed while replacing, nothing was replaced !", "Replace Warning", JOptionPane.WARNING_MESSAGE);
+			restartTimer.restart();
+			return;
+		}
+
+		try {
+			document.replace(matches.starts, matches.ends, matches.texts, matches.count);
+		} catch(BadLocationException e) {
+			throw new RuntimeException(e);
+		}
+		restartTimer.stop();
+		tab.setCaretPosition(matches.starts[0]);
+		countLabel.setText(matches.count + " replaced");
+	}
+
+	void setRunning(boolean running) {
+		okBtn.setEnabled(!running);
+		allBtn.setEnabled(!running);
+		cancelBtn.setEnabled(running);
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent documentEvent) {
+		restartTimer.restart();
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent documentEvent) {
+		restartTimer.restart();
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent documentEvent) {
 	}
 }
@@ -0,0 +1,80 @@
+package fr.kokhaviel.kvim.api.actions.edit;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+public class KVimSearch implements Runnable {
+
+	static final int BATCH = 4096;
+	static final long BATCH_DELAY = 100;
+
+	public interface Listener {
+
+		void matchesFound(int[] starts, int[] ends, int count, boolean done);
+	}
+
+	private final CharSequence text;
+	private final KVimSearchPattern pattern;
+	private final Listener listener;
+	private volatile boolean cancelled;
+
+	private int[] starts = new int[BATCH];
+	private int[] ends = new int[BATCH];
+	private int count;
+	private long lastBatch;
+
+	public KVimSearch(CharSequence text, KVimSearchPattern pattern, Listener listener) {
+		this.text = new KVimCancellableText(text, this::isCancelled);
+		this.pattern = pattern;
+		this.listener = listener;
+	}
+
+	public KVimSearch start() {
+		final Thread thread = new Thread(this, "KVim-Search");
+		thread.setDaemon(true);
+		thread.start();
+		return this;
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public void run() {
+		lastBatch = System.currentTimeMillis();
+		try {
+			pattern.find(text, 0, text.length(), (start, end) -> {
+				if(count == starts.length) {
+					starts = Arrays.copyOf(starts, count * 2);
+					ends = Arrays.copyOf(ends, count * 2);
+				}
+				starts[count] = start;
+				ends[count] = end;
+				count++;
+
+				if(count >= BATCH || System.currentTimeMillis() - lastBatch >= BATCH_DELAY) flush(false);
+				return !cancelled;
+			});
+			flush(true);
+		} catch(CancellationException ignored) {
+		}
+	}
+
+	private void flush(boolean done) {
+		final int[] batchStarts = Arrays.copyOf(starts, count);
+		final int[] batchEnds = Arrays.copyOf(ends, count);
+		final int batchCount = count;
+		count = 0;
+		lastBatch = System.currentTimeMillis();
+
+		SwingUtilities.invokeLater(() -> {
+			if(!cancelled) listener.matchesFound(batchStarts, batchEnds, batchCount, done);
+		});
+	}
+}
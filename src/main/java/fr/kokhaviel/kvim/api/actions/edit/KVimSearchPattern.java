@@ -0,0 +1,169 @@
+package fr.kokhaviel.kvim.api.actions.edit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public abstract class KVimSearchPattern {
+
+	public interface MatchConsumer {
+
+		boolean accept(int start, int end);
+	}
+
+	public interface ReplaceConsumer {
+
+		boolean accept(int start, int end, String replacement);
+	}
+
+	public static KVimSearchPattern compile(String query, boolean regex, boolean caseSensitive) {
+		if(regex) return new Regex(query, caseSensitive);
+		return new Literal(query, caseSensitive);
+	}
+
+	public abstract void find(CharSequence text, int from, int to, MatchConsumer consumer);
+
+	public abstract void replace(CharSequence text, int from, int to, String replacement, ReplaceConsumer consumer);
+
+	static class Literal extends KVimSearchPattern {
+
+		private final char[] pattern;
+		private final boolean caseSensitive;
+		private final int[] shift = new int[256];
+
+		Literal(String query, boolean caseSensitive) {
+			this.caseSensitive = caseSensitive;
+			this.pattern = new char[query.length()];
+			for(int i = 0; i < pattern.length; i++) pattern[i] = fold(query.charAt(i));
+
+			Arrays.fill(shift, pattern.length);
+			for(int i = 0; i < pattern.length - 1; i++) shift[pattern[i] & 0xff] = pattern.length - 1 - i;
+		}
+
+		private char fold(char c) {
+			if(caseSensitive) return c;
+			if(c < 128) return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+			return Character.toLowerCase(Character.toUpperCase(c));
+		}
+
+		@Override
+		public void find(CharSequence text, int from, int to, MatchConsumer consumer) {
+			final int m = pattern.length;
+			if(m == 0) return;
+			final char lastChar = pattern[m - 1];
+			int i = from;
+
+			while(i <= to - m) {
+				final char c = fold(text.charAt(i + m - 1));
+				if(c == lastChar) {
+					int j = m - 2;
+					while(j >= 0 && fold(text.charAt(i + j)) == pattern[j]) j--;
+					if(j < 0) {
+						if(!consumer.accept(i, i + m)) return;
+						i += m;
+						continue;
+					}
+				}
+				i += shift[c & 0xff];
+			}
+		}
+
+		@Override
+		public void replace(CharSequence text, int from, int to, String replacement, ReplaceConsumer consumer) {
+			find(text, from, to, (start, end) -> consumer.accept(start, end, replacement));
+		}
+	}
+
+	static class Regex extends KVimSearchPattern {
+
+		private final Pattern pattern;
+
+		Regex(String query, boolean caseSensitive) {
+			this.pattern = Pattern.compile(query, Pattern.MULTILINE | (caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+		}
+
+		@Override
+		public void find(CharSequence text, int from, int to, MatchConsumer consumer) {
+			final Matcher matcher = pattern.matcher(text);
+			matcher.region(from, to).useAnchoringBounds(false).useTransparentBounds(true);
+
+			while(matcher.find()) {
+				if(matcher.end() == matcher.start()) {
+					if(matcher.end() >= to) return;
+					continue;
+				}
+				if(!consumer.accept(matcher.start(), matcher.end())) return;
+			}
+		}
+
+		@Override
+		public void replace(CharSequence text, int from, int to, String replacement, ReplaceConsumer consumer) {
+			final Matcher matcher = pattern.matcher(text);
+			final List<Object> parts = parseReplacement(replacement, matcher.groupCount());
+			final StringBuilder builder = new StringBuilder();
+			matcher.region(from, to).useAnchoringBounds(false).useTransparentBounds(true);
+
+			while(matcher.find()) {
+				builder.setLength(0);
+				for(Object part : parts) {
+					final String value = part instanceof Integer ? matcher.group((Integer) part)
+							: part instanceof GroupName ? matcher.group(((GroupName) part).name) : (String) part;
+					if(value != null) builder.append(value);
+				}
+				if(!consumer.accept(matcher.start(), matcher.end(), builder.toString())) return;
+			}
+		}
+
+		static List<Object> parseReplacement(String replacement, int groupCount) {
+			final List<Object> parts = new ArrayList<>();
+			final StringBuilder literal = new StringBuilder();
+			int i = 0;
+
+			while(i < replacement.length()) {
+				final char c = replacement.charAt(i++);
+				if(c == '\\') {
+					if(i == replacement.length()) throw new IllegalArgumentException("character to be escaped is missing");
+					literal.append(replacement.charAt(i++));
+				} else if(c == '$') {
+					if(i == replacement.length()) throw new IllegalArgumentException("Illegal group reference: group index is missing");
+					if(literal.length() > 0) parts.add(literal.toString());
+					literal.setLength(0);
+
+					if(replacement.charAt(i) == '{') {
+						final int close = replacement.indexOf('}', i);
+						if(close < 0) throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+						parts.add(new GroupName(replacement.substring(i + 1, close)));
+						i = close + 1;
+					} else {
+						int group = replacement.charAt(i) - '0';
+						if(group < 0 || group > 9) throw new IllegalArgumentException("Illegal group reference");
+						i++;
+						while(i < replacement.length() && Character.isDigit(replacement.charAt(i))) {
+							final int next = group * 10 + replacement.charAt(i) - '0';
+							if(next > groupCount) break;
+							group = next;
+							i++;
+						}
+						if(group > groupCount) throw new IllegalArgumentException("No group " + group);
+						parts.add(group);
+					}
+				} else {
+					literal.append(c);
+				}
+			}
+			if(literal.length() > 0) parts.add(literal.toString());
+			return parts;
+		}
+	}
+
+	static class GroupName {
+
+		final String name;
+
+		GroupName(String name) {
+			this.name = name;
+		}
+	}
+}
@@ -13,7 +13,7 @@ public class KVimClose {
 
 	public static void askExit() {
 		int clickedButton = JOptionPane.showConfirmDialog(KVimMain.kVimMain,
-				"Are you sure to close app ? All unsaved modifications will be LOST !", "Close KVim x'(", JOptionPane.YES_NO_OPTION);
+				"Are you sure to close app ? Unsaved modifications will be restored on next start.", "Close KVim x'(", JOptionPane.YES_NO_OPTION);
 
 		if(clickedButton == JOptionPane.YES_OPTION) {
 			kVimProperties.getLastParams().replace("height", String.valueOf(KVimMain.kVimMain.getHeight()));
@@ -24,6 +24,9 @@ public class KVimClose {
 				kVimProperties.getLastParams().store(Files.newOutputStream(Paths.get(kVimProperties.getPropsDir() + "/last_params.properties")), null);
 			} catch(IOException ignored) {
 			}
+			KVimSave.awaitPendingSaves();
+			KVimSession.saveNow();
+			KVimJournal.closeAll();
 			KVimMain.kVimMain.dispose();
 			System.exit(0);
 		}
@@ -50,6 +50,7 @@ public class KVimFile {
 		moveFile(tab.getFilePath().toFile(), file);
 
 		if(file == null) return;
+		tab.dispose();
 		tabs.set(tab.getIndex(), new KVimTab(file.toPath(), tab.getIndex()));
 		KVimMain.kVimMain.updateTab(tab.getIndex(), false);
 	}
@@ -60,7 +61,6 @@ public class KVimFile {
 
 		if(file == null) return;
 		final KVimTab kVimTab = new KVimTab(file.toPath(), tab.getIndex() + 1);
-		kVimTab.setText(KVimOpen.getFileContent(kVimTab.getFilePath()));
 		tabs.add(tab.getIndex() + 1, kVimTab);
 		KVimMain.kVimMain.updateTab(tab.getIndex(), false);
 	}
@@ -72,6 +72,7 @@ public class KVimFile {
 
 		if(clickedButton == JOptionPane.YES_OPTION) {
 			deleteFile(tab.getFilePath().toFile());
+			tab.dispose();
 			tabs.remove(tab.getIndex());
 			KVimMain.kVimMain.updateTab(tab.getIndex() - 1, false);
 		}
@@ -0,0 +1,132 @@
+package fr.kokhaviel.kvim.api.actions.file;
+
+import fr.kokhaviel.kvim.api.KVimFileIndex;
+import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.gui.KVimMain;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+
+public class KVimGotoFile implements DocumentListener, ChangeListener {
+
+	static final int LIMIT = 50;
+
+	final KVimFileIndex index;
+	final JFrame jFrame = new JFrame("Go to File");
+	final JTextField jTextField = new JTextField();
+	final DefaultListModel<String> results = new DefaultListModel<>();
+	final JList<String> list = new JList<>(results);
+	final JLabel countLabel = new JLabel();
+
+	KVimGotoFile(KVimFileIndex index) {
+		this.index = index;
+	}
+
+	public static void gotoFile(KVimTab tab) {
+		if(tab.getWorkRoot() == null) {
+			KVimOpen.openFile();
+			return;
+		}
+		new KVimGotoFile(KVimFileIndex.get(tab.getWorkRoot())).show();
+	}
+
+	void show() {
+		final JPanel top = new JPanel(new BorderLayout());
+		top.add(jTextField, BorderLayout.CENTER);
+		top.add(countLabel, BorderLayout.EAST);
+
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		final JScrollPane scrollPane = new JScrollPane(list);
+		scrollPane.setPreferredSize(new Dimension(520, 320));
+
+		jFrame.setLayout(new BorderLayout());
+		jFrame.add(top, BorderLayout.NORTH);
+		jFrame.add(scrollPane, BorderLayout.CENTER);
+		jFrame.pack();
+		jFrame.setLocationRelativeTo(null);
+		jFrame.setVisible(true);
+
+		jTextField.getDocument().addDocumentListener(this);
+		jTextField.addActionListener(actionEvent -> open());
+		bindMove(KeyEvent.VK_DOWN, 1);
+		bindMove(KeyEvent.VK_UP, -1);
+
+		list.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent mouseEvent) {
+				if(mouseEvent.getClickCount() == 2) open();
+			}
+		});
+
+		index.addChangeListener(this);
+		jFrame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent windowEvent) {
+				index.removeChangeListener(KVimGotoFile.this);
+			}
+		});
+		update();
+	}
+
+	void bindMove(int key, int direction) {
+		final String name = "move" + direction;
+		jTextField.getInputMap().put(KeyStroke.getKeyStroke(key, 0), name);
+		jTextField.getActionMap().put(name, new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				if(results.isEmpty()) return;
+				final int selected = Math.max(0, Math.min(list.getSelectedIndex() + direction, results.size() - 1));
+				list.setSelectedIndex(selected);
+				list.ensureIndexIsVisible(selected);
+			}
+		});
+	}
+
+	void update() {
+		final List<String> matches = index.search(jTextField.getText(), LIMIT);
+		results.clear();
+		matches.forEach(results::addElement);
+		if(!results.isEmpty()) list.setSelectedIndex(0);
+		countLabel.setText(" " + index.size() + " files" + (index.isReady() ? "" : "..."));
+	}
+
+	void open() {
+		final String selected = list.getSelectedValue();
+		if(selected == null) return;
+
+		KVimNewFile.openTab(index.getRoot().resolve(selected));
+		index.removeChangeListener(this);
+		jFrame.dispose();
+		KVimMain.kVimMain.toFront();
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent changeEvent) {
+		update();
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent documentEvent) {
+		update();
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent documentEvent) {
+		update();
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent documentEvent) {
+	}
+}
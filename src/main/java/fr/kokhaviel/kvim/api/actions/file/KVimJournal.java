@@ -0,0 +1,516 @@
+package fr.kokhaviel.kvim.api.actions.file;
+
+import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.api.text.KVimDocument;
+import fr.kokhaviel.kvim.api.text.KVimTextSnapshot;
+import fr.kokhaviel.kvim.gui.KVimMain;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import static fr.kokhaviel.kvim.KVim.kVimProperties;
+
+public class KVimJournal implements DocumentListener, ChangeListener {
+
+	static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "KVim-Journal");
+		thread.setDaemon(true);
+		return thread;
+	});
+	static final String JOURNAL_DIR = "journal";
+	static final int MAGIC = 0x4b564a4e;
+	static final int VERSION = 1;
+	static final long MIN_COMPACT = 64 * 1024;
+
+	static final int INSERT = 1;
+	static final int REMOVE = 2;
+	static final int REBUILD = 3;
+	static final int COPY = 4;
+	static final int ADD = 5;
+	static final int CREATE = 16;
+	static final int COMPACT = 17;
+	static final int DISCARD = 18;
+
+	static final Queue<Op> PENDING = new ConcurrentLinkedQueue<>();
+	static final AtomicBoolean SCHEDULED = new AtomicBoolean();
+	static final List<KVimJournal> OPEN = new ArrayList<>();
+
+	final KVimTab tab;
+	final KVimDocument document;
+	final String source;
+	final Path file;
+	boolean created;
+	boolean closed;
+	boolean recovered;
+
+	final CRC32 crc = new CRC32();
+	final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffer, crc));
+	FileChannel channel;
+	long diskTime;
+	int baseLength;
+	long size;
+	long compacted;
+	boolean compacting;
+
+	static class Op {
+
+		final KVimJournal journal;
+		final int type;
+		int offset;
+		int length;
+		String text;
+		KVimTextSnapshot snapshot;
+		long diskTime;
+
+		Op(KVimJournal journal, int type) {
+			this.journal = journal;
+			this.type = type;
+		}
+	}
+
+	static class Recovery {
+
+		String source;
+		long diskTime;
+		int baseLength;
+		final List<Op> records = new ArrayList<>();
+	}
+
+	KVimJournal(KVimTab tab) {
+		this.tab = tab;
+		this.document = tab.getKVimDocument();
+		this.source = tab.getFilePath().toAbsolutePath().normalize().toString();
+		this.file = journalFile(source);
+	}
+
+	public static KVimJournal open(KVimTab tab) {
+		final KVimJournal journal = new KVimJournal(tab);
+		journal.recover();
+		journal.document.addDocumentListener(journal);
+		journal.document.addModifiedListener(journal);
+		OPEN.add(journal);
+		return journal;
+	}
+
+	public static void closeAll() {
+		new ArrayList<>(OPEN).forEach(KVimJournal::close);
+		try {
+			WRITER.submit(() -> {
+			}).get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException ignored) {
+		}
+	}
+
+	public void close() {
+		if(closed) return;
+		closed = true;
+		OPEN.remove(this);
+		document.removeDocumentListener(this);
+		document.removeModifiedListener(this);
+		discard();
+	}
+
+	void recover() {
+		if(!Files.isRegularFile(file)) return;
+
+		Recovery recovery;
+		try {
+			recovery = read(file);
+		} catch(IOException e) {
+			recovery = null;
+		}
+		if(recovery == null || !source.equals(recovery.source) || recovery.records.isEmpty()) {
+			delete(file);
+			return;
+		}
+		recovered = true;
+
+		if(recovery.baseLength != document.getLength()) {
+			JOptionPane.showMessageDialog(KVimMain.kVimMain, tab.getFilename() + " has changed on disk since it was last edited,\nits unsaved modifications can't be recovered !",
+					"Recovery Warning", JOptionPane.WARNING_MESSAGE);
+			delete(file);
+			return;
+		}
+
+		final boolean changed = document.getDiskTime() == null || document.getDiskTime().toMillis() != recovery.diskTime;
+		final int clickedButton = JOptionPane.showConfirmDialog(KVimMain.kVimMain,
+				"Unsaved modifications of " + tab.getFilename() + " were found." + (changed ? "\nThe file has been touched on disk since." : "") + "\nRecover them ?",
+				"Recovery", JOptionPane.YES_NO_OPTION);
+		if(clickedButton != JOptionPane.YES_OPTION) {
+			delete(file);
+			return;
+		}
+
+		try {
+			replay(recovery);
+		} catch(BadLocationException e) {
+			JOptionPane.showMessageDialog(KVimMain.kVimMain, "The journal of " + tab.getFilename() + " is damaged, it was only partially recovered !",
+					"Recovery Warning", JOptionPane.WARNING_MESSAGE);
+		}
+		document.setModified(true);
+
+		created = true;
+		final Op create = new Op(this, CREATE);
+		create.diskTime = recovery.diskTime;
+		create.length = recovery.baseLength;
+		create.snapshot = document.snapshot();
+		submit(create);
+	}
+
+	void replay(Recovery recovery) throws BadLocationException {
+		int position = 0;
+		int base = 0;
+		boolean rebuilding = false;
+
+		for(Op record : recovery.records) {
+			switch(record.type) {
+				case REBUILD:
+					rebuilding = position == 0 && base == 0;
+					break;
+				case COPY:
+					if(!rebuilding || record.offset < base) throw new BadLocationException("Invalid journal copy", record.offset);
+					document.remove(position, record.offset - base);
+					base = record.offset + record.length;
+					position += record.length;
+					break;
+				case ADD:
+					if(!rebuilding) throw new BadLocationException("Invalid journal add", position);
+					document.insertString(position, record.text, null);
+					position += record.text.length();
+					break;
+				default:
+					if(rebuilding) {
+						document.remove(position, recovery.baseLength - base);
+						rebuilding = false;
+					}
+					if(record.type == INSERT) document.insertString(record.offset, record.text, null);
+					else document.remove(record.offset, record.length);
+			}
+		}
+		if(rebuilding) document.remove(position, recovery.baseLength - base);
+	}
+
+	void start() {
+		if(created) return;
+		created = true;
+
+		final Op create = new Op(this, CREATE);
+		create.diskTime = document.getDiskTime() == null ? 0 : document.getDiskTime().toMillis();
+		create.length = document.getBaseLength();
+		submit(create);
+	}
+
+	public boolean isRecovered() {
+		return recovered;
+	}
+
+	void rebase() {
+		final Op create = new Op(this, CREATE);
+		create.diskTime = document.getDiskTime() == null ? 0 : document.getDiskTime().toMillis();
+		create.length = document.getBaseLength();
+		create.snapshot = document.snapshot();
+		submit(create);
+	}
+
+	void discard() {
+		if(!created) return;
+		created = false;
+		submit(new Op(this, DISCARD));
+	}
+
+	void compact() {
+		if(!created) return;
+		final Op compact = new Op(this, COMPACT);
+		compact.snapshot = document.snapshot();
+		submit(compact);
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent documentEvent) {
+		final Op insert = new Op(this, INSERT);
+		insert.offset = documentEvent.getOffset();
+		try {
+			insert.text = document.getText(documentEvent.getOffset(), documentEvent.getLength());
+		} catch(BadLocationException e) {
+			throw new RuntimeException(e);
+		}
+		start();
+		submit(insert);
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent documentEvent) {
+		final Op remove = new Op(this, REMOVE);
+		remove.offset = documentEvent.getOffset();
+		remove.length = documentEvent.getLength();
+		start();
+		submit(remove);
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent documentEvent) {
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent changeEvent) {
+		if(!document.isModified()) discard();
+		else if(created) rebase();
+	}
+
+	static void submit(Op op) {
+		PENDING.add(op);
+		if(SCHEDULED.compareAndSet(false, true)) WRITER.execute(KVimJournal::flush);
+	}
+
+	static void flush() {
+		SCHEDULED.set(false);
+		final Set<KVimJournal> written = new LinkedHashSet<>();
+
+		for(Op op = PENDING.poll(); op != null; op = PENDING.poll()) {
+			try {
+				op.journal.apply(op);
+				written.add(op.journal);
+			} catch(IOException e) {
+				op.journal.fail();
+			}
+		}
+
+		for(KVimJournal journal : written) {
+			try {
+				journal.commit();
+			} catch(IOException e) {
+				journal.fail();
+			}
+		}
+	}
+
+	void apply(Op op) throws IOException {
+		switch(op.type) {
+			case CREATE:
+				diskTime = op.diskTime;
+				baseLength = op.length;
+				rewrite(op.snapshot);
+				break;
+			case COMPACT:
+				if(channel != null) rewrite(op.snapshot);
+				break;
+			case DISCARD:
+				buffer.reset();
+				compacting = false;
+				if(channel != null) channel.close();
+				channel = null;
+				Files.deleteIfExists(file);
+				break;
+			default:
+				if(channel == null) return;
+				begin(op.type);
+				out.writeInt(op.offset);
+				if(op.type == INSERT) writeChars(op.text.toCharArray(), 0, op.text.length());
+				else out.writeInt(op.length);
+				end();
+		}
+	}
+
+	void rewrite(KVimTextSnapshot snapshot) throws IOException {
+		buffer.reset();
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(source);
+		out.writeLong(diskTime);
+		out.writeInt(baseLength);
+
+		if(snapshot != null) {
+			begin(REBUILD);
+			end();
+			snapshot.delta(new KVimTextSnapshot.Delta() {
+				@Override
+				public void copy(int base, int length) throws IOException {
+					begin(COPY);
+					out.writeInt(base);
+					out.writeInt(length);
+					end();
+				}
+
+				@Override
+				public void add(char[] chars, int offset, int count) throws IOException {
+					begin(ADD);
+					writeChars(chars, offset, count);
+					end();
+				}
+			});
+		}
+
+		Files.createDirectories(file.getParent());
+		final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try(FileChannel tempChannel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			write(tempChannel);
+			tempChannel.force(true);
+		}
+		try {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		if(channel != null) channel.close();
+		channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		size = channel.size();
+		compacted = size;
+		compacting = false;
+	}
+
+	void commit() throws IOException {
+		if(channel == null || buffer.size() == 0) return;
+
+		size += write(channel);
+		channel.force(false);
+
+		if(!compacting && size > Math.max(MIN_COMPACT, compacted * 2)) {
+			compacting = true;
+			SwingUtilities.invokeLater(this::compact);
+		}
+	}
+
+	void fail() {
+		buffer.reset();
+		compacting = false;
+		try {
+			if(channel != null) channel.close();
+		} catch(IOException ignored) {
+		}
+		channel = null;
+	}
+
+	int write(FileChannel target) throws IOException {
+		final ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+		while(bytes.hasRemaining()) target.write(bytes);
+		buffer.reset();
+		return bytes.limit();
+	}
+
+	void begin(int type) throws IOException {
+		crc.reset();
+		out.writeByte(type);
+	}
+
+	void end() throws IOException {
+		out.writeInt((int) crc.getValue());
+	}
+
+	void writeChars(char[] chars, int offset, int count) throws IOException {
+		final byte[] bytes = new byte[count * 2];
+		for(int i = 0; i < count; i++) {
+			bytes[2 * i] = (byte) (chars[offset + i] >>> 8);
+			bytes[2 * i + 1] = (byte) chars[offset + i];
+		}
+		out.writeInt(count);
+		out.write(bytes);
+	}
+
+	static Recovery read(Path file) throws IOException {
+		final long fileSize = Files.size(file);
+		final CRC32 crc = new CRC32();
+
+		try(DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), crc))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+			final Recovery recovery = new Recovery();
+			recovery.source = in.readUTF();
+			recovery.diskTime = in.readLong();
+			recovery.baseLength = in.readInt();
+
+			try {
+				while(true) {
+					crc.reset();
+					final int type = in.read();
+					if(type < 0) break;
+
+					final Op record = new Op(null, type);
+					switch(type) {
+						case INSERT:
+							record.offset = in.readInt();
+							record.text = readChars(in, fileSize);
+							break;
+						case REMOVE:
+						case COPY:
+							record.offset = in.readInt();
+							record.length = in.readInt();
+							break;
+						case ADD:
+							record.text = readChars(in, fileSize);
+							break;
+						case REBUILD:
+							break;
+						default:
+							return recovery;
+					}
+
+					final int expected = (int) crc.getValue();
+					if(in.readInt() != expected) break;
+					recovery.records.add(record);
+				}
+			} catch(EOFException ignored) {
+			}
+			return recovery;
+		}
+	}
+
+	static String readChars(DataInputStream in, long fileSize) throws IOException {
+		final int count = in.readInt();
+		if(count < 0 || count * 2L > fileSize) throw new EOFException();
+
+		final byte[] bytes = new byte[count * 2];
+		in.readFully(bytes);
+		final char[] chars = new char[count];
+		for(int i = 0; i < count; i++) chars[i] = (char) ((bytes[2 * i] & 0xff) << 8 | bytes[2 * i + 1] & 0xff);
+		return new String(chars);
+	}
+
+	static Path journalFile(String source) {
+		final String name = Paths.get(source).getFileName().toString();
+		return kVimProperties.getPropsDir().resolve(JOURNAL_DIR).resolve(name + "." + UUID.nameUUIDFromBytes(source.getBytes(StandardCharsets.UTF_8)) + ".kvj");
+	}
+
+	static void delete(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch(IOException ignored) {
+		}
+	}
+}
@@ -37,12 +37,23 @@ public class KVimNewFile {
 		KVimMain.kVimMain.updateTab(tab.getIndex(), true);
 	}
 
-	public static void createNewTab(String path) {
+	public static KVimTab openTab(Path path) {
+		for(KVimTab tab : KVimMain.tabs) {
+			if(path.equals(tab.getFilePath())) {
+				KVimMain.kVimMain.updateTab(tab.getIndex(), false);
+				return tab;
+			}
+		}
+		return createNewTab(path.toString());
+	}
+
+	public static KVimTab createNewTab(String path) {
 		final Path toPath = Paths.get(path);
 		final KVimTab tab = new KVimTab(toPath, KVimMain.tabs.size());
 		KVimMain.tabs.add(tab);
 		KVimOpen.updateRecent(new RecentFile(toPath.toFile().getName(), toPath.getParent()));
 		KVimMain.kVimMain.updateTab(tab.getIndex(), true);
+		return tab;
 	}
 
 }
@@ -43,12 +43,6 @@ public class KVimOpen {
 			final Path toPath = file.toPath();
 			final KVimTab tab = new KVimTab(toPath, KVimMain.tabs.size());
 
-			try {
-				tab.setText(KVimOpen.getFileContent(toPath));
-			} catch(IOException e) {
-				throw new RuntimeException(e);
-			}
-
 			KVimMain.tabs.add(tab);
 			KVimOpen.updateRecent(new RecentFile(toPath.toFile().getName(), toPath.getParent()));
 			KVim.kVimProperties.getLastParams().replace("last_open_file", toPath.getParent().toString());
@@ -56,11 +50,4 @@ public class KVimOpen {
 		}
 
 	}
-
-	public static String getFileContent(Path file) throws IOException {
-		StringBuilder builder = new StringBuilder();
-		Files.readAllLines(file).forEach(line -> builder.append(line).append("\n"));
-
-		return builder.toString();
-	}
 }
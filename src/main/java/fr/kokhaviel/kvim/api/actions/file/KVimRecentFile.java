@@ -6,7 +6,6 @@ import fr.kokhaviel.kvim.gui.KVimMain;
 
 import javax.swing.*;
 import java.awt.event.ActionEvent;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -25,12 +24,6 @@ public class KVimRecentFile extends JMenuItem {
 			public void actionPerformed(ActionEvent actionEvent) {
 				final KVimTab tab = new KVimTab(tabPath, KVimMain.tabs.size());
 
-				try {
-					tab.setText(KVimOpen.getFileContent(tabPath));
-				} catch(IOException e) {
-					throw new RuntimeException(e);
-				}
-
 				KVimMain.tabs.add(tab);
 				KVimOpen.updateRecent(new RecentFile(tabPath.toFile().getName(), tabPath.getParent()));
 				KVimMain.kVimMain.updateTab(tab.getIndex(), true);
@@ -8,9 +8,8 @@ import java.io.IOException;
 public class KVimReload {
 
 	public static void reloadFile(KVimTab tab) throws IOException {
-		final String fileContent = KVimOpen.getFileContent(tab.getFilePath());
 		int clickedButton = JOptionPane.YES_OPTION;
-		if(!tab.getBaseText().equals(tab.getText())) {
+		if(tab.isModified()) {
 			clickedButton = JOptionPane.showConfirmDialog(null,
 					"Are you sure to reload "+ tab.getFilename() +
 							" ? All unsaved modifications will be LOST !", "Reload " + tab.getFilename(),
@@ -18,8 +17,7 @@ public class KVimReload {
 		}
 
 		if(clickedButton == JOptionPane.YES_OPTION) {
-			tab.setText(fileContent);
-			tab.setBaseText(fileContent);
+			tab.reload();
 			tab.setCaretPosition(0);
 		}
 	}
@@ -15,7 +15,7 @@ public class KVimRestart {
 
 	public static void askRestart() throws UnsupportedLookAndFeelException, IOException, InterruptedException {
 		int clickedButton = JOptionPane.showConfirmDialog(KVimMain.kVimMain,
-				"Are you sure to restart app ? All unsaved modifications will be LOST !", "Restart KVim", JOptionPane.YES_NO_OPTION);
+				"Are you sure to restart app ? Unsaved modifications will be restored after the restart.", "Restart KVim", JOptionPane.YES_NO_OPTION);
 
 		if(clickedButton == JOptionPane.YES_OPTION) {
 			kVimProperties.getLastParams().replace("height", String.valueOf(KVimMain.kVimMain.getHeight()));
@@ -26,6 +26,8 @@ public class KVimRestart {
 				kVimProperties.getLastParams().store(Files.newOutputStream(Paths.get(kVimProperties.getPropsDir() + "/last_params.properties")), null);
 			} catch(IOException ignored) {
 			}
+			KVimSession.saveNow();
+			KVimJournal.closeAll();
 			KVimMain.kVimMain.dispose();
 			tabs.clear();
 			System.gc();
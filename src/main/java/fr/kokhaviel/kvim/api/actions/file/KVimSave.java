@@ -3,30 +3,227 @@ package fr.kokhaviel.kvim.api.actions.file;
 import fr.kokhaviel.kvim.KVim;
 import fr.kokhaviel.kvim.api.gui.KVimSaveChooser;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.api.text.KVimDocument;
+import fr.kokhaviel.kvim.api.text.KVimTextSnapshot;
 import fr.kokhaviel.kvim.gui.KVimMain;
 
 import javax.swing.*;
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.Segment;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static fr.kokhaviel.kvim.gui.KVimMain.tabs;
 
 public class KVimSave {
 
-	public static void saveFile(Path file, String text) {
-		try(FileOutputStream fos = new FileOutputStream(String.valueOf(file))) {
-			fos.write(text.getBytes(StandardCharsets.UTF_8));
-		} catch(IOException e) {
+	static final ExecutorService SAVER = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "KVim-Save");
+		thread.setDaemon(true);
+		return thread;
+	});
+	static final Map<Path, SaveJob> QUEUED = new HashMap<>();
+	static final Queue<Runnable> COMPLETED = new ConcurrentLinkedQueue<>();
+
+	static class SaveJob implements Runnable {
+
+		final Path file;
+		final KVimDocument document;
+		final List<Runnable> onSaved = new ArrayList<>();
+		KVimTextSnapshot snapshot;
+		int version;
+		Charset charset;
+		boolean bom;
+		String eol;
+
+		SaveJob(Path file, KVimDocument document) {
+			this.file = file;
+			this.document = document;
+		}
+
+		@Override
+		public void run() {
+			synchronized(QUEUED) {
+				QUEUED.remove(file);
+			}
+
+			try {
+				write(file, snapshot, charset, bom, eol);
+				final FileTime diskTime = Files.getLastModifiedTime(file);
+				complete(() -> {
+					document.saved(snapshot, version, diskTime);
+					onSaved.forEach(Runnable::run);
+				});
+			} catch(CharacterCodingException e) {
+				complete(() -> {
+					final int ans = JOptionPane.showConfirmDialog(KVimMain.kVimMain, file.getFileName() + " contains characters that can't be encoded in "
+							+ charset.name() + ".\nSave it as UTF-8 instead ?", "Save", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+					if(ans != JOptionPane.YES_OPTION) return;
+					document.setCharset(StandardCharsets.UTF_8, false);
+					save(file, document, onSaved);
+				});
+			} catch(IOException e) {
+				complete(() -> JOptionPane.showMessageDialog(KVimMain.kVimMain, "Unable to save " + file + " :\n" + e.getMessage(),
+						"Save", JOptionPane.ERROR_MESSAGE));
+			}
+		}
+	}
+
+	static void complete(Runnable completion) {
+		COMPLETED.add(completion);
+		SwingUtilities.invokeLater(KVimSave::runCompleted);
+	}
+
+	static void runCompleted() {
+		for(Runnable completion = COMPLETED.poll(); completion != null; completion = COMPLETED.poll()) completion.run();
+	}
+
+	public static void saveFile(Path file, KVimDocument document) {
+		saveFile(file, document, null);
+	}
+
+	public static void saveFile(Path file, KVimDocument document, Runnable onSaved) {
+		if(document.isLoading()) {
+			JOptionPane.showMessageDialog(KVimMain.kVimMain, file.getFileName() + " is still loading", "Save", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+		if(document.isLossy()) {
+			final int ans = JOptionPane.showConfirmDialog(KVimMain.kVimMain, file.getFileName() + " contains bytes that are not valid " + document.getCharset().name()
+					+ ".\nSaving will replace them. Save anyway ?", "Save", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+			if(ans != JOptionPane.YES_OPTION) return;
+			document.setLossy(false);
+		}
+
+		final List<Runnable> callbacks = new ArrayList<>();
+		if(onSaved != null) callbacks.add(onSaved);
+		save(file, document, callbacks);
+	}
+
+	static void save(Path file, KVimDocument document, List<Runnable> onSaved) {
+		final Object eol = document.getProperty(DefaultEditorKit.EndOfLineStringProperty);
+		final Path target = file.toAbsolutePath().normalize();
+
+		synchronized(QUEUED) {
+			SaveJob job = QUEUED.get(target);
+			if(job == null || job.document != document) {
+				job = new SaveJob(target, document);
+				QUEUED.put(target, job);
+				SAVER.execute(job);
+			}
+			job.snapshot = document.snapshot();
+			job.version = document.getVersion();
+			job.charset = document.getCharset();
+			job.bom = document.hasBom();
+			job.eol = eol instanceof String ? (String) eol : "\n";
+			job.onSaved.addAll(onSaved);
+		}
+	}
+
+	public static void awaitPendingSaves() {
+		try {
+			SAVER.submit(() -> {
+			}).get();
+		} catch(InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
 		}
+		runCompleted();
+	}
+
+	static void write(Path file, KVimTextSnapshot snapshot, Charset charset, boolean bom, String eol) throws IOException {
+		final Path target = Files.isSymbolicLink(file) ? file.toRealPath() : file;
+		final Path temp = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".kvim~");
+		final CharsetEncoder encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+
+		try {
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			    Writer writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), encoder))) {
+				if(bom) writer.write('\uFEFF');
+				writeSnapshot(writer, snapshot, eol);
+				writer.flush();
+				channel.force(true);
+			}
+
+			if(Files.exists(target) && Files.getFileAttributeView(target, PosixFileAttributeView.class) != null) {
+				Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+			}
+			try {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+
+		syncDirectory(target.getParent());
+	}
+
+	static void syncDirectory(Path dir) {
+		if(dir == null) return;
+		try(FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch(IOException ignored) {
+		}
+	}
+
+	static void writeSnapshot(Writer writer, KVimTextSnapshot snapshot, String eol) throws IOException {
+		final Segment segment = new Segment();
+		int offset = 0;
+
+		while(offset < snapshot.length()) {
+			final int count = snapshot.getSegment(offset, segment);
+
+			if(eol.equals("\n")) {
+				writer.write(segment.array, segment.offset, count);
+			} else {
+				int start = segment.offset;
+				final int end = segment.offset + count;
+				for(int i = start; i < end; i++) {
+					if(segment.array[i] == '\n') {
+						writer.write(segment.array, start, i - start);
+						writer.write(eol);
+						start = i + 1;
+					}
+				}
+				writer.write(segment.array, start, end - start);
+			}
+
+			offset += count;
+		}
 	}
 
 	public static void openSaveChooser(KVimTab tab) {
 		if(!tab.isUntitled()) {
-			saveFile(tab.getFilePath(), tab.getText());
+			saveFile(tab.getFilePath(), tab.getKVimDocument());
 		} else {
 			final KVimSaveChooser kVimFileChooser = new KVimSaveChooser();
 			int ans = kVimFileChooser.showSaveDialog(KVimMain.kVimMain);
@@ -34,9 +231,10 @@ public class KVimSave {
 			if(ans == JFileChooser.APPROVE_OPTION) {
 				File fileToSave = kVimFileChooser.getSelectedFile();
 				final Path toPath = fileToSave.toPath();
-				saveFile(toPath, tab.getText());
-				tabs.set(tab.getIndex(), new KVimTab(fileToSave.toPath(), tab.getIndex()));
-				KVimMain.kVimMain.updateTab(tab.getIndex(), false);
+				saveFile(toPath, tab.getKVimDocument(), () -> {
+					tabs.set(tab.getIndex(), new KVimTab(toPath, tab.getIndex()));
+					KVimMain.kVimMain.updateTab(tab.getIndex(), false);
+				});
 				KVim.kVimProperties.getLastParams().replace("last_save_file", toPath.getParent().toString());
 			}
 		}
@@ -0,0 +1,419 @@
+package fr.kokhaviel.kvim.api.actions.file;
+
+import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.api.text.KVimDocument;
+import fr.kokhaviel.kvim.api.text.KVimTextSnapshot;
+import fr.kokhaviel.kvim.gui.KVimMain;
+import fr.kokhaviel.kvim.gui.split.KVimSplitTab;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import java.awt.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static fr.kokhaviel.kvim.KVim.kVimProperties;
+
+public class KVimSession {
+
+	static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "KVim-Session");
+		thread.setDaemon(true);
+		return thread;
+	});
+	static final String SESSION_FILE = "session.kvim";
+	static final int MAGIC = 0x4b565353;
+	static final int VERSION = 2;
+	static final int COPY = 1;
+	static final int ADD = 2;
+	static final int MAX_ADD = 1 << 16;
+	static final int DELAY = 1000;
+	static final int MAX_DELAY = 10_000;
+
+	static final Map<KVimTab, Record> records = new WeakHashMap<>();
+	static final Timer timer = new Timer(DELAY, actionEvent -> save());
+	static long pendingSince;
+
+	static {
+		timer.setRepeats(false);
+	}
+
+	static class Record {
+
+		KVimDocument document;
+		int version;
+		long diskTime;
+		byte[] content;
+		int scroll;
+		State restored;
+	}
+
+	static class State {
+
+		String path;
+		int caret;
+		int scroll;
+		long diskTime;
+		int baseLength;
+		byte[] content;
+		KVimTextSnapshot text;
+		Record record;
+		KVimDocument document;
+		int version;
+	}
+
+	static class Snapshot {
+
+		final List<State> states = new ArrayList<>();
+		int selected;
+		int left = -1;
+		int right = -1;
+		int orientation;
+	}
+
+	public static void changed() {
+		for(KVimTab tab : KVimMain.tabs) {
+			if(tab.isShowing()) record(tab).scroll = tab.getVisibleRect().y;
+		}
+
+		final long now = System.currentTimeMillis();
+		if(!timer.isRunning()) pendingSince = now;
+		if(now - pendingSince >= MAX_DELAY) {
+			save();
+			return;
+		}
+		timer.restart();
+	}
+
+	public static void saveNow() {
+		timer.stop();
+		try {
+			WRITER.submit(write(snapshot())).get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException ignored) {
+		}
+	}
+
+	public static KVimMain restore() throws IOException {
+		final Path file = sessionFile();
+		if(!Files.isRegularFile(file)) return null;
+
+		final Snapshot snapshot;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			snapshot = read(in);
+		} catch(IOException | RuntimeException e) {
+			return null;
+		}
+		if(snapshot == null) return null;
+
+		final List<KVimTab> restored = new ArrayList<>();
+		final List<Integer> indexes = new ArrayList<>();
+		for(int i = 0; i < snapshot.states.size(); i++) {
+			final State state = snapshot.states.get(i);
+			if(state.path != null && state.content == null && !Files.isRegularFile(Paths.get(state.path))) continue;
+
+			final KVimTab tab = new KVimTab(state.path == null ? null : Paths.get(state.path), restored.size(), true);
+			record(tab).restored = state;
+			if(state.path != null) tab.addPropertyChangeListener("deferred", activation(tab));
+			indexes.add(i);
+			restored.add(tab);
+		}
+		if(restored.isEmpty()) return null;
+
+		final int selected = Math.max(0, indexes.indexOf(snapshot.selected));
+		final KVimMain main = new KVimMain(restored, selected);
+		restored.stream().filter(KVimTab::isUntitled).forEach(tab -> apply(tab, record(tab).restored));
+
+		final int left = indexes.indexOf(snapshot.left);
+		final int right = indexes.indexOf(snapshot.right);
+		if(left >= 0 && right >= 0) main.updateSplit(left, right, KVimSplitTab.SplitOrientation.values()[snapshot.orientation]);
+		return main;
+	}
+
+	static PropertyChangeListener activation(KVimTab tab) {
+		return new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent propertyChangeEvent) {
+				tab.removePropertyChangeListener("deferred", this);
+				final State state = record(tab).restored;
+				if(state == null) return;
+
+				if(!tab.isLoading()) {
+					apply(tab, state);
+					return;
+				}
+				tab.addPropertyChangeListener("loadProgress", new PropertyChangeListener() {
+					@Override
+					public void propertyChange(PropertyChangeEvent propertyChangeEvent) {
+						if(!Integer.valueOf(100).equals(propertyChangeEvent.getNewValue())) return;
+						tab.removePropertyChangeListener("loadProgress", this);
+						apply(tab, state);
+					}
+				});
+			}
+		};
+	}
+
+	static void apply(KVimTab tab, State state) {
+		final Record record = record(tab);
+		record.restored = null;
+		record.scroll = state.scroll;
+
+		final KVimDocument document = tab.getKVimDocument();
+		if(state.content != null && !document.isModified() && (tab.getJournal() == null || !tab.getJournal().isRecovered())) {
+			if(state.path != null && (state.baseLength != document.getLength() || diskTime(document) != state.diskTime)) {
+				JOptionPane.showMessageDialog(KVimMain.kVimMain, tab.getFilename() + " has changed on disk since it was last edited,\nits unsaved modifications can't be restored !",
+						"Session Warning", JOptionPane.WARNING_MESSAGE);
+			} else {
+				try {
+					inflate(document, state.content);
+					document.setModified(true);
+				} catch(BadLocationException | IOException e) {
+					JOptionPane.showMessageDialog(KVimMain.kVimMain, "The unsaved modifications of " + tab.getFilename() + " are damaged and can't be restored !",
+							"Session Warning", JOptionPane.WARNING_MESSAGE);
+				}
+			}
+		}
+
+		tab.setCaretPosition(Math.min(state.caret, document.getLength()));
+		SwingUtilities.invokeLater(() -> tab.scrollRectToVisible(new Rectangle(0, state.scroll, 1, Math.max(1, tab.getVisibleRect().height))));
+	}
+
+	static Record record(KVimTab tab) {
+		return records.computeIfAbsent(tab, key -> {
+			key.addCaretListener(caretEvent -> changed());
+			return new Record();
+		});
+	}
+
+	static void save() {
+		timer.stop();
+		WRITER.execute(write(snapshot()));
+	}
+
+	static Snapshot snapshot() {
+		final Snapshot snapshot = new Snapshot();
+		final KVimTab current = KVimMain.kVimMain == null ? null : KVimMain.kVimMain.getCurrentTab();
+
+		for(KVimTab tab : KVimMain.tabs) {
+			final Record record = record(tab);
+			if(tab == current) snapshot.selected = snapshot.states.size();
+			if(KVimMain.isSplit && tab == KVimSplitTab.curLeftTab) snapshot.left = snapshot.states.size();
+			if(KVimMain.isSplit && tab == KVimSplitTab.curRightTab) snapshot.right = snapshot.states.size();
+
+			if(record.restored != null) {
+				snapshot.states.add(record.restored);
+				continue;
+			}
+			if(tab.isShowing()) record.scroll = tab.getVisibleRect().y;
+
+			final State state = new State();
+			final KVimDocument document = tab.getKVimDocument();
+			state.path = tab.isUntitled() ? null : tab.getFilePath().toAbsolutePath().toString();
+			state.caret = tab.getCaretPosition();
+			state.scroll = record.scroll;
+
+			if(tab.isModified() || (tab.isUntitled() && document.getLength() > 0)) {
+				state.diskTime = diskTime(document);
+				state.baseLength = tab.isUntitled() ? 0 : document.getBaseLength();
+				if(record.document == document && record.version == document.getVersion() && record.diskTime == state.diskTime && record.content != null) {
+					state.content = record.content;
+				} else {
+					state.text = document.snapshot();
+					state.record = record;
+					state.document = document;
+					state.version = document.getVersion();
+				}
+			}
+			snapshot.states.add(state);
+		}
+		if(KVimSplitTab.curOrientation != null) snapshot.orientation = KVimSplitTab.curOrientation.ordinal();
+		return snapshot;
+	}
+
+	static Runnable write(Snapshot snapshot) {
+		return () -> {
+			for(State state : snapshot.states) {
+				if(state.text == null) continue;
+				state.content = deflate(state.text, state.path != null);
+				state.text = null;
+
+				final State encoded = state;
+				SwingUtilities.invokeLater(() -> {
+					encoded.record.document = encoded.document;
+					encoded.record.version = encoded.version;
+					encoded.record.diskTime = encoded.diskTime;
+					encoded.record.content = encoded.content;
+				});
+			}
+
+			final Path file = sessionFile();
+			final Path temp = file.resolveSibling(SESSION_FILE + ".tmp");
+			try {
+				try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+					write(out, snapshot);
+				}
+				try {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch(AtomicMoveNotSupportedException e) {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} catch(IOException ignored) {
+			}
+		};
+	}
+
+	static void write(DataOutputStream out, Snapshot snapshot) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(snapshot.selected);
+		out.writeInt(snapshot.left);
+		out.writeInt(snapshot.right);
+		out.writeByte(snapshot.orientation);
+		out.writeInt(snapshot.states.size());
+
+		for(State state : snapshot.states) {
+			out.writeBoolean(state.path != null);
+			if(state.path != null) out.writeUTF(state.path);
+			out.writeInt(state.caret);
+			out.writeInt(state.scroll);
+			out.writeLong(state.diskTime);
+			out.writeInt(state.baseLength);
+			out.writeInt(state.content == null ? -1 : state.content.length);
+			if(state.content != null) out.write(state.content);
+		}
+	}
+
+	static Snapshot read(DataInputStream in) throws IOException {
+		if(in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+		final Snapshot snapshot = new Snapshot();
+		snapshot.selected = in.readInt();
+		snapshot.left = in.readInt();
+		snapshot.right = in.readInt();
+		snapshot.orientation = in.readByte();
+
+		final int count = in.readInt();
+		for(int i = 0; i < count; i++) {
+			final State state = new State();
+			if(in.readBoolean()) state.path = in.readUTF();
+			state.caret = in.readInt();
+			state.scroll = in.readInt();
+			state.diskTime = in.readLong();
+			state.baseLength = in.readInt();
+
+			final int length = in.readInt();
+			if(length >= 0) {
+				state.content = new byte[length];
+				in.readFully(state.content);
+			}
+			snapshot.states.add(state);
+		}
+		return snapshot;
+	}
+
+	static byte[] deflate(KVimTextSnapshot text, boolean delta) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes)))) {
+			final KVimTextSnapshot.Delta writer = new KVimTextSnapshot.Delta() {
+				@Override
+				public void copy(int base, int length) throws IOException {
+					out.writeByte(COPY);
+					out.writeInt(base);
+					out.writeInt(length);
+				}
+
+				@Override
+				public void add(char[] chars, int offset, int count) throws IOException {
+					out.writeByte(ADD);
+					out.writeInt(count);
+					for(int i = 0; i < count; i++) out.writeChar(chars[offset + i]);
+				}
+			};
+
+			if(delta) {
+				text.delta(writer);
+			} else {
+				final char[] chars = new char[Math.min(text.length(), MAX_ADD)];
+				for(int offset = 0; offset < text.length(); offset += chars.length) {
+					final int count = Math.min(chars.length, text.length() - offset);
+					text.getChars(offset, offset + count, chars, 0);
+					writer.add(chars, 0, count);
+				}
+			}
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	static void inflate(KVimDocument document, byte[] content) throws IOException, BadLocationException {
+		final List<Integer> starts = new ArrayList<>();
+		final List<Integer> ends = new ArrayList<>();
+		final List<String> texts = new ArrayList<>();
+		final StringBuilder added = new StringBuilder();
+		final int length = document.getLength();
+		int base = 0;
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(content))))) {
+			for(int type = in.read(); type >= 0; type = in.read()) {
+				if(type == ADD) {
+					final int count = in.readInt();
+					for(int i = 0; i < count; i++) added.append(in.readChar());
+					continue;
+				}
+				if(type != COPY) throw new IOException("Invalid session record " + type);
+
+				final int offset = in.readInt();
+				final int count = in.readInt();
+				if(offset < base || count < 0 || offset + count > length) throw new IOException("Invalid session copy");
+				if(offset > base || added.length() > 0) {
+					starts.add(base);
+					ends.add(offset);
+					texts.add(added.toString());
+					added.setLength(0);
+				}
+				base = offset + count;
+			}
+		}
+		if(base < length || added.length() > 0) {
+			starts.add(base);
+			ends.add(length);
+			texts.add(added.toString());
+		}
+		if(starts.isEmpty()) return;
+
+		document.replace(starts.stream().mapToInt(Integer::intValue).toArray(), ends.stream().mapToInt(Integer::intValue).toArray(),
+				texts.toArray(new String[0]), starts.size());
+	}
+
+	static long diskTime(KVimDocument document) {
+		return document.getDiskTime() == null ? 0 : document.getDiskTime().toMillis();
+	}
+
+	static Path sessionFile() {
+		return kVimProperties.getPropsDir().resolve(SESSION_FILE);
+	}
+}
@@ -1,26 +1,37 @@
 package fr.kokhaviel.kvim.api.actions.todos;
 
+import fr.kokhaviel.kvim.api.KVimSymbolIndex;
+import fr.kokhaviel.kvim.api.actions.edit.KVimLines;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.api.syntax.KVimSymbol;
 
 import javax.swing.*;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
 
 public class KVimTODO extends JFrame implements Serializable {
 
 	public KVimTODOManager manager;
+	final KVimSymbolIndex index;
+	final Map<String, KVimSymbol> comments = new HashMap<>();
+	JList<String> todoList;
 
-	public KVimTODO(KVimTab tab) throws HeadlessException, IOException, ClassNotFoundException {
+	public KVimTODO(KVimTab tab, KVimTODOManager manager) throws HeadlessException {
 		super("TODO Manager");
 		this.setSize(400, 200);
 		this.setLocationRelativeTo(null);
 		this.setIconImage(new ImageIcon(ClassLoader.getSystemResource("kvim/kvim-104x93.png")).getImage());
 
-		manager = new KVimTODOManager(tab.getRootProjPath());
+		this.manager = manager;
+		index = KVimSymbolIndex.get(tab.getRootProjPath());
 
 		final JButton add_todo = new JButton("Add TODO");
 		final JButton edit_todo = new JButton("Edit TODO");
@@ -29,23 +40,8 @@ public class KVimTODO extends JFrame implements Serializable {
 		JPanel left = new JPanel(new GridLayout(0, 1));
 		JPanel right = new JPanel(new GridLayout(0, 1));
 
-
-		if(Files.exists(manager.todoFilePath)) {
-			manager.read();
-		}
-
-		DefaultListModel<String> model = new DefaultListModel<>();
-
-		JList<String> todoList = new JList<>();
-		if(manager.items.size() > 0) {
-			manager.items.forEach(item -> model.addElement(item.getName()));
-		}
-
-		todoList.setModel(model);
-
-		JScrollPane scrollPane = new JScrollPane(todoList);
-		left.add(scrollPane);
-
+		todoList = createList();
+		left.add(new JScrollPane(todoList));
 
 		jPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 		right.add(add_todo);
@@ -69,45 +65,33 @@ public class KVimTODO extends JFrame implements Serializable {
 		edit_todo.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				if(todoList.isSelectionEmpty()) return;
-
-				try {
-					manager.items.remove(manager.map.get(todoList.getSelectedValue()));
-					manager.write();
-					manager.editGUI(manager.map.get(todoList.getSelectedValue()), KVimTODO.this, left);
-				} catch(IOException | ClassNotFoundException e) {
-					throw new RuntimeException(e);
-				}
+				final KVimTODOItem item = selectedItem();
+				if(item != null) manager.editGUI(item, KVimTODO.this, left);
 			}
 		});
 
 		rm_todo.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				if(todoList.isSelectionEmpty()) return;
+				final KVimTODOItem item = selectedItem();
+				if(item == null) return;
 
 				try {
-					manager.items.remove(manager.map.get(todoList.getSelectedValue()));
-					manager.write();
-					manager.read();
+					manager.remove(item);
 					update(left);
-				} catch(IOException | ClassNotFoundException e) {
+				} catch(IOException e) {
 					throw new RuntimeException(e);
 				}
 
 			}
 		});
 
-		todoList.addMouseListener(new MouseAdapter() {
+		final ChangeListener indexListener = changeEvent -> update(left);
+		index.addChangeListener(indexListener);
+		this.addWindowListener(new WindowAdapter() {
 			@Override
-			public void mouseClicked(MouseEvent mouseEvent) {
-				if(mouseEvent.getClickCount() == 2) {
-					int index = todoList.locationToIndex(mouseEvent.getPoint());
-					if(index >= 0) {
-						String o = todoList.getModel().getElementAt(index);
-						new KVimTODOShow(manager.map.get(o)).setVisible(true);
-					}
-				}
+			public void windowClosing(WindowEvent windowEvent) {
+				index.removeChangeListener(indexListener);
 			}
 		});
 
@@ -118,32 +102,50 @@ public class KVimTODO extends JFrame implements Serializable {
 
 		panel.removeAll();
 
+		todoList = createList();
+		JScrollPane scrollPane = new JScrollPane(todoList);
+		panel.add(scrollPane);
+
+		this.revalidate();
+		this.pack();
+		this.repaint();
+	}
+
+	JList<String> createList() {
 		DefaultListModel<String> model = new DefaultListModel<>();
-		JList<String> todoList = new JList<>();
-		if(KVimTODOManager.manager.items.size() > 0) {
-			KVimTODOManager.manager.items.forEach(item -> model.addElement(item.getName()));
-		}
+		manager.items.forEach(item -> model.addElement(item.getName()));
 
-		todoList.setModel(model);
+		comments.clear();
+		for(KVimSymbol comment : index.todos()) {
+			final String label = comment.getKind() + " " + comment.getFile() + ":" + (comment.getLine() + 1) + " " + comment.getName();
+			comments.put(label, comment);
+			model.addElement(label);
+		}
 
-		todoList.addMouseListener(new MouseAdapter() {
+		JList<String> list = new JList<>(model);
+		list.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
 				if(mouseEvent.getClickCount() == 2) {
-					int index = todoList.locationToIndex(mouseEvent.getPoint());
-					if(index >= 0) {
-						String o = todoList.getModel().getElementAt(index);
-						new KVimTODOShow(KVimTODOManager.manager.map.get(o)).setVisible(true);
-					}
+					int index = list.locationToIndex(mouseEvent.getPoint());
+					if(index >= 0) open(list.getModel().getElementAt(index));
 				}
 			}
 		});
+		return list;
+	}
 
-		JScrollPane scrollPane = new JScrollPane(todoList);
-		panel.add(scrollPane);
+	KVimTODOItem selectedItem() {
+		if(todoList.isSelectionEmpty()) return null;
+		return manager.map.get(todoList.getSelectedValue());
+	}
 
-		this.revalidate();
-		this.pack();
-		this.repaint();
+	void open(String label) {
+		final KVimSymbol comment = comments.get(label);
+		if(comment != null) {
+			KVimLines.gotoLine(index.getRoot().resolve(comment.getFile()), comment.getLine(), comment.getColumn());
+		} else if(manager.map.containsKey(label)) {
+			new KVimTODOShow(manager.map.get(label)).setVisible(true);
+		}
 	}
 }
@@ -1,24 +1,27 @@
 package fr.kokhaviel.kvim.api.actions.todos;
 
-import java.io.File;
 import java.io.Serializable;
 
 public class KVimTODOItem implements Serializable {
 
 	private static final long serialVersionUID = 6568962346L;
 
+	long id;
 	String name;
-	File file;
 	String relativePath;
 	String contents;
 
-	public KVimTODOItem(String name, File file, String relativePath, String contents) {
+	public KVimTODOItem(long id, String name, String relativePath, String contents) {
+		this.id = id;
 		this.name = name;
-		this.file = file;
 		this.relativePath = relativePath;
 		this.contents = contents;
 	}
 
+	public long getId() {
+		return id;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -27,10 +30,6 @@ public class KVimTODOItem implements Serializable {
 		this.name = name;
 	}
 
-	public File getFile() {
-		return file;
-	}
-
 	public String getRelativePath() {
 		return relativePath;
 	}
@@ -46,8 +45,8 @@ public class KVimTODOItem implements Serializable {
 	@Override
 	public String toString() {
 		return "KVimTODOItem{" +
-				"name='" + name + '\'' +
-				", file=" + file +
+				"id=" + id +
+				", name='" + name + '\'' +
 				", relativePath=" + relativePath +
 				", contents='" + contents + '\'' +
 				'}';
@@ -5,38 +5,253 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.List;
+import java.util.zip.CRC32;
 
-public class KVimTODOManager implements Serializable {
+public class KVimTODOManager {
 
-	private static final long serialVersionUID = 541236512365L;
-	final transient Path todoFilePath;
+	static final int MAGIC = 0x4b56544f;
+	static final int VERSION = 2;
+	static final int UNCHECKED_VERSION = 1;
+	static final int PUT = 1;
+	static final int REMOVE = 2;
+	static final int COMPACT_SLACK = 64;
+	static final int LEGACY_MAGIC = 0xaced;
+
+	final Path todoFilePath;
+	final Path projPath;
 	List<KVimTODOItem> items = new ArrayList<>();
 	HashMap<String, KVimTODOItem> map = new HashMap<>();
+	final Map<Long, KVimTODOItem> byId = new LinkedHashMap<>();
+	final Map<String, List<KVimTODOItem>> byFile = new HashMap<>();
+	int records;
+	long nextId = 1;
 	public static KVimTODOManager manager;
 
 	public KVimTODOManager(Path projPath) {
+		this.projPath = projPath;
 		this.todoFilePath = Paths.get(projPath + "/.kvim/todo.kvim");
 		manager = this;
 	}
 
-	@SuppressWarnings("unchecked")
 	public void read() throws IOException, ClassNotFoundException {
-		ObjectInputStream in = new ObjectInputStream(Files.newInputStream(todoFilePath.toFile().toPath()));
-		this.items = (List<KVimTODOItem>) in.readObject();
+		byId.clear();
+		records = 0;
+		nextId = 1;
 
-		map.clear();
-		items.forEach(item -> map.put(item.getName(), item));
+		if(Files.exists(todoFilePath)) {
+			if(isLegacy()) {
+				readLegacy();
+				write();
+			} else {
+				readLog();
+			}
+		}
+		reindex();
 	}
 
 	public void write() throws IOException {
-		ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(todoFilePath.toFile().toPath()));
-		out.writeObject(items);
-		out.close();
+		final Path temp = todoFilePath.resolveSibling(todoFilePath.getFileName() + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			for(KVimTODOItem item : byId.values()) record(out, PUT, item);
+		}
+
+		try {
+			Files.move(temp, todoFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(AtomicMoveNotSupportedException e) {
+			Files.move(temp, todoFilePath, StandardCopyOption.REPLACE_EXISTING);
+		}
+		records = byId.size();
+	}
+
+	public KVimTODOItem add(String name, File file, String contents) throws IOException {
+		final String relativePath = projPath.toAbsolutePath().normalize().relativize(file.toPath().toAbsolutePath().normalize()).toString().replace('\\', '/');
+		final KVimTODOItem item = new KVimTODOItem(nextId++, name, relativePath, contents);
+		byId.put(item.getId(), item);
+		append(item, PUT);
+		return item;
+	}
+
+	public void update(KVimTODOItem item, String name, String contents) throws IOException {
+		item.setName(name);
+		item.setContents(contents);
+		byId.remove(item.getId());
+		byId.put(item.getId(), item);
+		append(item, PUT);
+	}
+
+	public void remove(KVimTODOItem item) throws IOException {
+		if(byId.remove(item.getId()) == null) return;
+		append(item, REMOVE);
+	}
+
+	public List<KVimTODOItem> getItems(String relativePath) {
+		return byFile.getOrDefault(relativePath, Collections.emptyList());
+	}
+
+	void append(KVimTODOItem item, int type) throws IOException {
+		Files.createDirectories(todoFilePath.getParent());
+		final boolean created = !Files.exists(todoFilePath);
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(todoFilePath,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)))) {
+			if(created) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+			}
+			record(out, type, item);
+		}
+
+		records++;
+		if(records > byId.size() * 2 + COMPACT_SLACK) write();
+		reindex();
+	}
+
+	void record(DataOutputStream out, int type, KVimTODOItem item) throws IOException {
+		final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		final DataOutputStream data = new DataOutputStream(payload);
+		data.writeLong(item.getId());
+		if(type == PUT) {
+			data.writeUTF(item.getName());
+			data.writeUTF(item.getRelativePath());
+			data.writeUTF(item.getContents());
+		}
+
+		final CRC32 crc = new CRC32();
+		crc.update(type);
+		crc.update(payload.toByteArray());
+		out.writeByte(type);
+		out.writeInt(payload.size());
+		payload.writeTo(out);
+		out.writeInt((int) crc.getValue());
+	}
+
+	void readLog() throws IOException {
+		final long size = Files.size(todoFilePath);
+		long good = 8;
+		boolean unchecked = false;
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(todoFilePath)))) {
+			final int magic = in.readInt();
+			final int version = in.readInt();
+			if(magic != MAGIC || (version != VERSION && version != UNCHECKED_VERSION)) throw new IOException(todoFilePath + " is not a KVim TODO file");
+
+			if(version == UNCHECKED_VERSION) {
+				unchecked = true;
+				readUnchecked(in);
+			} else {
+				final CRC32 crc = new CRC32();
+				try {
+					while(true) {
+						final int type = in.read();
+						if(type < 0) break;
+
+						final int length = in.readInt();
+						if(length < 8 || good + 9 + length > size) break;
+						final byte[] payload = new byte[length];
+						in.readFully(payload);
+
+						crc.reset();
+						crc.update(type);
+						crc.update(payload);
+						if(in.readInt() != (int) crc.getValue() || !apply(type, payload)) break;
+						good += 9 + length;
+					}
+				} catch(EOFException ignored) {
+				}
+			}
+		}
+
+		if(unchecked) {
+			write();
+		} else if(good < size) {
+			try(FileChannel channel = FileChannel.open(todoFilePath, StandardOpenOption.WRITE)) {
+				channel.truncate(good);
+			}
+		}
+	}
+
+	boolean apply(int type, byte[] payload) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		final long id = in.readLong();
+		if(type == PUT) {
+			final KVimTODOItem item = new KVimTODOItem(id, in.readUTF(), in.readUTF(), in.readUTF());
+			byId.remove(id);
+			byId.put(id, item);
+		} else if(type == REMOVE) {
+			byId.remove(id);
+		} else {
+			return false;
+		}
+		nextId = Math.max(nextId, id + 1);
+		records++;
+		return true;
+	}
+
+	void readUnchecked(DataInputStream in) throws IOException {
+		try {
+			while(true) {
+				final int type = in.read();
+				if(type < 0) break;
+
+				final long id = in.readLong();
+				if(type == PUT) {
+					final KVimTODOItem item = new KVimTODOItem(id, in.readUTF(), in.readUTF(), in.readUTF());
+					byId.remove(id);
+					byId.put(id, item);
+				} else if(type == REMOVE) {
+					byId.remove(id);
+				} else {
+					break;
+				}
+				nextId = Math.max(nextId, id + 1);
+				records++;
+			}
+		} catch(EOFException ignored) {
+		}
+	}
+
+	boolean isLegacy() throws IOException {
+		try(InputStream in = Files.newInputStream(todoFilePath)) {
+			return (in.read() << 8 | in.read()) == LEGACY_MAGIC;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	void readLegacy() throws IOException, ClassNotFoundException {
+		final List<KVimTODOItem> legacy;
+		try(ObjectInputStream in = new ObjectInputStream(Files.newInputStream(todoFilePath))) {
+			legacy = (List<KVimTODOItem>) in.readObject();
+		}
+
+		final String prefix = projPath.getFileName() + "/";
+		for(int i = legacy.size() - 1; i >= 0; i--) {
+			final KVimTODOItem item = legacy.get(i);
+			final String relativePath = item.getRelativePath().startsWith(prefix) ? item.getRelativePath().substring(prefix.length()) : item.getRelativePath();
+			final KVimTODOItem migrated = new KVimTODOItem(nextId++, item.getName(), relativePath, item.getContents());
+			byId.put(migrated.getId(), migrated);
+		}
+	}
+
+	void reindex() {
+		items = new ArrayList<>(byId.values());
+		Collections.reverse(items);
+
+		map.clear();
+		byFile.clear();
+		for(KVimTODOItem item : items) {
+			map.put(item.getName(), item);
+			byFile.computeIfAbsent(item.getRelativePath(), key -> new ArrayList<>()).add(item);
+		}
 	}
 
 	public void addGUI(KVimTODO frame, JPanel updatedPanel) {
@@ -80,33 +295,11 @@ public class KVimTODOManager implements Serializable {
 				@Override
 				public void mouseClicked(MouseEvent mouseEvent) {
 					try {
-						File parent = chooser.getSelectedFile();
-						List<File> files;
-						List<String> relativePathList = new ArrayList<>();
-						relativePathList.add(chooser.getSelectedFile().getName());
-
-						do {
-							parent = parent.getParentFile();
-							files = Arrays.asList(Objects.requireNonNull(parent.listFiles()));
-							relativePathList.add(parent.getName());
-						} while(!files.contains(todoFilePath.getParent().toFile()));
-
-						if(Files.exists(todoFilePath)) {
-							read();
-						}
-
-						StringBuilder relativeArray = new StringBuilder();
-						for(int i = relativePathList.size() - 1; i >= 0; i--) {
-							relativeArray.append(relativePathList.get(i));
-							if(i != 0) relativeArray.append("/");
-						}
-
-						items.add(0, new KVimTODOItem(nameFld.getText(), chooser.getSelectedFile(), relativeArray.toString(), contentsFld.getText()));
-						write();
+						add(nameFld.getText(), chooser.getSelectedFile(), contentsFld.getText());
 						frame.update(updatedPanel);
 						jFrame.dispose();
 						frame.requestFocusInWindow();
-					} catch(IOException | ClassNotFoundException e) {
+					} catch(IOException e) {
 						throw new RuntimeException(e);
 					}
 				}
@@ -115,7 +308,7 @@ public class KVimTODOManager implements Serializable {
 
 	}
 
-	public void editGUI(KVimTODOItem item, KVimTODO frame, JPanel updatedPanel) throws IOException, ClassNotFoundException {
+	public void editGUI(KVimTODOItem item, KVimTODO frame, JPanel updatedPanel) {
 		JFrame jFrame = new JFrame("Edit TODO Task " + item.getName());
 		JPanel jPanel = new JPanel();
 		JButton updateBtn = new JButton("Update");
@@ -125,9 +318,6 @@ public class KVimTODOManager implements Serializable {
 		JPanel right = new JPanel(new GridLayout(0, 1));
 		JPanel bot = new JPanel(new BorderLayout());
 
-		items.remove(item);
-		read();
-
 		jFrame.setLocationRelativeTo(null);
 		jFrame.setIconImage(new ImageIcon(ClassLoader.getSystemResource("kvim/kvim-104x93.png")).getImage());
 		jPanel.setLayout(new BorderLayout());
@@ -154,13 +344,8 @@ public class KVimTODOManager implements Serializable {
 		updateBtn.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				item.setName(nameFld.getText());
-				item.setContents(contentsFld.getText());
-
-				items.add(0, new KVimTODOItem(item.getName(), item.getFile(), item.getRelativePath(), item.getContents()));
-
 				try {
-					write();
+					update(item, nameFld.getText(), contentsFld.getText());
 				} catch(IOException e) {
 					throw new RuntimeException(e);
 				}
@@ -1,5 +1,6 @@
 package fr.kokhaviel.kvim.api.actions.tools;
 
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 
 import javax.swing.*;
@@ -7,10 +8,11 @@ import javax.swing.text.BadLocationException;
 import javax.xml.bind.DatatypeConverter;
 import java.awt.*;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.UUID;
 
 public class KVimTools {
@@ -51,89 +53,51 @@ public class KVimTools {
 	}
 
 	public static void getMD5Sum(KVimTab tab) {
-		if(tab.isUntitled()) return;
-
-		JTextArea area = new JTextArea(1, 32);
-		area.setWrapStyleWord(true);
-		area.setLineWrap(true);
-		area.setCaretPosition(0);
-		area.setEditable(false);
-
-		try {
-			byte[] b = Files.readAllBytes(tab.getFilePath());
-			byte[] hash = MessageDigest.getInstance("MD5").digest(b);
-
-			area.setText(DatatypeConverter.printHexBinary(hash).toUpperCase());
-			JOptionPane.showMessageDialog(null, new JScrollPane(area),
-					"MD5 Sum", JOptionPane.INFORMATION_MESSAGE);
-		} catch(IOException | NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
-		}
+		showDigest(tab, "MD5", "MD5 Sum", 32);
 	}
 
 	public static void getSHA1Sum(KVimTab tab) {
-		if(tab.isUntitled()) return;
-
-		JTextArea area = new JTextArea(1, 48);
-		area.setWrapStyleWord(true);
-		area.setLineWrap(true);
-		area.setCaretPosition(0);
-		area.setEditable(false);
-
-		try {
-			byte[] b = Files.readAllBytes(tab.getFilePath());
-			byte[] hash = MessageDigest.getInstance("SHA1").digest(b);
-
-			area.setText(DatatypeConverter.printHexBinary(hash).toUpperCase());
-			JOptionPane.showMessageDialog(null, new JScrollPane(area),
-					"SHA1 Sum", JOptionPane.INFORMATION_MESSAGE);
-		} catch(IOException | NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
-		}
+		showDigest(tab, "SHA1", "SHA1 Sum", 48);
 	}
 
 	public static void getSHA256(KVimTab tab) {
-		if(tab.isUntitled()) return;
-
-
-		JTextArea area = new JTextArea(1, 72);
-		area.setWrapStyleWord(true);
-		area.setLineWrap(true);
-		area.setCaretPosition(0);
-		area.setEditable(false);
-
-		try {
-			byte[] b = Files.readAllBytes(tab.getFilePath());
-			byte[] hash = MessageDigest.getInstance("SHA-256").digest(b);
-
-			area.setText(DatatypeConverter.printHexBinary(hash).toUpperCase());
-			JOptionPane.showMessageDialog(null, new JScrollPane(area),
-					"SHA256 Sum", JOptionPane.INFORMATION_MESSAGE);
-		} catch(IOException | NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
-		}
+		showDigest(tab, "SHA-256", "SHA256 Sum", 72);
 	}
 
 	public static void getSHA512Sum(KVimTab tab) {
-		if(tab.isUntitled()) return;
-
+		showDigest(tab, "SHA-512", "SHA512 Sum", 96);
+	}
 
-		JTextArea area = new JTextArea(1, 96);
-		area.setWrapStyleWord(true);
-		area.setLineWrap(true);
-		area.setCaretPosition(0);
-		area.setEditable(false);
+	static void showDigest(KVimTab tab, String algorithm, String title, int columns) {
+		if(tab.isUntitled()) return;
 
-		try {
-			byte[] b = Files.readAllBytes(tab.getFilePath());
-			byte[] hash = MessageDigest.getInstance("SHA-512").digest(b);
+		final Path file = tab.getFilePath();
+		KVimTasks.<byte[]>task(title, task -> digest(task, file, MessageDigest.getInstance(algorithm))).onDone(hash -> {
+			JTextArea area = new JTextArea(1, columns);
+			area.setWrapStyleWord(true);
+			area.setLineWrap(true);
+			area.setCaretPosition(0);
+			area.setEditable(false);
 
 			area.setText(DatatypeConverter.printHexBinary(hash).toUpperCase());
 			JOptionPane.showMessageDialog(null, new JScrollPane(area),
-					"SHA512 Sum", JOptionPane.INFORMATION_MESSAGE);
-		} catch(IOException | NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
+					title, JOptionPane.INFORMATION_MESSAGE);
+		}).start();
+	}
+
+	static byte[] digest(KVimTasks.Task<byte[]> task, Path file, MessageDigest digest) throws IOException {
+		final long size = Math.max(1, Files.size(file));
+		final byte[] buffer = new byte[64 * 1024];
+		long read = 0;
+		try(InputStream in = Files.newInputStream(file)) {
+			for(int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+				task.checkCancelled();
+				digest.update(buffer, 0, count);
+				read += count;
+				task.progress((int) Math.min(100, read * 100 / size));
+			}
 		}
+		return digest.digest();
 	}
 
 	static String fixURL(String url) {
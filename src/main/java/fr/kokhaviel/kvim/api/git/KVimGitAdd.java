@@ -1,12 +1,12 @@
 package fr.kokhaviel.kvim.api.git;
 
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
-import org.eclipse.jgit.api.errors.GitAPIException;
 
 public class KVimGitAdd {
 
-	public static void addFile(KVimTab tab) throws GitAPIException {
-		tab.getGitRepository().add().addFilepattern(
-				tab.getRootGitPath().toUri().relativize(tab.getFilePath().toUri()).getPath()).call();
+	public static void addFile(KVimTab tab) {
+		final String pattern = tab.getRootGitPath().toUri().relativize(tab.getFilePath().toUri()).getPath();
+		KVimTasks.git(tab.getGitRepository(), "Git Add", task -> tab.getGitRepository().add().addFilepattern(pattern).call()).start();
 	}
 }
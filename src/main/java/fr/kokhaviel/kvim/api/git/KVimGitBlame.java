@@ -0,0 +1,432 @@
+package fr.kokhaviel.kvim.api.git;
+
+import fr.kokhaviel.kvim.api.KVimTasks;
+import org.eclipse.jgit.diff.DiffConfig;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.errors.LargeObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.FollowFilter;
+import org.eclipse.jgit.revwalk.RenameCallback;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.IntList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class KVimGitBlame {
+
+	static final int MAGIC = 0x4B424C31;
+	static final long PUBLISH_INTERVAL = 100;
+	static final int SUMMARY_LIMIT = 1000;
+	static final int CACHED_BLAMES = Integer.getInteger("kvim.blameCacheEntries", 8);
+
+	final ObjectId head;
+	final String path;
+	final Commit[] lines;
+
+	public static class Commit {
+
+		final ObjectId id;
+		final String author;
+		final String email;
+		final long time;
+		final String summary;
+
+		Commit(ObjectId id, String author, String email, long time, String summary) {
+			this.id = id;
+			this.author = author;
+			this.email = email;
+			this.time = time;
+			this.summary = summary;
+		}
+
+		public ObjectId getId() {
+			return id;
+		}
+
+		public String getAuthor() {
+			return author;
+		}
+
+		public String getEmail() {
+			return email;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public String getSummary() {
+			return summary;
+		}
+	}
+
+	static class Candidate {
+
+		RevCommit commit;
+		final String path;
+		final ObjectId blob;
+		final RawText text;
+		final IntList result = new IntList();
+		final IntList source = new IntList();
+
+		Candidate(RevCommit commit, String path, ObjectId blob, RawText text) {
+			this.commit = commit;
+			this.path = path;
+			this.blob = blob;
+			this.text = text;
+		}
+	}
+
+	static class Generator {
+
+		final Repository repository;
+		final RevWalk walk;
+		final KVimGitBlame blame;
+		final Map<ObjectId, Commit> commits = new HashMap<>();
+		final Map<RevCommit, Candidate> candidates = new IdentityHashMap<>();
+		final Map<String, String> renames = new HashMap<>();
+		final Deque<Candidate> queue = new ArrayDeque<>();
+		final RevFlag emitted;
+		int remaining;
+
+		Generator(Repository repository, RevWalk walk, KVimGitBlame blame) {
+			this.repository = repository;
+			this.walk = walk;
+			this.blame = blame;
+			this.emitted = walk.newFlag("emitted");
+			this.remaining = blame.lines.length;
+		}
+
+		void run(RevCommit head, Candidate start, KVimTasks.Task<?> task, Consumer<KVimGitBlame> partial) throws IOException {
+			final FollowFilter filter = FollowFilter.create(start.path, repository.getConfig().get(DiffConfig.KEY));
+			filter.setRenameCallback(new RenameCallback() {
+				@Override
+				public void renamed(DiffEntry entry) {
+					renames.put(entry.getNewPath(), entry.getOldPath());
+				}
+			});
+			walk.setTreeFilter(filter);
+			walk.markStart(head);
+
+			long published = System.currentTimeMillis();
+			boolean seeded = false;
+			for(RevCommit commit = walk.next(); commit != null && remaining > 0; commit = walk.next()) {
+				task.checkCancelled();
+				commit.add(emitted);
+				if(!seeded) {
+					seeded = true;
+					start.commit = commit;
+					process(start);
+				} else {
+					final Candidate candidate = candidates.remove(commit);
+					if(candidate != null) process(candidate);
+				}
+				while(!queue.isEmpty()) {
+					final Candidate candidate = queue.poll();
+					if(candidates.remove(candidate.commit) == candidate) process(candidate);
+				}
+
+				if(partial != null && System.currentTimeMillis() - published >= PUBLISH_INTERVAL) {
+					published = System.currentTimeMillis();
+					partial.accept(blame.copy());
+				}
+			}
+
+			if(!seeded) assign(start, head);
+			for(Candidate candidate : candidates.values()) assign(candidate, candidate.commit);
+		}
+
+		void process(Candidate candidate) throws IOException {
+			final KVimGitBlame cached = read(repository, candidate.commit, candidate.path);
+			if(cached != null) {
+				for(int i = 0; i < candidate.result.size(); i++) {
+					final int line = candidate.source.get(i);
+					if(line < cached.lines.length && cached.lines[line] != null) {
+						assign(candidate.result.get(i), commits.computeIfAbsent(cached.lines[line].id, id -> cached.lines[line]));
+					}
+				}
+				return;
+			}
+
+			for(RevCommit parent : candidate.commit.getParents()) {
+				if(candidate.result.size() == 0) return;
+
+				String parentPath = candidate.path;
+				ObjectId parentBlob = blob(repository, parent, parentPath);
+				if(parentBlob == null && renames.containsKey(candidate.path)) {
+					parentPath = renames.get(candidate.path);
+					parentBlob = blob(repository, parent, parentPath);
+				}
+				if(parentBlob == null) continue;
+
+				if(parentBlob.equals(candidate.blob)) {
+					final Candidate target = target(parent, parentPath, parentBlob, candidate.text);
+					for(int i = 0; i < candidate.result.size(); i++) {
+						target.result.add(candidate.result.get(i));
+						target.source.add(candidate.source.get(i));
+					}
+					candidate.result.clear();
+					candidate.source.clear();
+					return;
+				}
+
+				final RawText parentText = text(repository, parentBlob);
+				if(parentText == null) continue;
+
+				final EditList edits = new HistogramDiff().diff(RawTextComparator.DEFAULT, parentText, candidate.text);
+				final IntList keptResult = new IntList();
+				final IntList keptSource = new IntList();
+				Candidate target = null;
+				for(int i = 0; i < candidate.result.size(); i++) {
+					final int line = map(edits, candidate.source.get(i));
+					if(line < 0) {
+						keptResult.add(candidate.result.get(i));
+						keptSource.add(candidate.source.get(i));
+						continue;
+					}
+					if(target == null) target = target(parent, parentPath, parentBlob, parentText);
+					target.result.add(candidate.result.get(i));
+					target.source.add(line);
+				}
+				candidate.result.clear();
+				candidate.source.clear();
+				for(int i = 0; i < keptResult.size(); i++) {
+					candidate.result.add(keptResult.get(i));
+					candidate.source.add(keptSource.get(i));
+				}
+			}
+			assign(candidate, candidate.commit);
+		}
+
+		Candidate target(RevCommit parent, String path, ObjectId blob, RawText text) {
+			Candidate target = candidates.get(parent);
+			if(target == null) {
+				target = new Candidate(parent, path, blob, text);
+				candidates.put(parent, target);
+				if(parent.has(emitted)) queue.add(target);
+			}
+			return target;
+		}
+
+		void assign(Candidate candidate, RevCommit commit) throws IOException {
+			if(candidate.result.size() == 0) return;
+
+			Commit owner = commits.get(commit);
+			if(owner == null) {
+				walk.parseBody(commit);
+				final PersonIdent author = commit.getAuthorIdent();
+				final String summary = commit.getShortMessage();
+				owner = new Commit(commit.copy(), author.getName(), author.getEmailAddress(), author.getWhen().getTime(),
+						summary.length() > SUMMARY_LIMIT ? summary.substring(0, SUMMARY_LIMIT) : summary);
+				commits.put(owner.id, owner);
+			}
+			for(int i = 0; i < candidate.result.size(); i++) assign(candidate.result.get(i), owner);
+			candidate.result.clear();
+			candidate.source.clear();
+		}
+
+		void assign(int line, Commit commit) {
+			if(blame.lines[line] != null) return;
+			blame.lines[line] = commit;
+			remaining--;
+		}
+	}
+
+	KVimGitBlame(ObjectId head, String path, Commit[] lines) {
+		this.head = head;
+		this.path = path;
+		this.lines = lines;
+	}
+
+	public ObjectId getHead() {
+		return head;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public int getLineCount() {
+		return lines.length;
+	}
+
+	public Commit getCommit(int line) {
+		return line < 0 || line >= lines.length ? null : lines[line];
+	}
+
+	KVimGitBlame copy() {
+		return new KVimGitBlame(head, path, lines.clone());
+	}
+
+	public static KVimGitBlame blame(Repository repository, String path, KVimTasks.Task<?> task, Consumer<KVimGitBlame> partial) throws IOException {
+		final ObjectId headId = repository.resolve(Constants.HEAD);
+		if(headId == null) return null;
+
+		final KVimGitBlame cached = read(repository, headId, path);
+		if(cached != null) return cached;
+
+		try(RevWalk walk = new RevWalk(repository)) {
+			final RevCommit head = walk.parseCommit(headId);
+			final ObjectId blob = blob(repository, head, path);
+			final RawText text = blob == null ? null : text(repository, blob);
+			if(text == null) return null;
+
+			final KVimGitBlame blame = new KVimGitBlame(head.copy(), path, new Commit[text.size()]);
+			final Candidate start = new Candidate(head, path, blob, text);
+			for(int i = 0; i < text.size(); i++) {
+				start.result.add(i);
+				start.source.add(i);
+			}
+			new Generator(repository, walk, blame).run(head, start, task, partial);
+			write(repository, blame);
+			if(!start.commit.equals(head)) write(repository, new KVimGitBlame(start.commit.copy(), path, blame.lines));
+			return blame;
+		}
+	}
+
+	static int map(EditList edits, int line) {
+		int low = 0;
+		int high = edits.size() - 1;
+		int found = -1;
+		while(low <= high) {
+			final int middle = (low + high) >>> 1;
+			if(edits.get(middle).getBeginB() <= line) {
+				found = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if(found < 0) return line;
+
+		final Edit edit = edits.get(found);
+		return line < edit.getEndB() ? -1 : line - edit.getEndB() + edit.getEndA();
+	}
+
+	static ObjectId blob(Repository repository, RevCommit commit, String path) throws IOException {
+		final TreeWalk treeWalk = TreeWalk.forPath(repository, path, commit.getTree());
+		if(treeWalk == null || (treeWalk.getRawMode(0) & FileMode.TYPE_MASK) != FileMode.TYPE_FILE) return null;
+		return treeWalk.getObjectId(0);
+	}
+
+	static RawText text(Repository repository, ObjectId blob) throws IOException {
+		try {
+			final byte[] bytes = repository.open(blob, Constants.OBJ_BLOB).getCachedBytes(KVimGitDiffView.TEXT_LIMIT);
+			return RawText.isBinary(bytes, bytes.length, true) ? null : new RawText(bytes);
+		} catch(LargeObjectException e) {
+			return null;
+		}
+	}
+
+	static Path cache(Repository repository, AnyObjectId commit, String path) {
+		final MessageDigest digest = Constants.newMessageDigest();
+		digest.update(path.getBytes(StandardCharsets.UTF_8));
+		return repository.getDirectory().toPath().resolve("kvim").resolve("blame").resolve(ObjectId.fromRaw(digest.digest()).name()).resolve(commit.name());
+	}
+
+	static KVimGitBlame read(Repository repository, AnyObjectId commit, String path) {
+		final Path file = cache(repository, commit, path);
+		if(!Files.isRegularFile(file)) return null;
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if(in.readInt() != MAGIC || !in.readUTF().equals(path)) return null;
+
+			final Commit[] commits = new Commit[in.readInt()];
+			final byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			for(int i = 0; i < commits.length; i++) {
+				in.readFully(raw);
+				commits[i] = new Commit(ObjectId.fromRaw(raw), in.readUTF(), in.readUTF(), in.readLong(), in.readUTF());
+			}
+
+			final Commit[] lines = new Commit[in.readInt()];
+			for(int i = 0; i < lines.length; i++) {
+				final int index = in.readInt();
+				lines[i] = index < 0 ? null : commits[index];
+			}
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return new KVimGitBlame(commit.copy(), path, lines);
+		} catch(IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	static void write(Repository repository, KVimGitBlame blame) {
+		final Path file = cache(repository, blame.head, blame.path);
+		final Map<Commit, Integer> indexes = new IdentityHashMap<>();
+		for(Commit commit : blame.lines) {
+			if(commit != null) indexes.putIfAbsent(commit, indexes.size());
+		}
+		final Commit[] commits = new Commit[indexes.size()];
+		indexes.forEach((commit, index) -> commits[index] = commit);
+
+		try {
+			Files.createDirectories(file.getParent());
+			final Path temp = Files.createTempFile(file.getParent(), "blame", ".tmp");
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeUTF(blame.path);
+				out.writeInt(commits.length);
+				final byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+				for(Commit commit : commits) {
+					commit.id.copyRawTo(raw, 0);
+					out.write(raw);
+					out.writeUTF(commit.author);
+					out.writeUTF(commit.email);
+					out.writeLong(commit.time);
+					out.writeUTF(commit.summary);
+				}
+				out.writeInt(blame.lines.length);
+				for(Commit commit : blame.lines) out.writeInt(commit == null ? -1 : indexes.get(commit));
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			prune(file.getParent());
+		} catch(IOException ignored) {
+		}
+	}
+
+	static void prune(Path directory) throws IOException {
+		final Map<Path, FileTime> entries = new HashMap<>();
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for(Path entry : stream) {
+				if(!entry.getFileName().toString().endsWith(".tmp")) entries.put(entry, Files.getLastModifiedTime(entry));
+			}
+		}
+		if(entries.size() <= CACHED_BLAMES) return;
+
+		final List<Path> recent = new ArrayList<>(entries.keySet());
+		recent.sort((a, b) -> entries.get(b).compareTo(entries.get(a)));
+		for(Path entry : recent.subList(CACHED_BLAMES, recent.size())) Files.deleteIfExists(entry);
+	}
+}
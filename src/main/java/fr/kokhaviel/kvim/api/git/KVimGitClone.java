@@ -1,8 +1,8 @@
 package fr.kokhaviel.kvim.api.git;
 
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.gui.KVimMain;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
@@ -10,7 +10,7 @@ import java.io.File;
 
 public class KVimGitClone {
 
-	public static void cloneRepo() throws GitAPIException {
+	public static void cloneRepo() {
 		JFileChooser fileChooser = new JFileChooser();
 		fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
 		fileChooser.setDialogTitle("Choose a Git Root Directory");
@@ -28,9 +28,13 @@ public class KVimGitClone {
 		int ans = fileChooser.showOpenDialog(KVimMain.kVimMain);
 		String url = JOptionPane.showInputDialog(KVimMain.kVimMain, "Enter the repo URL : ", "Clone Repo", JOptionPane.QUESTION_MESSAGE);
 		if(ans == JFileChooser.APPROVE_OPTION) {
-			if(!fileChooser.getSelectedFile().isDirectory()) return;
-			Git.cloneRepository().setDirectory(fileChooser.getSelectedFile()).setURI(url)
-					.setCloneAllBranches(true).call().close();
+			final File directory = fileChooser.getSelectedFile();
+			if(!directory.isDirectory()) return;
+			KVimTasks.task("Git Clone", task -> {
+				Git.cloneRepository().setDirectory(directory).setURI(url).setProgressMonitor(task.monitor())
+						.setCloneAllBranches(true).call().close();
+				return directory;
+			}).serial(directory.toPath()).start();
 		}
 	}
 }
@@ -1,15 +1,15 @@
 package fr.kokhaviel.kvim.api.git;
 
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 import fr.kokhaviel.kvim.gui.KVimMain;
 import org.eclipse.jgit.api.CommitCommand;
-import org.eclipse.jgit.api.errors.GitAPIException;
 
 import javax.swing.*;
 
 public class KVimGitCommit {
 
-	public static void commit(KVimTab tab) throws GitAPIException {
+	public static void commit(KVimTab tab) {
 		final String author = JOptionPane.showInputDialog(KVimMain.kVimMain,
 				"Who is the author ?", "Commit Author", JOptionPane.QUESTION_MESSAGE);
 		final String email = JOptionPane.showInputDialog(KVimMain.kVimMain,
@@ -20,6 +20,6 @@ public class KVimGitCommit {
 		commit.setAuthor(author, email);
 		commit.setCommitter(author, email);
 		commit.setMessage(message);
-		commit.call();
+		KVimTasks.git(tab.getGitRepository(), "Git Commit", task -> commit.call()).start();
 	}
 }
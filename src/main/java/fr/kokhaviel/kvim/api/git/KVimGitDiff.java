@@ -1,28 +1,44 @@
 package fr.kokhaviel.kvim.api.git;
 
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 import fr.kokhaviel.kvim.gui.KVimMain;
-import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.diff.DiffEntry;
 
 import javax.swing.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.List;
 
 public class KVimGitDiff {
 
-	public static void showDiffs(KVimTab tab) throws GitAPIException {
-		final List<DiffEntry> call = tab.getGitRepository().diff().call();
+	public static void showDiffs(KVimTab tab) {
+		final Git git = tab.getGitRepository();
+		KVimTasks.<List<DiffEntry>>git(git, "Git Diff", task -> git.diff().call())
+				.onDone(entries -> showDiffs(git, entries)).start();
+	}
+
+	static void showDiffs(Git git, List<DiffEntry> call) {
 
 		JFrame jFrame = new JFrame("Diffs");
 		jFrame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
-		jFrame.setLocationRelativeTo(KVimMain.kVimMain);
-		jFrame.getContentPane().setLayout(new BoxLayout(jFrame.getContentPane(), BoxLayout.Y_AXIS));
-		call.forEach(entry -> {
-			jFrame.getContentPane().add(new KVimGitDiffLabel(entry));
-		});
 
+		final JList<DiffEntry> list = new JList<>(call.toArray(new DiffEntry[0]));
+		list.setCellRenderer(new KVimGitDiffLabel());
+		if(!call.isEmpty()) list.setFixedCellHeight(list.getCellRenderer().getListCellRendererComponent(list, call.get(0), 0, false, false).getPreferredSize().height);
+		list.setVisibleRowCount(Math.min(20, Math.max(1, call.size())));
+		list.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent mouseEvent) {
+				final int index = list.locationToIndex(mouseEvent.getPoint());
+				if(index >= 0) new KVimGitDiffView(git, list.getModel().getElementAt(index)).setVisible(true);
+			}
+		});
+		jFrame.getContentPane().add(new JScrollPane(list));
 
 		jFrame.pack();
+		jFrame.setLocationRelativeTo(KVimMain.kVimMain);
 		jFrame.setVisible(true);
 	}
 }
@@ -1,36 +1,16 @@
 package fr.kokhaviel.kvim.api.git;
 
-import fr.kokhaviel.kvim.gui.KVimMain;
 import org.eclipse.jgit.diff.DiffEntry;
 
 import javax.swing.*;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
+import java.awt.*;
 
-public class KVimGitDiffLabel extends JButton {
+public class KVimGitDiffLabel extends DefaultListCellRenderer {
 
-	DiffEntry diffEntry;
-
-	public KVimGitDiffLabel(DiffEntry entry) {
-		super(entry.getNewPath());
-		this.diffEntry = entry;
-
-		this.addMouseListener(new MouseAdapter() {
-			@Override
-			public void mouseClicked(MouseEvent mouseEvent) {
-				JFrame jFrame = new JFrame("Git Diff");
-				jFrame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
-				jFrame.setLocationRelativeTo(KVimMain.kVimMain);
-				jFrame.getContentPane().setLayout(new BoxLayout(jFrame.getContentPane(), BoxLayout.Y_AXIS));
-				jFrame.getContentPane().add(new JLabel("[" + entry.getChangeType().name() + "]"));
-				jFrame.getContentPane().add(new JLabel(entry.getNewId().name()));
-				jFrame.getContentPane().add(new JLabel(entry.getNewMode().toString()));
-				jFrame.getContentPane().add(new JLabel(entry.getNewPath()));
-				jFrame.getContentPane().add(new JLabel(String.valueOf(entry.getScore())));
-
-				jFrame.pack();
-				jFrame.setVisible(true);
-			}
-		});
+	@Override
+	public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+		final DiffEntry entry = (DiffEntry) value;
+		final String path = entry.getChangeType() == DiffEntry.ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath();
+		return super.getListCellRendererComponent(list, "[" + entry.getChangeType().name() + "] " + path, index, isSelected, cellHasFocus);
 	}
 }
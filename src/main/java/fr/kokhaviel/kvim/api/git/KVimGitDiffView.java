@@ -0,0 +1,405 @@
+package fr.kokhaviel.kvim.api.git;
+
+import fr.kokhaviel.kvim.api.KVimTasks;
+import fr.kokhaviel.kvim.gui.KVimMain;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.util.IntList;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class KVimGitDiffView extends JFrame {
+
+	static final int TEXT_LIMIT = 2 * 1024 * 1024;
+	static final int BYTE_LIMIT = 1024 * 1024;
+	static final int CONTEXT = 3;
+	static final int BYTES_PER_ROW = 16;
+
+	static final int HUNK = 0;
+	static final int CONTEXT_LINE = 1;
+	static final int REMOVED = 2;
+	static final int ADDED = 3;
+	static final int CHANGED = 4;
+
+	static final Color REMOVED_COLOR = new Color(255, 220, 220);
+	static final Color ADDED_COLOR = new Color(220, 255, 220);
+	static final Color HUNK_COLOR = new Color(225, 230, 240);
+
+	final JTable table = new JTable();
+	final JToggleButton sideBySide = new JToggleButton("Side by Side");
+	final JLabel info = new JLabel(" ");
+	Result result;
+
+	static class Side {
+
+		byte[] bytes = new byte[0];
+		long size;
+	}
+
+	static class Result {
+
+		Side a;
+		Side b;
+		RawText oldText;
+		RawText newText;
+		EditList edits;
+		boolean binary;
+	}
+
+	public KVimGitDiffView(Git git, DiffEntry entry) {
+		super("Git Diff : " + (entry.getChangeType() == DiffEntry.ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath()));
+		this.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+		this.setIconImage(new ImageIcon(ClassLoader.getSystemResource("kvim/kvim-104x93.png")).getImage());
+
+		table.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+		table.setShowGrid(false);
+		table.setIntercellSpacing(new Dimension(0, 0));
+		table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+		table.setDefaultRenderer(Object.class, new Renderer());
+		sideBySide.setEnabled(false);
+		sideBySide.addActionListener(actionEvent -> showResult());
+
+		final JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+		top.add(new JLabel("[" + entry.getChangeType().name() + "]"));
+		top.add(sideBySide);
+		top.add(info);
+
+		this.getContentPane().setLayout(new BorderLayout());
+		this.getContentPane().add(top, BorderLayout.NORTH);
+		this.getContentPane().add(new JScrollPane(table), BorderLayout.CENTER);
+		this.setSize(1000, 600);
+		this.setLocationRelativeTo(KVimMain.kVimMain);
+
+		KVimTasks.<Result>git(git, "Git Diff", task -> compute(task, git, entry)).onDone(computed -> {
+			result = computed;
+			sideBySide.setEnabled(!computed.binary);
+			showResult();
+		}).start();
+	}
+
+	static Result compute(KVimTasks.Task<Result> task, Git git, DiffEntry entry) throws IOException {
+		final Result result = new Result();
+		try(ObjectReader reader = git.getRepository().newObjectReader()) {
+			result.a = load(git, reader, entry, DiffEntry.Side.OLD);
+			task.checkCancelled();
+			result.b = load(git, reader, entry, DiffEntry.Side.NEW);
+			task.checkCancelled();
+		}
+
+		result.binary = result.a.size > TEXT_LIMIT || result.b.size > TEXT_LIMIT
+				|| RawText.isBinary(result.a.bytes, result.a.bytes.length, true) || RawText.isBinary(result.b.bytes, result.b.bytes.length, true);
+		if(result.binary) return result;
+
+		result.oldText = new RawText(result.a.bytes);
+		result.newText = new RawText(result.b.bytes);
+		result.edits = new HistogramDiff().diff(RawTextComparator.DEFAULT, result.oldText, result.newText);
+		return result;
+	}
+
+	static Side load(Git git, ObjectReader reader, DiffEntry entry, DiffEntry.Side side) throws IOException {
+		final Side loaded = new Side();
+		if(entry.getMode(side) == FileMode.MISSING || entry.getMode(side) == FileMode.GITLINK) return loaded;
+
+		final ObjectId id = entry.getId(side).toObjectId();
+		if(reader.has(id)) {
+			final ObjectLoader loader = reader.open(id, Constants.OBJ_BLOB);
+			loaded.size = loader.getSize();
+			try(InputStream in = loader.openStream()) {
+				loaded.bytes = read(in, loaded.size);
+			}
+		} else {
+			final Path file = git.getRepository().getWorkTree().toPath().resolve(side == DiffEntry.Side.OLD ? entry.getOldPath() : entry.getNewPath());
+			if(!Files.isRegularFile(file)) return loaded;
+			loaded.size = Files.size(file);
+			try(InputStream in = Files.newInputStream(file)) {
+				loaded.bytes = read(in, loaded.size);
+			}
+		}
+		return loaded;
+	}
+
+	static byte[] read(InputStream in, long size) throws IOException {
+		final byte[] bytes = new byte[(int) Math.min(size, size > TEXT_LIMIT ? BYTE_LIMIT : TEXT_LIMIT)];
+		int offset = 0;
+		while(offset < bytes.length) {
+			final int read = in.read(bytes, offset, bytes.length - offset);
+			if(read < 0) break;
+			offset += read;
+		}
+		return offset == bytes.length ? bytes : Arrays.copyOf(bytes, offset);
+	}
+
+	void showResult() {
+		final TableModel model;
+		if(result.binary) {
+			model = new ByteModel(result.a, result.b);
+			info.setText(String.format("Binary or large content : %d -> %d bytes, showing the first %d KB", result.a.size, result.b.size, BYTE_LIMIT / 1024));
+		} else {
+			model = sideBySide.isSelected() ? new SplitModel(result) : new UnifiedModel(result);
+			info.setText(result.edits.size() + " change(s)");
+		}
+		table.setModel(model);
+
+		final int last = model.getColumnCount() - 1;
+		for(int i = 0; i < model.getColumnCount(); i++) {
+			final boolean number = model.getColumnName(i).isEmpty() || model instanceof ByteModel && i == 0;
+			table.getColumnModel().getColumn(i).setPreferredWidth(number ? 60 : 500);
+			if(number && i != last) table.getColumnModel().getColumn(i).setMaxWidth(80);
+		}
+	}
+
+	abstract static class DiffModel extends AbstractTableModel {
+
+		final IntList kinds = new IntList();
+		final IntList oldLines = new IntList();
+		final IntList newLines = new IntList();
+		final IntList hunks = new IntList();
+		final Result result;
+
+		DiffModel(Result result) {
+			this.result = result;
+		}
+
+		void add(int kind, int oldLine, int newLine) {
+			kinds.add(kind);
+			oldLines.add(oldLine);
+			newLines.add(newLine);
+		}
+
+		void build() {
+			final EditList edits = result.edits;
+			for(int i = 0; i < edits.size(); ) {
+				int end = i;
+				while(end + 1 < edits.size() && edits.get(end + 1).getBeginA() - edits.get(end).getEndA() <= 2 * CONTEXT) end++;
+
+				final Edit first = edits.get(i);
+				final Edit last = edits.get(end);
+				final int before = Math.min(CONTEXT, Math.min(first.getBeginA(), first.getBeginB()));
+				final int after = Math.min(CONTEXT, Math.min(result.oldText.size() - last.getEndA(), result.newText.size() - last.getEndB()));
+				final int startA = first.getBeginA() - before;
+				final int startB = first.getBeginB() - before;
+				final int endA = last.getEndA() + after;
+				add(HUNK, hunks.size() / 4, -1);
+				hunks.add(startA);
+				hunks.add(endA);
+				hunks.add(startB);
+				hunks.add(last.getEndB() + after);
+
+				int a = startA;
+				int b = startB;
+				for(int e = i; e <= end; e++) {
+					final Edit edit = edits.get(e);
+					for(; a < edit.getBeginA(); a++, b++) add(CONTEXT_LINE, a, b);
+					edit(edit);
+					a = edit.getEndA();
+					b = edit.getEndB();
+				}
+				for(; a < endA; a++, b++) add(CONTEXT_LINE, a, b);
+				i = end + 1;
+			}
+		}
+
+		abstract void edit(Edit edit);
+
+		int kind(int row) {
+			return kinds.get(row);
+		}
+
+		String header(int row) {
+			final int hunk = 4 * oldLines.get(row);
+			return String.format("@@ -%d,%d +%d,%d @@", hunks.get(hunk) + 1, hunks.get(hunk + 1) - hunks.get(hunk),
+					hunks.get(hunk + 2) + 1, hunks.get(hunk + 3) - hunks.get(hunk + 2));
+		}
+
+		@Override
+		public int getRowCount() {
+			return kinds.size();
+		}
+
+		static String number(int line) {
+			return line < 0 ? "" : String.valueOf(line + 1);
+		}
+
+		static String text(RawText text, int line) {
+			return line < 0 ? "" : text.getString(line).replace("\t", "    ");
+		}
+	}
+
+	static class UnifiedModel extends DiffModel {
+
+		UnifiedModel(Result result) {
+			super(result);
+			build();
+		}
+
+		@Override
+		void edit(Edit edit) {
+			for(int a = edit.getBeginA(); a < edit.getEndA(); a++) add(REMOVED, a, -1);
+			for(int b = edit.getBeginB(); b < edit.getEndB(); b++) add(ADDED, -1, b);
+		}
+
+		@Override
+		public int getColumnCount() {
+			return 3;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return column == 2 ? "Line" : "";
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			final int kind = kinds.get(row);
+			if(kind == HUNK) return column == 2 ? header(row) : "";
+
+			switch(column) {
+				case 0:
+					return number(oldLines.get(row));
+				case 1:
+					return number(newLines.get(row));
+				default:
+					final String prefix = kind == REMOVED ? "- " : kind == ADDED ? "+ " : "  ";
+					return prefix + (kind == ADDED ? text(result.newText, newLines.get(row)) : text(result.oldText, oldLines.get(row)));
+			}
+		}
+	}
+
+	static class SplitModel extends DiffModel {
+
+		SplitModel(Result result) {
+			super(result);
+			build();
+		}
+
+		@Override
+		void edit(Edit edit) {
+			for(int i = 0; i < Math.max(edit.getLengthA(), edit.getLengthB()); i++) {
+				add(CHANGED, i < edit.getLengthA() ? edit.getBeginA() + i : -1, i < edit.getLengthB() ? edit.getBeginB() + i : -1);
+			}
+		}
+
+		@Override
+		public int getColumnCount() {
+			return 4;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return column == 1 ? "Old" : column == 3 ? "New" : "";
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			if(kinds.get(row) == HUNK) return column == 1 ? header(row) : "";
+
+			switch(column) {
+				case 0:
+					return number(oldLines.get(row));
+				case 1:
+					return text(result.oldText, oldLines.get(row));
+				case 2:
+					return number(newLines.get(row));
+				default:
+					return text(result.newText, newLines.get(row));
+			}
+		}
+	}
+
+	static class ByteModel extends AbstractTableModel {
+
+		final Side a;
+		final Side b;
+
+		ByteModel(Side a, Side b) {
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public int getRowCount() {
+			return (Math.max(a.bytes.length, b.bytes.length) + BYTES_PER_ROW - 1) / BYTES_PER_ROW;
+		}
+
+		@Override
+		public int getColumnCount() {
+			return 3;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return column == 0 ? "Offset" : column == 1 ? "Old" : "New";
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			if(column == 0) return String.format("%08x", row * BYTES_PER_ROW);
+			return hex(column == 1 ? a.bytes : b.bytes, row * BYTES_PER_ROW);
+		}
+
+		boolean differs(int row) {
+			final int start = row * BYTES_PER_ROW;
+			final int end = start + BYTES_PER_ROW;
+			if(end > a.bytes.length || end > b.bytes.length) return true;
+			for(int i = start; i < end; i++) if(a.bytes[i] != b.bytes[i]) return true;
+			return false;
+		}
+
+		static String hex(byte[] bytes, int start) {
+			final StringBuilder hex = new StringBuilder();
+			final StringBuilder ascii = new StringBuilder();
+			for(int i = start; i < start + BYTES_PER_ROW; i++) {
+				if(i < bytes.length) {
+					hex.append(String.format("%02x ", bytes[i] & 0xff));
+					ascii.append(bytes[i] >= 0x20 && bytes[i] < 0x7f ? (char) bytes[i] : '.');
+				} else {
+					hex.append("   ");
+				}
+			}
+			return hex.append(' ').append(ascii).toString();
+		}
+	}
+
+	static class Renderer extends DefaultTableCellRenderer {
+
+		@Override
+		public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+			final Component component = super.getTableCellRendererComponent(table, value, isSelected, false, row, column);
+			if(isSelected) return component;
+
+			final TableModel model = table.getModel();
+			component.setBackground(Color.WHITE);
+			if(model instanceof ByteModel) {
+				if(column > 0 && ((ByteModel) model).differs(row)) component.setBackground(column == 1 ? REMOVED_COLOR : ADDED_COLOR);
+			} else if(model instanceof DiffModel) {
+				final DiffModel diff = (DiffModel) model;
+				final int kind = diff.kind(row);
+				if(kind == HUNK) component.setBackground(HUNK_COLOR);
+				else if(kind == REMOVED) component.setBackground(REMOVED_COLOR);
+				else if(kind == ADDED) component.setBackground(ADDED_COLOR);
+				else if(kind == CHANGED && column < 2 && diff.oldLines.get(row) >= 0) component.setBackground(REMOVED_COLOR);
+				else if(kind == CHANGED && column >= 2 && diff.newLines.get(row) >= 0) component.setBackground(ADDED_COLOR);
+			}
+			return component;
+		}
+	}
+}
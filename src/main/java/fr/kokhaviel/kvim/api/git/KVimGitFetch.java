@@ -1,11 +1,11 @@
 package fr.kokhaviel.kvim.api.git;
 
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
-import org.eclipse.jgit.api.errors.GitAPIException;
 
 public class KVimGitFetch {
 
-	public static void fetch(KVimTab tab) throws GitAPIException {
-		tab.getGitRepository().fetch().call();
+	public static void fetch(KVimTab tab) {
+		KVimTasks.git(tab.getGitRepository(), "Git Fetch", task -> tab.getGitRepository().fetch().setProgressMonitor(task.monitor()).call()).start();
 	}
 }
@@ -1,11 +1,12 @@
 package fr.kokhaviel.kvim.api.git;
 
 import fr.kokhaviel.kvim.KVim;
+import fr.kokhaviel.kvim.api.KVimProjectResolver;
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 import fr.kokhaviel.kvim.gui.KVimMain;
 import fr.kokhaviel.kvim.gui.KVimMenuBar;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
@@ -16,7 +17,7 @@ import static fr.kokhaviel.kvim.gui.KVimMain.tabs;
 public class KVimGitInit {
 
 
-	public static void initRepo(KVimTab tab) throws GitAPIException {
+	public static void initRepo(KVimTab tab) {
 		JFileChooser fileChooser = new JFileChooser();
 		fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
 		fileChooser.setCurrentDirectory(tab.getFilePath().toFile());
@@ -34,11 +35,18 @@ public class KVimGitInit {
 		});
 		int ans = fileChooser.showOpenDialog(KVimMain.kVimMain);
 		if(ans == JFileChooser.APPROVE_OPTION) {
-			if(!fileChooser.getSelectedFile().isDirectory()) return;
-			tab.setGitRepository(Git.init().setDirectory(new File(fileChooser.getSelectedFile().getAbsolutePath())).call());
-			tab.setHasAGitRepo(true);
-			tab.setRootGitPath(fileChooser.getSelectedFile().toPath());
-			KVimMain.kVimMain.updateTab(tab.getIndex(), false);
+			final File directory = fileChooser.getSelectedFile();
+			if(!directory.isDirectory()) return;
+			KVimTasks.<Git>task("Git Init", task -> {
+				Git.init().setDirectory(new File(directory.getAbsolutePath())).call().close();
+				KVimProjectResolver.invalidate();
+				return KVimProjectResolver.openGit(directory.toPath());
+			}).serial(directory.toPath()).onDone(git -> {
+				tab.setGitRepository(git);
+				tab.setHasAGitRepo(true);
+				tab.setRootGitPath(directory.toPath());
+				KVimMain.kVimMain.updateTab(tab.getIndex(), false);
+			}).start();
 		}
 	}
 }
@@ -2,57 +2,58 @@ package fr.kokhaviel.kvim.api.git;
 
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 import fr.kokhaviel.kvim.gui.KVimMain;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.revwalk.RevCommit;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.Arrays;
-import java.util.Objects;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 public class KVimGitLog {
 
-	public static void showLog(KVimTab tab) throws GitAPIException {
+	public static void showLog(KVimTab tab) {
 		if(!tab.hasAGitRepo()) return;
-		Iterable<RevCommit> log = tab.getGitRepository().log().call();
-
-		JFrame jFrame = new JFrame("Git Log");
-		jFrame.setLocationRelativeTo(KVimMain.kVimMain);
-		jFrame.getContentPane().setLayout(new BorderLayout());
-
-		JPanel midPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
-		midPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-
-		JPanel timePanel = new JPanel(new GridLayout(0, 1));
-		JPanel authorNamePanel = new JPanel(new GridLayout(0, 1));
-		JPanel authorEmailPanel = new JPanel(new GridLayout(0, 1));
-		JPanel messagePanel = new JPanel(new GridLayout(0, 1));
-
+		showLog(tab, null, "Git Log");
+	}
 
+	public static void showFileLog(KVimTab tab) {
+		if(!tab.hasAGitRepo() || tab.isUntitled()) return;
+		final String path = tab.getRootGitPath().toUri().relativize(tab.getFilePath().toUri()).getPath();
+		showLog(tab, path, "File History : " + path);
+	}
 
-		log.forEach(revCommit -> {
-			final JLabel time = new JLabel(Objects.requireNonNull(revCommit.getAuthorIdent()).getWhen().toString());
-			final JLabel name = new JLabel(Objects.requireNonNull(revCommit.getAuthorIdent()).getName());
-			final JLabel email = new JLabel(Objects.requireNonNull(revCommit.getAuthorIdent()).getEmailAddress());
-			final JLabel message = new JLabel(revCommit.getFullMessage());
+	static void showLog(KVimTab tab, String path, String title) {
+		final KVimGitLogModel model = new KVimGitLogModel(tab.getGitRepository(), path);
 
-			Arrays.asList(time, name, email, message).forEach(
-					jLabel -> jLabel.setBorder(BorderFactory.createMatteBorder(1, 1, 1, 1, Color.BLACK))
-			);
+		JFrame jFrame = new JFrame(title);
+		jFrame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+		jFrame.getContentPane().setLayout(new BorderLayout());
 
-			timePanel.add(time);
-			authorNamePanel.add(name);
-			authorEmailPanel.add(email);
-			messagePanel.add(message);
+		final JTable table = new JTable(model);
+		table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+		table.getColumnModel().getColumn(0).setPreferredWidth(70);
+		table.getColumnModel().getColumn(1).setPreferredWidth(200);
+		table.getColumnModel().getColumn(2).setPreferredWidth(120);
+		table.getColumnModel().getColumn(3).setPreferredWidth(180);
+		table.getColumnModel().getColumn(4).setPreferredWidth(400);
+
+		model.onNoHead(() -> {
+			jFrame.dispose();
+			JOptionPane.showMessageDialog(KVimMain.kVimMain,
+					"No log available : No HEAD exists and no explicit starting revision was specified",
+					"No Log", JOptionPane.WARNING_MESSAGE);
+		});
+		model.onLimit(() -> jFrame.setTitle(title + " (first " + KVimGitLogModel.MAX_ROWS + " commits)"));
+		jFrame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent windowEvent) {
+				model.close();
+			}
 		});
 
-		midPanel.add(timePanel);
-		midPanel.add(authorNamePanel);
-		midPanel.add(authorEmailPanel);
-		midPanel.add(messagePanel);
-
-		jFrame.getContentPane().add(new JScrollPane(midPanel), BorderLayout.CENTER);
-		jFrame.setSize(400, 250);
+		jFrame.getContentPane().add(new JScrollPane(table), BorderLayout.CENTER);
+		jFrame.setSize(900, 400);
+		jFrame.setLocationRelativeTo(KVimMain.kVimMain);
 		jFrame.setVisible(true);
+		model.start();
 	}
 }
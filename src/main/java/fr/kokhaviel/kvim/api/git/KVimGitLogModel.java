@@ -0,0 +1,234 @@
+package fr.kokhaviel.kvim.api.git;
+
+import fr.kokhaviel.kvim.api.KVimTasks;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.NoHeadException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.RawParseUtils;
+
+import javax.swing.table.AbstractTableModel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class KVimGitLogModel extends AbstractTableModel {
+
+	static final int PAGE = 256;
+	static final int CACHED_ROWS = 4 * PAGE;
+	static final int MAX_ROWS = Integer.getInteger("kvim.gitLogRows", Integer.MAX_VALUE);
+	static final String[] COLUMNS = {"Commit", "Date", "Author", "Email", "Message"};
+
+	final Git git;
+	final String path;
+	final Map<Integer, Row> rows = new LinkedHashMap<Integer, Row>(CACHED_ROWS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+			return size() > CACHED_ROWS;
+		}
+	};
+	final Set<Integer> pendingPages = new HashSet<>();
+	byte[] ids = new byte[PAGE * Constants.OBJECT_ID_LENGTH];
+	int count;
+	boolean loading;
+	boolean exhausted;
+	boolean closed;
+	Runnable noHead;
+	Runnable limit;
+	RevWalk walk;
+
+	static class Row {
+
+		final byte[] raw;
+		PersonIdent author;
+		String message;
+
+		Row(byte[] raw) {
+			this.raw = raw;
+		}
+
+		PersonIdent author() {
+			if(author == null) {
+				final int start = RawParseUtils.author(raw, 0);
+				author = start < 0 ? new PersonIdent("", "") : RawParseUtils.parsePersonIdent(raw, start);
+			}
+			return author;
+		}
+
+		String message() {
+			if(message == null) {
+				final int start = RawParseUtils.commitMessage(raw, 0);
+				message = start < 0 ? "" : RawParseUtils.decode(charset(), raw, start, RawParseUtils.endOfParagraph(raw, start)).replace('\n', ' ');
+			}
+			return message;
+		}
+
+		Charset charset() {
+			try {
+				return RawParseUtils.parseEncoding(raw);
+			} catch(RuntimeException e) {
+				return StandardCharsets.UTF_8;
+			}
+		}
+	}
+
+	public KVimGitLogModel(Git git, String path) {
+		this.git = git;
+		this.path = path;
+	}
+
+	public void onNoHead(Runnable noHead) {
+		this.noHead = noHead;
+	}
+
+	public void onLimit(Runnable limit) {
+		this.limit = limit;
+	}
+
+	public void start() {
+		loadMore();
+	}
+
+	public void close() {
+		closed = true;
+		KVimTasks.git(git, "Git Log", task -> {
+			if(walk != null) walk.close();
+			walk = null;
+			return null;
+		}).background().start();
+	}
+
+	@Override
+	public int getRowCount() {
+		return count;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return COLUMNS.length;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return COLUMNS[column];
+	}
+
+	@Override
+	public Object getValueAt(int rowIndex, int columnIndex) {
+		if(rowIndex >= count - PAGE / 4) loadMore();
+		if(columnIndex == 0) return getCommit(rowIndex).name().substring(0, 7);
+
+		final Row row = rows.get(rowIndex);
+		if(row == null) {
+			loadDetails(rowIndex / PAGE);
+			return "";
+		}
+
+		switch(columnIndex) {
+			case 1:
+				return row.author().getWhen().toString();
+			case 2:
+				return row.author().getName();
+			case 3:
+				return row.author().getEmailAddress();
+			default:
+				return row.message();
+		}
+	}
+
+	void loadMore() {
+		if(loading || exhausted || closed) return;
+		loading = true;
+
+		final int wanted = Math.min(PAGE, MAX_ROWS - count);
+		final KVimTasks.Task<byte[]> task = KVimTasks.git(git, "Git Log", t -> walk(t, wanted));
+		task.onDone(page -> {
+			loading = false;
+			if(closed) return;
+			final int size = page.length / Constants.OBJECT_ID_LENGTH;
+			if(size < wanted) exhausted = true;
+			else if(count + size >= MAX_ROWS) {
+				exhausted = true;
+				if(limit != null) limit.run();
+			}
+			if(size == 0) return;
+
+			final int end = (count + size) * Constants.OBJECT_ID_LENGTH;
+			if(end > ids.length) ids = Arrays.copyOf(ids, Math.max(ids.length * 2, end));
+			System.arraycopy(page, 0, ids, count * Constants.OBJECT_ID_LENGTH, page.length);
+			count += size;
+			fireTableRowsInserted(count - size, count - 1);
+		}).onError(e -> {
+			loading = false;
+			exhausted = true;
+			if(e instanceof NoHeadException && noHead != null) noHead.run();
+			else task.showError(e);
+		}).onCancel(() -> loading = false).background().start();
+	}
+
+	byte[] walk(KVimTasks.Task<byte[]> task, int wanted) throws Exception {
+		if(walk == null) {
+			final ObjectId head = git.getRepository().resolve(Constants.HEAD);
+			if(head == null) throw new NoHeadException("No HEAD exists and no explicit starting revision was specified");
+
+			walk = new RevWalk(git.getRepository());
+			walk.setRetainBody(false);
+			if(path != null) walk.setTreeFilter(AndTreeFilter.create(PathFilter.create(path), TreeFilter.ANY_DIFF));
+			walk.markStart(walk.parseCommit(head));
+		}
+
+		final byte[] page = new byte[wanted * Constants.OBJECT_ID_LENGTH];
+		int size = 0;
+		for(RevCommit commit = size < wanted ? walk.next() : null; commit != null; commit = size < wanted ? walk.next() : null) {
+			task.checkCancelled();
+			commit.copyRawTo(page, size++ * Constants.OBJECT_ID_LENGTH);
+		}
+		if(size < PAGE) {
+			walk.close();
+			walk = null;
+		}
+		return Arrays.copyOf(page, size * Constants.OBJECT_ID_LENGTH);
+	}
+
+	void loadDetails(int page) {
+		if(closed || !pendingPages.add(page)) return;
+
+		final int start = page * PAGE;
+		final ObjectId[] slice = new ObjectId[Math.min(count, start + PAGE) - start];
+		for(int i = 0; i < slice.length; i++) {
+			slice[i] = getCommit(start + i);
+		}
+		KVimTasks.<Row[]>git(git, "Git Log", task -> {
+			final Row[] details = new Row[slice.length];
+			try(RevWalk reader = new RevWalk(git.getRepository())) {
+				for(int i = 0; i < slice.length; i++) {
+					task.checkCancelled();
+					details[i] = new Row(reader.parseCommit(slice[i]).getRawBuffer());
+				}
+			}
+			return details;
+		}).onDone(details -> {
+			pendingPages.remove(page);
+			if(closed) return;
+
+			for(int i = 0; i < details.length; i++) {
+				if(details[i] != null) rows.put(start + i, details[i]);
+			}
+			fireTableRowsUpdated(start, start + details.length - 1);
+		}).onError(e -> pendingPages.remove(page)).onCancel(() -> pendingPages.remove(page)).background().start();
+	}
+
+	public ObjectId getCommit(int rowIndex) {
+		return ObjectId.fromRaw(ids, rowIndex * Constants.OBJECT_ID_LENGTH);
+	}
+}
@@ -0,0 +1,423 @@
+package fr.kokhaviel.kvim.api.git;
+
+import fr.kokhaviel.kvim.api.KVimTasks;
+import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.api.text.KVimDocument;
+import fr.kokhaviel.kvim.api.text.KVimTextSnapshot;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.Subsequence;
+import org.eclipse.jgit.diff.SubsequenceComparator;
+import org.eclipse.jgit.errors.LargeObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.EventListenerList;
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.Document;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class KVimGitMarkers implements DocumentListener, PropertyChangeListener {
+
+	static final int DEBOUNCE = 50;
+	static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "KVim-Markers");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	final KVimTab tab;
+	final Timer timer = new Timer(DEBOUNCE, actionEvent -> update());
+	final EventListenerList listeners = new EventListenerList();
+	KVimDocument document;
+	EditList edits = new EditList();
+	int lines;
+	int dirtyStart = -1;
+	int dirtyEnd;
+	int lineDelta;
+	boolean full = true;
+	boolean running;
+	boolean pending;
+	ObjectId current;
+	boolean blaming;
+	KVimGitBlame blame;
+	KVimTasks.Task<KVimGitBlame> blameTask;
+
+	ObjectId headId;
+	RawText head;
+
+	static class Job {
+
+		KVimTextSnapshot text;
+		String separator;
+		Charset charset;
+		boolean bom;
+		EditList edits;
+		int lines;
+		boolean full;
+		boolean check;
+		int first;
+		int last;
+		int b0;
+		int b1;
+		int offset0;
+		int offset1;
+	}
+
+	static class Result {
+
+		final ObjectId head;
+		final EditList edits;
+		final int lines;
+
+		Result(ObjectId head, EditList edits, int lines) {
+			this.head = head;
+			this.edits = edits;
+			this.lines = lines;
+		}
+	}
+
+	KVimGitMarkers(KVimTab tab) {
+		this.tab = tab;
+		this.document = tab.getKVimDocument();
+		timer.setRepeats(false);
+		document.addDocumentListener(this);
+		tab.addPropertyChangeListener("document", this);
+		tab.addPropertyChangeListener("loadProgress", this);
+		tab.addFocusListener(new FocusAdapter() {
+			@Override
+			public void focusGained(FocusEvent focusEvent) {
+				timer.restart();
+			}
+		});
+		timer.restart();
+	}
+
+	public static KVimGitMarkers get(KVimTab tab) {
+		if(tab.isUntitled() || !tab.hasAGitRepo() || tab.getGitRepository() == null) return null;
+
+		KVimGitMarkers markers = (KVimGitMarkers) tab.getClientProperty(KVimGitMarkers.class);
+		if(markers == null) {
+			markers = new KVimGitMarkers(tab);
+			tab.putClientProperty(KVimGitMarkers.class, markers);
+		}
+		return markers;
+	}
+
+	public EditList getEdits() {
+		return edits;
+	}
+
+	public int toHead(int line) {
+		int shift = 0;
+		for(Edit edit : edits) {
+			if(line < edit.getBeginB()) break;
+			if(line < edit.getEndB()) return -1;
+			shift = edit.getEndA() - edit.getEndB();
+		}
+		return line + shift;
+	}
+
+	public KVimGitBlame getBlame() {
+		return blame;
+	}
+
+	public boolean isBlaming() {
+		return blaming;
+	}
+
+	public void setBlaming(boolean blaming) {
+		if(this.blaming == blaming) return;
+		this.blaming = blaming;
+		if(blaming) {
+			blame();
+		} else {
+			if(blameTask != null) blameTask.cancel();
+			blameTask = null;
+			blame = null;
+		}
+		fireChanged();
+	}
+
+	public void addChangeListener(ChangeListener listener) {
+		listeners.add(ChangeListener.class, listener);
+	}
+
+	public void removeChangeListener(ChangeListener listener) {
+		listeners.remove(ChangeListener.class, listener);
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent documentEvent) {
+		changed(documentEvent, 1);
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent documentEvent) {
+		changed(documentEvent, -1);
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent documentEvent) {
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent propertyChangeEvent) {
+		if("document".equals(propertyChangeEvent.getPropertyName())) {
+			if(propertyChangeEvent.getOldValue() instanceof Document) {
+				((Document) propertyChangeEvent.getOldValue()).removeDocumentListener(this);
+			}
+			document = tab.getKVimDocument();
+			document.addDocumentListener(this);
+		} else if(!Integer.valueOf(100).equals(propertyChangeEvent.getNewValue())) {
+			return;
+		}
+		full = true;
+		timer.restart();
+	}
+
+	void changed(DocumentEvent documentEvent, int sign) {
+		if(document.isLoading()) {
+			full = true;
+			return;
+		}
+
+		final DocumentEvent.ElementChange change = documentEvent.getChange(document.getDefaultRootElement());
+		final int count = change == null ? 0 : change.getChildrenAdded().length - change.getChildrenRemoved().length;
+		final int line = document.getLineOfOffset(documentEvent.getOffset());
+		if(sign > 0) inserted(line, count);
+		else removed(line, -count);
+		timer.restart();
+	}
+
+	void inserted(int line, int count) {
+		if(dirtyStart < 0) {
+			dirtyStart = line;
+			dirtyEnd = line + count + 1;
+		} else {
+			if(dirtyEnd > line) dirtyEnd += count;
+			dirtyStart = Math.min(dirtyStart, line);
+			dirtyEnd = Math.max(dirtyEnd, line + count + 1);
+		}
+		lineDelta += count;
+	}
+
+	void removed(int line, int count) {
+		if(dirtyStart < 0) {
+			dirtyStart = line;
+			dirtyEnd = line + 1;
+		} else {
+			dirtyStart = Math.min(dirtyStart > line + count ? dirtyStart - count : dirtyStart, line);
+			dirtyEnd = Math.max(dirtyEnd > line + count ? dirtyEnd - count : dirtyEnd, line + 1);
+		}
+		lineDelta -= count;
+	}
+
+	void update() {
+		if(tab.isDeferred() || tab.isLoading()) return;
+		if(running) {
+			pending = true;
+			return;
+		}
+
+		final Git git = tab.getGitRepository();
+		if(git == null || tab.getFilePath() == null || tab.getRootGitPath() == null) return;
+		final String path = path();
+
+		final Job job = new Job();
+		job.text = document.snapshot();
+		job.separator = "\r\n".equals(document.getProperty(DefaultEditorKit.EndOfLineStringProperty)) ? "\r\n" : "\n";
+		job.charset = document.getCharset() == null ? StandardCharsets.UTF_8 : document.getCharset();
+		job.bom = document.hasBom();
+		job.edits = edits;
+		job.lines = lines;
+		job.full = full;
+		job.check = !full && dirtyStart < 0;
+		if(!job.full && !job.check) region(job);
+
+		full = false;
+		dirtyStart = -1;
+		lineDelta = 0;
+		pending = false;
+		running = true;
+		EXECUTOR.execute(() -> {
+			Result result;
+			try {
+				result = compute(git.getRepository(), path, job);
+			} catch(IOException | RuntimeException e) {
+				result = new Result(null, new EditList(), 0);
+			}
+
+			final Result computed = result;
+			SwingUtilities.invokeLater(() -> publish(computed));
+		});
+	}
+
+	void region(Job job) {
+		final int count = document.getLineCount();
+		final boolean toEnd = dirtyEnd >= count - 1;
+		int b0 = dirtyStart;
+		int b1 = toEnd ? lines : dirtyEnd - lineDelta;
+		int first;
+		int last;
+		boolean grown;
+		do {
+			first = 0;
+			while(first < edits.size() && edits.get(first).getEndB() < b0) first++;
+			last = first;
+			while(last < edits.size() && edits.get(last).getBeginB() <= b1) last++;
+
+			final int start = first < last ? Math.min(b0, edits.get(first).getBeginB()) : b0;
+			final int end = first < last ? Math.max(b1, edits.get(last - 1).getEndB()) : b1;
+			grown = start != b0 || end != b1;
+			b0 = start;
+			b1 = end;
+		} while(grown);
+
+		if(b0 < 0 || b0 > b1 || b1 > lines || b0 >= count) {
+			job.full = true;
+			return;
+		}
+
+		job.first = first;
+		job.last = last;
+		job.b0 = b0;
+		job.b1 = b1;
+		job.offset0 = document.getLineStartOffset(b0);
+		job.offset1 = toEnd || b1 + lineDelta >= count ? job.text.length() : document.getLineStartOffset(b1 + lineDelta);
+	}
+
+	void publish(Result result) {
+		running = false;
+		if(result != null) {
+			edits = result.edits;
+			lines = result.lines;
+			if(!Objects.equals(current, result.head)) {
+				current = result.head;
+				if(blaming) blame();
+			}
+			fireChanged();
+		}
+		if(pending || full || dirtyStart >= 0) timer.restart();
+	}
+
+	void blame() {
+		if(blameTask != null) blameTask.cancel();
+		blameTask = null;
+		final Git git = tab.getGitRepository();
+		if(git == null || tab.getFilePath() == null || tab.getRootGitPath() == null) return;
+
+		final String path = path();
+		final KVimTasks.Task<KVimGitBlame> task = KVimTasks.task("Git Blame", running -> KVimGitBlame.blame(git.getRepository(), path, running,
+				partial -> SwingUtilities.invokeLater(() -> {
+					if(blameTask != running) return;
+					blame = partial;
+					fireChanged();
+				})));
+		blameTask = task;
+		task.onDone(result -> {
+			if(blameTask != task) return;
+			blameTask = null;
+			blame = result;
+			fireChanged();
+		}).onError(e -> {
+			if(blameTask == task) blameTask = null;
+			task.showError(e);
+		}).background().start();
+	}
+
+	void fireChanged() {
+		final ChangeEvent event = new ChangeEvent(this);
+		for(ChangeListener listener : listeners.getListeners(ChangeListener.class)) listener.stateChanged(event);
+	}
+
+	String path() {
+		return tab.getRootGitPath().toUri().relativize(tab.getFilePath().toUri()).getPath();
+	}
+
+	Result compute(Repository repository, String path, Job job) throws IOException {
+		final ObjectId id = repository.resolve(Constants.HEAD);
+		boolean all = job.full;
+		if(id == null) {
+			headId = null;
+			head = null;
+		} else if(!id.equals(headId)) {
+			head = load(repository, path, id);
+			headId = id;
+			all = true;
+		}
+		if(head == null) return new Result(id, new EditList(), 0);
+		if(job.check && !all) return null;
+
+		if(!all) {
+			final Result result = splice(job);
+			if(result != null) return result;
+		}
+
+		final RawText text = encode(job, 0, job.text.length());
+		return new Result(id, new HistogramDiff().diff(RawTextComparator.DEFAULT, head, text), text.size());
+	}
+
+	Result splice(Job job) {
+		final int a0 = job.first > 0 ? job.b0 - job.edits.get(job.first - 1).getEndB() + job.edits.get(job.first - 1).getEndA() : job.b0;
+		final int a1 = job.last < job.edits.size() ? job.b1 - job.edits.get(job.last).getBeginB() + job.edits.get(job.last).getBeginA() : job.b1 + head.size() - job.lines;
+		if(a0 < 0 || a0 > a1 || a1 > head.size()) return null;
+
+		final RawText region = encode(job, job.offset0, job.offset1);
+		final EditList changes = new HistogramDiff().diff(new SubsequenceComparator<RawText>(RawTextComparator.DEFAULT),
+				new Subsequence<>(head, a0, a1), new Subsequence<>(region, 0, region.size()));
+		final int delta = region.size() - (job.b1 - job.b0);
+
+		final EditList spliced = new EditList();
+		for(int i = 0; i < job.first; i++) spliced.add(job.edits.get(i));
+		for(Edit edit : changes) {
+			spliced.add(new Edit(edit.getBeginA() + a0, edit.getEndA() + a0, edit.getBeginB() + job.b0, edit.getEndB() + job.b0));
+		}
+		for(int i = job.last; i < job.edits.size(); i++) {
+			final Edit edit = job.edits.get(i);
+			spliced.add(new Edit(edit.getBeginA(), edit.getEndA(), edit.getBeginB() + delta, edit.getEndB() + delta));
+		}
+		return new Result(headId, spliced, job.lines + delta);
+	}
+
+	static RawText encode(Job job, int start, int end) {
+		String text = job.text.subSequence(start, end).toString();
+		if(!job.separator.equals("\n")) text = text.replace("\n", job.separator);
+		if(job.bom && start == 0) text = '\uFEFF' + text;
+		return new RawText(text.getBytes(job.charset));
+	}
+
+	static RawText load(Repository repository, String path, ObjectId id) throws IOException {
+		try(RevWalk walk = new RevWalk(repository)) {
+			final TreeWalk treeWalk = TreeWalk.forPath(repository, path, walk.parseCommit(id).getTree());
+			if(treeWalk == null || (treeWalk.getRawMode(0) & FileMode.TYPE_MASK) != FileMode.TYPE_FILE) return null;
+
+			final byte[] bytes = repository.open(treeWalk.getObjectId(0), Constants.OBJ_BLOB).getCachedBytes(KVimGitDiffView.TEXT_LIMIT);
+			return RawText.isBinary(bytes, bytes.length, true) ? null : new RawText(bytes);
+		} catch(LargeObjectException e) {
+			return null;
+		}
+	}
+}
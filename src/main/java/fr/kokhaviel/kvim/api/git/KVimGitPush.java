@@ -1,5 +1,6 @@
 package fr.kokhaviel.kvim.api.git;
 
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 import fr.kokhaviel.kvim.gui.KVimMain;
 import org.eclipse.jgit.api.errors.GitAPIException;
@@ -24,14 +25,17 @@ public class KVimGitPush {
 
 		}
 
-		try {
-			tab.getGitRepository().push().call();
-		} catch(TransportException e) {
+		final KVimTasks.Task<?> push = KVimTasks.git(tab.getGitRepository(), "Git Push", task -> tab.getGitRepository().push().call());
+		push.onError(e -> {
+			if(!(e instanceof TransportException)) {
+				push.showError(e);
+				return;
+			}
 
 			JOptionPane.showMessageDialog(KVimMain.kVimMain,
 					"Authentication is required. This application doesn't provide authenticator. " +
 							"You will need to push by the command line", "Auth Required",
 					JOptionPane.ERROR_MESSAGE);
-		}
+		}).start();
 	}
 }
@@ -1,12 +1,12 @@
 package fr.kokhaviel.kvim.api.git;
 
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
-import org.eclipse.jgit.api.errors.GitAPIException;
 
 public class KVimGitRemoveCached {
 
-	public static void removeCached(KVimTab tab) throws GitAPIException {
-		tab.getGitRepository().rm().setCached(true).addFilepattern(
-				tab.getRootGitPath().toUri().relativize(tab.getFilePath().toUri()).getPath()).call();
+	public static void removeCached(KVimTab tab) {
+		final String pattern = tab.getRootGitPath().toUri().relativize(tab.getFilePath().toUri()).getPath();
+		KVimTasks.git(tab.getGitRepository(), "Git Remove Cached", task -> tab.getGitRepository().rm().setCached(true).addFilepattern(pattern).call()).start();
 	}
 }
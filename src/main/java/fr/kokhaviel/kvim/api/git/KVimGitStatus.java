@@ -1,20 +1,24 @@
 package fr.kokhaviel.kvim.api.git;
 
+import fr.kokhaviel.kvim.api.git.KVimGitStatusService.State;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 import fr.kokhaviel.kvim.gui.KVimMain;
-import org.eclipse.jgit.api.Status;
-import org.eclipse.jgit.api.errors.GitAPIException;
 
 import javax.swing.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.Set;
 
 public class KVimGitStatus {
 
-	public static void showStatus(KVimTab tab) throws GitAPIException {
+	public static void showStatus(KVimTab tab) {
 		if(!tab.hasAGitRepo()) return;
-		final Status status = tab.getGitRepository().status().call();
+		showStatus(KVimGitStatusService.get(tab.getRootGitPath()));
+	}
+
+	static void showStatus(KVimGitStatusService status) {
 
 		JFrame jFrame = new JFrame("Git Status");
 		jFrame.setLocationRelativeTo(KVimMain.kVimMain);
@@ -37,7 +41,7 @@ public class KVimGitStatus {
 		added.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				final Set<String> statusAdded = status.getAdded();
+				final Set<String> statusAdded = status.get(State.ADDED);
 				JFrame jFrame1 = getStatusJFrame(statusAdded, jFrame, "Added Files");
 
 				jFrame1.setVisible(true);
@@ -47,7 +51,7 @@ public class KVimGitStatus {
 		changed.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				final Set<String> statusChanged = status.getChanged();
+				final Set<String> statusChanged = status.get(State.CHANGED);
 				JFrame jFrame1 = getStatusJFrame(statusChanged, jFrame, "Changed Files");
 
 				jFrame1.setVisible(true);
@@ -57,7 +61,7 @@ public class KVimGitStatus {
 		conflicting.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				final Set<String> statusConflicting = status.getConflicting();
+				final Set<String> statusConflicting = status.get(State.CONFLICTING);
 				JFrame jFrame1 = getStatusJFrame(statusConflicting, jFrame, "Conflicting Files");
 
 				jFrame1.setVisible(true);
@@ -67,7 +71,7 @@ public class KVimGitStatus {
 		ignored.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				final Set<String> statusIgnored = status.getIgnoredNotInIndex();
+				final Set<String> statusIgnored = status.get(State.IGNORED);
 				JFrame jFrame1 = getStatusJFrame(statusIgnored, jFrame, "Ignored Files");
 
 				jFrame1.setVisible(true);
@@ -77,7 +81,7 @@ public class KVimGitStatus {
 		missing.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				final Set<String> statusMissing = status.getMissing();
+				final Set<String> statusMissing = status.get(State.MISSING);
 				JFrame jFrame1 = getStatusJFrame(statusMissing, jFrame, "Missing Files");
 
 				jFrame1.setVisible(true);
@@ -87,7 +91,7 @@ public class KVimGitStatus {
 		modified.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				final Set<String> statusModified = status.getModified();
+				final Set<String> statusModified = status.get(State.MODIFIED);
 				JFrame jFrame1 = getStatusJFrame(statusModified, jFrame, "Modified Files");
 
 				jFrame1.setVisible(true);
@@ -97,7 +101,7 @@ public class KVimGitStatus {
 		removed.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				final Set<String> statusRemoved = status.getRemoved();
+				final Set<String> statusRemoved = status.get(State.REMOVED);
 				JFrame jFrame1 = getStatusJFrame(statusRemoved, jFrame, "Removed Files");
 
 				jFrame1.setVisible(true);
@@ -117,14 +121,15 @@ public class KVimGitStatus {
 		untracked.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
-				final Set<String> statusUntracked = status.getUntracked();
+				final Set<String> statusUntracked = status.get(State.UNTRACKED);
 				JFrame jFrame1 = getStatusJFrame(statusUntracked, jFrame, "Untracked Files");
 
 				jFrame1.setVisible(true);
 			}
 		});
 
-		panel.add(new JLabel(status.isClean() ? "Repository is clean  " : "Repository have changes  "));
+		final JLabel clean = new JLabel(getCleanText(status));
+		panel.add(clean);
 		panel.add(new JLabel("   "));
 		panel.add(added);
 		panel.add(changed);
@@ -138,11 +143,25 @@ public class KVimGitStatus {
 
 		jFrame.getContentPane().add(panel);
 
+		final KVimGitStatusService.Listener listener = (service, paths) -> clean.setText(getCleanText(service));
+		status.addListener(listener);
+		jFrame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent windowEvent) {
+				status.removeListener(listener);
+			}
+		});
+
 		jFrame.pack();
 		jFrame.setResizable(false);
 		jFrame.setVisible(true);
 	}
 
+	static String getCleanText(KVimGitStatusService status) {
+		if(!status.isLoaded()) return "Loading status ...  ";
+		return status.isClean() ? "Repository is clean  " : "Repository have changes  ";
+	}
+
 	public static JFrame getStatusJFrame(Set<String> files, JFrame relativeTo, String title) {
 		JFrame jFrame1 = new JFrame(title);
 
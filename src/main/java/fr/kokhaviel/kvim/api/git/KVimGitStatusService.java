@@ -0,0 +1,253 @@
+package fr.kokhaviel.kvim.api.git;
+
+import fr.kokhaviel.kvim.api.KVimProjectResolver;
+import fr.kokhaviel.kvim.api.KVimTasks;
+import fr.kokhaviel.kvim.api.actions.KVimFileEvent;
+import fr.kokhaviel.kvim.api.actions.KVimWatchService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class KVimGitStatusService {
+
+	public enum State {
+		ADDED,
+		CHANGED,
+		REMOVED,
+		MISSING,
+		MODIFIED,
+		UNTRACKED,
+		CONFLICTING,
+		IGNORED
+	}
+
+	public interface Listener {
+
+		void statusChanged(KVimGitStatusService service, Set<String> paths);
+	}
+
+	static final Color CONFLICTING_COLOR = new Color(200, 40, 40);
+	static final Color ADDED_COLOR = new Color(40, 140, 40);
+	static final Color MODIFIED_COLOR = new Color(40, 90, 200);
+	static final Color REMOVED_COLOR = new Color(140, 90, 90);
+	static final Color IGNORED_COLOR = Color.GRAY;
+
+	static final Map<Path, KVimGitStatusService> SERVICES = new HashMap<>();
+
+	final Path root;
+	final Map<State, Set<String>> states = new EnumMap<>(State.class);
+	final List<Listener> listeners = new ArrayList<>();
+	final Set<String> pending = new HashSet<>();
+	final List<KVimWatchService.Subscription> subscriptions = new ArrayList<>();
+	Git git;
+	boolean pendingFull;
+	boolean running;
+	boolean loaded;
+
+	KVimGitStatusService(Path root) {
+		this.root = root;
+		for(State state : State.values()) states.put(state, new HashSet<>());
+	}
+
+	public static KVimGitStatusService get(Path root) {
+		return SERVICES.computeIfAbsent(root.toAbsolutePath().normalize(), KVimGitStatusService::new);
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+		if(git == null) start();
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+		if(listeners.isEmpty()) SwingUtilities.invokeLater(() -> {
+			if(listeners.isEmpty()) stop();
+		});
+	}
+
+	void start() {
+		try {
+			git = KVimProjectResolver.openGit(root);
+		} catch(IOException e) {
+			return;
+		}
+
+		final Path gitDir = git.getRepository().getDirectory().toPath();
+		subscriptions.add(KVimWatchService.subscribe(root, true, this::workTreeChanged));
+		subscriptions.add(KVimWatchService.subscribe(gitDir, false, events -> refresh(null)));
+		if(Files.isDirectory(gitDir.resolve("logs"))) subscriptions.add(KVimWatchService.subscribe(gitDir.resolve("logs"), false, events -> refresh(null)));
+		refresh(null);
+	}
+
+	void stop() {
+		subscriptions.forEach(KVimWatchService.Subscription::cancel);
+		subscriptions.clear();
+		KVimProjectResolver.release(git);
+		git = null;
+		loaded = false;
+		pending.clear();
+		pendingFull = false;
+		states.values().forEach(Set::clear);
+	}
+
+	void workTreeChanged(List<KVimFileEvent> events) {
+		final Set<String> paths = new HashSet<>();
+		for(KVimFileEvent event : events) {
+			final Path path = event.getPath();
+			if(event.getKind() == KVimFileEvent.Kind.OVERFLOW || path.equals(root)) {
+				refresh(null);
+				return;
+			}
+			if(path.getFileName().toString().equals(Constants.DOT_GIT_IGNORE)) {
+				refresh(null);
+				return;
+			}
+			if(path.startsWith(root.resolve(Constants.DOT_GIT))) continue;
+
+			final String relative = relativize(path);
+			if(!isIgnored(relative)) paths.add(relative);
+		}
+		if(!paths.isEmpty()) refresh(paths);
+	}
+
+	public void refresh(Set<String> paths) {
+		if(git == null) return;
+		if(paths == null) pendingFull = true;
+		else pending.addAll(paths);
+		if(!running) run();
+	}
+
+	void run() {
+		final Set<String> paths = pendingFull ? null : new HashSet<>(pending);
+		pending.clear();
+		pendingFull = false;
+		running = true;
+
+		final Git repository = git;
+		KVimTasks.<Map<State, Set<String>>>git(repository, "Git Status", task -> compute(repository.getRepository(), paths))
+				.background()
+				.onDone(result -> {
+					running = false;
+					if(git != repository) return;
+					apply(paths, result);
+					if(pendingFull || !pending.isEmpty()) run();
+				}).onError(e -> {
+					running = false;
+					if(git == repository && (pendingFull || !pending.isEmpty())) run();
+				}).onCancel(() -> {
+					running = false;
+					if(paths == null) pendingFull = true;
+					else pending.addAll(paths);
+				}).start();
+	}
+
+	static Map<State, Set<String>> compute(Repository repository, Set<String> paths) throws IOException {
+		final IndexDiff diff = new IndexDiff(repository, Constants.HEAD, new FileTreeIterator(repository));
+		if(paths != null) diff.setFilter(PathFilterGroup.createFromStrings(paths));
+		diff.diff();
+
+		final Map<State, Set<String>> result = new EnumMap<>(State.class);
+		result.put(State.ADDED, diff.getAdded());
+		result.put(State.CHANGED, diff.getChanged());
+		result.put(State.REMOVED, diff.getRemoved());
+		result.put(State.MISSING, diff.getMissing());
+		result.put(State.MODIFIED, diff.getModified());
+		result.put(State.UNTRACKED, diff.getUntracked());
+		result.put(State.CONFLICTING, new HashSet<>(diff.getConflicting()));
+		result.put(State.IGNORED, diff.getIgnoredNotInIndex());
+		return result;
+	}
+
+	void apply(Set<String> paths, Map<State, Set<String>> result) {
+		final Set<String> changed = new HashSet<>();
+		for(State state : State.values()) {
+			final Set<String> current = states.get(state);
+			final Set<String> fresh = result.get(state);
+			for(Iterator<String> iterator = current.iterator(); iterator.hasNext(); ) {
+				final String path = iterator.next();
+				if(fresh.contains(path) || !covers(paths, path)) continue;
+				iterator.remove();
+				changed.add(path);
+			}
+			for(String path : fresh) {
+				if(current.add(path)) changed.add(path);
+			}
+		}
+
+		final boolean first = !loaded;
+		loaded = true;
+		if(!first && changed.isEmpty()) return;
+		for(Listener listener : new ArrayList<>(listeners)) listener.statusChanged(this, first ? null : changed);
+	}
+
+	static boolean covers(Set<String> paths, String path) {
+		if(paths == null) return true;
+		for(String filter : paths) {
+			if(path.equals(filter) || path.startsWith(filter + "/")) return true;
+		}
+		return false;
+	}
+
+	boolean isIgnored(String path) {
+		final Set<String> ignored = states.get(State.IGNORED);
+		for(String parent = path; !parent.isEmpty(); parent = parent.substring(0, Math.max(0, parent.lastIndexOf('/')))) {
+			if(ignored.contains(parent)) return true;
+		}
+		return false;
+	}
+
+	public String relativize(Path file) {
+		final String path = root.toUri().relativize(file.toAbsolutePath().normalize().toUri()).getPath();
+		return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+	}
+
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	public boolean isClean() {
+		for(State state : State.values()) {
+			if(state != State.IGNORED && !states.get(state).isEmpty()) return false;
+		}
+		return true;
+	}
+
+	public Set<String> get(State state) {
+		return Collections.unmodifiableSet(states.get(state));
+	}
+
+	public Set<String> getUncommittedChanges() {
+		final Set<String> uncommitted = new HashSet<>();
+		for(State state : new State[] {State.ADDED, State.CHANGED, State.REMOVED, State.MISSING, State.MODIFIED, State.CONFLICTING}) {
+			uncommitted.addAll(states.get(state));
+		}
+		return uncommitted;
+	}
+
+	public Color getColor(String path) {
+		if(states.get(State.CONFLICTING).contains(path)) return CONFLICTING_COLOR;
+		if(states.get(State.MODIFIED).contains(path) || states.get(State.CHANGED).contains(path)) return MODIFIED_COLOR;
+		if(states.get(State.ADDED).contains(path) || states.get(State.UNTRACKED).contains(path)) return ADDED_COLOR;
+		if(states.get(State.REMOVED).contains(path) || states.get(State.MISSING).contains(path)) return REMOVED_COLOR;
+		if(states.get(State.IGNORED).contains(path)) return IGNORED_COLOR;
+		return null;
+	}
+}
@@ -1,16 +1,16 @@
 package fr.kokhaviel.kvim.api.git;
 
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 import fr.kokhaviel.kvim.gui.KVimMain;
 import org.eclipse.jgit.api.TagCommand;
-import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.PersonIdent;
 
 import javax.swing.*;
 
 public class KVimGitTag {
 
-	public static void tagCommit(KVimTab tab) throws GitAPIException {
+	public static void tagCommit(KVimTab tab) {
 		final String author = JOptionPane.showInputDialog(KVimMain.kVimMain,
 				"Who is the author ?", "Commit Author", JOptionPane.QUESTION_MESSAGE);
 		final String email = JOptionPane.showInputDialog(KVimMain.kVimMain,
@@ -24,6 +24,6 @@ public class KVimGitTag {
 		tag.setTagger(new PersonIdent(author, email));
 		tag.setName(name);
 		tag.setMessage(message);
-		tag.call();
+		KVimTasks.git(tab.getGitRepository(), "Git Tag", task -> tag.call()).start();
 	}
 }
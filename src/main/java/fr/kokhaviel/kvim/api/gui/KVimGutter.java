@@ -0,0 +1,207 @@
+package fr.kokhaviel.kvim.api.gui;
+
+import fr.kokhaviel.kvim.api.git.KVimGitBlame;
+import fr.kokhaviel.kvim.api.git.KVimGitMarkers;
+import fr.kokhaviel.kvim.api.text.KVimDocument;
+import org.eclipse.jgit.diff.Edit;
+
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+public class KVimGutter extends JComponent implements DocumentListener, PropertyChangeListener {
+
+	static final int MARGIN = 6;
+	static final int MARKER = 4;
+	static final Color ADDED = new Color(90, 170, 90);
+	static final Color MODIFIED = new Color(100, 140, 220);
+	static final Color DELETED = new Color(220, 90, 90);
+	static final int BLAME_COLUMNS = 28;
+	static final String UNCOMMITTED = "Not Committed Yet";
+
+	final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+	final ChangeListener markersListener = changeEvent -> {
+		updateSize();
+		repaint();
+	};
+	KVimTab tab;
+	KVimGitMarkers markers;
+	int digits;
+	int lineCount;
+	boolean blaming;
+
+	public KVimGutter(KVimTab tab) {
+		setForeground(Color.GRAY);
+		ToolTipManager.sharedInstance().registerComponent(this);
+		setTab(tab);
+	}
+
+	public void setTab(KVimTab tab) {
+		if(this.tab == tab) return;
+		if(isDisplayable()) detach();
+		this.tab = tab;
+		if(isDisplayable()) attach();
+		updateSize();
+		repaint();
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		attach();
+		updateSize();
+	}
+
+	@Override
+	public void removeNotify() {
+		detach();
+		super.removeNotify();
+	}
+
+	private void attach() {
+		if(tab == null) return;
+		tab.addPropertyChangeListener("document", this);
+		tab.getDocument().addDocumentListener(this);
+		markers = KVimGitMarkers.get(tab);
+		if(markers != null) markers.addChangeListener(markersListener);
+	}
+
+	private void detach() {
+		if(tab == null) return;
+		tab.removePropertyChangeListener("document", this);
+		tab.getDocument().removeDocumentListener(this);
+		if(markers != null) markers.removeChangeListener(markersListener);
+		markers = null;
+	}
+
+	private void updateSize() {
+		if(tab == null) return;
+		final int count = tab.getKVimDocument().getLineCount();
+		final boolean blamed = markers != null && markers.isBlaming();
+		if(count == lineCount && blamed == blaming) return;
+
+		lineCount = count;
+		blaming = blamed;
+		digits = Math.max(String.valueOf(count).length(), 2);
+		revalidate();
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		final FontMetrics metrics = getFontMetrics(tab == null ? getFont() : tab.getFont());
+		return new Dimension(metrics.charWidth('0') * (digits + (blaming ? BLAME_COLUMNS : 0)) + 2 * MARGIN + MARKER, tab == null ? 0 : Math.max(tab.getHeight(), tab.getPreferredSize().height));
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		if(tab == null) return;
+
+		final Rectangle clip = g.getClipBounds();
+		g.setColor(getBackground());
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+		g.setColor(getForeground());
+		g.setFont(tab.getFont());
+
+		final KVimDocument document = tab.getKVimDocument();
+		final FontMetrics metrics = g.getFontMetrics();
+		final int start = tab.viewToModel(new Point(0, clip.y));
+		if(start < 0) return;
+
+		try {
+			if(markers != null) paintMarkers(g, document, document.getLineOfOffset(start), clip);
+			for(int line = document.getLineOfOffset(start); line < document.getLineCount(); line++) {
+				final Rectangle bounds = tab.modelToView(document.getLineStartOffset(line));
+				if(bounds == null || bounds.y > clip.y + clip.height) break;
+
+				if(blaming) g.drawString(blame(line), MARKER + MARGIN, bounds.y + metrics.getAscent());
+				final String number = String.valueOf(line + 1);
+				g.drawString(number, getWidth() - MARGIN - metrics.stringWidth(number), bounds.y + metrics.getAscent());
+			}
+		} catch(BadLocationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void paintMarkers(Graphics g, KVimDocument document, int first, Rectangle clip) throws BadLocationException {
+		final int lastLine = document.getLineCount() - 1;
+		final int height = g.getFontMetrics().getHeight();
+		for(Edit edit : markers.getEdits()) {
+			if(edit.getEndB() < first) continue;
+
+			final Rectangle top = tab.modelToView(document.getLineStartOffset(Math.min(edit.getBeginB(), lastLine)));
+			if(top == null || top.y > clip.y + clip.height) break;
+
+			if(edit.getType() == Edit.Type.DELETE) {
+				g.setColor(DELETED);
+				g.fillPolygon(new int[] {0, MARKER + 2, 0}, new int[] {top.y - MARKER, top.y, top.y + MARKER}, 3);
+				continue;
+			}
+
+			final Rectangle bottom = tab.modelToView(document.getLineStartOffset(Math.min(edit.getEndB() - 1, lastLine)));
+			g.setColor(edit.getType() == Edit.Type.INSERT ? ADDED : MODIFIED);
+			g.fillRect(0, top.y, MARKER, (bottom == null ? top.y : bottom.y) + height - top.y);
+		}
+		g.setColor(getForeground());
+	}
+
+	private String blame(int line) {
+		final KVimGitBlame blame = markers.getBlame();
+		final int headLine = markers.toHead(line);
+		if(headLine < 0) return UNCOMMITTED;
+		final KVimGitBlame.Commit commit = blame == null ? null : blame.getCommit(headLine);
+		if(commit == null) return "";
+
+		final String text = dateFormat.format(new Date(commit.getTime())) + " " + commit.getAuthor();
+		return text.length() > BLAME_COLUMNS ? text.substring(0, BLAME_COLUMNS) : text;
+	}
+
+	@Override
+	public String getToolTipText(MouseEvent mouseEvent) {
+		if(!blaming || markers == null || markers.getBlame() == null) return null;
+
+		final int offset = tab.viewToModel(new Point(0, mouseEvent.getY()));
+		if(offset < 0) return null;
+		final int headLine = markers.toHead(tab.getKVimDocument().getLineOfOffset(offset));
+		if(headLine < 0) return UNCOMMITTED;
+		final KVimGitBlame.Commit commit = markers.getBlame().getCommit(headLine);
+		if(commit == null) return null;
+
+		return commit.getId().abbreviate(7).name() + " " + commit.getAuthor() + " <" + commit.getEmail() + "> "
+				+ dateFormat.format(new Date(commit.getTime())) + " : " + commit.getSummary();
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent documentEvent) {
+		updateSize();
+		repaint();
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent documentEvent) {
+		updateSize();
+		repaint();
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent documentEvent) {
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent propertyChangeEvent) {
+		if(propertyChangeEvent.getOldValue() instanceof Document) {
+			((Document) propertyChangeEvent.getOldValue()).removeDocumentListener(this);
+		}
+		tab.getDocument().addDocumentListener(this);
+		updateSize();
+		repaint();
+	}
+}
@@ -1,50 +1,93 @@
 package fr.kokhaviel.kvim.api.gui;
 
+import fr.kokhaviel.kvim.api.KVimProjectResolver;
+import fr.kokhaviel.kvim.api.actions.KVimWatchService;
 import fr.kokhaviel.kvim.api.actions.file.KVimNewFile;
-import fr.kokhaviel.kvim.api.actions.file.KVimOpen;
+import fr.kokhaviel.kvim.api.git.KVimGitStatusService;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.event.TreeWillExpandListener;
+import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Paths;
-import java.util.Vector;
-
-import static fr.kokhaviel.kvim.gui.KVimMain.tabs;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 
 public class KVimProjectExplorer extends JPanel {
 
+	final File dir;
+	final KVimProjectTreeModel model;
+	final JTree tree;
+	final KVimGitStatusService status;
+	final KVimGitStatusService.Listener statusListener = (service, paths) -> repaint();
+	final Map<Path, KVimWatchService.Subscription> subscriptions = new HashMap<>();
+
 	public KVimProjectExplorer(File dir) {
+		this.dir = dir;
 		setLayout(new BorderLayout());
 
-		JTree tree = new JTree(addNodes(null, dir));
+		try {
+			model = new KVimProjectTreeModel(dir.toPath());
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		tree = new JTree(model);
+
+		final Path gitRoot = KVimProjectResolver.getGitRoot(dir.toPath());
+		status = gitRoot == null ? null : KVimGitStatusService.get(gitRoot);
+		tree.setCellRenderer(new DefaultTreeCellRenderer() {
+			@Override
+			public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded, boolean leaf, int row, boolean hasFocus) {
+				super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
+				if(status != null && !sel && value instanceof KVimProjectTreeModel.Node) {
+					final Color color = status.getColor(status.relativize(((KVimProjectTreeModel.Node) value).getFile()));
+					if(color != null) setForeground(color);
+				}
+				return this;
+			}
+		});
+
+		tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+			@Override
+			public void treeWillExpand(TreeExpansionEvent treeExpansionEvent) {
+				final KVimProjectTreeModel.Node node = (KVimProjectTreeModel.Node) treeExpansionEvent.getPath().getLastPathComponent();
+				if(!node.loaded || !subscriptions.containsKey(node.getFile())) model.load(node);
+			}
+
+			@Override
+			public void treeWillCollapse(TreeExpansionEvent treeExpansionEvent) {
+			}
+		});
+
+		tree.addTreeExpansionListener(new TreeExpansionListener() {
+			@Override
+			public void treeExpanded(TreeExpansionEvent treeExpansionEvent) {
+				if(isDisplayable()) watch(treeExpansionEvent.getPath());
+			}
+
+			@Override
+			public void treeCollapsed(TreeExpansionEvent treeExpansionEvent) {
+				unwatch(((KVimProjectTreeModel.Node) treeExpansionEvent.getPath().getLastPathComponent()).getFile());
+			}
+		});
 
 		tree.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent mouseEvent) {
 				if(mouseEvent.getClickCount() == 2) {
 					TreePath tp = tree.getPathForLocation(mouseEvent.getX(), mouseEvent.getY());
+					if(tp == null) return;
 
-					StringBuilder builder = new StringBuilder(dir.toPath().getParent().toString() + "/");
-					int i = 0;
-					for(int var3 = tp.getPathCount(); i < var3; ++i) {
-						if (i > 0) {
-							builder.append("/");
-						}
-
-						builder.append(tp.getPathComponent(i));
-					}
-
-					KVimNewFile.createNewTab(builder.toString());
-					try {
-						tabs.get(tabs.size() - 1).setText(KVimOpen.getFileContent(Paths.get(builder.toString())));
-					} catch(IOException e) {
-						throw new RuntimeException(e);
-					}
+					final KVimProjectTreeModel.Node node = (KVimProjectTreeModel.Node) tp.getLastPathComponent();
+					if(!node.isDirectory()) KVimNewFile.createNewTab(node.getFile().toString());
 				}
 			}
 		});
@@ -54,40 +97,42 @@ public class KVimProjectExplorer extends JPanel {
 		add(BorderLayout.CENTER, scrollpane);
 	}
 
-	DefaultMutableTreeNode addNodes(DefaultMutableTreeNode curTop, File dir) {
-		String curPath = dir.getName();
-		DefaultMutableTreeNode curDir = new DefaultMutableTreeNode(curPath);
-		if(curTop != null) {
-			curTop.add(curDir);
-		}
-		Vector<String> ol = new Vector<>();
-		String[] tmp = dir.list();
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		watch(new TreePath(model.getRoot()));
+		if(status != null) status.addListener(statusListener);
+	}
 
-		if(tmp == null) return curDir;
+	@Override
+	public void removeNotify() {
+		subscriptions.values().forEach(KVimWatchService.Subscription::cancel);
+		subscriptions.clear();
+		if(status != null) status.removeListener(statusListener);
+		super.removeNotify();
+	}
 
-		for(String s : tmp) {
-			ol.addElement(s);
+	void watch(TreePath path) {
+		subscribe((KVimProjectTreeModel.Node) path.getLastPathComponent());
+		final Enumeration<TreePath> expanded = tree.getExpandedDescendants(path);
+		while(expanded != null && expanded.hasMoreElements()) {
+			final KVimProjectTreeModel.Node node = (KVimProjectTreeModel.Node) expanded.nextElement().getLastPathComponent();
+			if(subscribe(node) && node.loaded) model.load(node);
 		}
-		ol.sort(String.CASE_INSENSITIVE_ORDER);
-		File f;
-		Vector<String> files = new Vector<>();
-		for(int i = 0; i < ol.size(); i++) {
-			String thisObject = ol.elementAt(i);
-			String newPath;
-			if(dir.getPath().equals("."))
-				newPath = thisObject;
-			else
-				newPath = dir.getPath() + File.separator + thisObject;
-
-			if((f = new File(newPath)).isDirectory())
-				addNodes(curDir, f);
-			else
-				files.addElement(thisObject);
-		}
-		for(int fnum = 0; fnum < files.size(); fnum++)
-			curDir.add(new DefaultMutableTreeNode(files.elementAt(fnum)));
+	}
 
-		return curDir;
+	boolean subscribe(KVimProjectTreeModel.Node node) {
+		if(subscriptions.containsKey(node.getFile())) return false;
+		subscriptions.put(node.getFile(), KVimWatchService.subscribe(node.getFile(), false, model::filesChanged));
+		return true;
+	}
+
+	void unwatch(Path dir) {
+		subscriptions.entrySet().removeIf(entry -> {
+			if(!entry.getKey().startsWith(dir)) return false;
+			entry.getValue().cancel();
+			return true;
+		});
 	}
 
 	public Dimension getMinimumSize() {
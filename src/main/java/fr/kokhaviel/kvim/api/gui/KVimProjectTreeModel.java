@@ -0,0 +1,188 @@
+package fr.kokhaviel.kvim.api.gui;
+
+import fr.kokhaviel.kvim.api.KVimIgnore;
+import fr.kokhaviel.kvim.api.actions.KVimFileEvent;
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.lib.Constants;
+
+import javax.swing.*;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class KVimProjectTreeModel extends DefaultTreeModel {
+
+	static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "KVim-Explorer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	static final Comparator<Entry> ORDER = Comparator.<Entry, Boolean>comparing(entry -> !entry.attributes.isDirectory())
+			.thenComparing(entry -> entry.name, String.CASE_INSENSITIVE_ORDER)
+			.thenComparing(entry -> entry.name);
+
+	public static class Node extends DefaultMutableTreeNode {
+
+		final Path path;
+		BasicFileAttributes attributes;
+		IgnoreNode ignore;
+		boolean loaded;
+
+		Node(Path path, BasicFileAttributes attributes) {
+			super(path.getFileName() == null ? path.toString() : path.getFileName().toString(), attributes.isDirectory());
+			this.path = path;
+			this.attributes = attributes;
+		}
+
+		public Path getFile() {
+			return path;
+		}
+
+		public BasicFileAttributes getAttributes() {
+			return attributes;
+		}
+
+		public boolean isDirectory() {
+			return attributes.isDirectory();
+		}
+
+		@Override
+		public boolean isLeaf() {
+			return !isDirectory();
+		}
+	}
+
+	static class Entry {
+
+		final String name;
+		final BasicFileAttributes attributes;
+
+		Entry(String name, BasicFileAttributes attributes) {
+			this.name = name;
+			this.attributes = attributes;
+		}
+	}
+
+	private final Map<Path, Node> directories = new HashMap<>();
+
+	public KVimProjectTreeModel(Path dir) throws IOException {
+		super(null, true);
+		final Node root = new Node(dir, Files.readAttributes(dir, BasicFileAttributes.class));
+		setRoot(root);
+		directories.put(dir, root);
+		load(root);
+	}
+
+	public void load(Node node) {
+		if(!node.isDirectory()) return;
+		node.loaded = true;
+
+		final List<IgnoreNode> ignores = new ArrayList<>();
+		final List<Path> bases = new ArrayList<>();
+		for(Node parent = (Node) node.getParent(); parent != null; parent = (Node) parent.getParent()) {
+			if(parent.ignore == null) continue;
+			ignores.add(parent.ignore);
+			bases.add(parent.path);
+		}
+		final boolean root = node.getParent() == null;
+
+		LOADER.execute(() -> {
+			final IgnoreNode ignore = KVimIgnore.read(node.path, root);
+			ignores.add(0, ignore);
+			bases.add(0, node.path);
+			final List<Entry> entries = new ArrayList<>();
+
+			try(DirectoryStream<Path> stream = Files.newDirectoryStream(node.path)) {
+				for(Path child : stream) {
+					final String name = child.getFileName().toString();
+					if(name.equals(Constants.DOT_GIT)) continue;
+
+					final BasicFileAttributes attributes;
+					try {
+						attributes = Files.readAttributes(child, BasicFileAttributes.class);
+					} catch(IOException e) {
+						continue;
+					}
+					if(!KVimIgnore.isIgnored(child, attributes.isDirectory(), ignores, bases)) entries.add(new Entry(name, attributes));
+				}
+			} catch(IOException ignored) {
+			}
+
+			entries.sort(ORDER);
+			SwingUtilities.invokeLater(() -> apply(node, ignore, entries));
+		});
+	}
+
+	public void filesChanged(List<KVimFileEvent> events) {
+		final Set<Node> stale = new HashSet<>();
+
+		for(KVimFileEvent event : events) {
+			if(event.getKind() == KVimFileEvent.Kind.OVERFLOW) {
+				stale.addAll(directories.values());
+				break;
+			}
+
+			final Path path = event.getPath();
+			if(event.getKind() == KVimFileEvent.Kind.MODIFIED) {
+				if(path.getFileName() != null && path.getFileName().toString().equals(Constants.DOT_GIT_IGNORE)) {
+					final Node node = directories.get(path.getParent());
+					if(node != null) stale.add(node);
+				}
+				continue;
+			}
+
+			final Node node = directories.get(path.getParent());
+			if(node != null) stale.add(node);
+		}
+
+		stale.stream().filter(node -> node.loaded).forEach(this::load);
+	}
+
+	private void apply(Node node, IgnoreNode ignore, List<Entry> entries) {
+		if(directories.get(node.path) != node) return;
+		node.ignore = ignore;
+
+		final Map<String, Entry> names = new HashMap<>();
+		for(Entry entry : entries) names.put(entry.name, entry);
+
+		for(int i = node.getChildCount() - 1; i >= 0; i--) {
+			final Node child = (Node) node.getChildAt(i);
+			final Entry entry = names.get(child.toString());
+			if(entry == null || entry.attributes.isDirectory() != child.isDirectory()) {
+				forget(child);
+				removeNodeFromParent(child);
+			}
+		}
+
+		for(int i = 0; i < entries.size(); i++) {
+			final Entry entry = entries.get(i);
+			if(i < node.getChildCount() && node.getChildAt(i).toString().equals(entry.name)) {
+				((Node) node.getChildAt(i)).attributes = entry.attributes;
+				continue;
+			}
+
+			final Node child = new Node(node.path.resolve(entry.name), entry.attributes);
+			if(child.isDirectory()) directories.put(child.path, child);
+			insertNodeInto(child, node, i);
+		}
+	}
+
+	private void forget(Node node) {
+		if(!node.isDirectory()) return;
+		directories.remove(node.path);
+		for(int i = 0; i < node.getChildCount(); i++) forget((Node) node.getChildAt(i));
+	}
+}
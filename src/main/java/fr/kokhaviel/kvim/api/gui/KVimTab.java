@@ -1,23 +1,27 @@
 package fr.kokhaviel.kvim.api.gui;
 
 import fr.kokhaviel.kvim.api.FileType;
+import fr.kokhaviel.kvim.api.KVimMetrics;
+import fr.kokhaviel.kvim.api.KVimProjectResolver;
+import fr.kokhaviel.kvim.api.KVimSymbolIndex;
 import fr.kokhaviel.kvim.api.UndoTool;
-import fr.kokhaviel.kvim.api.actions.file.KVimOpen;
+import fr.kokhaviel.kvim.api.actions.file.KVimJournal;
+import fr.kokhaviel.kvim.api.syntax.KVimHighlighter;
+import fr.kokhaviel.kvim.api.text.KVimDocument;
+import fr.kokhaviel.kvim.api.text.KVimLoader;
 import org.eclipse.jgit.api.Git;
 
 import javax.swing.*;
-import java.io.File;
+import javax.swing.event.ChangeListener;
+import java.awt.*;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 
 public class KVimTab extends JTextPane {
 
 	String filename;
-	List<File> parents = new ArrayList<>();
 	boolean untitled;
 	boolean isProject;
 	boolean hasAGitRepo;
@@ -25,12 +29,21 @@ public class KVimTab extends JTextPane {
 	Path rootGitPath;
 	Path filePath;
 	int index;
-	String baseText;
 	Git gitRepository;
 	FileType fileType;
+	KVimLoader loader;
+	KVimJournal journal;
+	boolean deferred;
+	ChangeListener modifiedListener = changeEvent -> firePropertyChange("modified", !isModified(), isModified());
 
 	public KVimTab(Path file, int index) {
+		this(file, index, false);
+	}
+
+	public KVimTab(Path file, int index, boolean deferred) {
+		super(new KVimDocument());
 		this.index = index;
+		getKVimDocument().addModifiedListener(modifiedListener);
 		if(file == null) {
 			untitled = true;
 			isProject = false;
@@ -42,21 +55,16 @@ public class KVimTab extends JTextPane {
 			this.filename = file.toFile().getName();
 			UndoTool.addUndoFunctionality(this);
 
-			if(Files.exists(file)) {
+			if(deferred) {
+				this.deferred = true;
+			} else if(Files.exists(file)) {
 				try {
-					baseText = KVimOpen.getFileContent(file);
+					load(getKVimDocument());
 				} catch(IOException e) {
 					throw new RuntimeException(e);
 				}
 			}
 
-			File parent = file.toFile();
-
-			while(parent != null) {
-				parents.add(parent.getParentFile());
-				parent = parent.getParentFile();
-			}
-
 			String[] ss = file.toFile().getName().split("\\.");
 			String ext = ss[ss.length - 1];
 
@@ -65,42 +73,22 @@ public class KVimTab extends JTextPane {
 			}
 			if(fileType == null) this.fileType = FileType.OTHER;
 
-			parents.forEach(file1 -> {
-				if(file1 == null) return;
-				if(!isProject) {
-					if(file1.listFiles() != null) {
-						List<File> contents = Arrays.asList(file1.listFiles());
-
-						contents.forEach(file2 -> {
-							if(file2.getName().equals(".kvim")) {
-								isProject = true;
-								rootProjPath = file1.toPath();
-							}
-						});
-					}
-				}
+			final Path dir = file.toAbsolutePath().getParent();
+			rootProjPath = KVimProjectResolver.getProjectRoot(dir);
+			isProject = rootProjPath != null;
+			if(isProject) KVimSymbolIndex.get(rootProjPath);
+			rootGitPath = KVimProjectResolver.getGitRoot(dir);
+			hasAGitRepo = rootGitPath != null;
 
-				if(!hasAGitRepo) {
-					if(file1.listFiles() != null) {
-						List<File> contents = Arrays.asList(file1.listFiles());
-
-						contents.forEach(file2 -> {
-							if(file2.getName().equals(".git")) {
-								hasAGitRepo = true;
-								rootGitPath = file1.toPath();
-
-								try {
-									gitRepository = Git.open(rootGitPath.toFile());
-								} catch(IOException e) {
-									throw new RuntimeException(e);
-								}
-							}
-						});
-					}
+			if(hasAGitRepo) {
+				try {
+					gitRepository = KVimProjectResolver.openGit(rootGitPath);
+				} catch(IOException e) {
+					throw new RuntimeException(e);
 				}
-			});
+			}
 
-			this.addKeyListener(new KVimColorize());
+			KVimHighlighter.install(this);
 		}
 	}
 
@@ -133,12 +121,84 @@ public class KVimTab extends JTextPane {
 		return index;
 	}
 
-	public String getBaseText() {
-		return baseText;
+	public KVimDocument getKVimDocument() {
+		return (KVimDocument) getDocument();
+	}
+
+	public boolean isModified() {
+		return getKVimDocument().isModified();
+	}
+
+	public boolean isChangedOnDisk() {
+		if(isUntitled() || !Files.exists(filePath)) return false;
+		try {
+			return !Files.getLastModifiedTime(filePath).equals(getKVimDocument().getDiskTime());
+		} catch(IOException e) {
+			return false;
+		}
+	}
+
+	public void reload() throws IOException {
+		if(!Files.exists(filePath)) throw new NoSuchFileException(filePath.toString());
+
+		final boolean wasModified = isModified();
+		closeJournal();
+		final KVimDocument document = new KVimDocument();
+		getKVimDocument().removeModifiedListener(modifiedListener);
+		setDocument(document);
+		document.addModifiedListener(modifiedListener);
+		UndoTool.addUndoFunctionality(this);
+		firePropertyChange("modified", wasModified, false);
+		load(document);
+	}
+
+	public boolean isLoading() {
+		return getKVimDocument().isLoading();
+	}
+
+	public KVimJournal getJournal() {
+		return journal;
+	}
+
+	public boolean isDeferred() {
+		return deferred;
 	}
 
-	public void setBaseText(String baseText) {
-		this.baseText = baseText;
+	public void activate() {
+		if(!deferred) return;
+		deferred = false;
+
+		if(Files.exists(filePath)) {
+			try {
+				load(getKVimDocument());
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		firePropertyChange("deferred", true, false);
+	}
+
+	private void load(KVimDocument document) throws IOException {
+		if(loader != null) loader.cancel();
+		setEditable(false);
+		firePropertyChange("loadProgress", -1, 0);
+
+		loader = document.loadAsync(filePath)
+				.onProgress(progress -> firePropertyChange("loadProgress", -1, Math.min(progress, 99)))
+				.onDone(() -> {
+					if(getDocument() != document) return;
+					loader = null;
+					closeJournal();
+					journal = KVimJournal.open(this);
+					setEditable(true);
+					firePropertyChange("loadProgress", -1, 100);
+				})
+				.start();
+	}
+
+	private void closeJournal() {
+		if(journal != null) journal.close();
+		journal = null;
 	}
 
 	public void setIndex(int index) {
@@ -158,13 +218,33 @@ public class KVimTab extends JTextPane {
 	}
 
 	public void setGitRepository(Git gitRepository) {
+		KVimProjectResolver.release(this.gitRepository);
 		this.gitRepository = gitRepository;
 	}
 
+	public void dispose() {
+		if(loader != null) loader.cancel();
+		closeJournal();
+		KVimProjectResolver.release(gitRepository);
+		gitRepository = null;
+	}
+
 	public Path getRootGitPath() {
 		return rootGitPath;
 	}
 
+	public Path getWorkRoot() {
+		if(isProject) return rootProjPath;
+		if(hasAGitRepo) return rootGitPath;
+		return untitled ? null : filePath.toAbsolutePath().getParent();
+	}
+
+	@Override
+	protected void paintComponent(Graphics graphics) {
+		super.paintComponent(graphics);
+		KVimMetrics.painted(this);
+	}
+
 	public FileType getFileType() {
 		return fileType;
 	}
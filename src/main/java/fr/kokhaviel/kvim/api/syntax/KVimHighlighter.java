@@ -0,0 +1,214 @@
+package fr.kokhaviel.kvim.api.syntax;
+
+import fr.kokhaviel.kvim.api.gui.KVimTab;
+import fr.kokhaviel.kvim.api.text.KVimDocument;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+public class KVimHighlighter implements DocumentListener, ChangeListener, HierarchyListener, PropertyChangeListener {
+
+	static final int VISIBLE_MARGIN = 64;
+
+	private final KVimTab tab;
+	private final KVimLexer lexer;
+	private final Segment segment = new Segment();
+	private KVimDocument document;
+	private JViewport viewport;
+
+	private int[] states = new int[64];
+	private int valid;
+	private BitSet styled = new BitSet();
+	private boolean pending;
+
+	KVimHighlighter(KVimTab tab, KVimLexer lexer) {
+		this.tab = tab;
+		this.lexer = lexer;
+	}
+
+	public static void install(KVimTab tab) {
+		final KVimLexer lexer = KVimLexer.forFileType(tab.getFileType());
+		if(lexer == null) return;
+
+		final KVimHighlighter highlighter = new KVimHighlighter(tab, lexer);
+		highlighter.setDocument(tab.getKVimDocument());
+		tab.addPropertyChangeListener("document", highlighter);
+		tab.addHierarchyListener(highlighter);
+		highlighter.hierarchyChanged(null);
+	}
+
+	private void setDocument(KVimDocument document) {
+		if(this.document != null) this.document.removeDocumentListener(this);
+		this.document = document;
+		this.valid = 0;
+		this.styled = new BitSet();
+		document.addDocumentListener(this);
+		schedule();
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent evt) {
+		if(evt.getNewValue() instanceof KVimDocument) setDocument((KVimDocument) evt.getNewValue());
+	}
+
+	@Override
+	public void hierarchyChanged(HierarchyEvent e) {
+		final JViewport parent = tab.getParent() instanceof JViewport ? (JViewport) tab.getParent() : null;
+		if(parent == viewport) return;
+
+		if(viewport != null) viewport.removeChangeListener(this);
+		viewport = parent;
+		if(viewport != null) viewport.addChangeListener(this);
+		schedule();
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent e) {
+		schedule();
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		update(e);
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		update(e);
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+	}
+
+	private void update(DocumentEvent e) {
+		final Element root = document.getDefaultRootElement();
+		final DocumentEvent.ElementChange change = e.getChange(root);
+		int first = root.getElementIndex(e.getOffset());
+		int last = e.getType() == DocumentEvent.EventType.INSERT ? root.getElementIndex(e.getOffset() + e.getLength()) : first;
+
+		if(change != null) {
+			final int added = change.getChildrenAdded().length;
+			replaceLines(change.getIndex(), change.getChildrenRemoved().length, added);
+			first = Math.min(first, change.getIndex());
+			last = Math.max(last, change.getIndex() + added - 1);
+		}
+
+		relex(first, last);
+		schedule();
+	}
+
+	private void replaceLines(int index, int removed, int added) {
+		final int count = ensureCapacity();
+		final int tail = count - index - added;
+		if(tail > 0 && removed != added) System.arraycopy(states, index + removed, states, index + added, tail);
+
+		if(index + removed <= valid) valid += added - removed;
+		else valid = Math.min(valid, index);
+
+		final BitSet shifted = styled.get(0, index);
+		final BitSet rest = styled.get(index + removed, Math.max(styled.length(), index + removed));
+		for(int i = rest.nextSetBit(0); i >= 0; i = rest.nextSetBit(i + 1)) {
+			shifted.set(index + added + i);
+		}
+		styled = shifted;
+	}
+
+	private void relex(int first, int last) {
+		if(first > valid) return;
+
+		final Element root = document.getDefaultRootElement();
+		final int count = ensureCapacity();
+		int state = first == 0 ? KVimLexer.NORMAL : states[first - 1];
+		int line = first;
+
+		while(line < count) {
+			final int old = line < valid && line > last ? states[line] : -1;
+			state = lexLine(root.getElement(line), state, null);
+			states[line] = state;
+			styled.clear(line);
+			line++;
+
+			if(line > last && (state == old || line >= valid)) break;
+		}
+		valid = Math.max(valid, line);
+	}
+
+	private void ensureStates(int last) {
+		final Element root = document.getDefaultRootElement();
+		ensureCapacity();
+
+		int state = valid == 0 ? KVimLexer.NORMAL : states[valid - 1];
+		while(valid <= last) {
+			state = lexLine(root.getElement(valid), state, null);
+			states[valid++] = state;
+		}
+	}
+
+	private int ensureCapacity() {
+		final int count = document.getDefaultRootElement().getElementCount();
+		if(states.length < count) states = Arrays.copyOf(states, Math.max(count, states.length * 2));
+		return count;
+	}
+
+	private int lexLine(Element line, int state, List<KVimToken> tokens) {
+		final int start = line.getStartOffset();
+		final int length = Math.min(line.getEndOffset(), document.getLength()) - start;
+
+		try {
+			document.getText(start, length, segment);
+		} catch(BadLocationException e) {
+			throw new RuntimeException(e);
+		}
+		final int end = length > 0 && segment.array[segment.offset + length - 1] == '\n' ? length - 1 : length;
+		return lexer.lex(segment.array, segment.offset, end, state, start, tokens);
+	}
+
+	private void schedule() {
+		if(pending) return;
+		pending = true;
+		SwingUtilities.invokeLater(this::restyle);
+	}
+
+	private void restyle() {
+		pending = false;
+		final Element root = document.getDefaultRootElement();
+		final Rectangle visible = tab.getVisibleRect();
+		final int top = Math.max(tab.viewToModel(new Point(0, visible.y)), 0);
+		final int bottom = Math.max(tab.viewToModel(new Point(visible.width, visible.y + visible.height)), top);
+		final int first = Math.max(root.getElementIndex(top) - VISIBLE_MARGIN, 0);
+		final int last = Math.min(root.getElementIndex(bottom) + VISIBLE_MARGIN, root.getElementCount() - 1);
+
+		ensureStates(last);
+
+		final List<KVimToken> tokens = new ArrayList<>();
+		int line = styled.nextClearBit(first);
+		while(line <= last) {
+			final int end = Math.min(styled.nextSetBit(line) < 0 ? last + 1 : styled.nextSetBit(line), last + 1);
+			int state = line == 0 ? KVimLexer.NORMAL : states[line - 1];
+
+			tokens.clear();
+			for(int i = line; i < end; i++) {
+				state = lexLine(root.getElement(i), state, tokens);
+			}
+			document.setTokens(line, end - 1, tokens);
+			styled.set(line, end);
+			line = styled.nextClearBit(end);
+		}
+	}
+}
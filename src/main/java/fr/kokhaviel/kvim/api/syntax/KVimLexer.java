@@ -0,0 +1,240 @@
+package fr.kokhaviel.kvim.api.syntax;
+
+import fr.kokhaviel.kvim.api.FileType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public class KVimLexer {
+
+	public static final int NORMAL = 0;
+	public static final int BLOCK_COMMENT = 1;
+	public static final int MULTI_LINE_STRING = 2;
+
+	private static final String[] NONE = new String[0];
+	private static final String[] C_COMMENT = {"//"};
+	private static final String[] HASH_COMMENT = {"#"};
+	private static final String[] DASH_COMMENT = {"--"};
+
+	private final Set<String> keywords = new HashSet<>();
+	private final List<String> symbols = new ArrayList<>();
+	private final boolean ignoreCase;
+	private final String[] lineComments;
+	private final String blockStart;
+	private final String blockEnd;
+	private final String quotes;
+	private final String[] multiLineStrings;
+	private final String wordChars;
+
+	KVimLexer(List<String> keywords, boolean ignoreCase, String[] lineComments, String blockStart, String blockEnd,
+	          String quotes, String[] multiLineStrings, String wordChars) {
+		this.ignoreCase = ignoreCase;
+		this.lineComments = lineComments;
+		this.blockStart = blockStart;
+		this.blockEnd = blockEnd;
+		this.quotes = quotes;
+		this.multiLineStrings = multiLineStrings;
+		this.wordChars = wordChars;
+
+		for(String keyword : keywords) {
+			final String trimmed = keyword.trim();
+			if(trimmed.isEmpty()) continue;
+			if(isWordStart(trimmed.charAt(0))) this.keywords.add(ignoreCase ? trimmed.toUpperCase(Locale.ROOT) : trimmed);
+			else this.symbols.add(trimmed);
+		}
+	}
+
+	public static KVimLexer forFileType(FileType type) {
+		if(type == null) return null;
+
+		switch(type) {
+			case JAVA:
+			case KOTLIN:
+			case SCALA:
+			case SWIFT:
+				return new KVimLexer(type.getKeywords(), false, C_COMMENT, "/*", "*/", "\"'", new String[]{"\"\"\""}, "");
+			case C:
+			case H:
+			case CPP:
+			case CSHARP:
+				return new KVimLexer(type.getKeywords(), false, C_COMMENT, "/*", "*/", "\"'", NONE, "");
+			case JAVASCRIPT:
+			case GO:
+				return new KVimLexer(type.getKeywords(), false, C_COMMENT, "/*", "*/", "\"'", new String[]{"`"}, "");
+			case RUST:
+				return new KVimLexer(type.getKeywords(), false, C_COMMENT, "/*", "*/", "\"", NONE, "");
+			case PHP:
+				return new KVimLexer(type.getKeywords(), false, new String[]{"//", "#"}, "/*", "*/", "\"'", NONE, "");
+			case PYTHON:
+				return new KVimLexer(type.getKeywords(), false, HASH_COMMENT, null, null, "\"'", new String[]{"\"\"\"", "'''"}, "");
+			case SHELL:
+			case RUBY:
+				return new KVimLexer(type.getKeywords(), false, HASH_COMMENT, null, null, "\"'", NONE, "");
+			case SQL:
+				return new KVimLexer(type.getKeywords(), true, DASH_COMMENT, "/*", "*/", "'", NONE, "");
+			case LUA:
+				return new KVimLexer(type.getKeywords(), false, DASH_COMMENT, "--[[", "]]", "\"'", NONE, "");
+			case ADA:
+				return new KVimLexer(type.getKeywords(), false, DASH_COMMENT, null, null, "\"", NONE, "");
+			case ASM:
+			case ASM2:
+				return new KVimLexer(type.getKeywords(), true, new String[]{";", "#"}, null, null, "\"'", NONE, "");
+			case HTML:
+				return new KVimLexer(type.getKeywords(), true, NONE, "<!--", "-->", "\"", NONE, "-");
+			case CSS:
+				return new KVimLexer(type.getKeywords(), false, NONE, "/*", "*/", "\"'", NONE, "-");
+			default:
+				return null;
+		}
+	}
+
+	public int lex(char[] text, int offset, int count, int state, int base, List<KVimToken> tokens) {
+		final int end = offset + count;
+		int i = offset;
+
+		if(state == BLOCK_COMMENT) {
+			final int close = indexOf(text, i, end, blockEnd, false);
+			if(close < 0) {
+				add(tokens, base, offset, i, end, KVimTokenType.COMMENT);
+				return BLOCK_COMMENT;
+			}
+			add(tokens, base, offset, i, close + blockEnd.length(), KVimTokenType.COMMENT);
+			i = close + blockEnd.length();
+		} else if(state >= MULTI_LINE_STRING) {
+			final String delimiter = multiLineStrings[state - MULTI_LINE_STRING];
+			final int close = indexOf(text, i, end, delimiter, true);
+			if(close < 0) {
+				add(tokens, base, offset, i, end, KVimTokenType.STRING);
+				return state;
+			}
+			add(tokens, base, offset, i, close + delimiter.length(), KVimTokenType.STRING);
+			i = close + delimiter.length();
+		}
+
+		scan:
+		while(i < end) {
+			final char c = text[i];
+
+			if(blockStart != null && startsWith(text, i, end, blockStart)) {
+				final int close = indexOf(text, i + blockStart.length(), end, blockEnd, false);
+				if(close < 0) {
+					add(tokens, base, offset, i, end, KVimTokenType.COMMENT);
+					return BLOCK_COMMENT;
+				}
+				add(tokens, base, offset, i, close + blockEnd.length(), KVimTokenType.COMMENT);
+				i = close + blockEnd.length();
+				continue;
+			}
+
+			for(String lineComment : lineComments) {
+				if(startsWith(text, i, end, lineComment)) {
+					add(tokens, base, offset, i, end, KVimTokenType.COMMENT);
+					return NORMAL;
+				}
+			}
+
+			for(int k = 0; k < multiLineStrings.length; k++) {
+				final String delimiter = multiLineStrings[k];
+				if(startsWith(text, i, end, delimiter)) {
+					final int close = indexOf(text, i + delimiter.length(), end, delimiter, true);
+					if(close < 0) {
+						add(tokens, base, offset, i, end, KVimTokenType.STRING);
+						return MULTI_LINE_STRING + k;
+					}
+					add(tokens, base, offset, i, close + delimiter.length(), KVimTokenType.STRING);
+					i = close + delimiter.length();
+					continue scan;
+				}
+			}
+
+			if(quotes.indexOf(c) >= 0) {
+				int j = i + 1;
+				while(j < end && text[j] != c) {
+					if(text[j] == '\\') j++;
+					j++;
+				}
+				j = Math.min(j + 1, end);
+				add(tokens, base, offset, i, j, KVimTokenType.STRING);
+				i = j;
+				continue;
+			}
+
+			if(tokens != null) {
+				for(String symbol : symbols) {
+					if(startsWith(text, i, end, symbol, ignoreCase)) {
+						add(tokens, base, offset, i, i + symbol.length(), KVimTokenType.KEYWORD);
+						i += symbol.length();
+						continue scan;
+					}
+				}
+			}
+
+			if(isWordStart(c)) {
+				int j = i + 1;
+				while(j < end && isWordPart(text[j])) j++;
+				if(tokens != null && isKeyword(text, i, j)) add(tokens, base, offset, i, j, KVimTokenType.KEYWORD);
+				i = j;
+				continue;
+			}
+
+			if(Character.isDigit(c)) {
+				int j = i + 1;
+				while(j < end && (Character.isLetterOrDigit(text[j]) || text[j] == '.' || text[j] == '_')) j++;
+				add(tokens, base, offset, i, j, KVimTokenType.NUMBER);
+				i = j;
+				continue;
+			}
+
+			i++;
+		}
+
+		return NORMAL;
+	}
+
+	private boolean isKeyword(char[] text, int start, int end) {
+		if(keywords.isEmpty()) return false;
+		final String word = new String(text, start, end - start);
+		return keywords.contains(ignoreCase ? word.toUpperCase(Locale.ROOT) : word);
+	}
+
+	private boolean isWordStart(char c) {
+		return Character.isLetter(c) || c == '_' || c == '$';
+	}
+
+	private boolean isWordPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || wordChars.indexOf(c) >= 0;
+	}
+
+	private static void add(List<KVimToken> tokens, int base, int offset, int start, int end, KVimTokenType type) {
+		if(tokens != null && end > start) tokens.add(new KVimToken(base + start - offset, end - start, type));
+	}
+
+	private static boolean startsWith(char[] text, int i, int end, String str) {
+		return startsWith(text, i, end, str, false);
+	}
+
+	private static boolean startsWith(char[] text, int i, int end, String str, boolean ignoreCase) {
+		if(end - i < str.length()) return false;
+		for(int k = 0; k < str.length(); k++) {
+			final char c = text[i + k];
+			final char s = str.charAt(k);
+			if(c != s && !(ignoreCase && Character.toUpperCase(c) == Character.toUpperCase(s))) return false;
+		}
+		return true;
+	}
+
+	private static int indexOf(char[] text, int i, int end, String str, boolean escapes) {
+		while(i < end) {
+			if(escapes && text[i] == '\\') {
+				i += 2;
+				continue;
+			}
+			if(startsWith(text, i, end, str)) return i;
+			i++;
+		}
+		return -1;
+	}
+}
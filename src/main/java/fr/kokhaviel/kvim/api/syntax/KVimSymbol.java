@@ -0,0 +1,57 @@
+package fr.kokhaviel.kvim.api.syntax;
+
+import java.util.Locale;
+
+public class KVimSymbol {
+
+	public enum Kind {
+		CLASS,
+		FUNCTION,
+		METHOD,
+		TODO,
+		FIXME
+	}
+
+	final String name;
+	final Kind kind;
+	final String file;
+	final int line;
+	final int column;
+
+	public KVimSymbol(String name, Kind kind, String file, int line, int column) {
+		this.name = name;
+		this.kind = kind;
+		this.file = file;
+		this.line = line;
+		this.column = column;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getFile() {
+		return file;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public int getColumn() {
+		return column;
+	}
+
+	public boolean isTodo() {
+		return kind == Kind.TODO || kind == Kind.FIXME;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + kind.name().toLowerCase(Locale.ROOT) + ") " + file + ":" + (line + 1);
+	}
+}
@@ -0,0 +1,234 @@
+package fr.kokhaviel.kvim.api.syntax;
+
+import fr.kokhaviel.kvim.api.FileType;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class KVimSymbolParser {
+
+	static final String JAVA_MODIFIERS = "(?:(?:public|protected|private|static|final|abstract|sealed|non-sealed|strictfp|synchronized|native|default)[ \\t]+)*";
+	static final String CSHARP_MODIFIERS = "(?:(?:public|protected|private|internal|static|virtual|override|abstract|sealed|async|partial|extern|unsafe|new|readonly)[ \\t]+)*";
+	static final String C_FUNCTION = "^(?!(?:return|else|if|while|for|switch|do|case|typedef|using|namespace|template)\\b)";
+	static final String C_TYPE = "[A-Za-z_][\\w*&<>, \\t]*?[ \\t*&]";
+
+	static final char MASK = '\u0000';
+	static final Pattern TODO = Pattern.compile("\\b(?<tag>TODO|FIXME)\\b[ \\t:]*(?<text>.*?)[ \\t]*(?:\\*/|-->)?[ \\t]*$");
+
+	static final Comparator<KVimSymbol> ORDER = Comparator.comparingInt(KVimSymbol::getLine).thenComparingInt(KVimSymbol::getColumn);
+
+	static class Rule {
+
+		final Pattern pattern;
+		final KVimSymbol.Kind kind;
+		final boolean nested;
+
+		Rule(String regex, KVimSymbol.Kind kind, boolean nested, boolean ignoreCase) {
+			this.pattern = Pattern.compile(regex, Pattern.MULTILINE | (ignoreCase ? Pattern.CASE_INSENSITIVE : 0));
+			this.kind = kind;
+			this.nested = nested;
+		}
+	}
+
+	private final Rule[] rules;
+	private final KVimLexer lexer;
+	private final Set<String> keywords = new HashSet<>();
+	private final boolean ignoreCase;
+
+	KVimSymbolParser(FileType type, boolean ignoreCase, Rule... rules) {
+		this.rules = rules;
+		this.lexer = KVimLexer.forFileType(type);
+		this.ignoreCase = ignoreCase;
+		for(String keyword : type.getKeywords()) keywords.add(ignoreCase ? keyword.trim().toLowerCase(Locale.ROOT) : keyword.trim());
+	}
+
+	public static FileType typeOf(String fileName) {
+		final int dot = fileName.lastIndexOf('.');
+		if(dot < 0) return null;
+
+		final String extension = fileName.substring(dot + 1);
+		for(FileType type : FileType.values()) {
+			if(type.getExtension().equals(extension)) return type;
+		}
+		return null;
+	}
+
+	public static KVimSymbolParser forFileType(FileType type) {
+		if(type == null) return null;
+
+		switch(type) {
+			case JAVA:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+" + JAVA_MODIFIERS + "(?:class|interface|enum|@interface|record)[ \\t]+(?<name>[A-Za-z_$][\\w$]*)", KVimSymbol.Kind.CLASS),
+						rule("^[ \\t]*+" + JAVA_MODIFIERS + "(?:<[^>\\n]*>[ \\t]+)?(?:(?!(?:return|new|else|throw)\\b)[\\w$.<>,?\\[\\] ]+?[ \\t]+)?"
+								+ "(?<name>[A-Za-z_$][\\w$]*)[ \\t]*\\([^()\\n]*\\)[ \\t]*(?:throws[ \\t]+[\\w$., \\t]+)?(?:\\{|$)", KVimSymbol.Kind.METHOD));
+			case CSHARP:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+" + CSHARP_MODIFIERS + "(?:class|interface|struct|enum|record)[ \\t]+(?<name>[A-Za-z_]\\w*)", KVimSymbol.Kind.CLASS),
+						rule("^[ \\t]*+" + CSHARP_MODIFIERS + "(?:(?!(?:return|new|else|throw|await)\\b)[\\w.<>,?\\[\\] ]+?[ \\t]+)?"
+								+ "(?<name>[A-Za-z_]\\w*)[ \\t]*(?:<[^>\\n]*>)?[ \\t]*\\([^()\\n]*\\)[ \\t]*(?::[^;{\\n]*)?(?:\\{|=>|$)", KVimSymbol.Kind.METHOD));
+			case KOTLIN:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+(?:(?:public|private|protected|internal|open|abstract|sealed|data|enum|annotation|inner|value|final|companion)[ \\t]+)*"
+								+ "(?:class|interface|object)[ \\t]+(?<name>\\w+)", KVimSymbol.Kind.CLASS),
+						nested("^[ \\t]*+(?:(?:public|private|protected|internal|open|override|abstract|final|inline|suspend|operator|infix|tailrec|external)[ \\t]+)*"
+								+ "fun[ \\t]+(?:<[^>\\n]*>[ \\t]*)?(?:[\\w.<>?]+\\.)?(?<name>\\w+)"));
+			case SCALA:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+(?:(?:private|protected|final|sealed|abstract|implicit|case)[ \\t]+)*(?:class|trait|object)[ \\t]+(?<name>\\w+)", KVimSymbol.Kind.CLASS),
+						nested("^[ \\t]*+(?:(?:private|protected|final|override|implicit)[ \\t]+)*def[ \\t]+(?<name>\\w+)"));
+			case SWIFT:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+(?:(?:public|private|fileprivate|internal|open|final)[ \\t]+)*(?:class|struct|enum|protocol|extension|actor)[ \\t]+(?<name>\\w+)", KVimSymbol.Kind.CLASS),
+						nested("^[ \\t]*+(?:(?:public|private|fileprivate|internal|open|final|static|class|override|mutating)[ \\t]+)*func[ \\t]+(?<name>\\w+)"));
+			case PYTHON:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+class[ \\t]+(?<name>\\w+)", KVimSymbol.Kind.CLASS),
+						nested("^[ \\t]*+(?:async[ \\t]+)?def[ \\t]+(?<name>\\w+)"));
+			case RUBY:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+(?:class|module)[ \\t]+(?:[\\w:]+::)?(?<name>\\w+)", KVimSymbol.Kind.CLASS),
+						nested("^[ \\t]*+def[ \\t]+(?:self\\.)?(?<name>\\w+[?!=]?)"));
+			case PHP:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+(?:(?:abstract|final|readonly)[ \\t]+)*(?:class|interface|trait|enum)[ \\t]+(?<name>\\w+)", KVimSymbol.Kind.CLASS),
+						nested("^[ \\t]*+(?:(?:public|protected|private|static|abstract|final)[ \\t]+)*function[ \\t]+&?(?<name>\\w+)"));
+			case JAVASCRIPT:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+(?:export[ \\t]+)?(?:default[ \\t]+)?class[ \\t]+(?<name>[\\w$]+)", KVimSymbol.Kind.CLASS),
+						nested("^[ \\t]*+(?:export[ \\t]+)?(?:default[ \\t]+)?(?:async[ \\t]+)?function\\*?[ \\t]*(?<name>[\\w$]+)"),
+						nested("^[ \\t]*+(?:export[ \\t]+)?(?:const|let|var)[ \\t]+(?<name>[\\w$]+)[ \\t]*=[ \\t]*(?:async[ \\t]+)?(?:function\\b|\\([^()\\n]*\\)[ \\t]*=>|[\\w$]+[ \\t]*=>)"),
+						rule("^[ \\t]+(?:(?:static|async|get|set)[ \\t]+)*(?<name>[\\w$]+)[ \\t]*\\([^()\\n]*\\)[ \\t]*\\{", KVimSymbol.Kind.METHOD));
+			case GO:
+				return new KVimSymbolParser(type, false,
+						rule("^type[ \\t]+(?<name>\\w+)[ \\t]+(?:struct|interface)\\b", KVimSymbol.Kind.CLASS),
+						rule("^func[ \\t]+(?<name>\\w+)", KVimSymbol.Kind.FUNCTION),
+						rule("^func[ \\t]*\\([^)\\n]*\\)[ \\t]*(?<name>\\w+)", KVimSymbol.Kind.METHOD));
+			case RUST:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+(?:pub(?:\\([^)\\n]*\\))?[ \\t]+)?(?:struct|enum|trait|union|mod)[ \\t]+(?<name>\\w+)", KVimSymbol.Kind.CLASS),
+						nested("^[ \\t]*+(?:pub(?:\\([^)\\n]*\\))?[ \\t]+)?(?:(?:const|async|unsafe|extern(?:[ \\t]+\"[^\"\\n]*\")?)[ \\t]+)*fn[ \\t]+(?<name>\\w+)"));
+			case C:
+			case H:
+			case CPP:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+(?:typedef[ \\t]+)?(?:class|struct|union|enum(?:[ \\t]+class)?)[ \\t]+(?<name>[A-Za-z_]\\w*)[ \\t]*(?::[^;{\\n]*)?(?:\\{|$)", KVimSymbol.Kind.CLASS),
+						rule(C_FUNCTION + C_TYPE + "(?<name>[A-Za-z_]\\w*)[ \\t]*\\([^;\\n]*$", KVimSymbol.Kind.FUNCTION),
+						rule(C_FUNCTION + "(?:" + C_TYPE + ")?(?:\\w+::)+(?<name>~?[A-Za-z_]\\w*)[ \\t]*\\([^;\\n]*$", KVimSymbol.Kind.METHOD));
+			case SQL:
+				return new KVimSymbolParser(type, true,
+						rule("^[ \\t]*+create[ \\t]+(?:or[ \\t]+replace[ \\t]+)?(?:table|view)[ \\t]+(?:if[ \\t]+not[ \\t]+exists[ \\t]+)?[`\"\\[]?(?<name>[\\w.]+)", KVimSymbol.Kind.CLASS, true),
+						rule("^[ \\t]*+create[ \\t]+(?:or[ \\t]+replace[ \\t]+)?(?:function|procedure)[ \\t]+[`\"\\[]?(?<name>[\\w.]+)", KVimSymbol.Kind.FUNCTION, true));
+			case SHELL:
+				return new KVimSymbolParser(type, false,
+						rule("^[ \\t]*+function[ \\t]+(?<name>[\\w.:-]+)", KVimSymbol.Kind.FUNCTION),
+						rule("^[ \\t]*+(?<name>[\\w.:-]+)[ \\t]*\\(\\)", KVimSymbol.Kind.FUNCTION));
+			case LUA:
+				return new KVimSymbolParser(type, false,
+						nested("^[ \\t]*+(?:local[ \\t]+)?function[ \\t]+(?:[\\w.]+[.:])?(?<name>\\w+)"));
+			case ADA:
+				return new KVimSymbolParser(type, true,
+						rule("^[ \\t]*+package(?:[ \\t]+body)?[ \\t]+(?<name>[\\w.]+)", KVimSymbol.Kind.CLASS, true),
+						rule("^[ \\t]*+(?:procedure|function)[ \\t]+(?<name>\\w+)", KVimSymbol.Kind.FUNCTION, true));
+			case ASM:
+			case ASM2:
+				return new KVimSymbolParser(type, true,
+						rule("^(?<name>[A-Za-z_.$][\\w.$]*):", KVimSymbol.Kind.FUNCTION));
+			case HTML:
+				return new KVimSymbolParser(type, true);
+			case CSS:
+				return new KVimSymbolParser(type, false);
+			default:
+				return null;
+		}
+	}
+
+	static Rule rule(String regex, KVimSymbol.Kind kind) {
+		return rule(regex, kind, false);
+	}
+
+	static Rule rule(String regex, KVimSymbol.Kind kind, boolean ignoreCase) {
+		return new Rule(regex, kind, false, ignoreCase);
+	}
+
+	static Rule nested(String regex) {
+		return new Rule(regex, KVimSymbol.Kind.FUNCTION, true, false);
+	}
+
+	public List<KVimSymbol> parse(String file, char[] text, int length) {
+		final List<KVimSymbol> symbols = new ArrayList<>();
+		final char[] code = mask(file, text, length, symbols);
+		int[] lineStarts = new int[64];
+		int lines = 1;
+		for(int i = 0; i < length; i++) {
+			if(code[i] != '\n') continue;
+			if(lines == lineStarts.length) lineStarts = Arrays.copyOf(lineStarts, lines * 2);
+			lineStarts[lines++] = i + 1;
+		}
+
+		final Set<Integer> seen = new HashSet<>();
+		final CharBuffer buffer = CharBuffer.wrap(code, 0, length);
+
+		for(Rule rule : rules) {
+			final Matcher matcher = rule.pattern.matcher(buffer);
+			while(matcher.find()) {
+				final String name = matcher.group("name");
+				if(keywords.contains(ignoreCase ? name.toLowerCase(Locale.ROOT) : name)) continue;
+
+				final int start = matcher.start("name");
+				int line = Arrays.binarySearch(lineStarts, 0, lines, start);
+				if(line < 0) line = -line - 2;
+				if(!seen.add(start)) continue;
+
+				final int lineStart = lineStarts[line];
+				final KVimSymbol.Kind kind = rule.nested && isIndented(code, lineStart) ? KVimSymbol.Kind.METHOD : rule.kind;
+				symbols.add(new KVimSymbol(name, kind, file, line, start - lineStart));
+			}
+		}
+
+		symbols.sort(ORDER);
+		return symbols;
+	}
+
+	private char[] mask(String file, char[] text, int length, List<KVimSymbol> todos) {
+		final char[] code = Arrays.copyOf(text, length);
+		if(lexer == null) return code;
+
+		final List<KVimToken> tokens = new ArrayList<>();
+		int state = KVimLexer.NORMAL;
+		for(int start = 0, line = 0; start < length; line++) {
+			int end = start;
+			while(end < length && code[end] != '\n') end++;
+
+			tokens.clear();
+			state = lexer.lex(text, start, end - start, state, start, tokens);
+			for(KVimToken token : tokens) {
+				if(token.getType() != KVimTokenType.COMMENT && token.getType() != KVimTokenType.STRING) continue;
+				if(token.getType() == KVimTokenType.COMMENT) harvest(file, text, token, line, start, todos);
+				Arrays.fill(code, token.getStart(), token.getStart() + token.getLength(), MASK);
+			}
+			start = end + 1;
+		}
+		return code;
+	}
+
+	private static void harvest(String file, char[] text, KVimToken token, int line, int lineStart, List<KVimSymbol> todos) {
+		final Matcher matcher = TODO.matcher(CharBuffer.wrap(text, token.getStart(), token.getLength()));
+		if(!matcher.find()) return;
+
+		final KVimSymbol.Kind kind = matcher.group("tag").equals("TODO") ? KVimSymbol.Kind.TODO : KVimSymbol.Kind.FIXME;
+		todos.add(new KVimSymbol(matcher.group("text"), kind, file, line, token.getStart() + matcher.start() - lineStart));
+	}
+
+	private static boolean isIndented(char[] code, int lineStart) {
+		return lineStart < code.length && (code[lineStart] == ' ' || code[lineStart] == '\t');
+	}
+}
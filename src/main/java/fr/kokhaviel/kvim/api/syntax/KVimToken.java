@@ -0,0 +1,26 @@
+package fr.kokhaviel.kvim.api.syntax;
+
+public class KVimToken {
+
+	final int start;
+	final int length;
+	final KVimTokenType type;
+
+	public KVimToken(int start, int length, KVimTokenType type) {
+		this.start = start;
+		this.length = length;
+		this.type = type;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public KVimTokenType getType() {
+		return type;
+	}
+}
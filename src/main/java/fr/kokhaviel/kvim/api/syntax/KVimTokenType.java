@@ -0,0 +1,25 @@
+package fr.kokhaviel.kvim.api.syntax;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyleContext;
+import java.awt.*;
+
+public enum KVimTokenType {
+
+	KEYWORD (new Color(255, 145, 0)),
+	STRING  (new Color(106, 135, 89)),
+	COMMENT (new Color(128, 128, 128)),
+	NUMBER  (new Color(104, 151, 187));
+
+	final AttributeSet attributes;
+
+	KVimTokenType(Color color) {
+		final StyleContext context = StyleContext.getDefaultStyleContext();
+		this.attributes = context.addAttribute(context.getEmptySet(), StyleConstants.Foreground, color);
+	}
+
+	public AttributeSet getAttributes() {
+		return attributes;
+	}
+}
@@ -0,0 +1,60 @@
+package fr.kokhaviel.kvim.api.text;
+
+import java.util.Arrays;
+
+public class KVimCharBuffer implements KVimTextBuffer {
+
+	private volatile char[] data;
+	private volatile int length;
+
+	public KVimCharBuffer() {
+		this(64);
+	}
+
+	public KVimCharBuffer(int capacity) {
+		this.data = new char[Math.max(capacity, 16)];
+	}
+
+	public synchronized int append(String str) {
+		final int start = length;
+		ensureCapacity(start + str.length());
+		str.getChars(0, str.length(), data, start);
+		length = start + str.length();
+		return start;
+	}
+
+	public synchronized int append(char[] chars, int offset, int count) {
+		final int start = length;
+		ensureCapacity(start + count);
+		System.arraycopy(chars, offset, data, start, count);
+		length = start + count;
+		return start;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity <= data.length) return;
+		int newCapacity = Math.max(capacity, data.length + (data.length >> 1));
+		if(newCapacity < 0) newCapacity = Integer.MAX_VALUE - 8;
+		data = Arrays.copyOf(data, newCapacity);
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return data[index];
+	}
+
+	@Override
+	public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+		System.arraycopy(data, srcBegin, dst, dstBegin, srcEnd - srcBegin);
+	}
+
+	@Override
+	public char[] array() {
+		return data;
+	}
+}
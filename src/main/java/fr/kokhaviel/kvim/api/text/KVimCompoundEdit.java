@@ -0,0 +1,40 @@
+package fr.kokhaviel.kvim.api.text;
+
+import javax.swing.undo.CompoundEdit;
+import javax.swing.undo.UndoableEdit;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+public class KVimCompoundEdit extends CompoundEdit {
+
+	List<UndoableEdit> getEdits() {
+		return edits;
+	}
+
+	@Override
+	public boolean addEdit(UndoableEdit anEdit) {
+		if(isInProgress()) return super.addEdit(anEdit);
+		return canUndo() && lastEdit() != null && lastEdit().addEdit(anEdit);
+	}
+
+	long getSize() {
+		long size = 16;
+		for(UndoableEdit edit : edits) size += ((KVimTextEdit) edit).getSize();
+		return size;
+	}
+
+	void write(DataOutput out) throws IOException {
+		out.writeInt(edits.size());
+		for(UndoableEdit edit : edits) ((KVimTextEdit) edit).write(out);
+	}
+
+	static KVimCompoundEdit read(DataInput in, KVimDocument document) throws IOException {
+		final KVimCompoundEdit compound = new KVimCompoundEdit();
+		final int count = in.readInt();
+		for(int i = 0; i < count; i++) compound.addEdit(KVimTextEdit.read(in, document));
+		compound.end();
+		return compound;
+	}
+}
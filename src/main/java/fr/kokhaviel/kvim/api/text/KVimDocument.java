@@ -0,0 +1,355 @@
+package fr.kokhaviel.kvim.api.text;
+
+import fr.kokhaviel.kvim.api.syntax.KVimToken;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleContext;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class KVimDocument extends DefaultStyledDocument {
+
+	public static final int MAP_THRESHOLD = 1 << 20;
+
+	private final KVimPieceTable pieceTable;
+	private boolean modified;
+	private FileTime diskTime;
+	private boolean loading;
+	private boolean appending;
+	private Charset charset = StandardCharsets.UTF_8;
+	private boolean bom;
+	private boolean lossy;
+	private boolean replaying;
+	private String editText;
+	private KVimCompoundEdit compound;
+	private int version;
+
+	public KVimDocument() {
+		this(new KVimPieceTable());
+	}
+
+	private KVimDocument(KVimPieceTable pieceTable) {
+		super(pieceTable, new StyleContext());
+		this.pieceTable = pieceTable;
+		putProperty(DefaultEditorKit.EndOfLineStringProperty, "\n");
+	}
+
+	public void load(Path file) throws IOException {
+		diskTime = Files.getLastModifiedTime(file);
+		loading = true;
+		try {
+			new KVimLoader(this, file, false).load();
+		} finally {
+			loading = false;
+		}
+	}
+
+	public KVimLoader loadAsync(Path file) throws IOException {
+		diskTime = Files.getLastModifiedTime(file);
+		loading = true;
+		return new KVimLoader(this, file, true);
+	}
+
+	void appendOriginal(KVimTextBuffer buffer, int start, int count) {
+		if(count == 0) return;
+
+		writeLock();
+		try {
+			appending = true;
+			final int offset = pieceTable.appendOriginal(buffer, start, count);
+			final DefaultDocumentEvent event = new DefaultDocumentEvent(offset, count, DocumentEvent.EventType.INSERT);
+			insertUpdate(event, null);
+			event.end();
+			fireInsertUpdate(event);
+		} finally {
+			appending = false;
+			writeUnlock();
+		}
+	}
+
+	void discardOriginal() {
+		writeLock();
+		try {
+			appending = true;
+			final int length = getLength();
+			if(length > 0) {
+				final DefaultDocumentEvent event = new DefaultDocumentEvent(0, length, DocumentEvent.EventType.REMOVE);
+				removeUpdate(event);
+				pieceTable.remove(0, length);
+				postRemoveUpdate(event);
+				event.end();
+				fireRemoveUpdate(event);
+			}
+			pieceTable.markOriginal();
+		} catch(BadLocationException e) {
+			throw new RuntimeException(e);
+		} finally {
+			appending = false;
+			writeUnlock();
+		}
+	}
+
+	public void setTokens(int firstLine, int lastLine, List<KVimToken> tokens) {
+		writeLock();
+		try {
+			final Element root = getDefaultRootElement();
+			final int start = root.getElement(firstLine).getStartOffset();
+			final int end = root.getElement(lastLine).getEndOffset();
+			final DefaultDocumentEvent event = new DefaultDocumentEvent(start, end - start, DocumentEvent.EventType.CHANGE);
+			final List<Element> leaves = new ArrayList<>();
+			int t = 0;
+
+			for(int i = firstLine; i <= lastLine; i++) {
+				final BranchElement paragraph = (BranchElement) root.getElement(i);
+				final int lineEnd = paragraph.getEndOffset();
+				int offset = paragraph.getStartOffset();
+				leaves.clear();
+
+				while(t < tokens.size() && tokens.get(t).getStart() < lineEnd) {
+					final KVimToken token = tokens.get(t++);
+					if(token.getStart() > offset) {
+						leaves.add(createLeafElement(paragraph, SimpleAttributeSet.EMPTY, offset, token.getStart()));
+					}
+					final int tokenEnd = Math.min(token.getStart() + token.getLength(), lineEnd);
+					leaves.add(createLeafElement(paragraph, token.getType().getAttributes(), token.getStart(), tokenEnd));
+					offset = tokenEnd;
+				}
+				if(offset < lineEnd) leaves.add(createLeafElement(paragraph, SimpleAttributeSet.EMPTY, offset, lineEnd));
+
+				final Element[] removed = new Element[paragraph.getElementCount()];
+				for(int j = 0; j < removed.length; j++) {
+					removed[j] = paragraph.getElement(j);
+				}
+				final Element[] added = leaves.toArray(new Element[0]);
+				paragraph.replace(0, removed.length, added);
+				event.addEdit(new ElementEdit(paragraph, 0, removed, added));
+			}
+
+			event.end();
+			fireChangedUpdate(event);
+		} finally {
+			writeUnlock();
+		}
+	}
+
+	@Override
+	public void replace(int offset, int length, String text, AttributeSet attrs) throws BadLocationException {
+		if(compound != null || replaying) {
+			super.replace(offset, length, text, attrs);
+			return;
+		}
+
+		compound = new KVimCompoundEdit();
+		try {
+			super.replace(offset, length, text, attrs);
+		} finally {
+			endCompound();
+		}
+	}
+
+	public void replace(int[] starts, int[] ends, String[] texts, int count) throws BadLocationException {
+		compound = new KVimCompoundEdit();
+		writeLock();
+		try {
+			int delta = 0;
+			for(int i = 0; i < count; i++) {
+				super.replace(starts[i] + delta, ends[i] - starts[i], texts[i], null);
+				delta += texts[i].length() - (ends[i] - starts[i]);
+			}
+		} finally {
+			writeUnlock();
+			endCompound();
+		}
+	}
+
+	private void endCompound() {
+		final KVimCompoundEdit edit = compound;
+		compound = null;
+		edit.end();
+		if(edit.getEdits().size() == 1) super.fireUndoableEditUpdate(new UndoableEditEvent(this, edit.getEdits().get(0)));
+		else if(edit.isSignificant()) super.fireUndoableEditUpdate(new UndoableEditEvent(this, edit));
+	}
+
+	void replay(boolean insert, int offset, String text) throws BadLocationException {
+		replaying = true;
+		try {
+			if(insert) insertString(offset, text, null);
+			else remove(offset, text.length());
+		} finally {
+			replaying = false;
+		}
+	}
+
+	@Override
+	protected void insertUpdate(DefaultDocumentEvent chng, AttributeSet attr) {
+		super.insertUpdate(chng, attr);
+		if(appending) return;
+
+		version++;
+		setModified(true);
+		editText = getEditText(chng);
+	}
+
+	@Override
+	protected void removeUpdate(DefaultDocumentEvent chng) {
+		if(appending) {
+			super.removeUpdate(chng);
+			return;
+		}
+
+		editText = getEditText(chng);
+		super.removeUpdate(chng);
+		version++;
+		setModified(true);
+	}
+
+	private String getEditText(DefaultDocumentEvent chng) {
+		if(replaying) return null;
+
+		try {
+			return getText(chng.getOffset(), chng.getLength());
+		} catch(BadLocationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	protected void fireUndoableEditUpdate(UndoableEditEvent e) {
+		if(replaying) return;
+
+		if(editText != null && e.getEdit() instanceof DefaultDocumentEvent) {
+			final DefaultDocumentEvent event = (DefaultDocumentEvent) e.getEdit();
+			final boolean insert = event.getType() == DocumentEvent.EventType.INSERT;
+			e = new UndoableEditEvent(this, new KVimTextEdit(this, event.getOffset(), editText, insert));
+		}
+		editText = null;
+		if(compound != null) compound.addEdit(e.getEdit());
+		else super.fireUndoableEditUpdate(e);
+	}
+
+	public KVimTextSnapshot snapshot() {
+		readLock();
+		try {
+			return pieceTable.snapshot();
+		} finally {
+			readUnlock();
+		}
+	}
+
+	public int getLineCount() {
+		return getDefaultRootElement().getElementCount();
+	}
+
+	public int getLineOfOffset(int offset) {
+		return getDefaultRootElement().getElementIndex(offset);
+	}
+
+	public int getLineStartOffset(int line) {
+		return getDefaultRootElement().getElement(line).getStartOffset();
+	}
+
+	public int getLineEndOffset(int line) {
+		return getDefaultRootElement().getElement(line).getEndOffset() - 1;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public boolean isModified() {
+		return modified;
+	}
+
+	public void setModified(boolean modified) {
+		if(this.modified == modified) return;
+		this.modified = modified;
+		if(!modified) pieceTable.markOriginal();
+		fireModifiedChanged();
+	}
+
+	public void saved(KVimTextSnapshot snapshot, int version, FileTime diskTime) {
+		this.diskTime = diskTime;
+		if(version == this.version) {
+			setModified(false);
+			return;
+		}
+
+		pieceTable.markOriginal(snapshot);
+		fireModifiedChanged();
+	}
+
+	public int getBaseLength() {
+		return pieceTable.getOriginLength();
+	}
+
+	private void fireModifiedChanged() {
+		final ChangeEvent event = new ChangeEvent(this);
+		for(ChangeListener listener : listenerList.getListeners(ChangeListener.class)) {
+			listener.stateChanged(event);
+		}
+	}
+
+	public void addModifiedListener(ChangeListener listener) {
+		listenerList.add(ChangeListener.class, listener);
+	}
+
+	public void removeModifiedListener(ChangeListener listener) {
+		listenerList.remove(ChangeListener.class, listener);
+	}
+
+	public FileTime getDiskTime() {
+		return diskTime;
+	}
+
+	public void setDiskTime(FileTime diskTime) {
+		this.diskTime = diskTime;
+	}
+
+	public boolean isLoading() {
+		return loading;
+	}
+
+	void setLoading(boolean loading) {
+		this.loading = loading;
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	public boolean hasBom() {
+		return bom;
+	}
+
+	public boolean isLossy() {
+		return lossy;
+	}
+
+	public void setLossy(boolean lossy) {
+		this.lossy = lossy;
+	}
+
+	public void setCharset(Charset charset, boolean bom) {
+		this.charset = charset;
+		this.bom = bom;
+	}
+
+	void setLineSeparator(String separator) {
+		putProperty(DefaultEditorKit.EndOfLineStringProperty, separator);
+	}
+}
@@ -0,0 +1,226 @@
+package fr.kokhaviel.kvim.api.text;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntConsumer;
+
+public class KVimLoader implements Runnable {
+
+	static final int FIRST_CHUNK = 1 << 16;
+	static final int CHUNK = 1 << 20;
+	static final int SAMPLE = 1 << 16;
+
+	private final KVimDocument document;
+	private final Path file;
+	private final boolean async;
+	private IntConsumer progress;
+	private Runnable done;
+
+	private ByteBuffer bytes;
+	private boolean mapped;
+	private Charset charset;
+	private boolean bom;
+	private boolean crlf;
+	private boolean skipLF;
+	private boolean restart;
+	private volatile boolean cancelled;
+
+	KVimLoader(KVimDocument document, Path file, boolean async) {
+		this.document = document;
+		this.file = file;
+		this.async = async;
+	}
+
+	public KVimLoader onProgress(IntConsumer progress) {
+		this.progress = progress;
+		return this;
+	}
+
+	public KVimLoader onDone(Runnable done) {
+		this.done = done;
+		return this;
+	}
+
+	public KVimLoader start() {
+		final Thread thread = new Thread(this, "KVim-Loader " + file.getFileName());
+		thread.setDaemon(true);
+		thread.start();
+		return this;
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	@Override
+	public void run() {
+		try {
+			load();
+		} catch(IOException e) {
+			deliver(() -> {
+				throw new RuntimeException(e);
+			});
+		} finally {
+			deliver(() -> {
+				document.setLoading(false);
+				if(done != null) done.run();
+			});
+		}
+	}
+
+	void load() throws IOException {
+		mapped = Files.size(file) >= KVimDocument.MAP_THRESHOLD;
+		bytes = mapped ? KVimMappedBuffer.map(file) : ByteBuffer.wrap(Files.readAllBytes(file));
+		detectCharset();
+		decodeAll();
+		if(restart && !cancelled) {
+			charset = StandardCharsets.ISO_8859_1;
+			restart = false;
+			skipLF = false;
+			deliver(() -> {
+				document.discardOriginal();
+				document.setCharset(StandardCharsets.ISO_8859_1, false);
+			});
+			decodeAll();
+		}
+	}
+
+	private void decodeAll() {
+		final CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		final boolean ascii = charset == StandardCharsets.UTF_8 || charset == StandardCharsets.ISO_8859_1;
+		final KVimMappedBuffer direct = mapped && ascii ? new KVimMappedBuffer(bytes) : null;
+		final int total = bytes.limit();
+		int position = bom ? bomLength() : 0;
+
+		while(position < total && !cancelled && !restart) {
+			final int end = (int) Math.min((long) position + (position == 0 ? FIRST_CHUNK : CHUNK), total);
+
+			if(direct != null && isPlain(position, end)) {
+				final int start = skipLF && bytes.get(position) == '\n' ? position + 1 : position;
+				skipLF = false;
+				append(direct, start, end - start, end, total);
+				position = end;
+			} else {
+				position = decode(decoder, position, end, total);
+			}
+		}
+	}
+
+	private void detectCharset() {
+		final int limit = bytes.limit();
+		if(limit >= 3 && (bytes.get(0) & 0xff) == 0xef && (bytes.get(1) & 0xff) == 0xbb && (bytes.get(2) & 0xff) == 0xbf) {
+			charset = StandardCharsets.UTF_8;
+			bom = true;
+		} else if(limit >= 2 && (bytes.get(0) & 0xff) == 0xfe && (bytes.get(1) & 0xff) == 0xff) {
+			charset = StandardCharsets.UTF_16BE;
+			bom = true;
+		} else if(limit >= 2 && (bytes.get(0) & 0xff) == 0xff && (bytes.get(1) & 0xff) == 0xfe) {
+			charset = StandardCharsets.UTF_16LE;
+			bom = true;
+		} else {
+			charset = isUTF8(Math.min(limit, SAMPLE)) ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+		}
+		final Charset detected = charset;
+		final boolean hasBom = bom;
+		deliver(() -> document.setCharset(detected, hasBom));
+	}
+
+	private int bomLength() {
+		return charset == StandardCharsets.UTF_8 ? 3 : 2;
+	}
+
+	private boolean isUTF8(int end) {
+		int i = 0;
+		while(i < end) {
+			final int b = bytes.get(i) & 0xff;
+			final int length = b < 0x80 ? 1 : b >= 0xc2 && b < 0xe0 ? 2 : b >= 0xe0 && b < 0xf0 ? 3 : b >= 0xf0 && b < 0xf5 ? 4 : 0;
+			if(length == 0) return false;
+			if(i + length > end) return end < bytes.limit();
+
+			for(int k = 1; k < length; k++) {
+				if((bytes.get(i + k) & 0xc0) != 0x80) return false;
+			}
+			i += length;
+		}
+		return true;
+	}
+
+	private boolean isPlain(int start, int end) {
+		for(int i = start; i < end; i++) {
+			final byte b = bytes.get(i);
+			if(b < 0 || b == '\r') return false;
+		}
+		return true;
+	}
+
+	private int decode(CharsetDecoder decoder, int start, int end, int total) {
+		final ByteBuffer in = bytes.duplicate();
+		in.limit(end).position(start);
+		final CharBuffer out = CharBuffer.allocate(end - start + 1);
+		final boolean last = end == total;
+
+		while(true) {
+			final CoderResult result = decoder.decode(in, out, last);
+			if(result.isError()) {
+				if(charset == StandardCharsets.UTF_8 && !bom) {
+					restart = true;
+					return end;
+				}
+				for(int k = 0; k < result.length(); k++) out.put((char) (in.get() & 0xff));
+				deliver(() -> document.setLossy(true));
+				continue;
+			}
+			if(last) decoder.flush(out);
+			break;
+		}
+
+		out.flip();
+		final KVimCharBuffer buffer = new KVimCharBuffer(out.remaining());
+		final char[] chars = out.array();
+		int count = 0;
+		for(int i = 0; i < out.limit(); i++) {
+			final char c = chars[i];
+			if(skipLF) {
+				skipLF = false;
+				if(c == '\n') continue;
+			}
+			if(c == '\r') {
+				crlf = true;
+				skipLF = true;
+				chars[count++] = '\n';
+			} else {
+				chars[count++] = c;
+			}
+		}
+		buffer.append(chars, 0, count);
+
+		append(buffer, 0, count, in.position(), total);
+		return in.position();
+	}
+
+	private void append(KVimTextBuffer buffer, int start, int count, int read, int total) {
+		final boolean eol = crlf;
+		deliver(() -> {
+			if(cancelled) return;
+			if(eol) document.setLineSeparator("\r\n");
+			document.appendOriginal(buffer, start, count);
+			if(progress != null) progress.accept(total == 0 ? 100 : (int) (read * 100L / total));
+		});
+	}
+
+	private void deliver(Runnable runnable) {
+		if(async) SwingUtilities.invokeLater(runnable);
+		else runnable.run();
+	}
+}
@@ -0,0 +1,53 @@
+package fr.kokhaviel.kvim.api.text;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class KVimMappedBuffer implements KVimTextBuffer {
+
+	private final ByteBuffer bytes;
+
+	public KVimMappedBuffer(ByteBuffer bytes) {
+		this.bytes = bytes;
+	}
+
+	public static MappedByteBuffer map(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large to be opened (" + channel.size() + " bytes)");
+			}
+
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	public ByteBuffer getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public int length() {
+		return bytes.limit();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return (char) (bytes.get(index) & 0xff);
+	}
+
+	@Override
+	public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+		for(int i = srcBegin; i < srcEnd; i++) {
+			dst[dstBegin++] = (char) (bytes.get(i) & 0xff);
+		}
+	}
+
+	@Override
+	public char[] array() {
+		return null;
+	}
+}
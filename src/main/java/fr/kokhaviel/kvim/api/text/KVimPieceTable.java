@@ -0,0 +1,580 @@
+package fr.kokhaviel.kvim.api.text;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class KVimPieceTable implements AbstractDocument.Content {
+
+	private static final long TAIL_BIAS = 1L << 62;
+	private static final int MAX_PARTIAL_COPY = 1 << 16;
+
+	private final KVimCharBuffer added = new KVimCharBuffer();
+
+	private Piece[] pieces = new Piece[16];
+	private int[] starts = new int[16];
+	private int pieceCount;
+	private int gapStart;
+	private int length;
+
+	private Origin[] origins = new Origin[16];
+	private int originCount;
+	private int originLength;
+	private int addedMark = 1;
+
+	private Mark[] marks = new Mark[16];
+	private int markCount;
+	private int tailIndex;
+	private long tailDelta;
+	private int unusedMarks;
+	private final ReferenceQueue<KVimPosition> queue = new ReferenceQueue<>();
+
+	public KVimPieceTable() {
+		final int start = added.append("\n");
+		pieces[0] = new Piece(added, start, 1);
+		pieceCount = 1;
+		gapStart = 1;
+		length = 1;
+	}
+
+	@Override
+	public synchronized Position createPosition(int offset) throws BadLocationException {
+		if(offset < 0 || offset > length) throw new BadLocationException("Invalid position", offset);
+		removeUnusedMarks();
+
+		int index = findMark(offset);
+		if(index < markCount && markOffset(marks[index]) == offset) {
+			final KVimPosition position = marks[index].get();
+			if(position != null) return position;
+		}
+
+		final KVimPosition position = new KVimPosition();
+		final Mark mark = new Mark(position, queue);
+		position.mark = mark;
+
+		if(markCount == marks.length) marks = Arrays.copyOf(marks, markCount * 2);
+		System.arraycopy(marks, index, marks, index + 1, markCount - index);
+		marks[index] = mark;
+		markCount++;
+
+		if(index <= tailIndex) {
+			mark.stored = offset;
+			tailIndex++;
+		} else {
+			mark.stored = offset - tailDelta + TAIL_BIAS;
+		}
+
+		return position;
+	}
+
+	@Override
+	public synchronized int length() {
+		return length;
+	}
+
+	@Override
+	public synchronized UndoableEdit insertString(int where, String str) throws BadLocationException {
+		if(where >= length || where < 0) throw new BadLocationException("Invalid insert", length);
+
+		final int start = added.append(str);
+		insertPieces(where, new Piece[]{new Piece(added, start, str.length())});
+		return new InsertUndo(where, str.length());
+	}
+
+	@Override
+	public synchronized UndoableEdit remove(int where, int nitems) throws BadLocationException {
+		if(where < 0 || nitems < 0 || where + nitems >= length) throw new BadLocationException("Invalid remove", length);
+
+		final MarkRefs refs = captureMarks(where, nitems);
+		final Piece[] removed = removePieces(where, nitems);
+		return new RemoveUndo(where, nitems, removed, refs);
+	}
+
+	@Override
+	public synchronized String getString(int where, int len) throws BadLocationException {
+		checkRange(where, len);
+		final char[] chars = new char[len];
+		copyChars(where, len, chars, 0);
+		return new String(chars);
+	}
+
+	@Override
+	public synchronized void getChars(int where, int len, Segment txt) throws BadLocationException {
+		checkRange(where, len);
+		if(len == 0) {
+			txt.array = new char[0];
+			txt.offset = 0;
+			txt.count = 0;
+			return;
+		}
+
+		final int i = findPiece(where);
+		final Piece piece = piece(i);
+		final int inPiece = where - start(i);
+		final int available = piece.length - inPiece;
+		final char[] array = piece.buffer.array();
+
+		if(array != null && (available >= len || txt.isPartialReturn())) {
+			txt.array = array;
+			txt.offset = piece.start + inPiece;
+			txt.count = Math.min(len, available);
+			return;
+		}
+
+		if(txt.isPartialReturn()) len = Math.min(len, MAX_PARTIAL_COPY);
+		final char[] chars = new char[len];
+		copyChars(where, len, chars, 0);
+		txt.array = chars;
+		txt.offset = 0;
+		txt.count = len;
+	}
+
+	public synchronized int appendOriginal(KVimTextBuffer buffer, int start, int count) {
+		final int where = length - 1;
+		if(count > 0) {
+			insertPieces(where, new Piece[]{new Piece(buffer, start, count)});
+			addOrigin(buffer, start, count);
+		}
+		return where;
+	}
+
+	public synchronized void markOriginal() {
+		moveGap(pieceCount);
+		markOriginal(pieces, pieceCount, length - 1, added.length());
+	}
+
+	synchronized void markOriginal(KVimTextSnapshot snapshot) {
+		markOriginal(snapshot.getPieces(), snapshot.getPieces().length, snapshot.length(), snapshot.getAddedLength());
+	}
+
+	private void markOriginal(Piece[] source, int count, int textLength, int mark) {
+		origins = new Origin[Math.max(16, count)];
+		originCount = 0;
+		originLength = 0;
+		for(int i = 0, offset = 0; i < count && offset < textLength; i++) {
+			final int n = Math.min(source[i].length, textLength - offset);
+			addOrigin(source[i].buffer, source[i].start, n);
+			offset += n;
+		}
+		addedMark = mark;
+	}
+
+	public synchronized int getOriginLength() {
+		return originLength;
+	}
+
+	public synchronized KVimTextSnapshot snapshot() {
+		moveGap(pieceCount);
+		return new KVimTextSnapshot(Arrays.copyOf(pieces, pieceCount), Arrays.copyOf(starts, pieceCount), length - 1,
+				Arrays.copyOf(origins, originCount), added, addedMark, added.length());
+	}
+
+	private void addOrigin(KVimTextBuffer buffer, int start, int count) {
+		if(originCount > 0) {
+			final Origin last = origins[originCount - 1];
+			if(last.buffer == buffer && last.start + last.length == start) {
+				origins[originCount - 1] = new Origin(buffer, last.start, last.length + count, last.base);
+				originLength += count;
+				return;
+			}
+		}
+		if(originCount == origins.length) origins = Arrays.copyOf(origins, originCount * 2);
+		origins[originCount++] = new Origin(buffer, start, count, originLength);
+		originLength += count;
+	}
+
+	public synchronized int getPieceCount() {
+		return pieceCount;
+	}
+
+	private void checkRange(int where, int len) throws BadLocationException {
+		if(where < 0 || len < 0 || where + len > length) throw new BadLocationException("Invalid location", length);
+	}
+
+	private void copyChars(int where, int len, char[] dst, int dstBegin) {
+		int i = findPiece(where);
+		int inPiece = where - start(i);
+
+		while(len > 0) {
+			final Piece piece = piece(i);
+			final int count = Math.min(len, piece.length - inPiece);
+			piece.buffer.getChars(piece.start + inPiece, piece.start + inPiece + count, dst, dstBegin);
+			dstBegin += count;
+			len -= count;
+			inPiece = 0;
+			i++;
+		}
+	}
+
+	private Piece piece(int i) {
+		return pieces[i < gapStart ? i : i + pieces.length - pieceCount];
+	}
+
+	private int start(int i) {
+		return i < gapStart ? starts[i] : length - starts[i + pieces.length - pieceCount];
+	}
+
+	private int findPiece(int offset) {
+		int lo = 0;
+		int hi = pieceCount - 1;
+		while(lo < hi) {
+			final int mid = (lo + hi + 1) >>> 1;
+			if(start(mid) <= offset) lo = mid;
+			else hi = mid - 1;
+		}
+		return lo;
+	}
+
+	private void moveGap(int index) {
+		final int gap = pieces.length - pieceCount;
+		while(gapStart < index) {
+			pieces[gapStart] = pieces[gapStart + gap];
+			starts[gapStart] = length - starts[gapStart + gap];
+			if(gap > 0) pieces[gapStart + gap] = null;
+			gapStart++;
+		}
+		while(gapStart > index) {
+			gapStart--;
+			pieces[gapStart + gap] = pieces[gapStart];
+			starts[gapStart + gap] = length - starts[gapStart];
+			if(gap > 0) pieces[gapStart] = null;
+		}
+	}
+
+	private void replacePieces(int from, int to, List<Piece> replacement, int delta) {
+		moveGap(to);
+		for(int i = from; i < to; i++) {
+			pieces[i] = null;
+		}
+		gapStart = from;
+		pieceCount -= to - from;
+
+		final int newCount = pieceCount + replacement.size();
+		if(newCount > pieces.length) {
+			final int capacity = Math.max(newCount, pieces.length * 2);
+			final int tail = pieceCount - gapStart;
+			final Piece[] grownPieces = Arrays.copyOf(pieces, capacity);
+			final int[] grownStarts = Arrays.copyOf(starts, capacity);
+			System.arraycopy(pieces, pieces.length - tail, grownPieces, capacity - tail, tail);
+			System.arraycopy(starts, starts.length - tail, grownStarts, capacity - tail, tail);
+			Arrays.fill(grownPieces, gapStart, capacity - tail, null);
+			pieces = grownPieces;
+			starts = grownStarts;
+		}
+
+		for(Piece piece : replacement) {
+			starts[gapStart] = gapStart == 0 ? 0 : starts[gapStart - 1] + pieces[gapStart - 1].length;
+			pieces[gapStart++] = piece;
+		}
+		pieceCount = newCount;
+		length += delta;
+	}
+
+	private boolean coalesce(int i) {
+		if(i < 0 || i + 1 >= pieceCount) return false;
+		final Piece left = piece(i);
+		final Piece right = piece(i + 1);
+		if(left.buffer != right.buffer || left.start + left.length != right.start) return false;
+
+		final List<Piece> merged = new ArrayList<>(1);
+		merged.add(new Piece(left.buffer, left.start, left.length + right.length));
+		replacePieces(i, i + 2, merged, 0);
+		return true;
+	}
+
+	private void insertPieces(int where, Piece[] inserted) {
+		int total = 0;
+		for(Piece piece : inserted) {
+			total += piece.length;
+		}
+		if(total == 0) return;
+
+		final int i = findPiece(where);
+		final int inPiece = where - start(i);
+		final List<Piece> replacement = new ArrayList<>(inserted.length + 2);
+
+		if(inPiece == 0) {
+			replacement.addAll(Arrays.asList(inserted));
+			replacePieces(i, i, replacement, total);
+			coalesce(i + inserted.length - 1);
+			coalesce(i - 1);
+		} else {
+			final Piece piece = piece(i);
+			replacement.add(new Piece(piece.buffer, piece.start, inPiece));
+			replacement.addAll(Arrays.asList(inserted));
+			replacement.add(new Piece(piece.buffer, piece.start + inPiece, piece.length - inPiece));
+			replacePieces(i, i + 1, replacement, total);
+		}
+
+		updateMarksForInsert(where, total);
+	}
+
+	private Piece[] removePieces(int where, int count) {
+		if(count == 0) return new Piece[0];
+
+		final int end = where + count;
+		final int first = findPiece(where);
+		final int last = findPiece(end - 1);
+		final Piece firstPiece = piece(first);
+		final Piece lastPiece = piece(last);
+		final int head = where - start(first);
+		final int tail = end - start(last);
+
+		final List<Piece> removed = new ArrayList<>(last - first + 1);
+		if(first == last) {
+			removed.add(new Piece(firstPiece.buffer, firstPiece.start + head, count));
+		} else {
+			removed.add(new Piece(firstPiece.buffer, firstPiece.start + head, firstPiece.length - head));
+			for(int i = first + 1; i < last; i++) {
+				removed.add(piece(i));
+			}
+			removed.add(new Piece(lastPiece.buffer, lastPiece.start, tail));
+		}
+
+		final List<Piece> kept = new ArrayList<>(2);
+		if(head > 0) kept.add(new Piece(firstPiece.buffer, firstPiece.start, head));
+		if(tail < lastPiece.length) kept.add(new Piece(lastPiece.buffer, lastPiece.start + tail, lastPiece.length - tail));
+		replacePieces(first, last + 1, kept, -count);
+		if(!coalesce(first - 1 + kept.size())) coalesce(first - 1);
+
+		updateMarksForRemove(where, count);
+		return removed.toArray(new Piece[0]);
+	}
+
+	private int markOffset(Mark mark) {
+		return (int) (mark.stored >= TAIL_BIAS >> 1 ? mark.stored - TAIL_BIAS + tailDelta : mark.stored);
+	}
+
+	private int findMark(int offset) {
+		int lo = 0;
+		int hi = markCount;
+		while(lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(markOffset(marks[mid]) < offset) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	private void moveTail(int index) {
+		while(tailIndex < index) {
+			final Mark mark = marks[tailIndex++];
+			mark.stored = mark.stored - TAIL_BIAS + tailDelta;
+		}
+		while(tailIndex > index) {
+			final Mark mark = marks[--tailIndex];
+			mark.stored = mark.stored + TAIL_BIAS - tailDelta;
+		}
+	}
+
+	private void updateMarksForInsert(int where, int count) {
+		moveTail(findMark(where == 0 ? 1 : where));
+		tailDelta += count;
+	}
+
+	private void updateMarksForRemove(int where, int count) {
+		final int first = findMark(where);
+		final int last = findMark(where + count);
+		moveTail(last);
+		tailDelta -= count;
+		for(int i = first; i < last; i++) {
+			marks[i].stored = where;
+		}
+	}
+
+	private MarkRefs captureMarks(int where, int count) {
+		final int first = findMark(where);
+		final int last = findMark(where + count + 1);
+		final MarkRefs refs = new MarkRefs(last - first);
+		for(int i = first; i < last; i++) {
+			refs.marks[i - first] = marks[i];
+			refs.offsets[i - first] = markOffset(marks[i]) - where;
+		}
+		return refs;
+	}
+
+	private void restoreMarks(int where, int count, MarkRefs refs) {
+		if(refs == null || refs.marks.length == 0) return;
+		int low = where;
+		int high = where + count;
+		for(Mark mark : refs.marks) {
+			final int current = markOffset(mark);
+			low = Math.min(low, current);
+			high = Math.max(high, current);
+		}
+
+		final int first = findMark(low);
+		final int last = findMark(high + 1);
+		moveTail(last);
+
+		for(int i = 0; i < refs.marks.length; i++) {
+			refs.marks[i].stored = where + refs.offsets[i];
+		}
+		Arrays.sort(marks, first, last, Comparator.comparingLong(mark -> mark.stored));
+	}
+
+	private void removeUnusedMarks() {
+		while(queue.poll() != null) {
+			unusedMarks++;
+		}
+		if(unusedMarks < Math.max(64, markCount >> 2)) return;
+
+		int kept = 0;
+		int keptTail = tailIndex;
+		for(int i = 0; i < markCount; i++) {
+			if(marks[i].get() != null) {
+				marks[kept++] = marks[i];
+			} else if(i < tailIndex) {
+				keptTail--;
+			}
+		}
+		Arrays.fill(marks, kept, markCount, null);
+		markCount = kept;
+		tailIndex = keptTail;
+		unusedMarks = 0;
+	}
+
+	static final class Piece {
+		final KVimTextBuffer buffer;
+		final int start;
+		final int length;
+
+		Piece(KVimTextBuffer buffer, int start, int length) {
+			this.buffer = buffer;
+			this.start = start;
+			this.length = length;
+		}
+	}
+
+	static final class Origin {
+		final KVimTextBuffer buffer;
+		final int start;
+		final int length;
+		final int base;
+
+		Origin(KVimTextBuffer buffer, int start, int length, int base) {
+			this.buffer = buffer;
+			this.start = start;
+			this.length = length;
+			this.base = base;
+		}
+
+		boolean contains(KVimTextBuffer buffer, int offset) {
+			return this.buffer == buffer && start <= offset && offset < start + length;
+		}
+	}
+
+	static final class Mark extends WeakReference<KVimPosition> {
+		long stored;
+
+		Mark(KVimPosition position, ReferenceQueue<KVimPosition> queue) {
+			super(position, queue);
+		}
+	}
+
+	static final class MarkRefs {
+		final Mark[] marks;
+		final int[] offsets;
+
+		MarkRefs(int size) {
+			this.marks = new Mark[size];
+			this.offsets = new int[size];
+		}
+	}
+
+	final class KVimPosition implements Position {
+		Mark mark;
+
+		@Override
+		public int getOffset() {
+			synchronized(KVimPieceTable.this) {
+				return markOffset(mark);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return Integer.toString(getOffset());
+		}
+	}
+
+	class InsertUndo extends AbstractUndoableEdit {
+		final int offset;
+		final int count;
+		Piece[] removed;
+		MarkRefs refs;
+
+		InsertUndo(int offset, int count) {
+			this.offset = offset;
+			this.count = count;
+		}
+
+		@Override
+		public void undo() throws CannotUndoException {
+			super.undo();
+			synchronized(KVimPieceTable.this) {
+				if(offset + count >= length) throw new CannotUndoException();
+				refs = captureMarks(offset, count);
+				removed = removePieces(offset, count);
+			}
+		}
+
+		@Override
+		public void redo() throws CannotRedoException {
+			super.redo();
+			synchronized(KVimPieceTable.this) {
+				if(offset >= length) throw new CannotRedoException();
+				insertPieces(offset, removed);
+				restoreMarks(offset, count, refs);
+				removed = null;
+				refs = null;
+			}
+		}
+	}
+
+	class RemoveUndo extends AbstractUndoableEdit {
+		final int offset;
+		final int count;
+		final Piece[] removed;
+		MarkRefs refs;
+
+		RemoveUndo(int offset, int count, Piece[] removed, MarkRefs refs) {
+			this.offset = offset;
+			this.count = count;
+			this.removed = removed;
+			this.refs = refs;
+		}
+
+		@Override
+		public void undo() throws CannotUndoException {
+			super.undo();
+			synchronized(KVimPieceTable.this) {
+				if(offset >= length) throw new CannotUndoException();
+				insertPieces(offset, removed);
+				restoreMarks(offset, count, refs);
+				refs = null;
+			}
+		}
+
+		@Override
+		public void redo() throws CannotRedoException {
+			super.redo();
+			synchronized(KVimPieceTable.this) {
+				if(offset + count >= length) throw new CannotRedoException();
+				refs = captureMarks(offset, count);
+				removePieces(offset, count);
+			}
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package fr.kokhaviel.kvim.api.text;
+
+public interface KVimTextBuffer {
+
+	int length();
+
+	char charAt(int index);
+
+	void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin);
+
+	char[] array();
+}
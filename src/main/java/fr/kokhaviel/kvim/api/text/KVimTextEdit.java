@@ -0,0 +1,106 @@
+package fr.kokhaviel.kvim.api.text;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class KVimTextEdit extends AbstractUndoableEdit {
+
+	static final long MERGE_DELAY = 1500;
+
+	final KVimDocument document;
+	final boolean insert;
+	int offset;
+	String text;
+	long time;
+	boolean sealed;
+
+	KVimTextEdit(KVimDocument document, int offset, String text, boolean insert) {
+		this.document = document;
+		this.offset = offset;
+		this.text = text;
+		this.insert = insert;
+		this.time = System.currentTimeMillis();
+	}
+
+	@Override
+	public void undo() throws CannotUndoException {
+		super.undo();
+		sealed = true;
+		try {
+			document.replay(!insert, offset, text);
+		} catch(BadLocationException e) {
+			throw new CannotUndoException();
+		}
+	}
+
+	@Override
+	public void redo() throws CannotRedoException {
+		super.redo();
+		sealed = true;
+		try {
+			document.replay(insert, offset, text);
+		} catch(BadLocationException e) {
+			throw new CannotRedoException();
+		}
+	}
+
+	@Override
+	public boolean addEdit(UndoableEdit anEdit) {
+		if(sealed || !canUndo() || !(anEdit instanceof KVimTextEdit)) return false;
+
+		final KVimTextEdit edit = (KVimTextEdit) anEdit;
+		if(edit.document != document || edit.insert != insert || edit.text.length() != 1 || edit.time - time > MERGE_DELAY) return false;
+
+		final char c = edit.text.charAt(0);
+		if(insert || edit.offset == offset) {
+			if(edit.offset != offset + (insert ? text.length() : 0) || !continues(text.charAt(text.length() - 1), c)) return false;
+			text += edit.text;
+		} else {
+			if(edit.offset + 1 != offset || !continues(text.charAt(0), c)) return false;
+			text = edit.text + text;
+			offset = edit.offset;
+		}
+		time = edit.time;
+		return true;
+	}
+
+	private static boolean continues(char previous, char next) {
+		return previous != '\n' && !(Character.isWhitespace(previous) && !Character.isWhitespace(next));
+	}
+
+	long getSize() {
+		return 32 + 2L * text.length();
+	}
+
+	void write(DataOutput out) throws IOException {
+		final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		out.writeBoolean(insert);
+		out.writeInt(offset);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static KVimTextEdit read(DataInput in, KVimDocument document) throws IOException {
+		final boolean insert = in.readBoolean();
+		final int offset = in.readInt();
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+
+		final KVimTextEdit edit = new KVimTextEdit(document, offset, new String(bytes, StandardCharsets.UTF_8), insert);
+		edit.sealed = true;
+		return edit;
+	}
+
+	@Override
+	public String getPresentationName() {
+		return UIManager.getString(insert ? "AbstractDocument.additionText" : "AbstractDocument.deletionText");
+	}
+}
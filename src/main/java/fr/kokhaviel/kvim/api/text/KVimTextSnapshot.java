@@ -0,0 +1,192 @@
+package fr.kokhaviel.kvim.api.text;
+
+import javax.swing.text.Segment;
+import java.io.IOException;
+
+public class KVimTextSnapshot implements CharSequence {
+
+	private static final int MAX_SEGMENT_COPY = 1 << 16;
+
+	private final KVimPieceTable.Piece[] pieces;
+	private final int[] starts;
+	private final int length;
+	private final KVimPieceTable.Origin[] origins;
+	private final KVimTextBuffer added;
+	private final int addedMark;
+	private final int addedLength;
+	private int cached;
+	private char[] scratch;
+
+	public interface Delta {
+
+		void copy(int base, int length) throws IOException;
+
+		void add(char[] chars, int offset, int count) throws IOException;
+	}
+
+	KVimTextSnapshot(KVimPieceTable.Piece[] pieces, int[] starts, int length, KVimPieceTable.Origin[] origins,
+	                 KVimTextBuffer added, int addedMark, int addedLength) {
+		this.pieces = pieces;
+		this.starts = starts;
+		this.length = length;
+		this.origins = origins;
+		this.added = added;
+		this.addedMark = addedMark;
+		this.addedLength = addedLength;
+	}
+
+	KVimPieceTable.Piece[] getPieces() {
+		return pieces;
+	}
+
+	int getAddedLength() {
+		return addedLength;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if(index < 0 || index >= length) throw new IndexOutOfBoundsException(String.valueOf(index));
+		final int i = findPiece(index);
+		final KVimPieceTable.Piece piece = pieces[i];
+		return piece.buffer.charAt(piece.start + index - starts[i]);
+	}
+
+	public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+		if(srcBegin < 0 || srcEnd > length || srcBegin > srcEnd) {
+			throw new IndexOutOfBoundsException(srcBegin + ", " + srcEnd);
+		}
+
+		int i = findPiece(srcBegin);
+		int inPiece = srcBegin - starts[i];
+		int len = srcEnd - srcBegin;
+
+		while(len > 0) {
+			final KVimPieceTable.Piece piece = pieces[i];
+			final int count = Math.min(len, piece.length - inPiece);
+			piece.buffer.getChars(piece.start + inPiece, piece.start + inPiece + count, dst, dstBegin);
+			dstBegin += count;
+			len -= count;
+			inPiece = 0;
+			i++;
+		}
+	}
+
+	public int getSegment(int offset, Segment segment) {
+		if(offset >= length) {
+			segment.array = new char[0];
+			segment.offset = 0;
+			segment.count = 0;
+			return 0;
+		}
+
+		final int i = findPiece(offset);
+		final KVimPieceTable.Piece piece = pieces[i];
+		final int inPiece = offset - starts[i];
+		final int count = Math.min(piece.length - inPiece, length - offset);
+		final char[] array = piece.buffer.array();
+
+		if(array != null) {
+			segment.array = array;
+			segment.offset = piece.start + inPiece;
+			segment.count = count;
+		} else {
+			final int copied = Math.min(count, MAX_SEGMENT_COPY);
+			if(scratch == null) scratch = new char[MAX_SEGMENT_COPY];
+			piece.buffer.getChars(piece.start + inPiece, piece.start + inPiece + copied, scratch, 0);
+			segment.array = scratch;
+			segment.offset = 0;
+			segment.count = copied;
+		}
+		return segment.count;
+	}
+
+	public void delta(Delta delta) throws IOException {
+		int o = 0;
+		int copyBase = -1;
+		int copyLength = 0;
+
+		for(int i = 0, offset = 0; i < pieces.length && offset < length; i++) {
+			final KVimPieceTable.Piece piece = pieces[i];
+			int start = piece.start;
+			int count = Math.min(piece.length, length - offset);
+			offset += count;
+
+			while(count > 0) {
+				int found = piece.buffer == added && start >= addedMark ? origins.length : o;
+				while(found < origins.length && !origins[found].contains(piece.buffer, start)) found++;
+
+				if(found == origins.length) {
+					if(copyLength > 0) delta.copy(copyBase, copyLength);
+					copyLength = 0;
+					add(delta, piece.buffer, start, count);
+					break;
+				}
+
+				o = found;
+				final KVimPieceTable.Origin origin = origins[o];
+				int copied = Math.min(count, origin.start + origin.length - start);
+				if(piece.buffer == added) copied = Math.min(copied, addedMark - start);
+
+				final int base = origin.base + start - origin.start;
+				if(copyLength > 0 && copyBase + copyLength == base) {
+					copyLength += copied;
+				} else {
+					if(copyLength > 0) delta.copy(copyBase, copyLength);
+					copyBase = base;
+					copyLength = copied;
+				}
+				start += copied;
+				count -= copied;
+			}
+		}
+		if(copyLength > 0) delta.copy(copyBase, copyLength);
+	}
+
+	private void add(Delta delta, KVimTextBuffer buffer, int start, int count) throws IOException {
+		final char[] array = buffer.array();
+		if(array != null) {
+			delta.add(array, start, count);
+			return;
+		}
+
+		if(scratch == null) scratch = new char[MAX_SEGMENT_COPY];
+		for(int done = 0; done < count; ) {
+			final int copied = Math.min(count - done, MAX_SEGMENT_COPY);
+			buffer.getChars(start + done, start + done + copied, scratch, 0);
+			delta.add(scratch, 0, copied);
+			done += copied;
+		}
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		final char[] chars = new char[end - start];
+		getChars(start, end, chars, 0);
+		return new String(chars);
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, length).toString();
+	}
+
+	private int findPiece(int offset) {
+		final int c = cached;
+		if(c < pieces.length && starts[c] <= offset && offset < starts[c] + pieces[c].length) return c;
+
+		int lo = 0;
+		int hi = pieces.length - 1;
+		while(lo < hi) {
+			final int mid = (lo + hi + 1) >>> 1;
+			if(starts[mid] <= offset) lo = mid;
+			else hi = mid - 1;
+		}
+		cached = lo;
+		return lo;
+	}
+}
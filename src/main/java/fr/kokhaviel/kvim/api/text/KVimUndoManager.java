@@ -0,0 +1,196 @@
+package fr.kokhaviel.kvim.api.text;
+
+import fr.kokhaviel.kvim.KVim;
+
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.event.UndoableEditListener;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+public class KVimUndoManager implements UndoableEditListener {
+
+	static final long MAX_BYTES = 8L << 20;
+	static final long SPILL_BYTES = MAX_BYTES / 2;
+
+	private final KVimDocument document;
+	private final Deque<UndoableEdit> done = new ArrayDeque<>();
+	private final Deque<UndoableEdit> undone = new ArrayDeque<>();
+	private final List<Long> blocks = new ArrayList<>();
+	private long size;
+	private Path spillFile;
+	private FileChannel spill;
+	private boolean spillFailed;
+
+	public KVimUndoManager(KVimDocument document) {
+		this.document = document;
+		document.addUndoableEditListener(this);
+	}
+
+	@Override
+	public void undoableEditHappened(UndoableEditEvent undoableEditEvent) {
+		addEdit(undoableEditEvent.getEdit());
+	}
+
+	public void addEdit(UndoableEdit edit) {
+		if(!(edit instanceof KVimTextEdit || edit instanceof KVimCompoundEdit)) return;
+
+		undone.forEach(redo -> size -= sizeOf(redo));
+		undone.clear();
+
+		final UndoableEdit last = done.peekLast();
+		if(last != null) {
+			final long lastSize = sizeOf(last);
+			if(last.addEdit(edit)) {
+				size += sizeOf(last) - lastSize;
+				return;
+			}
+		}
+
+		done.addLast(edit);
+		size += sizeOf(edit);
+		if(size > MAX_BYTES && !spillFailed) spill();
+	}
+
+	public boolean canUndo() {
+		return !done.isEmpty() || !blocks.isEmpty();
+	}
+
+	public boolean canRedo() {
+		return !undone.isEmpty();
+	}
+
+	public void undo() throws CannotUndoException {
+		if(done.isEmpty() && !blocks.isEmpty()) restore();
+		if(done.isEmpty()) throw new CannotUndoException();
+
+		final UndoableEdit edit = done.removeLast();
+		edit.undo();
+		undone.addLast(edit);
+	}
+
+	public void redo() throws CannotRedoException {
+		if(undone.isEmpty()) throw new CannotRedoException();
+
+		final UndoableEdit edit = undone.removeLast();
+		edit.redo();
+		done.addLast(edit);
+	}
+
+	public void discardAllEdits() {
+		document.removeUndoableEditListener(this);
+		done.clear();
+		undone.clear();
+		size = 0;
+		closeSpill();
+	}
+
+	private void spill() {
+		final List<UndoableEdit> edits = new ArrayList<>();
+		long spilled = 0;
+		while(done.size() > 1 && size - spilled > SPILL_BYTES) {
+			final UndoableEdit edit = done.removeFirst();
+			spilled += sizeOf(edit);
+			edits.add(edit);
+		}
+		size -= spilled;
+
+		long position = -1;
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try(DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+				out.writeInt(edits.size());
+				for(UndoableEdit edit : edits) {
+					out.writeBoolean(edit instanceof KVimCompoundEdit);
+					if(edit instanceof KVimCompoundEdit) ((KVimCompoundEdit) edit).write(out);
+					else ((KVimTextEdit) edit).write(out);
+				}
+			}
+
+			if(spill == null) openSpill();
+			position = spill.size();
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+			while(buffer.hasRemaining()) spill.write(buffer, position + buffer.position());
+			blocks.add(position);
+		} catch(IOException e) {
+			for(int i = edits.size() - 1; i >= 0; i--) {
+				done.addFirst(edits.get(i));
+			}
+			size += spilled;
+			spillFailed = true;
+			if(position >= 0) {
+				try {
+					spill.truncate(position);
+				} catch(IOException ignored) {
+				}
+			}
+		}
+	}
+
+	private void restore() {
+		final long position = blocks.remove(blocks.size() - 1);
+		try {
+			final ByteBuffer buffer = ByteBuffer.allocate((int) (spill.size() - position));
+			while(buffer.hasRemaining()) {
+				if(spill.read(buffer, position + buffer.position()) < 0) throw new IOException("Truncated undo history");
+			}
+			spill.truncate(position);
+
+			try(DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(buffer.array())))) {
+				final int count = in.readInt();
+				final List<UndoableEdit> edits = new ArrayList<>(count);
+				for(int i = 0; i < count; i++) {
+					edits.add(in.readBoolean() ? KVimCompoundEdit.read(in, document) : KVimTextEdit.read(in, document));
+				}
+				for(int i = count - 1; i >= 0; i--) {
+					done.addFirst(edits.get(i));
+					size += sizeOf(edits.get(i));
+				}
+			}
+		} catch(IOException e) {
+			closeSpill();
+		}
+	}
+
+	private void openSpill() throws IOException {
+		final Path dir = Paths.get(KVim.kVimProperties.getPropsDir() + "/undo");
+		Files.createDirectories(dir);
+		spillFile = Files.createTempFile(dir, "undo-", ".bin");
+		spillFile.toFile().deleteOnExit();
+		spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+	}
+
+	private void closeSpill() {
+		blocks.clear();
+		if(spill == null) return;
+
+		try {
+			spill.close();
+			Files.deleteIfExists(spillFile);
+		} catch(IOException ignored) {
+		}
+		spill = null;
+		spillFile = null;
+	}
+
+	private static long sizeOf(UndoableEdit edit) {
+		return edit instanceof KVimCompoundEdit ? ((KVimCompoundEdit) edit).getSize() : ((KVimTextEdit) edit).getSize();
+	}
+}
@@ -2,12 +2,15 @@ package fr.kokhaviel.kvim.gui;
 
 import fr.kokhaviel.kvim.api.actions.RecentFile;
 import fr.kokhaviel.kvim.api.actions.file.KVimOpen;
+import fr.kokhaviel.kvim.api.actions.file.KVimSave;
+import fr.kokhaviel.kvim.api.actions.file.KVimJournal;
+import fr.kokhaviel.kvim.api.actions.file.KVimSession;
+import fr.kokhaviel.kvim.api.gui.KVimGutter;
 import fr.kokhaviel.kvim.api.gui.KVimProjectExplorer;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 import fr.kokhaviel.kvim.gui.split.KVimSplitTab;
 
 import javax.swing.*;
-import javax.swing.text.BadLocationException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -29,6 +32,13 @@ public class KVimMain extends JFrame {
 	public static boolean isSplit = false;
 
 	Path file;
+	KVimMenuBar menuBar;
+	KVimTabNav tabNav;
+	KVimSideBar sideBar;
+	KVimGutter gutter;
+	KVimProjectExplorer explorer;
+	Path explorerRoot;
+	final JScrollPane scrollPane = new JScrollPane();
 	String height = kVimProperties.getLastParams().getProperty("height");
 	String width = kVimProperties.getLastParams().getProperty("width");
 	String x = kVimProperties.getLastParams().getProperty("x");
@@ -38,7 +48,7 @@ public class KVimMain extends JFrame {
 		super("Untitled - KVim");
 		this.file = null;
 		tabs.add(new KVimTab(null, 0));
-		initFrame();
+		initFrame(0);
 	}
 
 	public KVimMain(List<Path> files) throws HeadlessException, IOException {
@@ -47,30 +57,43 @@ public class KVimMain extends JFrame {
 		this.file = lastFile;
 		for(int i = 0; i < files.size(); i++) {
 			tabs.add(new KVimTab(files.get(i), i));
-			tabs.get(i).setText(KVimOpen.getFileContent(files.get(i)));
 		}
 		KVimOpen.updateRecent(new RecentFile(lastFile.toFile().getName(), lastFile.getParent()));
-		initFrame();
+		initFrame(tabs.size() - 1);
 	}
 
-	public void initFrame() {
+	public KVimMain(List<KVimTab> restored, int selected) throws HeadlessException {
+		super(restored.get(selected).getFilename() + " - KVim");
+		this.file = restored.get(selected).getFilePath();
+		tabs.addAll(restored);
+		initFrame(selected);
+	}
+
+	public void initFrame(int index) {
 		this.setBackground(new Color(R, G, B));
 		this.setIconImage(new ImageIcon(ClassLoader.getSystemResource("kvim/kvim-104x93.png")).getImage());
 		this.setSize(Integer.parseInt(width), Integer.parseInt(height));
 		this.setLocation(Integer.parseInt(x), Integer.parseInt(y));
 		this.setLayout(new BorderLayout());
 		this.setMinimumSize(new Dimension(480, 325));
-		this.setJMenuBar(new KVimMenuBar(tabs.get(tabs.size() - 1)));
-		this.getContentPane().add(new KVimTabNav(), BorderLayout.NORTH);
-		this.updateTab(tabs.size() - 1, true);
+		this.menuBar = new KVimMenuBar(tabs.get(index));
+		this.tabNav = new KVimTabNav();
+		this.sideBar = new KVimSideBar(tabs.get(index));
+		this.gutter = new KVimGutter(tabs.get(index));
+		this.scrollPane.setRowHeaderView(gutter);
+		this.setJMenuBar(menuBar);
+		this.updateTab(index, true);
 		this.setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
 		this.addWindowListener(new KVimCloseApp());
 		kVimMain = this;
 	}
 
-	public void updateTabNav(int index) {
-		this.add(new KVimTabNav(), BorderLayout.NORTH);
-		this.setJMenuBar(new KVimMenuBar(tabs.get(index)));
+	public KVimMenuBar getKVimMenuBar() {
+		return menuBar;
+	}
+
+	public KVimTab getCurrentTab() {
+		return menuBar.curTab;
 	}
 
 	private void updateIndexes() {
@@ -78,55 +101,73 @@ public class KVimMain extends JFrame {
 			tabs.get(i).setIndex(i);
 		}
 	}
+
 	public void updateTab(int index, boolean up) {
-		this.getContentPane().removeAll();
-		if(tabs.isEmpty()) createUntitledTab();
-		updateTabNav(index);
+		if(tabs.isEmpty()) {
+			createUntitledTab();
+			return;
+		}
 		updateIndexes();
+		KVimSession.changed();
 		final KVimTab kVimTab = tabs.get(index);
+		kVimTab.activate();
 		if(up) kVimTab.setCaretPosition(0);
-		JScrollPane sp = new JScrollPane(kVimTab);
-		this.add(sp, BorderLayout.CENTER);
-		this.getContentPane().revalidate();
-		this.getContentPane().repaint();
-		isSplit = false;
 
-		if(KVimMenuBar.isSideBarEnabled) {
-			try {
-				this.getContentPane().add(new KVimSideBar(tabs.get(index)), BorderLayout.SOUTH);
-			} catch(BadLocationException e) {
-				throw new RuntimeException(e);
+		menuBar.setTab(kVimTab);
+		tabNav.update(kVimTab);
+		sideBar.setTab(kVimTab);
+		gutter.setTab(kVimTab);
+		if(scrollPane.getViewport().getView() != kVimTab) scrollPane.setViewportView(kVimTab);
+
+		if(KVimMenuBar.isProjectBarEnabled && kVimTab.isProject()) {
+			if(!kVimTab.getRootProjPath().equals(explorerRoot)) {
+				explorerRoot = kVimTab.getRootProjPath();
+				explorer = new KVimProjectExplorer(explorerRoot.toFile());
 			}
 		}
 
-		if(KVimMenuBar.isProjectBarEnabled) {
-			this.getContentPane().add(new KVimProjectExplorer(tabs.get(index).getRootProjPath().toFile()), BorderLayout.WEST);
-		}
+		setContent(tabNav, scrollPane, KVimMenuBar.isSideBarEnabled ? sideBar : null,
+				KVimMenuBar.isProjectBarEnabled && kVimTab.isProject() ? explorer : null);
+		isSplit = false;
 	}
 
 	public void updateSplit(int leftIndex, int rightIndex, KVimSplitTab.SplitOrientation orientation) {
-		this.getContentPane().removeAll();
-		this.setJMenuBar(new KVimMenuBar(tabs.get(leftIndex)));
 		updateIndexes();
+		KVimSession.changed();
+		tabs.get(leftIndex).activate();
+		tabs.get(rightIndex).activate();
+		menuBar.setTab(tabs.get(leftIndex));
 		KVimSplitTab.curLeftTab = tabs.get(leftIndex);
 		KVimSplitTab.curRightTab = tabs.get(rightIndex);
-		try {
-			this.add(new KVimSplitTab(tabs.get(leftIndex), tabs.get(rightIndex),
-					orientation, KVimMenuBar.isSideBarEnabled), BorderLayout.CENTER);
-		} catch(BadLocationException e) {
-			throw new RuntimeException(e);
-		}
-		this.getContentPane().revalidate();
-		this.getContentPane().repaint();
+		setContent(null, new KVimSplitTab(tabs.get(leftIndex), tabs.get(rightIndex),
+				orientation, KVimMenuBar.isSideBarEnabled), null, null);
 		isSplit = true;
 	}
 
+	private void setContent(Component north, Component center, Component south, Component west) {
+		final Container pane = this.getContentPane();
+		final BorderLayout layout = (BorderLayout) pane.getLayout();
+
+		if(layout.getLayoutComponent(BorderLayout.NORTH) == north && layout.getLayoutComponent(BorderLayout.CENTER) == center
+				&& layout.getLayoutComponent(BorderLayout.SOUTH) == south && layout.getLayoutComponent(BorderLayout.WEST) == west) {
+			return;
+		}
+
+		pane.removeAll();
+		if(north != null) pane.add(north, BorderLayout.NORTH);
+		if(center != null) pane.add(center, BorderLayout.CENTER);
+		if(south != null) pane.add(south, BorderLayout.SOUTH);
+		if(west != null) pane.add(west, BorderLayout.WEST);
+		pane.revalidate();
+		pane.repaint();
+	}
+
 	public class KVimCloseApp extends WindowAdapter {
 
 		@Override
 		public void windowClosing(WindowEvent windowEvent) {
 			int clickedButton = JOptionPane.showConfirmDialog(KVimMain.this,
-					"Are you sure to close app ? All unsaved modifications will be LOST !", "Close KVim x'(", JOptionPane.YES_NO_OPTION);
+					"Are you sure to close app ? Unsaved modifications will be restored on next start.", "Close KVim x'(", JOptionPane.YES_NO_OPTION);
 
 			if(clickedButton == JOptionPane.YES_OPTION) {
 				kVimProperties.getLastParams().replace("height", String.valueOf(KVimMain.this.getHeight()));
@@ -137,6 +178,9 @@ public class KVimMain extends JFrame {
 					kVimProperties.getLastParams().store(Files.newOutputStream(Paths.get(kVimProperties.getPropsDir() + "/last_params.properties")), null);
 				} catch(IOException ignored) {
 				}
+				KVimSave.awaitPendingSaves();
+				KVimSession.saveNow();
+				KVimJournal.closeAll();
 				KVimMain.this.dispose();
 				System.exit(0);
 			}
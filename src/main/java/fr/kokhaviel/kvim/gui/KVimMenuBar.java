@@ -1,10 +1,13 @@
 package fr.kokhaviel.kvim.gui;
 
 import fr.kokhaviel.kvim.api.FileType;
-import fr.kokhaviel.kvim.api.actions.FileWatcher;
+import fr.kokhaviel.kvim.api.KVimTasks;
+import fr.kokhaviel.kvim.api.actions.KVimFileEvent;
+import fr.kokhaviel.kvim.api.actions.KVimWatchService;
 import fr.kokhaviel.kvim.api.actions.edit.*;
 import fr.kokhaviel.kvim.api.actions.file.*;
 import fr.kokhaviel.kvim.api.actions.todos.KVimTODO;
+import fr.kokhaviel.kvim.api.actions.todos.KVimTODOManager;
 import fr.kokhaviel.kvim.api.actions.tools.KVimTools;
 import fr.kokhaviel.kvim.api.git.*;
 import fr.kokhaviel.kvim.api.gui.KVimNewMenuItem;
@@ -14,19 +17,17 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Ref;
 
 import javax.swing.*;
-import javax.swing.event.CaretEvent;
-import javax.swing.event.CaretListener;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 import javax.swing.text.BadLocationException;
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.*;
-import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
-import java.util.Timer;
 import java.util.*;
 
 import static fr.kokhaviel.kvim.api.actions.file.KVimNewFile.createUntitledTab;
@@ -35,14 +36,17 @@ import static fr.kokhaviel.kvim.gui.KVimMain.*;
 public class KVimMenuBar extends JMenuBar {
 
 
-	CaretListener listener = new CaretListener() {
+	KeyListener overwriteListener = new KeyAdapter() {
 		@Override
-		public void caretUpdate(CaretEvent caretEvent) {
-			if(isSplit) {
-				kVimMain.updateSplit(
-						KVimSplitTab.curLeftTab.getIndex(), KVimSplitTab.curRightTab.getIndex(), KVimSplitTab.curOrientation);
-			} else {
-				kVimMain.updateTab(curTab.getIndex(), false);
+		public void keyTyped(KeyEvent keyEvent) {
+			if(isOverwriteModeEnabled) {
+				final int i = curTab.getCaretPosition();
+				if(i >= curTab.getDocument().getLength()) return;
+				try {
+					curTab.getDocument().remove(i, 1);
+				} catch(BadLocationException e) {
+					throw new RuntimeException(e);
+				}
 			}
 		}
 	};
@@ -53,6 +57,7 @@ public class KVimMenuBar extends JMenuBar {
 	public static boolean isProjectBarEnabled;
 
 	KVimTab curTab;
+	KVimWatchService.Subscription autoReloadSubscription;
 
 	//TODO : Add GITHUB Menu
 	//TODO : Add Icon Images
@@ -69,6 +74,7 @@ public class KVimMenuBar extends JMenuBar {
 	//File Menu
 	JMenu newBtn = new JMenu("New");
 	JMenuItem openBtn = new JMenuItem("Open");
+	JMenuItem gotoFileBtn = new JMenuItem("Go to File");
 	JMenu openRecBtn = new JMenu("Open Recent");
 	JMenuItem saveBtn = new JMenuItem("Save");
 	JMenuItem mvBtn = new JMenuItem("Move File");
@@ -105,6 +111,7 @@ public class KVimMenuBar extends JMenuBar {
 	JMenuItem copyBtn = new JMenuItem("Copy");
 	JMenuItem pasteBtn = new JMenuItem("Paste");
 	JMenuItem findBtn = new JMenuItem("Find");
+	JMenuItem findFilesBtn = new JMenuItem("Find in Files");
 	JMenuItem rplBtn = new JMenuItem("Replace");
 	JMenuItem symBtn = new JMenuItem("Insert Symbol");
 
@@ -134,6 +141,8 @@ public class KVimMenuBar extends JMenuBar {
 	//Projects Menu
 	JCheckBox swProjectBar = new JCheckBox("Show Project Explorer");
 	JMenuItem todoBtn = new JMenuItem("Project TODO list");
+	JMenuItem gotoSymbolBtn = new JMenuItem("Go to Symbol");
+	JMenuItem gotoDefBtn = new JMenuItem("Go to Definition");
 
 	//Git Menu
 	JMenuItem gitInitBtn = new JMenuItem("Git Init");
@@ -147,6 +156,8 @@ public class KVimMenuBar extends JMenuBar {
 	JMenuItem gitDiffBtn = new JMenuItem("Git Diff");
 	JMenuItem gitFetchBtn = new JMenuItem("Git Fetch");
 	JMenuItem gitLogBtn = new JMenuItem("Git Log");
+	JMenuItem gitFileLogBtn = new JMenuItem("File History");
+	JCheckBox gitBlameBtn = new JCheckBox("Git Blame");
 	JMenuItem gitMergeBtn = new JMenuItem("Git Merge");
 	JMenuItem gitPullBtn = new JMenuItem("Git Pull");
 	JMenuItem gitPushBtn = new JMenuItem("Git Push");
@@ -171,6 +182,7 @@ public class KVimMenuBar extends JMenuBar {
 	JMenuItem whatsThis = new JMenuItem("What's This ?");
 	JMenuItem reportBug = new JMenuItem("Report Bug ...");
 	JMenuItem about = new JMenuItem("About KVim");
+	JMenuItem perfBtn = new JMenuItem("Performance");
 
 	{
 		fileBtn.setMnemonic('f');
@@ -183,6 +195,7 @@ public class KVimMenuBar extends JMenuBar {
 
 		newBtn.setMnemonic('n');
 		openBtn.setMnemonic('o');
+		gotoFileBtn.setMnemonic('g');
 		openRecBtn.setMnemonic('t');
 		saveBtn.setMnemonic('s');
 		mvBtn.setMnemonic('m');
@@ -217,6 +230,7 @@ public class KVimMenuBar extends JMenuBar {
 		copyBtn.setMnemonic('c');
 		pasteBtn.setMnemonic('v');
 		findBtn.setMnemonic('f');
+		findFilesBtn.setMnemonic('i');
 		rplBtn.setMnemonic('r');
 		symBtn.setMnemonic('s');
 		selAllBtn.setMnemonic('a');
@@ -239,6 +253,8 @@ public class KVimMenuBar extends JMenuBar {
 
 		swProjectBar.setMnemonic('e');
 		todoBtn.setMnemonic('t');
+		gotoSymbolBtn.setMnemonic('s');
+		gotoDefBtn.setMnemonic('d');
 
 		gitInitBtn.setMnemonic('i');
 		gitCloneBtn.setMnemonic('o');
@@ -251,6 +267,8 @@ public class KVimMenuBar extends JMenuBar {
 		gitDiffBtn.setMnemonic('d');
 		gitFetchBtn.setMnemonic('f');
 		gitLogBtn.setMnemonic('l');
+		gitFileLogBtn.setMnemonic('y');
+		gitBlameBtn.setMnemonic('e');
 		gitMergeBtn.setMnemonic('m');
 		gitPullBtn.setMnemonic('p');
 		gitPushBtn.setMnemonic('u');
@@ -274,6 +292,7 @@ public class KVimMenuBar extends JMenuBar {
 		about.setMnemonic('a');
 
 		openBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, KeyEvent.CTRL_DOWN_MASK));
+		gotoFileBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N, KeyEvent.CTRL_DOWN_MASK | KeyEvent.SHIFT_DOWN_MASK));
 		saveBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, KeyEvent.CTRL_DOWN_MASK));
 		mvBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_M, KeyEvent.CTRL_DOWN_MASK));
 		deleteBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, KeyEvent.SHIFT_DOWN_MASK));
@@ -289,6 +308,7 @@ public class KVimMenuBar extends JMenuBar {
 		swUpBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_UP, KeyEvent.ALT_DOWN_MASK));
 		swDownBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, KeyEvent.ALT_DOWN_MASK));
 		findBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F, KeyEvent.ALT_DOWN_MASK));
+		findFilesBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F, KeyEvent.CTRL_DOWN_MASK | KeyEvent.SHIFT_DOWN_MASK));
 		rplBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_H, KeyEvent.ALT_DOWN_MASK));
 
 		prevTabBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_LEFT, KeyEvent.ALT_DOWN_MASK));
@@ -296,6 +316,8 @@ public class KVimMenuBar extends JMenuBar {
 		gotoLine.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_G, KeyEvent.CTRL_DOWN_MASK));
 
 		todoBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_T, KeyEvent.CTRL_DOWN_MASK));
+		gotoSymbolBtn.setAccelerator(KeyStroke.getKeyStroke("control alt shift N"));
+		gotoDefBtn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_B, KeyEvent.CTRL_DOWN_MASK));
 
 		upText.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_U, KeyEvent.CTRL_DOWN_MASK));
 		lowText.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_L, KeyEvent.CTRL_DOWN_MASK));
@@ -327,6 +349,7 @@ public class KVimMenuBar extends JMenuBar {
 
 	public KVimMenuBar(KVimTab tab) {
 		this.curTab = tab;
+		curTab.addKeyListener(overwriteListener);
 
 		fillFile();
 		fillFileNew();
@@ -349,6 +372,60 @@ public class KVimMenuBar extends JMenuBar {
 
 		fillHelp();
 		this.add(helpBtn);
+
+		updateState();
+		updateAutoReload();
+	}
+
+	public void setTab(KVimTab tab) {
+		if(tab == curTab) {
+			updateState();
+			return;
+		}
+
+		curTab.removeKeyListener(overwriteListener);
+		this.curTab = tab;
+		curTab.addKeyListener(overwriteListener);
+		updateState();
+		updateAutoReload();
+	}
+
+	public void updateState() {
+		new ArrayList<>(Arrays.asList(mvBtn, cpBtn, reloadBtn, deleteBtn, cpPathBtn, openDirBtn, propsBtn))
+				.forEach(item -> item.setEnabled(!curTab.isUntitled()));
+
+		prevTabBtn.setEnabled(curTab.getIndex() > 0);
+		nextTabBtn.setEnabled(curTab.getIndex() < tabs.size() - 1);
+
+		projBtn.setEnabled(curTab.isProject());
+
+		gitBtn.setEnabled(!curTab.isUntitled());
+		gitInitBtn.setEnabled(!curTab.hasAGitRepo());
+		new ArrayList<>(Arrays.asList(gitStatusBtn, gitLogBtn, gitFileLogBtn, gitAddBtn, gitCommitBtn, gitPushBtn, gitTagBtn,
+				gitRmBtn, gitDiffBtn, gitFetchBtn, gitMergeBtn, gitPullBtn, gitBranchBtn, gitCheckoutBtn))
+				.forEach(item -> item.setEnabled(curTab.hasAGitRepo()));
+
+		final KVimGitMarkers markers = KVimGitMarkers.get(curTab);
+		gitBlameBtn.setEnabled(markers != null);
+		gitBlameBtn.setSelected(markers != null && markers.isBlaming());
+	}
+
+	public void updateAutoReload() {
+		if(autoReloadSubscription != null) autoReloadSubscription.cancel();
+		autoReloadSubscription = null;
+
+		if(!curTab.isUntitled() && isAutoReloadEnabled) {
+			final KVimTab tab = curTab;
+			autoReloadSubscription = KVimWatchService.subscribe(tab.getFilePath(), false, events -> {
+				if(events.stream().allMatch(event -> event.getKind() == KVimFileEvent.Kind.DELETED)) return;
+				if(!tab.isChangedOnDisk()) return;
+				try {
+					tab.reload();
+				} catch(IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+		}
 	}
 
 	public void fillFile() {
@@ -364,6 +441,12 @@ public class KVimMenuBar extends JMenuBar {
 				KVimOpen.openFile();
 			}
 		});
+		gotoFileBtn.addActionListener(new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				KVimGotoFile.gotoFile(curTab);
+			}
+		});
 		saveBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
@@ -456,6 +539,7 @@ public class KVimMenuBar extends JMenuBar {
 
 		fileBtn.add(newBtn);
 		fileBtn.add(openBtn);
+		fileBtn.add(gotoFileBtn);
 		fileBtn.add(openRecBtn);
 		fileBtn.addSeparator();
 		fileBtn.add(saveBtn);
@@ -473,15 +557,6 @@ public class KVimMenuBar extends JMenuBar {
 		fileBtn.add(restartBtn);
 		fileBtn.add(quitBtn);
 
-		if(curTab.isUntitled()) {
-			mvBtn.setEnabled(false);
-			cpBtn.setEnabled(false);
-			reloadBtn.setEnabled(false);
-			deleteBtn.setEnabled(false);
-			cpPathBtn.setEnabled(false);
-			openDirBtn.setEnabled(false);
-			propsBtn.setEnabled(false);
-		}
 	}
 
 	public void fillFileNew() {
@@ -526,19 +601,6 @@ public class KVimMenuBar extends JMenuBar {
 			}
 		});
 
-		curTab.addKeyListener(new KeyAdapter() {
-			@Override
-			public void keyTyped(KeyEvent keyEvent) {
-				if(isOverwriteModeEnabled) {
-					int i = curTab.getCaretPosition();
-					String tmp = curTab.getText().substring(0, i)
-							+ curTab.getText().substring(i + 1);
-					curTab.setText(tmp);
-					curTab.setCaretPosition(i);
-				}
-			}
-		});
-
 		ovrModBtn.addItemListener(itemEvent -> isOverwriteModeEnabled = ovrModBtn.isSelected());
 
 		cutBtn.addActionListener(new AbstractAction() {
@@ -612,6 +674,12 @@ public class KVimMenuBar extends JMenuBar {
 				KVimFind.findOccurrences(curTab);
 			}
 		});
+		findFilesBtn.addActionListener(new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				KVimFindInFiles.findInFiles(curTab);
+			}
+		});
 		rplBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
@@ -633,6 +701,7 @@ public class KVimMenuBar extends JMenuBar {
 		editBtn.add(swDownBtn);
 		editBtn.addSeparator();
 		editBtn.add(findBtn);
+		editBtn.add(findFilesBtn);
 		editBtn.add(rplBtn);
 		editBtn.addSeparator();
 		editBtn.add(symBtn);
@@ -718,20 +787,10 @@ public class KVimMenuBar extends JMenuBar {
 			}
 		});
 
-		autoRlBtn.addItemListener(itemEvent -> isAutoReloadEnabled = autoRlBtn.isSelected());
-
-		Arrays.asList(curTab.getListeners(CaretListener.class)).forEach(curTab::removeCaretListener);
-		curTab.addCaretListener(listener);
-
-		if(!curTab.isUntitled() && autoRlBtn.isSelected()) {
-			TimerTask autoReloadTask = new FileWatcher(curTab.getFilePath().toFile()) {
-				@Override
-				protected void onChange(File file) throws IOException {
-					curTab.setText(KVimOpen.getFileContent(curTab.getFilePath()));
-				}
-			};
-			new Timer().schedule(autoReloadTask, new Date(), 3000);
-		}
+		autoRlBtn.addItemListener(itemEvent -> {
+			isAutoReloadEnabled = autoRlBtn.isSelected();
+			updateAutoReload();
+		});
 
 		viewBtn.add(splVertBtn);
 		viewBtn.add(splHorizBtn);
@@ -746,30 +805,37 @@ public class KVimMenuBar extends JMenuBar {
 		viewBtn.addSeparator();
 		viewBtn.add(swSidebarBtn);
 		viewBtn.add(autoRlBtn);
-
-		if(curTab.getIndex() == 0) {
-			prevTabBtn.setEnabled(false);
-		}
-
-		if(curTab.getIndex() == tabs.size() - 1) {
-			nextTabBtn.setEnabled(false);
-		}
 	}
 
 	public void fillProjects() {
 		projBtn.add(todoBtn);
 		projBtn.add(swProjectBar);
+		projBtn.addSeparator();
+		projBtn.add(gotoSymbolBtn);
+		projBtn.add(gotoDefBtn);
 
 		todoBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
+				final KVimTab tab = curTab;
+				KVimTasks.<KVimTODOManager>task("Load TODOs", task -> {
+					final KVimTODOManager manager = new KVimTODOManager(tab.getRootProjPath());
+					manager.read();
+					return manager;
+				}).onDone(manager -> new KVimTODO(tab, manager).setVisible(true)).start();
+			}
+		});
 
-				try {
-					KVimTODO todo = new KVimTODO(curTab);
-					todo.setVisible(true);
-				} catch(IOException | ClassNotFoundException e) {
-					throw new RuntimeException(e);
-				}
+		gotoSymbolBtn.addActionListener(new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				KVimGotoSymbol.gotoSymbol(curTab);
+			}
+		});
+		gotoDefBtn.addActionListener(new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				KVimGotoSymbol.gotoDefinition(curTab);
 			}
 		});
 
@@ -777,87 +843,68 @@ public class KVimMenuBar extends JMenuBar {
 			isProjectBarEnabled = swProjectBar.isSelected();
 			kVimMain.updateTab(curTab.getIndex(), false);
 		});
-
-		if(!curTab.isProject()) {
-			projBtn.setEnabled(false);
-		}
 	}
 
 	public void fillGit() {
 		gitInitBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitInit.initRepo(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitInit.initRepo(curTab);
 			}
 		});
 
 		gitCloneBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitClone.cloneRepo();
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitClone.cloneRepo();
 			}
 		});
 
 		gitStatusBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitStatus.showStatus(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitStatus.showStatus(curTab);
 			}
 		});
 
 		gitLogBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitLog.showLog(curTab);
-				} catch(GitAPIException e) {
-					JOptionPane.showMessageDialog(kVimMain,
-							"No log available : No HEAD exists and no explicit starting revision was specified",
-							"No Log", JOptionPane.WARNING_MESSAGE);
-				}
+				KVimGitLog.showLog(curTab);
+			}
+		});
+
+		gitFileLogBtn.addActionListener(new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				KVimGitLog.showFileLog(curTab);
+			}
+		});
+
+		gitBlameBtn.addActionListener(new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				final KVimGitMarkers markers = KVimGitMarkers.get(curTab);
+				if(markers != null) markers.setBlaming(gitBlameBtn.isSelected());
 			}
 		});
 
 		gitAddBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitAdd.addFile(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitAdd.addFile(curTab);
 			}
 		});
 		gitRmBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitRemoveCached.removeCached(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitRemoveCached.removeCached(curTab);
 			}
 		});
 		gitCommitBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitCommit.commit(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitCommit.commit(curTab);
 			}
 		});
 
@@ -875,65 +922,41 @@ public class KVimMenuBar extends JMenuBar {
 		gitTagBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitTag.tagCommit(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitTag.tagCommit(curTab);
 			}
 		});
 
 		gitDiffBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitDiff.showDiffs(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitDiff.showDiffs(curTab);
 			}
 		});
 		gitFetchBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitFetch.fetch(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitFetch.fetch(curTab);
 			}
 		});
 
 		gitPullBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitPull.pull(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitPull.pull(curTab);
 			}
 		});
 
 		gitBranchAddBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KvimGitBranchAdd.branchAdd(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KvimGitBranchAdd.branchAdd(curTab);
 			}
 		});
 
 		gitBranchDelBtn.addActionListener(new AbstractAction() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
-				try {
-					KVimGitBranchDelete.branchDelete(curTab);
-				} catch(GitAPIException e) {
-					throw new RuntimeException(e);
-				}
+				KVimGitBranchDelete.branchDelete(curTab);
 			}
 		});
 
@@ -941,36 +964,28 @@ public class KVimMenuBar extends JMenuBar {
 		gitBranchBtn.add(gitBranchAddBtn);
 		gitBranchBtn.add(gitBranchDelBtn);
 
-		if(curTab.hasAGitRepo()) {
-			try {
-				final List<Ref> list = curTab.getGitRepository().branchList().call();
-
-				if(!list.isEmpty()) {
-					list.forEach(ref -> {
-						final JMenuItem jMenuItem = new JMenuItem(ref.getName());
-						jMenuItem.addActionListener(new AbstractAction() {
-							@Override
-							public void actionPerformed(ActionEvent actionEvent) {
-								try {
-									curTab.getGitRepository().checkout().setName(ref.getName()).call();
-								} catch(GitAPIException e) {
-									throw new RuntimeException(e);
-								}
-							}
-						});
-						gitCheckoutBtn.add(jMenuItem);
-					});
-				}
-			} catch(GitAPIException e) {
-				throw new RuntimeException(e);
+		gitCheckoutBtn.addMenuListener(new MenuListener() {
+			@Override
+			public void menuSelected(MenuEvent menuEvent) {
+				fillGitCheckout();
 			}
-		}
+
+			@Override
+			public void menuDeselected(MenuEvent menuEvent) {
+			}
+
+			@Override
+			public void menuCanceled(MenuEvent menuEvent) {
+			}
+		});
 
 		gitBtn.add(gitInitBtn);
 		gitBtn.add(gitCloneBtn);
 		gitBtn.addSeparator();
 		gitBtn.add(gitStatusBtn);
 		gitBtn.add(gitLogBtn);
+		gitBtn.add(gitFileLogBtn);
+		gitBtn.add(gitBlameBtn);
 		gitBtn.addSeparator();
 		gitBtn.add(gitAddBtn);
 		gitBtn.add(gitRmBtn);
@@ -984,17 +999,27 @@ public class KVimMenuBar extends JMenuBar {
 		gitBtn.addSeparator();
 		gitBtn.add(gitBranchBtn);
 		gitBtn.add(gitCheckoutBtn);
+	}
 
-		if(curTab.isUntitled()) {
-			gitBtn.setEnabled(false);
-		}
-
-		if(curTab.hasAGitRepo()) {
-			gitInitBtn.setEnabled(false);
-		} else {
-			new ArrayList<>(Arrays.asList(gitStatusBtn, gitLogBtn, gitAddBtn, gitCommitBtn, gitPushBtn, gitTagBtn,
-					gitRmBtn, gitDiffBtn, gitFetchBtn, gitMergeBtn, gitPullBtn, gitBranchBtn, gitCheckoutBtn)).forEach(item -> item.setEnabled(false));
-		}
+	public void fillGitCheckout() {
+		gitCheckoutBtn.removeAll();
+		if(!curTab.hasAGitRepo()) return;
+
+		final KVimTab tab = curTab;
+		KVimTasks.<List<Ref>>git(tab.getGitRepository(), "Git Branches", task -> tab.getGitRepository().branchList().call()).onDone(list -> {
+			gitCheckoutBtn.removeAll();
+			list.forEach(ref -> {
+				final JMenuItem jMenuItem = new JMenuItem(ref.getName());
+				jMenuItem.addActionListener(new AbstractAction() {
+					@Override
+					public void actionPerformed(ActionEvent actionEvent) {
+						KVimTasks.git(tab.getGitRepository(), "Git Checkout", task -> tab.getGitRepository().checkout().setName(ref.getName()).call()).start();
+					}
+				});
+				gitCheckoutBtn.add(jMenuItem);
+			});
+			if(gitCheckoutBtn.isPopupMenuVisible()) gitCheckoutBtn.getPopupMenu().pack();
+		}).start();
 	}
 
 	public void fillTools() {
@@ -1094,8 +1119,20 @@ public class KVimMenuBar extends JMenuBar {
 			}
 		});
 
+		final Action performance = new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				new KVimPerformance().setVisible(true);
+			}
+		};
+		perfBtn.addActionListener(performance);
+		perfBtn.setVisible(false);
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("control alt shift P"), "performance");
+		getActionMap().put("performance", performance);
+
 		helpBtn.add(whatsThis);
 		helpBtn.add(reportBug);
 		helpBtn.add(about);
+		helpBtn.add(perfBtn);
 	}
 }
@@ -0,0 +1,146 @@
+package fr.kokhaviel.kvim.gui;
+
+import fr.kokhaviel.kvim.api.FileType;
+import fr.kokhaviel.kvim.api.KVimMetrics;
+import fr.kokhaviel.kvim.api.KVimTasks;
+import fr.kokhaviel.kvim.api.actions.KVimWatchService;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+public class KVimPerformance extends JFrame {
+
+	final DefaultTableModel model = new DefaultTableModel(new Object[] {"Metric", "Count", "p50 (ms)", "p90 (ms)", "p99 (ms)", "Max (ms)"}, 0) {
+		@Override
+		public boolean isCellEditable(int row, int column) {
+			return false;
+		}
+	};
+	final DefaultListModel<String> stallModel = new DefaultListModel<>();
+	final JTextArea stacks = new JTextArea(12, 80);
+	final JLabel watches = new JLabel();
+	List<KVimMetrics.Stall> stalls;
+
+	public KVimPerformance() {
+		super("Performance");
+		this.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+		this.setIconImage(new ImageIcon(ClassLoader.getSystemResource("kvim/kvim-104x93.png")).getImage());
+
+		final JSpinner threshold = new JSpinner(new SpinnerNumberModel(KVimMetrics.getThreshold(), 1, 60_000, 10));
+		threshold.addChangeListener(changeEvent -> KVimMetrics.setThreshold((Integer) threshold.getValue()));
+		final JButton reset = new JButton("Reset");
+		reset.addActionListener(actionEvent -> {
+			KVimMetrics.reset();
+			refresh();
+		});
+		final JButton export = new JButton("Export JSON ...");
+		export.addActionListener(actionEvent -> export());
+
+		final JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+		top.add(new JLabel("EDT stall threshold (ms) : "));
+		top.add(threshold);
+		top.add(reset);
+		top.add(export);
+		top.add(watches);
+
+		final JList<String> stallList = new JList<>(stallModel);
+		stallList.addListSelectionListener(listSelectionEvent -> {
+			final int index = stallList.getSelectedIndex();
+			if(index >= 0 && stalls != null && index < stalls.size()) showStacks(stalls.get(index));
+		});
+		stacks.setEditable(false);
+		stacks.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+		final JSplitPane stallPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, new JScrollPane(stallList), new JScrollPane(stacks));
+		stallPane.setDividerLocation(260);
+		final JSplitPane center = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(new JTable(model)), stallPane);
+		center.setDividerLocation(200);
+
+		this.getContentPane().setLayout(new BorderLayout());
+		this.getContentPane().add(top, BorderLayout.NORTH);
+		this.getContentPane().add(center, BorderLayout.CENTER);
+
+		final Timer timer = new Timer(1000, actionEvent -> refresh());
+		timer.start();
+		this.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent windowEvent) {
+				timer.stop();
+			}
+		});
+
+		refresh();
+		this.setSize(800, 500);
+		this.setLocationRelativeTo(KVimMain.kVimMain);
+	}
+
+	void refresh() {
+		final int unwatched = KVimWatchService.getUnwatchedCount();
+		watches.setText(format("Watched directories : %d, polled : %d, unwatched : %d", KVimWatchService.getWatchedCount(), KVimWatchService.getPolledCount(), unwatched));
+		watches.setForeground(unwatched > 0 ? Color.RED : null);
+
+		model.setRowCount(0);
+		addRow("Event dispatch", KVimMetrics.getDispatch());
+		addRow("Keystroke to paint", KVimMetrics.getKeystroke());
+		for(Map.Entry<FileType, KVimMetrics.Histogram> entry : KVimMetrics.getFileTypes().entrySet()) {
+			addRow("  " + entry.getKey().getName(), entry.getValue());
+		}
+		for(Map.Entry<String, KVimMetrics.Histogram> entry : KVimMetrics.getTabs().entrySet()) {
+			addRow("  " + entry.getKey(), entry.getValue());
+		}
+
+		final List<KVimMetrics.Stall> latest = KVimMetrics.getStalls();
+		final SimpleDateFormat clock = new SimpleDateFormat("HH:mm:ss");
+		for(int i = 0; i < latest.size(); i++) {
+			final KVimMetrics.Stall stall = latest.get(i);
+			final String label = format("%s  %d ms  %s", clock.format(new Date(stall.getTime())), stall.getDuration(), stall.getEvent());
+			if(i < stallModel.size()) {
+				if(!stallModel.get(i).equals(label)) stallModel.set(i, label);
+			} else {
+				stallModel.addElement(label);
+			}
+		}
+		if(stallModel.size() > latest.size()) stallModel.removeRange(latest.size(), stallModel.size() - 1);
+		stalls = latest;
+	}
+
+	void addRow(String name, KVimMetrics.Histogram histogram) {
+		model.addRow(new Object[] {name, histogram.getCount(), format("%.2f", histogram.percentile(50)),
+				format("%.2f", histogram.percentile(90)), format("%.2f", histogram.percentile(99)), format("%.2f", histogram.getMax())});
+	}
+
+	void showStacks(KVimMetrics.Stall stall) {
+		final StringBuilder text = new StringBuilder();
+		final List<StackTraceElement[]> samples = stall.getSamples();
+		for(int i = 0; i < samples.size(); i++) {
+			text.append("Sample ").append(i + 1).append(" / ").append(samples.size()).append('\n');
+			for(StackTraceElement frame : samples.get(i)) text.append("\tat ").append(frame).append('\n');
+			text.append('\n');
+		}
+		stacks.setText(text.toString());
+		stacks.setCaretPosition(0);
+	}
+
+	void export() {
+		final JFileChooser fileChooser = new JFileChooser();
+		fileChooser.setDialogTitle("Export Performance Metrics");
+		fileChooser.setSelectedFile(new File("kvim-metrics.json"));
+		if(fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+		final File file = fileChooser.getSelectedFile();
+		final String json = KVimMetrics.toJson();
+		KVimTasks.task("Export Metrics", task -> Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8))).start();
+	}
+}
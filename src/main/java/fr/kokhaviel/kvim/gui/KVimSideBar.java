@@ -1,19 +1,150 @@
 package fr.kokhaviel.kvim.gui;
 
+import fr.kokhaviel.kvim.api.KVimTasks;
 import fr.kokhaviel.kvim.api.actions.edit.KVimLines;
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 
 import javax.swing.*;
-import javax.swing.text.BadLocationException;
+import javax.swing.event.CaretEvent;
+import javax.swing.event.CaretListener;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
 import java.awt.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.List;
 
-public class KVimSideBar extends JPanel {
+public class KVimSideBar extends JPanel implements CaretListener, DocumentListener, PropertyChangeListener, ChangeListener {
 
+	final JLabel jLabel = new JLabel();
+	final JProgressBar progressBar = new JProgressBar(0, 100);
+	final JLabel taskLabel = new JLabel();
+	final JProgressBar taskBar = new JProgressBar(0, 100);
+	final JButton cancelBtn = new JButton("x");
+	KVimTasks.Task<?> task;
+	KVimTab tab;
 
-	public KVimSideBar(KVimTab tab) throws BadLocationException {
-		JLabel jLabel = new JLabel("Line " + KVimLines.getLineNumber(tab) + " of " + (tab.getText().split("\n").length + 1)
-										+ ", Character " + tab.getCaretPosition() + " of " + tab.getText().length());
+	public KVimSideBar(KVimTab tab) {
 		this.setLayout(new FlowLayout(FlowLayout.RIGHT));
+		progressBar.setStringPainted(true);
+		cancelBtn.setMargin(new Insets(0, 4, 0, 4));
+		cancelBtn.setToolTipText("Cancel");
+		cancelBtn.addActionListener(actionEvent -> {
+			if(task != null) task.cancel();
+		});
+		this.add(taskLabel);
+		this.add(taskBar);
+		this.add(cancelBtn);
+		this.add(progressBar);
 		this.add(jLabel);
+		setTab(tab);
+		updateTasks();
+	}
+
+	public void setTab(KVimTab tab) {
+		if(this.tab == tab) return;
+		if(isDisplayable()) detach();
+		this.tab = tab;
+		if(isDisplayable()) attach();
+		updateLabel();
+		updateProgress(tab != null && tab.isLoading() ? 0 : 100);
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		attach();
+		KVimTasks.addChangeListener(this);
+		updateLabel();
+		updateTasks();
+	}
+
+	@Override
+	public void removeNotify() {
+		detach();
+		KVimTasks.removeChangeListener(this);
+		super.removeNotify();
+	}
+
+	private void attach() {
+		if(tab == null) return;
+		tab.addCaretListener(this);
+		tab.addPropertyChangeListener("document", this);
+		tab.addPropertyChangeListener("loadProgress", this);
+		tab.getDocument().addDocumentListener(this);
+	}
+
+	private void detach() {
+		if(tab == null) return;
+		tab.removeCaretListener(this);
+		tab.removePropertyChangeListener("document", this);
+		tab.removePropertyChangeListener("loadProgress", this);
+		tab.getDocument().removeDocumentListener(this);
+	}
+
+	private void updateProgress(int progress) {
+		progressBar.setValue(progress);
+		progressBar.setVisible(progress < 100);
+	}
+
+	private void updateTasks() {
+		final List<KVimTasks.Task<?>> running = KVimTasks.getRunning();
+		task = running.isEmpty() ? null : running.get(running.size() - 1);
+		taskLabel.setVisible(task != null);
+		taskBar.setVisible(task != null);
+		cancelBtn.setVisible(task != null);
+		if(task == null) return;
+
+		final String message = task.getMessage();
+		taskLabel.setText(task.getTitle() + (message == null ? "" : " : " + message) + (running.size() > 1 ? " (+" + (running.size() - 1) + ")" : ""));
+		taskBar.setIndeterminate(task.getProgress() < 0);
+		taskBar.setValue(Math.max(0, task.getProgress()));
+	}
+
+	private void updateLabel() {
+		if(tab == null) return;
+		jLabel.setText("Line " + KVimLines.getLineNumber(tab) + " of " + KVimLines.getLineCount(tab)
+				+ ", Character " + tab.getCaretPosition() + " of " + tab.getDocument().getLength());
+	}
+
+	@Override
+	public void caretUpdate(CaretEvent caretEvent) {
+		updateLabel();
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent documentEvent) {
+		updateLabel();
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent documentEvent) {
+		updateLabel();
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent documentEvent) {
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent changeEvent) {
+		updateTasks();
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent propertyChangeEvent) {
+		if(propertyChangeEvent.getPropertyName().equals("loadProgress")) {
+			updateProgress((Integer) propertyChangeEvent.getNewValue());
+			return;
+		}
+
+		if(propertyChangeEvent.getOldValue() instanceof Document) {
+			((Document) propertyChangeEvent.getOldValue()).removeDocumentListener(this);
+		}
+		tab.getDocument().addDocumentListener(this);
+		updateLabel();
 	}
 }
@@ -1,34 +1,94 @@
 package fr.kokhaviel.kvim.gui;
 
+import fr.kokhaviel.kvim.api.git.KVimGitStatusService;
+import fr.kokhaviel.kvim.api.gui.KVimTab;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 public class KVimTabNav extends JPanel {
 
-	private static class KVimTabButton extends JButton {
+	private static class KVimTabButton extends JButton implements PropertyChangeListener, KVimGitStatusService.Listener {
+
+		final KVimTab tab;
+		final Color foreground;
+		KVimGitStatusService status;
 
-		public KVimTabButton(String s, int index) {
-			super(s);
+		public KVimTabButton(KVimTab tab) {
+			super(tab.getFilename());
+			this.tab = tab;
+			this.foreground = getForeground();
 
 			this.addMouseListener(new MouseAdapter() {
 				@Override
 				public void mouseClicked(MouseEvent mouseEvent) {
-					KVimMain.kVimMain.updateTab(index, false);
+					KVimMain.kVimMain.updateTab(tab.getIndex(), false);
 				}
 			});
 		}
+
+		@Override
+		public void addNotify() {
+			super.addNotify();
+			tab.addPropertyChangeListener("modified", this);
+			if(tab.hasAGitRepo() && !tab.isUntitled()) {
+				status = KVimGitStatusService.get(tab.getRootGitPath());
+				status.addListener(this);
+			}
+			updateText();
+		}
+
+		@Override
+		public void removeNotify() {
+			tab.removePropertyChangeListener("modified", this);
+			if(status != null) status.removeListener(this);
+			status = null;
+			super.removeNotify();
+		}
+
+		@Override
+		public void statusChanged(KVimGitStatusService service, Set<String> paths) {
+			if(paths == null || paths.contains(service.relativize(tab.getFilePath()))) updateText();
+		}
+
+		@Override
+		public void propertyChange(PropertyChangeEvent propertyChangeEvent) {
+			updateText();
+		}
+
+		private void updateText() {
+			setText(tab.isModified() ? tab.getFilename() + " *" : tab.getFilename());
+			final Color color = status == null ? null : status.getColor(status.relativize(tab.getFilePath()));
+			setForeground(color == null ? foreground : color);
+		}
 	}
 
+	final List<KVimTab> shownTabs = new ArrayList<>();
+
 	public KVimTabNav() {
-		super(new GridLayout(1, KVimMain.tabs.size()));
-		AtomicInteger i = new AtomicInteger();
-		KVimMain.tabs.forEach(tab -> {
-			JButton button = new KVimTabButton(tab.getFilename(), i.get());
-			KVimTabNav.this.add(button);
-			i.getAndIncrement();
-		});
+		super(new GridLayout(1, 0));
+	}
+
+	public void update(KVimTab selected) {
+		if(!shownTabs.equals(KVimMain.tabs)) {
+			removeAll();
+			shownTabs.clear();
+			shownTabs.addAll(KVimMain.tabs);
+			shownTabs.forEach(tab -> KVimTabNav.this.add(new KVimTabButton(tab)));
+			revalidate();
+			repaint();
+		}
+
+		for(Component component : getComponents()) {
+			final KVimTabButton button = (KVimTabButton) component;
+			button.setFont(button.getFont().deriveFont(button.tab == selected ? Font.BOLD : Font.PLAIN));
+		}
 	}
 }
@@ -2,11 +2,9 @@ package fr.kokhaviel.kvim.gui.split;
 
 import fr.kokhaviel.kvim.api.gui.KVimTab;
 import fr.kokhaviel.kvim.gui.KVimMain;
-import fr.kokhaviel.kvim.gui.KVimMenuBar;
 import fr.kokhaviel.kvim.gui.KVimSideBar;
 
 import javax.swing.*;
-import javax.swing.text.BadLocationException;
 import java.awt.*;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
@@ -19,20 +17,20 @@ public class KVimSplitTab extends JPanel {
 	public static KVimTab curRightTab;
 	public static SplitOrientation curOrientation;
 
-	public KVimSplitTab(KVimTab leftTab, KVimTab rightTab, SplitOrientation orientation, boolean sideBar) throws BadLocationException {
+	public KVimSplitTab(KVimTab leftTab, KVimTab rightTab, SplitOrientation orientation, boolean sideBar) {
 
 		curOrientation = orientation;
 		leftTab.addFocusListener(new FocusAdapter() {
 			@Override
 			public void focusGained(FocusEvent focusEvent) {
-				KVimMain.kVimMain.setJMenuBar(new KVimMenuBar(leftTab));
+				KVimMain.kVimMain.getKVimMenuBar().setTab(leftTab);
 			}
 		});
 
 		rightTab.addFocusListener(new FocusAdapter() {
 			@Override
 			public void focusGained(FocusEvent focusEvent) {
-				KVimMain.kVimMain.setJMenuBar(new KVimMenuBar(rightTab));
+				KVimMain.kVimMain.getKVimMenuBar().setTab(rightTab);
 			}
 		});
 